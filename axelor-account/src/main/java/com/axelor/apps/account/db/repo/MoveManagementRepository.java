@@ -24,12 +24,11 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.invoice.InvoiceTermService;
-import com.axelor.apps.account.service.move.MoveLineControlService;
 import com.axelor.apps.account.service.move.MoveLineInvoiceTermService;
 import com.axelor.apps.account.service.move.MovePfpService;
 import com.axelor.apps.account.service.move.MoveRemoveService;
+import com.axelor.apps.account.service.move.MoveSaveControlService;
 import com.axelor.apps.account.service.move.MoveSequenceService;
-import com.axelor.apps.account.service.move.MoveValidateService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Period;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
@@ -160,48 +159,8 @@ public class MoveManagementRepository extends MoveRepository {
   @Override
   public Move save(Move move) {
     try {
-      MoveValidateService moveValidateService = Beans.get(MoveValidateService.class);
-
-      moveValidateService.checkMoveLinesPartner(move);
-      if (move.getStatusSelect() == MoveRepository.STATUS_ACCOUNTED
-          || move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
-          || move.getStatusSelect() == MoveRepository.STATUS_SIMULATED) {
-        moveValidateService.checkPreconditions(move);
-      }
-      if (move.getCurrency() != null) {
-        move.setCurrencyCode(move.getCurrency().getCodeISO());
-      }
-
+      Beans.get(MoveSaveControlService.class).checkMoveBeforeSave(move);
       Beans.get(MoveSequenceService.class).setDraftSequence(move);
-      MoveLineControlService moveLineControlService = Beans.get(MoveLineControlService.class);
-      InvoiceTermService invoiceTermService = Beans.get(InvoiceTermService.class);
-
-      List<MoveLine> moveLineList = move.getMoveLineList();
-      if (moveLineList != null) {
-        for (MoveLine moveLine : moveLineList) {
-          moveLineControlService.validateMoveLine(moveLine);
-          List<AnalyticMoveLine> analyticMoveLineList = moveLine.getAnalyticMoveLineList();
-          if (analyticMoveLineList != null) {
-            for (AnalyticMoveLine analyticMoveLine : analyticMoveLineList) {
-              analyticMoveLine.setAccount(moveLine.getAccount());
-              analyticMoveLine.setAccountType(moveLine.getAccount().getAccountType());
-            }
-          }
-          moveLineControlService.controlAccountingAccount(moveLine);
-
-          if (!moveLine.getAccount().getUseForPartnerBalance()
-              && CollectionUtils.isNotEmpty(moveLine.getInvoiceTermList())) {
-            if (moveLine.getInvoiceTermList().stream().allMatch(invoiceTermService::isNotReadonly)
-                && moveLine.getInvoiceTermList().stream().noneMatch(InvoiceTerm::getIsHoldBack)) {
-              moveLine.clearInvoiceTermList();
-            } else {
-              throw new AxelorException(
-                  TraceBackRepository.CATEGORY_INCONSISTENCY,
-                  I18n.get(AccountExceptionMessage.MOVE_LINE_INVOICE_TERM_ACCOUNT_CHANGE));
-            }
-          }
-        }
-      }
 
       return super.save(move);
     } catch (Exception e) {
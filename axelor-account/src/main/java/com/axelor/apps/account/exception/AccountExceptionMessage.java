@@ -538,6 +538,8 @@ public final class AccountExceptionMessage {
   public static final String BATCH_DEBT_RECOVERY_1 = /*$$(*/ "Debt recovery's reporting :" /*)*/;
 
   public static final String BATCH_DEBT_RECOVERY_2 = /*$$(*/ "Partner(s) treated" /*)*/;
+  public static final String BATCH_DEBT_RECOVERY_MESSAGE_NOT_GENERATED = /*$$(*/
+      "Debt recovery %s: the message of the debt recovery level could not be generated." /*)*/;
 
   /** Batch credit transfer */
   public static final String BATCH_CREDIT_TRANSFER_REPORT_TITLE = /*$$(*/
@@ -602,6 +604,13 @@ public final class AccountExceptionMessage {
   public static final String BATCH_AUTO_MOVE_LETTERING_PENDING_PROPOSAL_EXISTS = /*$$(*/
       "Warning, there are still reconcile group proposals pending that correspond to the filters you have entered." /*)*/;
 
+  /** Batch partner balance consistency control */
+  public static final String BATCH_PARTNER_BALANCE_REPORT_TITLE = /*$$(*/
+      "Report for partner balances consistency control batch:" /*)*/;
+
+  public static final String BATCH_PARTNER_BALANCE_CORRECTED = /*$$(*/
+      "* %s partner balance(s) corrected" /*)*/;
+
   /** Cfonb export service */
   public static final String CFONB_EXPORT_1 = /*$$(*/
       "You must configure a RIB for the reimbursement" /*)*/;
@@ -1415,6 +1424,18 @@ public final class AccountExceptionMessage {
   public static final String IMPORT_FEC_PERIOD_NOT_FOUND = /*$$(*/
       "No period found for the date %s and the company %s. The move cannot be created." /*)*/;
 
+  public static final String IMPORT_FEC_COLUMN_NOT_FOUND = /*$$(*/
+      "The column %s cannot be found in the header of the file." /*)*/;
+
+  public static final String IMPORT_FEC_LINES_NOT_IMPORTED = /*$$(*/
+      "The lines %s to %s could not be imported: %s" /*)*/;
+
+  public static final String IMPORT_FEC_MOVES_NOT_VALIDATED = /*$$(*/
+      "The following moves could not be validated: %s" /*)*/;
+
+  public static final String IMPORT_FEC_MOVE_LINE_NOT_GROUPED = /*$$(*/
+      "The line %s could not be imported: the move %s of the journal %s was already imported, the lines of a move must follow each other in the file." /*)*/;
+
   public static final String ACCOUNT_MANAGEMENT_CASH_ACCOUNT_MISSING_PAYMENT = /*$$(*/
       "Please select a cash account in config of the payment mode %s" /*)*/;
 
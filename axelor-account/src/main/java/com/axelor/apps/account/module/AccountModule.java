@@ -205,6 +205,8 @@ import com.axelor.apps.account.service.move.MoveRemoveService;
 import com.axelor.apps.account.service.move.MoveRemoveServiceImpl;
 import com.axelor.apps.account.service.move.MoveReverseService;
 import com.axelor.apps.account.service.move.MoveReverseServiceImpl;
+import com.axelor.apps.account.service.move.MoveSaveControlService;
+import com.axelor.apps.account.service.move.MoveSaveControlServiceImpl;
 import com.axelor.apps.account.service.move.MoveSimulateService;
 import com.axelor.apps.account.service.move.MoveSimulateServiceImpl;
 import com.axelor.apps.account.service.move.MoveTemplateService;
@@ -642,6 +644,8 @@ public class AccountModule extends AxelorModule {
 
     bind(AccountCustomerService.class).to(AccountCustomerServiceImpl.class);
 
+    bind(PartnerBalanceService.class).to(PartnerBalanceServiceImpl.class);
+
     bind(InvoiceProductStatementService.class).to(InvoiceProductStatementServiceImpl.class);
 
     bind(MoveLineAttrsService.class).to(MoveLineAttrsServiceImpl.class);
@@ -710,5 +714,7 @@ public class AccountModule extends AxelorModule {
     bind(InvoiceTermReplaceService.class).to(InvoiceTermReplaceServiceImpl.class);
 
     bind(InvoiceLineRepository.class).to(InvoiceLineManagementRepository.class);
+
+    bind(MoveSaveControlService.class).to(MoveSaveControlServiceImpl.class);
   }
 }
@@ -27,6 +27,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.TradingName;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 public interface AccountCustomerService {
 
@@ -54,6 +55,17 @@ public interface AccountCustomerService {
    */
   public BigDecimal getBalanceDue(Partner partner, Company company, TradingName tradingName);
 
+  /**
+   * Compute the balance due of all the partners of a company at once, with the same rules as
+   * {@link #getBalanceDue(Partner, Company, TradingName)}.
+   *
+   * @param company A Company
+   * @param tradingName (Optional) A trading name of the company
+   * @return The positive balances due, by partner id
+   */
+  public Map<Long, BigDecimal> getPositiveBalanceDueByPartner(
+      Company company, TradingName tradingName);
+
   /**
    * **************************************** 2. Calcul du solde exigible (relançable) du tiers
    * *****************************************
@@ -42,7 +42,9 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.ZoneOffset;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import org.slf4j.Logger;
@@ -51,22 +53,29 @@ import org.slf4j.LoggerFactory;
 public class AccountCustomerServiceImpl implements AccountCustomerService {
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** Signed sum of the amounts remaining of the due invoice terms. */
+  protected static final String BALANCE_DUE_SUM =
+      "SUM(CASE WHEN ml.debit > 0 THEN term.amount_remaining ELSE term.amount_remaining * -1 END)";
+
   protected AccountingSituationService accountingSituationService;
   protected AccountingSituationRepository accSituationRepo;
   protected AccountingSituationInitService accountingSituationInitService;
   protected AppBaseService appBaseService;
+  protected PartnerBalanceService partnerBalanceService;
 
   @Inject
   public AccountCustomerServiceImpl(
       AccountingSituationService accountingSituationService,
       AccountingSituationInitService accountingSituationInitService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      PartnerBalanceService partnerBalanceService) {
 
     this.accountingSituationService = accountingSituationService;
     this.accountingSituationInitService = accountingSituationInitService;
     this.accSituationRepo = accSituationRepo;
     this.appBaseService = appBaseService;
+    this.partnerBalanceService = partnerBalanceService;
   }
 
   @Override
@@ -85,6 +94,10 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
   public BigDecimal getBalance(Partner partner, Company company) {
     log.debug("Compute balance (Partner : {}, Company : {})", partner.getName(), company.getName());
 
+    if (partnerBalanceService.isEnabled(company)) {
+      return partnerBalanceService.getBalance(partner, company);
+    }
+
     Query query =
         JPA.em()
             .createNativeQuery(
@@ -127,19 +140,73 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
     log.debug(
         "Compute balance due (Partner : {}, Company : {})", partner.getName(), company.getName());
 
+    Query query =
+        this.createBalanceDueQuery(
+                "SELECT " + BALANCE_DUE_SUM, "ml.partner = :partner", "", company, tradingName)
+            .setParameter("partner", partner);
+    BigDecimal balance = (BigDecimal) query.getSingleResult();
+
+    if (balance == null) {
+      balance = BigDecimal.ZERO;
+    }
+
+    log.debug("Balance due : {}", balance);
+
+    return balance;
+  }
+
+  @Override
+  public Map<Long, BigDecimal> getPositiveBalanceDueByPartner(
+      Company company, TradingName tradingName) {
+    Query query =
+        this.createBalanceDueQuery(
+            "SELECT ml.partner, " + BALANCE_DUE_SUM,
+            "ml.partner IS NOT NULL",
+            "GROUP BY ml.partner HAVING " + BALANCE_DUE_SUM + " > 0",
+            company,
+            tradingName);
+
+    Map<Long, BigDecimal> balanceDueMap = new HashMap<>();
+    for (Object result : query.getResultList()) {
+      Object[] row = (Object[]) result;
+      balanceDueMap.put(((Number) row[0]).longValue(), (BigDecimal) row[1]);
+    }
+    return balanceDueMap;
+  }
+
+  /**
+   * Create the native query on the amounts remaining of the due invoice terms of the company, used
+   * to compute the balances due.
+   *
+   * @param selectClause the select clause, on the move line {@code ml} and the invoice term {@code
+   *     term}
+   * @param partnerCondition the condition on the partner of the move line
+   * @param groupByClause the clauses following the where clause, can be empty
+   * @param company the company of the moves
+   * @param tradingName the trading name of the moves, can be null
+   */
+  protected Query createBalanceDueQuery(
+      String selectClause,
+      String partnerCondition,
+      String groupByClause,
+      Company company,
+      TradingName tradingName) {
     Query query =
         JPA.em()
             .createNativeQuery(
-                "SELECT SUM(CASE WHEN ml.debit > 0 THEN term.amount_remaining ELSE term.amount_remaining * -1 END) "
-                    + "FROM public.account_invoice_term AS term "
+                selectClause
+                    + " FROM public.account_invoice_term AS term "
                     + "JOIN public.account_move_line AS ml ON term.move_line = ml.id "
                     + "LEFT OUTER JOIN public.account_account AS account ON ml.account = account.id "
                     + "LEFT OUTER JOIN public.account_move AS move ON ml.move = move.id "
                     + "WHERE term.due_date IS NOT NULL AND term.due_date <= :todayDate "
-                    + "AND ml.partner = :partner AND move.company = :company "
+                    + "AND "
+                    + partnerCondition
+                    + " AND move.company = :company "
                     + (tradingName != null ? "AND move.trading_name = :tradingName " : "")
                     + "AND move.ignore_in_accounting_ok IN ('false', null) AND account.use_for_partner_balance IS TRUE "
-                    + "AND move.status_select IN (:statusValidated, :statusDaybook) AND ABS(ml.amount_remaining) > 0 ")
+                    + "AND move.status_select IN (:statusValidated, :statusDaybook) AND ABS(ml.amount_remaining) > 0 "
+                    + groupByClause)
             .setParameter(
                 "todayDate",
                 Date.from(
@@ -149,7 +216,6 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
                         .atZone(ZoneOffset.UTC)
                         .toInstant()),
                 TemporalType.DATE)
-            .setParameter("partner", partner)
             .setParameter("company", company)
             .setParameter("statusValidated", MoveRepository.STATUS_ACCOUNTED)
             .setParameter("statusDaybook", MoveRepository.STATUS_DAYBOOK);
@@ -157,15 +223,7 @@ public class AccountCustomerServiceImpl implements AccountCustomerService {
     if (tradingName != null) {
       query = query.setParameter("tradingName", tradingName);
     }
-    BigDecimal balance = (BigDecimal) query.getSingleResult();
-
-    if (balance == null) {
-      balance = BigDecimal.ZERO;
-    }
-
-    log.debug("Balance due : {}", balance);
-
-    return balance;
+    return query;
   }
 
   /**
@@ -23,10 +23,12 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Set;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 
 public interface AccountingCloseAnnualService {
 
@@ -44,6 +46,26 @@ public interface AccountingCloseAnnualService {
       boolean isSimulatedMove)
       throws AxelorException;
 
+  /**
+   * Generate the closure and opening moves of an account, and of a partner if not null, for a
+   * balance computed beforehand. The closure move is reconciled with the opening move when both are
+   * generated.
+   *
+   * @return the generated moves, or null if the balance is zero
+   */
+  public List<Move> generateCloseAndOpenAnnualAccount(
+      Account account,
+      Partner partner,
+      BigDecimal balance,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean openYear,
+      boolean isSimulatedMove)
+      throws AxelorException;
+
   public List<Move> generateCloseAnnualAccount(
       Year year,
       Account account,
@@ -74,4 +96,13 @@ public interface AccountingCloseAnnualService {
 
   public List<Pair<Long, Long>> assignPartner(
       List<Long> accountIdList, Year year, boolean allocatePerPartner);
+
+  /**
+   * Compute in one query the balances of the accounted move lines of the year on the given
+   * accounts, by account and, if asked, by partner. Zero balances are left out.
+   *
+   * @return the (account id, partner id or null, balance) triples, ordered by account and partner
+   */
+  public List<Triple<Long, Long, BigDecimal>> getBalances(
+      Year year, List<Long> accountIdList, boolean groupByPartner);
 }
@@ -51,6 +51,7 @@ import java.util.stream.Collectors;
 import javax.persistence.Query;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -110,6 +111,33 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       boolean isSimulatedMove)
       throws AxelorException {
 
+    return generateCloseAndOpenAnnualAccount(
+        account,
+        partner,
+        computeBalance(year, account, partner, allocatePerPartner),
+        endOfYearDate,
+        reportedBalanceDate,
+        origin,
+        moveDescription,
+        closeYear,
+        openYear,
+        isSimulatedMove);
+  }
+
+  @Override
+  public List<Move> generateCloseAndOpenAnnualAccount(
+      Account account,
+      Partner partner,
+      BigDecimal balance,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean openYear,
+      boolean isSimulatedMove)
+      throws AxelorException {
+
     List<Move> moveList = new ArrayList<>();
 
     Move closeYearMove = null;
@@ -118,15 +146,14 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     if (closeYear) {
       closeYearMove =
           generateCloseOrOpenAnnualAccountMove(
-              year,
               account,
+              balance,
               endOfYearDate,
               endOfYearDate,
               origin,
               moveDescription,
               partner,
               false,
-              allocatePerPartner,
               isSimulatedMove);
 
       if (closeYearMove == null) {
@@ -138,15 +165,14 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     if (openYear) {
       openYearMove =
           generateCloseOrOpenAnnualAccountMove(
-              year,
               account,
+              balance,
               reportedBalanceDate,
               endOfYearDate,
               origin,
               moveDescription,
               partner,
               true,
-              allocatePerPartner,
               isSimulatedMove);
 
       if (openYearMove == null) {
@@ -257,12 +283,34 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       boolean isSimulatedMove)
       throws AxelorException {
 
+    return generateCloseOrOpenAnnualAccountMove(
+        account,
+        computeBalance(year, account, partner, allocatePerPartner),
+        moveDate,
+        originDate,
+        origin,
+        moveDescription,
+        partner,
+        isReverse,
+        isSimulatedMove);
+  }
+
+  protected Move generateCloseOrOpenAnnualAccountMove(
+      Account account,
+      BigDecimal balance,
+      LocalDate moveDate,
+      LocalDate originDate,
+      String origin,
+      String moveDescription,
+      Partner partner,
+      boolean isReverse,
+      boolean isSimulatedMove)
+      throws AxelorException {
+
     Company company = account.getCompany();
 
     AccountConfig accountConfig = accountConfigService.getAccountConfig(company);
 
-    BigDecimal balance = computeBalance(year, account, partner, allocatePerPartner);
-
     if (balance.compareTo(BigDecimal.ZERO) == 0) {
       return null;
     }
@@ -412,6 +460,49 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     }
   }
 
+  @Override
+  public List<Triple<Long, Long, BigDecimal>> getBalances(
+      Year year, List<Long> accountIdList, boolean groupByPartner) {
+
+    if (CollectionUtils.isEmpty(accountIdList)) {
+      return new ArrayList<>();
+    }
+
+    String filter =
+        "WHERE self.move.ignoreInAccountingOk = false AND self.move.period.year = :year "
+            + "AND self.account.id IN (:accountIdList) AND self.move.statusSelect = :statusSelect "
+            + "AND self.move.autoYearClosureMove is not true ";
+    String queryStr =
+        groupByPartner
+            ? "SELECT self.account.id, partner.id, SUM(self.debit - self.credit) "
+                + "FROM MoveLine self LEFT JOIN self.partner partner "
+                + filter
+                + "GROUP BY self.account.id, partner.id "
+                + "HAVING SUM(self.debit - self.credit) <> 0 "
+                + "ORDER BY self.account.id, partner.id"
+            : "SELECT self.account.id, SUM(self.debit - self.credit) FROM MoveLine self "
+                + filter
+                + "GROUP BY self.account.id "
+                + "HAVING SUM(self.debit - self.credit) <> 0 "
+                + "ORDER BY self.account.id";
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(queryStr, Object[].class)
+            .setParameter("year", year)
+            .setParameter("accountIdList", accountIdList)
+            .setParameter("statusSelect", MoveRepository.STATUS_ACCOUNTED)
+            .getResultList();
+
+    return resultList.stream()
+        .map(
+            result ->
+                groupByPartner
+                    ? Triple.of((Long) result[0], (Long) result[1], (BigDecimal) result[2])
+                    : Triple.of((Long) result[0], (Long) null, (BigDecimal) result[1]))
+        .collect(Collectors.toList());
+  }
+
   protected void reconcile(Move move, Move reverseMove) throws AxelorException {
 
     List<MoveLine> moveLineSortedList = move.getMoveLineList();
@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.db.Query;
 import java.time.LocalDate;
 import java.util.List;
@@ -33,6 +34,10 @@ public interface AccountingCutOffService {
   Query<Move> getMoves(
       Company company, Set<Journal> journalSet, LocalDate moveDate, int accountingCutOffTypeSelect);
 
+  /** Iterate by pages, ordered by id, over the moves of {@link #getMoves}. */
+  KeysetQueryIterator<Move> getMoveIterator(
+      Company company, Set<Journal> journalSet, LocalDate moveDate, int accountingCutOffTypeSelect);
+
   List<Move> generateCutOffMovesFromMove(
       Move move,
       Journal journal,
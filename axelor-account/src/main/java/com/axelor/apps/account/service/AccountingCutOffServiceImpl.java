@@ -51,6 +51,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.db.Query;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -88,6 +89,7 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
   protected CurrencyService currencyService;
   protected TaxAccountToolService taxAccountToolService;
   protected MoveLineRepository moveLineRepository;
+  protected PartnerBalanceService partnerBalanceService;
   protected int counter = 0;
 
   @Inject
@@ -111,7 +113,8 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       MoveLineService moveLineService,
       CurrencyService currencyService,
       TaxAccountToolService taxAccountToolService,
-      MoveLineRepository moveLineRepository) {
+      MoveLineRepository moveLineRepository,
+      PartnerBalanceService partnerBalanceService) {
 
     this.moveCreateService = moveCreateService;
     this.moveToolService = moveToolService;
@@ -133,6 +136,7 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     this.currencyService = currencyService;
     this.taxAccountToolService = taxAccountToolService;
     this.moveLineRepository = moveLineRepository;
+    this.partnerBalanceService = partnerBalanceService;
   }
 
   @Override
@@ -141,10 +145,26 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       Set<Journal> journalSet,
       LocalDate moveDate,
       int accountingCutOffTypeSelect) {
-    List<Long> journalIdList = null;
+    return moveRepository
+        .all()
+        .filter(getMoveFilter(company, journalSet))
+        .bind(getMoveBindings(company, journalSet, moveDate, accountingCutOffTypeSelect))
+        .order("id");
+  }
+
+  @Override
+  public KeysetQueryIterator<Move> getMoveIterator(
+      Company company,
+      Set<Journal> journalSet,
+      LocalDate moveDate,
+      int accountingCutOffTypeSelect) {
+    return KeysetQueryIterator.of(Move.class, getMoveFilter(company, journalSet))
+        .bind(getMoveBindings(company, journalSet, moveDate, accountingCutOffTypeSelect));
+  }
+
+  protected String getMoveFilter(Company company, Set<Journal> journalSet) {
     String queryStr;
     if (CollectionUtils.isNotEmpty(journalSet)) {
-      journalIdList = journalSet.stream().map(Journal::getId).collect(Collectors.toList());
       queryStr = "self.journal.id IN (:journals)";
     } else {
       queryStr = "self.journal.journalType.technicalTypeSelect = :journalType";
@@ -161,25 +181,32 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     if (company != null) {
       queryStr += " AND self.company = :company";
     }
+    return queryStr;
+  }
 
-    Query<Move> moveQuery =
-        moveRepository
-            .all()
-            .filter(queryStr)
-            .bind("journals", journalIdList)
-            .bind(
-                "journalType",
-                accountingCutOffTypeSelect
-                        == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_PREPAID_EXPENSES
-                    ? JournalTypeRepository.TECHNICAL_TYPE_SELECT_EXPENSE
-                    : JournalTypeRepository.TECHNICAL_TYPE_SELECT_SALE)
-            .bind("date", moveDate);
+  protected Map<String, Object> getMoveBindings(
+      Company company,
+      Set<Journal> journalSet,
+      LocalDate moveDate,
+      int accountingCutOffTypeSelect) {
+    Map<String, Object> bindings = new HashMap<>();
+    bindings.put(
+        "journals",
+        CollectionUtils.isNotEmpty(journalSet)
+            ? journalSet.stream().map(Journal::getId).collect(Collectors.toList())
+            : null);
+    bindings.put(
+        "journalType",
+        accountingCutOffTypeSelect
+                == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_PREPAID_EXPENSES
+            ? JournalTypeRepository.TECHNICAL_TYPE_SELECT_EXPENSE
+            : JournalTypeRepository.TECHNICAL_TYPE_SELECT_SALE);
+    bindings.put("date", moveDate);
 
     if (company != null) {
-      moveQuery.bind("company", company.getId());
+      bindings.put("company", company.getId());
     }
-
-    return moveQuery.order("id");
+    return bindings;
   }
 
   @Override
@@ -363,6 +390,7 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
         moveValidateService.checkPreconditions(move);
         move.setStatusSelect(MoveRepository.STATUS_DAYBOOK);
         moveValidateService.accounting(move);
+        partnerBalanceService.addMove(move);
         break;
       case MoveRepository.STATUS_DAYBOOK:
         moveValidateService.accounting(move);
@@ -42,6 +42,7 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.auth.AuthUtils;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -52,21 +53,30 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.regex.Pattern;
 import javax.persistence.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +100,13 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
   protected static final String DATE_FORMAT_YYYYMMDD = "yyyyMMdd";
   protected static final String DATE_FORMAT_YYYYMMDDHHMMSS = "yyyyMMddHHmmss";
 
+  protected static final char FEC_SEPARATOR = '|';
+  protected static final String CSV_LINE_END = "\n";
+  protected static final Pattern CSV_FORBIDDEN_CHARACTERS =
+      Pattern.compile("(\r\n|\n\r|\r|\n|\\|)");
+  protected static final int EXPORT_FETCH_SIZE = 1000;
+  protected static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
   @Inject
   public MoveLineExportServiceImpl(
       AppAccountService appAccountService,
@@ -332,6 +349,11 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
   /**
    * Méthode réalisant l'export des FEC (Fichiers des écritures Comptables)
    *
+   * <p>Move lines are read with a forward-only cursor and each line is written to the file as soon
+   * as it is read, the totals being collected on the fly and the moves being marked as exported
+   * after each chunk of lines, so that neither the lines nor the ids of the moves are all kept in
+   * memory.
+   *
    * @throws AxelorException
    * @throws IOException
    */
@@ -341,11 +363,52 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       throws AxelorException, IOException {
 
     log.info("In Export type 1000 service : ");
-    List<String[]> allMoveLineData = new ArrayList<>();
     Company company = accountingReport.getCompany();
 
     LocalDate interfaceDate = accountingReport.getDate();
 
+    String moveLineQueryStr =
+        this.getExportMoveLineFilter(accountingReport, administration, replay);
+
+    String fileName = this.setFileName(accountingReport);
+    Path path = this.getExportFilePath(company, fileName);
+
+    String exportNumber = null;
+    Query exportedMoveQuery = null;
+    if (!administration) {
+      exportNumber = this.getSaleExportNumber(company);
+      exportedMoveQuery =
+          this.createExportedMoveQuery(accountingReport, interfaceDate, exportNumber);
+    }
+
+    ExportTotals totals;
+    try (Writer writer = new BufferedWriter(new FileWriter(path.toFile()), WRITER_BUFFER_SIZE)) {
+      this.writeCsvLine(writer, this.createHeaderForJournalEntry());
+      totals = this.writeMoveLines(writer, moveLineQueryStr, exportedMoveQuery);
+    }
+    log.debug(
+        "{} move lines exported, total debit : {}, total credit : {}",
+        totals.lineCount,
+        totals.debit,
+        totals.credit);
+
+    if (!administration) {
+      log.debug("{} moves exported with number {}", totals.moveCount, exportNumber);
+    }
+
+    accountingReport = accountingReportRepo.find(accountingReport.getId());
+    accountingReport.setTotalDebit(totals.debit);
+    accountingReport.setTotalCredit(totals.credit);
+    accountingReport.setBalance(totals.debit.subtract(totals.credit));
+    accountingReportRepo.save(accountingReport);
+
+    try (InputStream is = new FileInputStream(path.toFile())) {
+      return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
+    }
+  }
+
+  protected String getExportMoveLineFilter(
+      AccountingReport accountingReport, boolean administration, boolean replay) {
     String moveLineQueryStr =
         String.format("(self.move.statusSelect = %s", MoveRepository.STATUS_ACCOUNTED);
     if (!administration) {
@@ -354,7 +417,8 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     }
     moveLineQueryStr += ")";
 
-    moveLineQueryStr += String.format(" AND self.move.company = %s", company.getId());
+    moveLineQueryStr +=
+        String.format(" AND self.move.company = %s", accountingReport.getCompany().getId());
     if (accountingReport.getYear() != null) {
       moveLineQueryStr +=
           String.format(" AND self.move.period.year = %s", accountingReport.getYear().getId());
@@ -393,56 +457,117 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
         moveLineQueryStr += " AND self.move.accountingOk = false";
       }
     }
+    return moveLineQueryStr;
+  }
 
-    com.axelor.db.Query<MoveLine> moveLineQuery =
-        moveLineRepo
-            .all()
-            .filter(moveLineQueryStr)
-            .order("move.accountingDate")
-            .order("date")
-            .order("name");
-
-    int offset = 0;
-    List<Long> moveLineIdList;
-    List<Move> moveList = new ArrayList<>();
-
-    while (!(moveLineIdList =
-            moveLineQuery
-                .fetchStream(10000, offset)
-                .map(MoveLine::getId)
-                .collect(Collectors.toList()))
-        .isEmpty()) {
-
-      for (Long id : moveLineIdList) {
-        MoveLine moveLine = moveLineRepo.find(id);
-        offset++;
-        allMoveLineData.add(createItemForExportMoveLine(moveLine, moveList));
+  /**
+   * Write the move lines matching the filter, in the order of the FEC, reading them with a
+   * forward-only cursor. The associations written in the file are fetched with the lines and the
+   * persistence context is cleared after each chunk of lines, once the moves of the chunk are
+   * marked as exported. The cursor is not affected by these updates, as it reads the lines as they
+   * were when it was opened.
+   *
+   * @param exportedMoveQuery the update of the exported moves, or null to leave them unchanged
+   */
+  protected ExportTotals writeMoveLines(
+      Writer writer, String moveLineFilter, Query exportedMoveQuery) throws IOException {
+    org.hibernate.query.Query<MoveLine> query =
+        JPA.em()
+            .unwrap(Session.class)
+            .createQuery(
+                "SELECT self FROM MoveLine self "
+                    + "JOIN FETCH self.move move "
+                    + "JOIN FETCH move.journal "
+                    + "LEFT JOIN FETCH move.currency "
+                    + "JOIN FETCH self.account account "
+                    + "LEFT JOIN FETCH account.accountType "
+                    + "LEFT JOIN FETCH self.partner "
+                    + "LEFT JOIN FETCH self.reconcileGroup "
+                    + "WHERE "
+                    + moveLineFilter
+                    + " ORDER BY move.accountingDate, self.date, self.name",
+                MoveLine.class);
+    query.setReadOnly(true);
+    query.setFetchSize(EXPORT_FETCH_SIZE);
+
+    ExportTotals totals = new ExportTotals();
+    try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+      while (results.next()) {
+        MoveLine moveLine = (MoveLine) results.get(0);
+        this.writeCsvLine(writer, this.createItemForExportMoveLine(moveLine));
+        totals.add(moveLine);
+
+        if (totals.lineCount % EXPORT_FETCH_SIZE == 0) {
+          this.updateExportedMoves(exportedMoveQuery, totals);
+          JPA.clear();
+          log.debug("Process : {} move lines", totals.lineCount);
+        }
       }
+    }
+    this.updateExportedMoves(exportedMoveQuery, totals);
+    return totals;
+  }
 
-      JPA.clear();
-
-      if (!administration) {
-        String exportNumber = this.getSaleExportNumber(company);
-        this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
-      }
+  /**
+   * Create the update marking the moves of the exported lines as exported. Only the moves read
+   * during the export are updated, a move accounted in the meantime being left for the next export.
+   * A move whose lines are split over two chunks is only updated once.
+   */
+  protected Query createExportedMoveQuery(
+      AccountingReport accountingReport, LocalDate exportDate, String exportNumber) {
+    JPA.flush();
+    return JPA.em()
+        .createQuery(
+            "UPDATE Move move SET move.exportNumber = :exportNumber, "
+                + "move.exportDate = :exportDate, move.accountingOk = true, "
+                + "move.accountingReport = :accountingReport, "
+                + "move.updatedOn = :updatedOn, move.updatedBy = :updatedBy, "
+                + "move.version = move.version + 1 "
+                + "WHERE move.id IN (:exportedIds) "
+                + "AND (move.exportNumber IS NULL OR move.exportNumber <> :exportNumber)")
+        .setParameter("exportNumber", exportNumber)
+        .setParameter("exportDate", exportDate)
+        .setParameter("accountingReport", accountingReportRepo.find(accountingReport.getId()))
+        .setParameter("updatedOn", LocalDateTime.now())
+        .setParameter("updatedBy", AuthUtils.getUser());
+  }
 
-      moveList.clear();
+  /** Mark the moves of the lines written since the last call as exported. */
+  protected void updateExportedMoves(Query exportedMoveQuery, ExportTotals totals) {
+    if (exportedMoveQuery != null && !totals.moveIdSet.isEmpty()) {
+      totals.moveCount +=
+          exportedMoveQuery.setParameter("exportedIds", totals.moveIdSet).executeUpdate();
     }
+    totals.moveIdSet.clear();
+  }
 
-    accountingReport = accountingReportRepo.find(accountingReport.getId());
+  protected void writeCsvLine(Writer writer, String[] items) throws IOException {
+    for (int i = 0; i < items.length; i++) {
+      if (i > 0) {
+        writer.write(FEC_SEPARATOR);
+      }
+      if (items[i] != null) {
+        writer.write(this.sanitizeCsvValue(items[i]));
+      }
+    }
+    writer.write(CSV_LINE_END);
+  }
 
-    String fileName = this.setFileName(accountingReport);
-    accountingReportRepo.save(accountingReport);
-    return writeMoveLineToCsvFile(
-        company, fileName, this.createHeaderForJournalEntry(), allMoveLineData, accountingReport);
+  protected String sanitizeCsvValue(String value) {
+    return CSV_FORBIDDEN_CHARACTERS.matcher(value).replaceAll(" ");
   }
 
   protected String[] createItemForExportMoveLine(MoveLine moveLine, List<Move> moveList) {
-    String[] items = new String[18];
     Move move = moveLine.getMove();
     if (!moveList.contains(move)) {
       moveList.add(move);
     }
+    return this.createItemForExportMoveLine(moveLine);
+  }
+
+  protected String[] createItemForExportMoveLine(MoveLine moveLine) {
+    String[] items = new String[18];
+    Move move = moveLine.getMove();
     Journal journal = move.getJournal();
     items[0] = journal.getCode();
     items[1] = journal.getName();
@@ -500,26 +625,31 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       AccountingReport accountingReport)
       throws AxelorException, IOException {
 
-    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
-    String dataExportDir = appAccountService.getDataExportDir();
-
     for (String[] items : allMoveData) {
       for (int i = 0; i < items.length; i++) {
         if (items[i] != null) {
-          items[i] = items[i].replaceAll("(\r\n|\n\r|\r|\n|\\|)", " ");
+          items[i] = this.sanitizeCsvValue(items[i]);
         }
       }
     }
 
+    Path path = this.getExportFilePath(company, fileName);
+    CsvTool.csvWriter(
+        path.getParent().toString(), fileName, FEC_SEPARATOR, columnHeader, allMoveData);
+    try (InputStream is = new FileInputStream(path.toFile())) {
+      return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
+    }
+  }
+
+  protected Path getExportFilePath(Company company, String fileName) throws AxelorException {
+    String filePath = accountConfigService.getAccountConfig(company).getExportPath();
+    String dataExportDir = appAccountService.getDataExportDir();
+
     filePath = filePath == null ? dataExportDir : dataExportDir + filePath;
     new File(filePath).mkdirs();
 
     log.debug("Full path to export : {}{}", filePath, fileName);
-    CsvTool.csvWriter(filePath, fileName, '|', columnHeader, allMoveData);
-    Path path = Paths.get(filePath, fileName);
-    try (InputStream is = new FileInputStream(path.toFile())) {
-      return Beans.get(MetaFiles.class).attach(is, fileName, accountingReport).getMetaFile();
-    }
+    return Paths.get(filePath, fileName);
   }
 
   public String[] createHeaderForJournalEntry() {
@@ -675,4 +805,20 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
 
     return fileName;
   }
+
+  protected static class ExportTotals {
+    protected long lineCount;
+    protected int moveCount;
+    protected BigDecimal debit = BigDecimal.ZERO;
+    protected BigDecimal credit = BigDecimal.ZERO;
+    /** Ids of the moves of the lines written since the moves were last marked as exported. */
+    protected Set<Long> moveIdSet = new LinkedHashSet<>();
+
+    protected void add(MoveLine moveLine) {
+      lineCount++;
+      moveIdSet.add(moveLine.getMove().getId());
+      debit = debit.add(moveLine.getDebit());
+      credit = credit.add(moveLine.getCredit());
+    }
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Maintains the total balance of the partners per company and trading name, so that it is not
+ * computed again from the move lines each time an accounting situation is updated. The balances
+ * are only maintained for the companies using the partner balance ledger.
+ */
+public interface PartnerBalanceService {
+
+  boolean isEnabled(Company company);
+
+  /** Get the total balance of the partner in the company, on all the trading names. */
+  BigDecimal getBalance(Partner partner, Company company);
+
+  /**
+   * Get the part of the partner balance coming from the move line: its signed amount remaining if
+   * its move is validated and its account is used for partner balance, else zero.
+   */
+  BigDecimal getContribution(MoveLine moveLine);
+
+  /** Add the move lines of a move entering the daybook or accounted status to the balances. */
+  void addMove(Move move);
+
+  /** Remove the move lines of a daybook or accounted move which is going to be canceled. */
+  void removeMove(Move move);
+
+  /**
+   * Apply the change of the amount remaining of a move line to the balance of its partner.
+   *
+   * @param moveLine the move line, once updated
+   * @param previousContribution the contribution of the move line before the update
+   */
+  void updateMoveLine(MoveLine moveLine, BigDecimal previousContribution);
+
+  /** Compute again the balances of the given partners from their move lines. */
+  void recompute(Company company, List<Partner> partnerList);
+
+  /**
+   * Compute again all the balances of the company from the move lines.
+   *
+   * @return the count of balances which were wrong and have been corrected
+   */
+  int rebuild(Company company);
+}
@@ -0,0 +1,297 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.AccountConfig;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.PartnerBalance;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.db.repo.PartnerBalanceRepository;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.TradingName;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.TypedQuery;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PartnerBalanceServiceImpl implements PartnerBalanceService {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int INSERT_FLUSH_SIZE = 100;
+
+  protected PartnerBalanceRepository partnerBalanceRepository;
+
+  @Inject
+  public PartnerBalanceServiceImpl(PartnerBalanceRepository partnerBalanceRepository) {
+    this.partnerBalanceRepository = partnerBalanceRepository;
+  }
+
+  @Override
+  public boolean isEnabled(Company company) {
+    if (company == null) {
+      return false;
+    }
+    AccountConfig accountConfig = company.getAccountConfig();
+    return accountConfig != null && accountConfig.getUsePartnerBalanceLedger();
+  }
+
+  @Override
+  public BigDecimal getBalance(Partner partner, Company company) {
+    BigDecimal balance =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.balance) FROM PartnerBalance self "
+                    + "WHERE self.partner = :partner AND self.company = :company",
+                BigDecimal.class)
+            .setParameter("partner", partner)
+            .setParameter("company", company)
+            .getSingleResult();
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+
+  @Override
+  public BigDecimal getContribution(MoveLine moveLine) {
+    Move move = moveLine.getMove();
+    if (moveLine.getPartner() == null
+        || moveLine.getAccount() == null
+        || !moveLine.getAccount().getUseForPartnerBalance()
+        || move == null
+        || move.getIgnoreInAccountingOk()
+        || (move.getStatusSelect() != MoveRepository.STATUS_DAYBOOK
+            && move.getStatusSelect() != MoveRepository.STATUS_ACCOUNTED)) {
+      return BigDecimal.ZERO;
+    }
+    return moveLine.getDebit().signum() > 0
+        ? moveLine.getAmountRemaining()
+        : moveLine.getAmountRemaining().negate();
+  }
+
+  @Override
+  public void addMove(Move move) {
+    updateMove(move, false);
+  }
+
+  @Override
+  public void removeMove(Move move) {
+    updateMove(move, true);
+  }
+
+  protected void updateMove(Move move, boolean remove) {
+    if (!isEnabled(move.getCompany()) || move.getMoveLineList() == null) {
+      return;
+    }
+
+    Map<Partner, BigDecimal> amountMap = new HashMap<>();
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      BigDecimal contribution = getContribution(moveLine);
+      if (contribution.signum() != 0) {
+        amountMap.merge(
+            moveLine.getPartner(), remove ? contribution.negate() : contribution, BigDecimal::add);
+      }
+    }
+
+    amountMap.forEach(
+        (partner, amount) ->
+            addToBalance(partner, move.getCompany(), move.getTradingName(), amount));
+  }
+
+  @Override
+  public void updateMoveLine(MoveLine moveLine, BigDecimal previousContribution) {
+    Move move = moveLine.getMove();
+    if (move == null || !isEnabled(move.getCompany())) {
+      return;
+    }
+
+    addToBalance(
+        moveLine.getPartner(),
+        move.getCompany(),
+        move.getTradingName(),
+        getContribution(moveLine).subtract(previousContribution));
+  }
+
+  /**
+   * Add the amount to the balance with a single upsert statement, so that concurrent updates of
+   * the same balance do not overwrite each other, and concurrent first updates do not create the
+   * balance twice: the unique constraint on partner, company and trading name key turns the second
+   * insert into an update.
+   */
+  protected void addToBalance(
+      Partner partner, Company company, TradingName tradingName, BigDecimal amount) {
+    if (partner == null || amount.signum() == 0) {
+      return;
+    }
+
+    JPA.em()
+        .createNativeQuery(
+            "INSERT INTO account_partner_balance "
+                + "(id, version, partner, company, trading_name, trading_name_key, balance) "
+                + "VALUES (nextval('account_partner_balance_seq'), 0, :partner, :company, "
+                + "NULLIF(:tradingNameKey, 0), :tradingNameKey, :amount) "
+                + "ON CONFLICT (partner, company, trading_name_key) "
+                + "DO UPDATE SET balance = account_partner_balance.balance + EXCLUDED.balance")
+        .setParameter("partner", partner.getId())
+        .setParameter("company", company.getId())
+        .setParameter("tradingNameKey", getTradingNameKey(tradingName))
+        .setParameter("amount", amount)
+        .executeUpdate();
+  }
+
+  protected long getTradingNameKey(TradingName tradingName) {
+    return tradingName != null ? tradingName.getId() : 0L;
+  }
+
+  protected PartnerBalance createPartnerBalance(
+      Partner partner, Company company, TradingName tradingName, BigDecimal balance) {
+    PartnerBalance partnerBalance = new PartnerBalance();
+    partnerBalance.setPartner(partner);
+    partnerBalance.setCompany(company);
+    partnerBalance.setTradingName(tradingName);
+    partnerBalance.setTradingNameKey(getTradingNameKey(tradingName));
+    partnerBalance.setBalance(balance);
+    return partnerBalance;
+  }
+
+  @Override
+  @Transactional
+  public void recompute(Company company, List<Partner> partnerList) {
+    if (!isEnabled(company) || CollectionUtils.isEmpty(partnerList)) {
+      return;
+    }
+    List<Long> partnerIdList =
+        partnerList.stream().map(Partner::getId).distinct().collect(Collectors.toList());
+    applyBalanceMap(company, partnerIdList, computeBalanceMap(company, partnerIdList));
+  }
+
+  @Override
+  @Transactional
+  public int rebuild(Company company) {
+    return applyBalanceMap(company, null, computeBalanceMap(company, null));
+  }
+
+  /**
+   * Compute the balances from the move lines, with the same rules as {@link
+   * AccountCustomerServiceImpl#getBalance}.
+   *
+   * @param partnerIdList the partners to compute, or null for all the partners of the company
+   * @return the balances mapped by partner id and trading name id
+   */
+  protected Map<Pair<Long, Long>, BigDecimal> computeBalanceMap(
+      Company company, List<Long> partnerIdList) {
+    TypedQuery<Object[]> query =
+        JPA.em()
+            .createQuery(
+                "SELECT self.partner.id, tradingName.id, "
+                    + "SUM(CASE WHEN self.debit > 0 THEN self.amountRemaining ELSE self.amountRemaining * -1 END) "
+                    + "FROM MoveLine self JOIN self.move move LEFT JOIN move.tradingName tradingName "
+                    + "WHERE move.company = :company AND self.partner IS NOT NULL "
+                    + (partnerIdList != null ? "AND self.partner.id IN (:partnerIdList) " : "")
+                    + "AND move.ignoreInAccountingOk = false AND self.account.useForPartnerBalance = true "
+                    + "AND move.statusSelect IN (:statusValidated, :statusDaybook) "
+                    + "GROUP BY self.partner.id, tradingName.id",
+                Object[].class)
+            .setParameter("company", company)
+            .setParameter("statusValidated", MoveRepository.STATUS_ACCOUNTED)
+            .setParameter("statusDaybook", MoveRepository.STATUS_DAYBOOK);
+    if (partnerIdList != null) {
+      query.setParameter("partnerIdList", partnerIdList);
+    }
+
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new HashMap<>();
+    for (Object[] row : query.getResultList()) {
+      balanceMap.put(Pair.of((Long) row[0], (Long) row[1]), (BigDecimal) row[2]);
+    }
+    return balanceMap;
+  }
+
+  /**
+   * Update the stored balances to the given values.
+   *
+   * @param partnerIdList the partners whose balances are updated, or null for all the partners of
+   *     the company
+   * @return the count of balances which have been corrected
+   */
+  protected int applyBalanceMap(
+      Company company, List<Long> partnerIdList, Map<Pair<Long, Long>, BigDecimal> balanceMap) {
+    TypedQuery<Object[]> query =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.partner.id, tradingName.id, self.balance "
+                    + "FROM PartnerBalance self LEFT JOIN self.tradingName tradingName "
+                    + "WHERE self.company = :company"
+                    + (partnerIdList != null ? " AND self.partner.id IN (:partnerIdList)" : ""),
+                Object[].class)
+            .setParameter("company", company);
+    if (partnerIdList != null) {
+      query.setParameter("partnerIdList", partnerIdList);
+    }
+
+    int corrected = 0;
+    for (Object[] row : query.getResultList()) {
+      BigDecimal balance = balanceMap.remove(Pair.of((Long) row[1], (Long) row[2]));
+      if (balance == null) {
+        balance = BigDecimal.ZERO;
+      }
+      if (row[3] == null || balance.compareTo((BigDecimal) row[3]) != 0) {
+        log.debug("Partner balance {} corrected from {} to {}", row[0], row[3], balance);
+        JPA.em()
+            .createQuery(
+                "UPDATE PartnerBalance self SET self.balance = :balance WHERE self.id = :id")
+            .setParameter("balance", balance)
+            .setParameter("id", row[0])
+            .executeUpdate();
+        corrected++;
+      }
+    }
+
+    Company managedCompany = JPA.em().getReference(Company.class, company.getId());
+    for (Map.Entry<Pair<Long, Long>, BigDecimal> entry : balanceMap.entrySet()) {
+      if (entry.getValue().signum() == 0) {
+        continue;
+      }
+      Long tradingNameId = entry.getKey().getRight();
+      partnerBalanceRepository.save(
+          createPartnerBalance(
+              JPA.em().getReference(Partner.class, entry.getKey().getLeft()),
+              managedCompany,
+              tradingNameId != null
+                  ? JPA.em().getReference(TradingName.class, tradingNameId)
+                  : null,
+              entry.getValue()));
+      if (++corrected % INSERT_FLUSH_SIZE == 0) {
+        JPA.flush();
+        JPA.clear();
+        managedCompany = JPA.em().getReference(Company.class, company.getId());
+      }
+    }
+    return corrected;
+  }
+}
@@ -111,6 +111,7 @@ public class ReconcileServiceImpl implements ReconcileService {
   protected MoveCreateService moveCreateService;
   protected MoveLineCreateService moveLineCreateService;
   protected MoveValidateService moveValidateService;
+  protected PartnerBalanceService partnerBalanceService;
 
   @Inject
   public ReconcileServiceImpl(
@@ -135,7 +136,8 @@ public class ReconcileServiceImpl implements ReconcileService {
       SubrogationReleaseWorkflowService subrogationReleaseWorkflowService,
       MoveCreateService moveCreateService,
       MoveLineCreateService moveLineCreateService,
-      MoveValidateService moveValidateService) {
+      MoveValidateService moveValidateService,
+      PartnerBalanceService partnerBalanceService) {
 
     this.moveToolService = moveToolService;
     this.accountCustomerService = accountCustomerService;
@@ -159,6 +161,7 @@ public class ReconcileServiceImpl implements ReconcileService {
     this.moveCreateService = moveCreateService;
     this.moveLineCreateService = moveLineCreateService;
     this.moveValidateService = moveValidateService;
+    this.partnerBalanceService = partnerBalanceService;
   }
 
   /**
@@ -270,12 +273,8 @@ public class ReconcileServiceImpl implements ReconcileService {
 
     this.reconcilePreconditions(reconcile);
 
-    MoveLine debitMoveLine = reconcile.getDebitMoveLine();
-    MoveLine creditMoveLine = reconcile.getCreditMoveLine();
-
     // Add the reconciled amount to the reconciled amount in the move line
-    creditMoveLine.setAmountPaid(creditMoveLine.getAmountPaid().add(reconcile.getAmount()));
-    debitMoveLine.setAmountPaid(debitMoveLine.getAmountPaid().add(reconcile.getAmount()));
+    this.updateAmountPaid(reconcile, reconcile.getAmount());
 
     reconcile = reconcileRepository.save(reconcile);
 
@@ -833,7 +832,6 @@ public class ReconcileServiceImpl implements ReconcileService {
     log.debug("unreconcile : reconcile : {}", reconcile);
 
     MoveLine debitMoveLine = reconcile.getDebitMoveLine();
-    MoveLine creditMoveLine = reconcile.getCreditMoveLine();
     Invoice invoice = debitMoveLine.getMove().getInvoice();
 
     // Change the state
@@ -841,8 +839,7 @@ public class ReconcileServiceImpl implements ReconcileService {
     reconcile.setReconciliationCancelDateTime(
         appBaseService.getTodayDateTime(reconcile.getCompany()).toLocalDateTime());
     // Add the reconciled amount to the reconciled amount in the move line
-    creditMoveLine.setAmountPaid(creditMoveLine.getAmountPaid().subtract(reconcile.getAmount()));
-    debitMoveLine.setAmountPaid(debitMoveLine.getAmountPaid().subtract(reconcile.getAmount()));
+    this.updateAmountPaid(reconcile, reconcile.getAmount().negate());
 
     reconcileRepository.save(reconcile);
 
@@ -863,6 +860,22 @@ public class ReconcileServiceImpl implements ReconcileService {
     Beans.get(ReconcileGroupService.class).remove(reconcile);
   }
 
+  /**
+   * Add the amount to the amount paid of the reconciled move lines, updating the partner balances
+   * with the change of their contribution.
+   */
+  protected void updateAmountPaid(Reconcile reconcile, BigDecimal amount) {
+    MoveLine debitMoveLine = reconcile.getDebitMoveLine();
+    MoveLine creditMoveLine = reconcile.getCreditMoveLine();
+    BigDecimal debitContribution = partnerBalanceService.getContribution(debitMoveLine);
+    BigDecimal creditContribution = partnerBalanceService.getContribution(creditMoveLine);
+
+    creditMoveLine.setAmountPaid(creditMoveLine.getAmountPaid().add(amount));
+    debitMoveLine.setAmountPaid(debitMoveLine.getAmountPaid().add(amount));
+    partnerBalanceService.updateMoveLine(creditMoveLine, creditContribution);
+    partnerBalanceService.updateMoveLine(debitMoveLine, debitContribution);
+  }
+
   protected void reverseTaxPaymentMoveLines(Reconcile reconcile) throws AxelorException {
     Move debitMove = reconcile.getDebitMoveLine().getMove();
     Move creditMove = reconcile.getCreditMoveLine().getMove();
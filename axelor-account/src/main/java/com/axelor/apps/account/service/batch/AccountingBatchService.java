@@ -93,6 +93,9 @@ public class AccountingBatchService extends AbstractBatchService {
       case AccountingBatchRepository.ACTION_AUTO_MOVE_LETTERING:
         batch = autoMoveLettering(accountingBatch);
         break;
+      case AccountingBatchRepository.ACTION_PARTNER_BALANCE_CONSISTENCY_CONTROL:
+        batch = controlPartnerBalanceConsistency(accountingBatch);
+        break;
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -202,6 +205,10 @@ public class AccountingBatchService extends AbstractBatchService {
     return Beans.get(BatchAutoMoveLettering.class).run(accountingBatch);
   }
 
+  public Batch controlPartnerBalanceConsistency(AccountingBatch accountingBatch) {
+    return Beans.get(BatchPartnerBalanceConsistencyControl.class).run(accountingBatch);
+  }
+
   @Transactional
   public AccountingBatch createNewAccountingBatch(int action, Company company) {
     if (company != null) {
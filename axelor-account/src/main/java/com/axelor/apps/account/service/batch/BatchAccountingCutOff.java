@@ -29,10 +29,9 @@ import com.axelor.apps.account.service.AccountingCutOffService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
-import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -85,12 +84,13 @@ public class BatchAccountingCutOff extends BatchStrategy {
     Set<Journal> journalSet = accountingBatch.getJournalSet();
     int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
 
-    int offset = 0;
-    List<Move> moveList;
-    Query<Move> moveQuery =
-        cutOffService.getMoves(company, journalSet, moveDate, accountingCutOffTypeSelect);
+    KeysetQueryIterator<Move> moveIterator =
+        cutOffService
+            .getMoveIterator(company, journalSet, moveDate, accountingCutOffTypeSelect)
+            .pageSize(getFetchLimit());
 
-    while (!(moveList = moveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (moveIterator.hasNext()) {
+      List<Move> moveList = moveIterator.next();
 
       findBatch();
       accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
@@ -98,10 +98,9 @@ public class BatchAccountingCutOff extends BatchStrategy {
       journalSet = accountingBatch.getJournalSet();
 
       for (Move move : moveList) {
-        ++offset;
-
         if (this._processMove(
             moveRepo.find(move.getId()), accountingBatchRepository.find(accountingBatch.getId()))) {
+          moveIterator.seek(move.getId());
           break;
         }
       }
@@ -18,6 +18,7 @@
  */
 package com.axelor.apps.account.service.batch;
 
+import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountingBatch;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.Reconcile;
@@ -32,6 +33,7 @@ import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.account.service.move.MoveLineControlService;
 import com.axelor.apps.account.service.payment.PaymentService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.CompanyRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
@@ -45,14 +47,17 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.persistence.TypedQuery;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -72,7 +77,6 @@ public class BatchAutoMoveLettering extends BatchStrategy {
   protected ReconcileGroupService reconcileGroupService;
 
   protected AccountingBatch accountingBatch;
-  protected Set<MoveLine> moveLineReconciledSet;
 
   @Inject
   public BatchAutoMoveLettering(
@@ -96,21 +100,106 @@ public class BatchAutoMoveLettering extends BatchStrategy {
   @Override
   protected void process() {
     accountingBatch = batch.getAccountingBatch();
-    moveLineReconciledSet = new HashSet<>();
 
-    Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> moveLineMap = getMoveLinesMap();
+    processInPartitions(
+        getMoveLineGroupPartitionList(getMoveLineGroupList(accountingBatch)),
+        new ItemProcessor<Pair<Long, Long>>() {
+          @Override
+          public int process(Pair<Long, Long> moveLineGroup) throws Exception {
+            return reconcileMoveLineGroup(moveLineGroup);
+          }
+
+          @Override
+          public void traceFailure(Pair<Long, Long> moveLineGroup, Exception e) {
+            TraceBackService.trace(
+                e, ExceptionOriginRepository.MOVE_LINE_RECONCILE, getCurrentBatchId());
+            LOG.error(
+                "Anomaly generated while lettering the move lines of account {} and partner {}",
+                moveLineGroup.getLeft(),
+                moveLineGroup.getRight());
+          }
+        });
+  }
+
+  /**
+   * Get the groups of move lines which can be reconciled together, as pairs of account id and
+   * partner id, sorted by partner then account. The partner id is null for accounts which are not
+   * used for partner balance.
+   */
+  protected List<Pair<Long, Long>> getMoveLineGroupList(AccountingBatch accountingBatch) {
+    TypedQuery<Object[]> query =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.account.id, self.account.useForPartnerBalance, partner.id "
+                    + "FROM MoveLine self LEFT JOIN self.partner partner WHERE "
+                    + getMoveLinesToReconcileFilter(accountingBatch)
+                    + " AND self.account.reconcileOk IS TRUE",
+                Object[].class);
+    getMoveLinesToReconcileParams(accountingBatch).forEach(query::setParameter);
+
+    Comparator<Long> nullSafeComparator = Comparator.nullsFirst(Comparator.naturalOrder());
+    return query.getResultList().stream()
+        .map(row -> Pair.of((Long) row[0], Boolean.TRUE.equals(row[1]) ? (Long) row[2] : null))
+        .distinct()
+        .sorted(
+            Comparator.comparing((Pair<Long, Long> group) -> group.getRight(), nullSafeComparator)
+                .thenComparing(Pair::getLeft))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Split the groups of move lines in partitions processed in parallel. The groups of a partner are
+   * kept in the same partition, so that the lettering of a partner is not run concurrently.
+   */
+  protected List<List<Pair<Long, Long>>> getMoveLineGroupPartitionList(
+      List<Pair<Long, Long>> moveLineGroupList) {
+    List<List<Pair<Long, Long>>> partitionList = new ArrayList<>();
+    List<Pair<Long, Long>> partition = new ArrayList<>();
+    for (Pair<Long, Long> moveLineGroup : moveLineGroupList) {
+      if (partition.size() >= getPartitionSize()
+          && !Objects.equals(
+              partition.get(partition.size() - 1).getRight(), moveLineGroup.getRight())) {
+        partitionList.add(partition);
+        partition = new ArrayList<>();
+      }
+      partition.add(moveLineGroup);
+    }
+    if (!partition.isEmpty()) {
+      partitionList.add(partition);
+    }
+    return partitionList;
+  }
+
+  /**
+   * Reconcile the move lines of a group, in the transaction of the worker.
+   *
+   * @param moveLineGroup the account id and the partner id of the group
+   * @return the count of reconciled move lines
+   */
+  protected int reconcileMoveLineGroup(Pair<Long, Long> moveLineGroup) throws Exception {
+    AccountingBatch accountingBatch = getCurrentBatch().getAccountingBatch();
+    Set<MoveLine> moveLineReconciledSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> moveLineMap =
+        moveLineService.getPopulatedReconcilableMoveLineMap(
+            getMoveLineGroupQuery(accountingBatch, moveLineGroup).fetch().stream()
+                .filter(moveLine -> moveLineControlService.canReconcile(moveLine))
+                .collect(Collectors.toList()));
 
     int reconcileMethodSelect = accountingBatch.getReconcileMethodSelect();
+    Comparator<MoveLine> moveLineComparator = getMoveLineComparator(accountingBatch);
 
     for (Pair<List<MoveLine>, List<MoveLine>> moveLineLists : moveLineMap.values()) {
 
       List<MoveLine> companyPartnerCreditMoveLineList =
           moveLineLists.getLeft().stream()
               .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
+              .sorted(moveLineComparator)
               .collect(Collectors.toList());
       List<MoveLine> companyPartnerDebitMoveLineList =
           moveLineLists.getRight().stream()
               .filter(moveLine -> moveLine.getAmountRemaining().compareTo(BigDecimal.ZERO) > 0)
+              .sorted(moveLineComparator)
               .collect(Collectors.toList());
 
       if (CollectionUtils.isEmpty(companyPartnerCreditMoveLineList)
@@ -123,63 +212,108 @@ public class BatchAutoMoveLettering extends BatchStrategy {
         List<MoveLine> moveLines =
             Stream.of(companyPartnerDebitMoveLineList, companyPartnerCreditMoveLineList)
                 .flatMap(Collection::stream)
-                .sorted(getMoveLineComparator())
+                .sorted(moveLineComparator)
                 .collect(Collectors.toList());
-        reconcileWithBalancedMove(moveLines);
+        reconcileWithBalancedMove(accountingBatch, moveLines, moveLineReconciledSet);
       } else {
         reconcileWithMethod(
+            accountingBatch,
             companyPartnerDebitMoveLineList,
             companyPartnerCreditMoveLineList,
-            reconcileMethodSelect);
+            reconcileMethodSelect,
+            moveLineReconciledSet);
       }
     }
-    for (MoveLine moveLine : moveLineReconciledSet) {
-      incrementDone();
+    return moveLineReconciledSet.size();
+  }
+
+  protected Query<MoveLine> getMoveLineGroupQuery(
+      AccountingBatch accountingBatch, Pair<Long, Long> moveLineGroup) {
+    String filter =
+        getMoveLinesToReconcileFilter(accountingBatch) + " AND self.account.id = :accountId";
+    Map<String, Object> params = getMoveLinesToReconcileParams(accountingBatch);
+    params.put("accountId", moveLineGroup.getLeft());
+
+    Account account = JPA.find(Account.class, moveLineGroup.getLeft());
+    if (account.getUseForPartnerBalance()) {
+      if (moveLineGroup.getRight() == null) {
+        filter += " AND self.partner IS NULL";
+      } else {
+        filter += " AND self.partner.id = :partnerId";
+        params.put("partnerId", moveLineGroup.getRight());
+      }
     }
+
+    return moveLineRepository.all().filter(filter).bind(params).order("id");
   }
 
-  protected void reconcileWithBalancedMove(List<MoveLine> moveLines) {
-
-    List<MoveLine> debitMoveLines;
-    List<MoveLine> creditMoveLines;
-    List<MoveLine> moveLinesReconciled = new ArrayList<>();
-    BigDecimal progressiveAmount;
-    for (int i = 0; i < moveLines.size(); i++) {
-      List<MoveLine> moveLinesToProcess = new ArrayList<>();
-      progressiveAmount = BigDecimal.ZERO;
-      for (MoveLine moveLine : moveLines.subList(i, moveLines.size())) {
-        if (moveLinesReconciled.contains(moveLine)) {
-          break;
-        }
-        moveLinesToProcess.add(moveLine);
+  /**
+   * Reconcile the move lines by balanced sequences: starting from a move line, each following
+   * sequence of move lines whose amounts remaining balance is reconciled.
+   *
+   * <p>A sequence is balanced when the cumulated signed amount remaining at its end is the same as
+   * at its start, so the ends of the sequences are found through a map of the positions of each
+   * cumulated amount instead of summing the move lines from each start.
+   */
+  protected void reconcileWithBalancedMove(
+      AccountingBatch accountingBatch,
+      List<MoveLine> moveLines,
+      Set<MoveLine> moveLineReconciledSet)
+      throws Exception {
+
+    BigDecimal[] progressiveAmounts = new BigDecimal[moveLines.size() + 1];
+    Map<BigDecimal, List<Integer>> positionMap = new HashMap<>();
+    BigDecimal progressiveAmount = BigDecimal.ZERO;
+    for (int i = 0; i <= moveLines.size(); i++) {
+      if (i > 0) {
+        MoveLine moveLine = moveLines.get(i - 1);
         if (moveLine.getDebit().signum() > 0) {
           progressiveAmount = progressiveAmount.subtract(moveLine.getAmountRemaining());
         } else {
           progressiveAmount = progressiveAmount.add(moveLine.getAmountRemaining());
         }
-        if (progressiveAmount.signum() == 0) {
-          debitMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getDebit().signum() > 0)
-                  .collect(Collectors.toList());
-          creditMoveLines =
-              moveLinesToProcess.stream()
-                  .filter(ml -> ml.getCredit().signum() > 0)
-                  .collect(Collectors.toList());
-
-          reconcileWithMethod(
-              debitMoveLines,
-              creditMoveLines,
-              AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE);
-
-          moveLinesReconciled.addAll(moveLinesToProcess);
-        }
       }
+      progressiveAmounts[i] = progressiveAmount.stripTrailingZeros();
+      positionMap.computeIfAbsent(progressiveAmounts[i], key -> new ArrayList<>()).add(i);
+    }
+
+    int start = 0;
+    while (start < moveLines.size()) {
+      List<Integer> positions = positionMap.get(progressiveAmounts[start]);
+      int end = start;
+      for (int i = Collections.binarySearch(positions, start) + 1; i < positions.size(); i++) {
+        List<MoveLine> moveLinesToProcess = moveLines.subList(end, positions.get(i));
+        reconcileWithMethod(
+            accountingBatch,
+            moveLinesToProcess.stream()
+                .filter(ml -> ml.getDebit().signum() > 0)
+                .collect(Collectors.toList()),
+            moveLinesToProcess.stream()
+                .filter(ml -> ml.getCredit().signum() > 0)
+                .collect(Collectors.toList()),
+            AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_MOVE,
+            moveLineReconciledSet);
+        end = positions.get(i);
+      }
+      start = end > start ? end : start + 1;
     }
   }
 
+  /**
+   * Reconcile the debit move lines with the credit move lines according to the given method.
+   *
+   * <p>The debit move lines are indexed by the value which must match for the method (amount,
+   * origin or external identifier), so each credit move line is only compared to the debit move
+   * lines it can be reconciled with. Debit move lines are taken in order, and the ones which are
+   * fully reconciled are skipped.
+   */
   protected void reconcileWithMethod(
-      List<MoveLine> debitMoveLines, List<MoveLine> creditMoveLines, int reconcileMethodSelect) {
+      AccountingBatch accountingBatch,
+      List<MoveLine> debitMoveLines,
+      List<MoveLine> creditMoveLines,
+      int reconcileMethodSelect,
+      Set<MoveLine> moveLineReconciledSet)
+      throws Exception {
 
     BigDecimal debitTotalRemaining =
         debitMoveLines.stream()
@@ -195,56 +329,121 @@ public class BatchAutoMoveLettering extends BatchStrategy {
             .orElse(BigDecimal.ZERO);
 
     boolean isBalanced = debitTotalRemaining.compareTo(creditTotalRemaining) == 0;
+    if (reconcileMethodSelect
+            == AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_BALANCED_ACCOUNT
+        && !isBalanced) {
+      return;
+    }
 
-    Map<MoveLine, BigDecimal> debitRemaining = new HashMap<>();
+    // Entities hash to a constant, so they are mapped by identity
+    Map<MoveLine, BigDecimal> debitRemaining = new IdentityHashMap<>();
+    Map<Object, List<MoveLine>> debitMoveLineMap = new HashMap<>();
     for (MoveLine debitMoveLine : debitMoveLines) {
       debitRemaining.put(debitMoveLine, debitMoveLine.getAmountRemaining());
+      Object key =
+          getMatchingKey(
+              accountingBatch, reconcileMethodSelect, debitMoveLine, debitMoveLine.getDebit());
+      if (key != null) {
+        debitMoveLineMap.computeIfAbsent(key, k -> new ArrayList<>()).add(debitMoveLine);
+      }
     }
+    Map<Object, Integer> firstIndexMap = new HashMap<>();
+
     for (MoveLine creditMoveLine : creditMoveLines) {
+      Object key =
+          getMatchingKey(
+              accountingBatch, reconcileMethodSelect, creditMoveLine, creditMoveLine.getCredit());
+      List<MoveLine> matchingDebitMoveLines = key != null ? debitMoveLineMap.get(key) : null;
+      if (matchingDebitMoveLines == null) {
+        continue;
+      }
+
       BigDecimal creditRemaining = creditMoveLine.getAmountRemaining();
-      for (MoveLine debitMoveLine : debitMoveLines) {
-        BigDecimal debit = debitMoveLine.getDebit();
-        BigDecimal credit = creditMoveLine.getCredit();
-        BigDecimal nextCreditRemaining = creditRemaining.subtract(debit);
-        BigDecimal nextDebitRemaining = debitRemaining.get(debitMoveLine).subtract(credit);
-        if (!isBalanced && (nextCreditRemaining.signum() < 0 || nextDebitRemaining.signum() < 0)) {
+      int firstIndex = firstIndexMap.getOrDefault(key, 0);
+      for (int i = firstIndex;
+          i < matchingDebitMoveLines.size() && creditRemaining.signum() > 0;
+          i++) {
+        MoveLine debitMoveLine = matchingDebitMoveLines.get(i);
+        BigDecimal nextDebitRemaining = debitRemaining.get(debitMoveLine);
+        if (nextDebitRemaining.signum() <= 0) {
+          if (i == firstIndex) {
+            firstIndexMap.put(key, ++firstIndex);
+          }
+          continue;
+        }
+        if (!isBalanced
+            && (creditRemaining.compareTo(debitMoveLine.getDebit()) < 0
+                || nextDebitRemaining.compareTo(creditMoveLine.getCredit()) < 0)) {
+          continue;
+        }
+        if (!canBeReconciled(
+            accountingBatch, reconcileMethodSelect, debitMoveLine, creditMoveLine, isBalanced)) {
           continue;
         }
 
-        debitMoveLine = moveLineRepository.find(debitMoveLine.getId());
-        creditMoveLine = moveLineRepository.find(creditMoveLine.getId());
-
-        if (canBeReconciled(reconcileMethodSelect, debitMoveLine, creditMoveLine, isBalanced)) {
-          try {
-            reconcile(debitMoveLine, creditMoveLine, debitTotalRemaining, creditTotalRemaining);
-            creditRemaining = nextCreditRemaining;
-            debitRemaining.replace(debitMoveLine, nextDebitRemaining);
-            moveLineReconciledSet.add(debitMoveLine);
-            moveLineReconciledSet.add(creditMoveLine);
-          } catch (Exception e) {
-            TraceBackService.trace(
-                new Exception(
-                    String.format(
-                        I18n.get("Debit move line %s and Credit move line %s"),
-                        debitMoveLine.getName(),
-                        creditMoveLine.getName()),
-                    e),
-                ExceptionOriginRepository.MOVE_LINE_RECONCILE,
-                batch.getId());
-            incrementAnomaly();
-            LOG.error(
-                "Anomaly generated while lettering debit move line {} and credit move line {}",
-                debitMoveLine.getName(),
-                creditMoveLine.getName());
-          } finally {
-            JPA.clear();
-          }
+        Reconcile reconcile;
+        try {
+          reconcile =
+              reconcile(
+                  accountingBatch,
+                  debitMoveLine,
+                  creditMoveLine,
+                  debitTotalRemaining,
+                  creditTotalRemaining);
+        } catch (Exception e) {
+          throw new Exception(
+              String.format(
+                  I18n.get("Debit move line %s and Credit move line %s"),
+                  debitMoveLine.getName(),
+                  creditMoveLine.getName()),
+              e);
+        }
+        if (reconcile != null) {
+          creditRemaining = creditRemaining.subtract(reconcile.getAmount());
+          debitRemaining.put(debitMoveLine, nextDebitRemaining.subtract(reconcile.getAmount()));
+          moveLineReconciledSet.add(debitMoveLine);
+          moveLineReconciledSet.add(creditMoveLine);
         }
       }
     }
   }
 
-  private boolean canBeReconciled(
+  /**
+   * Get the value on which a debit and a credit move line must match to be reconciled with the
+   * given method.
+   *
+   * @param amount the debit or the credit of the move line
+   * @return the value to match, or null if the move line can not be reconciled with this method
+   */
+  protected Object getMatchingKey(
+      AccountingBatch accountingBatch,
+      int reconcileMethodSelect,
+      MoveLine moveLine,
+      BigDecimal amount) {
+    switch (reconcileMethodSelect) {
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_AMOUNT:
+        return amount.stripTrailingZeros();
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_ORIGIN:
+        return getMatchingKey(accountingBatch, moveLine.getOrigin(), amount);
+      case AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_EXTERNAL_IDENTIFIER:
+        return getMatchingKey(accountingBatch, moveLine.getExternalOrigin(), amount);
+      default:
+        return reconcileMethodSelect;
+    }
+  }
+
+  protected Object getMatchingKey(
+      AccountingBatch accountingBatch, String reference, BigDecimal amount) {
+    if (reference == null) {
+      return null;
+    }
+    return accountingBatch.getIsPartialReconcile()
+        ? reference
+        : Pair.of(reference, amount.stripTrailingZeros());
+  }
+
+  protected boolean canBeReconciled(
+      AccountingBatch accountingBatch,
       int reconcileMethodSelect,
       MoveLine debitMoveLine,
       MoveLine creditMoveLine,
@@ -283,13 +482,13 @@ public class BatchAutoMoveLettering extends BatchStrategy {
   }
 
   @Transactional
-  protected void reconcile(
+  protected Reconcile reconcile(
+      AccountingBatch accountingBatch,
       MoveLine debitMoveLine,
       MoveLine creditMoveLine,
       BigDecimal debitTotalRemaining,
       BigDecimal creditTotalRemaining)
       throws AxelorException {
-
     BigDecimal amount;
     Reconcile reconcile = null;
     if (debitMoveLine.getMaxAmountToReconcile() != null
@@ -304,9 +503,6 @@ public class BatchAutoMoveLettering extends BatchStrategy {
     LOG.debug("creditTotalRemaining : {}", creditTotalRemaining);
     BigDecimal nextDebitTotalRemaining = debitTotalRemaining.subtract(amount);
     BigDecimal nextCreditTotalRemaining = creditTotalRemaining.subtract(amount);
-    findBatch();
-    accountingBatch = batch.getAccountingBatch();
-    accountingBatch.setCompany(companyRepository.find(accountingBatch.getCompany().getId()));
     // Gestion du passage en 580
     if (nextDebitTotalRemaining.compareTo(BigDecimal.ZERO) <= 0
         || nextCreditTotalRemaining.compareTo(BigDecimal.ZERO) <= 0) {
@@ -335,13 +531,15 @@ public class BatchAutoMoveLettering extends BatchStrategy {
         reconcileService.confirmReconcile(reconcile, true, true);
         reconcileGroupService.removeDraftReconciles(reconcileGroup);
       }
-      debitMoveLine.addBatchSetItem(batch);
-      creditMoveLine.addBatchSetItem(batch);
+      Batch currentBatch = getCurrentBatch();
+      debitMoveLine.addBatchSetItem(currentBatch);
+      creditMoveLine.addBatchSetItem(currentBatch);
       moveLineRepository.save(debitMoveLine);
       moveLineRepository.save(creditMoveLine);
 
       LOG.debug("Reconcile : {}", reconcile);
     }
+    return reconcile;
   }
 
   public Query<MoveLine> getMoveLinesQuery() {
@@ -420,7 +618,7 @@ public class BatchAutoMoveLettering extends BatchStrategy {
         > 0;
   }
 
-  protected Comparator<MoveLine> getMoveLineComparator() {
+  protected Comparator<MoveLine> getMoveLineComparator(AccountingBatch accountingBatch) {
     Comparator<MoveLine> moveLineComparator = null;
     Comparator nullSafeComparator = Comparator.nullsLast(Comparator.naturalOrder());
 
@@ -470,26 +668,6 @@ public class BatchAutoMoveLettering extends BatchStrategy {
     return moveLineComparator;
   }
 
-  protected Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> getMoveLinesMap() {
-    Map<List<Object>, Pair<List<MoveLine>, List<MoveLine>>> listPairMap =
-        moveLineService.getPopulatedReconcilableMoveLineMap(
-            getMoveLinesQuery().fetch().stream()
-                .filter(moveLine -> moveLineControlService.canReconcile(moveLine))
-                .collect(Collectors.toList()));
-
-    Comparator<MoveLine> moveLineComparator = getMoveLineComparator();
-
-    listPairMap
-        .values()
-        .forEach(
-            listListPair -> {
-              listListPair.getLeft().sort(Comparator.nullsLast(moveLineComparator));
-              listListPair.getRight().sort(Comparator.nullsLast(moveLineComparator));
-            });
-
-    return listPairMap;
-  }
-
   public boolean existsAlreadyRunning(AccountingBatch accountingBatch) {
     Map<String, Object> params = new HashMap<>();
     String filters =
@@ -27,6 +27,7 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
@@ -71,15 +72,13 @@ public class BatchBlockCustomersWithLatePayments extends BatchStrategy {
 
   protected String blockCustomersWithLatePayments() {
     StringBuilder result = new StringBuilder();
-    List<DebtRecovery> debtRecoveries;
     List<Long> customersToBlock = new ArrayList<Long>();
     List<Long> customerToUnblock = new ArrayList<Long>();
-    int offset = 0;
-    Query<DebtRecovery> query =
-        debtRecoveryRepository.all().filter("self.archived = false or self.archived is null");
-    while (!(debtRecoveries = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      for (DebtRecovery debtRecovery : debtRecoveries) {
-        ++offset;
+    KeysetQueryIterator<DebtRecovery> debtRecoveryIterator =
+        KeysetQueryIterator.of(DebtRecovery.class, "self.archived = false or self.archived is null")
+            .pageSize(getFetchLimit());
+    while (debtRecoveryIterator.hasNext()) {
+      for (DebtRecovery debtRecovery : debtRecoveryIterator.next()) {
         if (debtRecovery.getRespiteDateBeforeAccountBlocking() != null
             && debtRecovery
                     .getRespiteDateBeforeAccountBlocking()
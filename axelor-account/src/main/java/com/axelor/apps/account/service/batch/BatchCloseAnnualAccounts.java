@@ -28,6 +28,7 @@ import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingBatchRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountService;
 import com.axelor.apps.account.service.AccountingCloseAnnualService;
 import com.axelor.apps.account.service.AccountingReportService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -35,6 +36,7 @@ import com.axelor.apps.account.service.move.MoveCreateService;
 import com.axelor.apps.account.service.move.MoveSimulateService;
 import com.axelor.apps.account.service.move.MoveValidateService;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
@@ -44,24 +46,32 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.db.repo.YearRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.common.csv.CSVFile;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.axelor.meta.MetaFiles;
+import com.axelor.meta.db.MetaFile;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +86,9 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
   protected MoveCreateService moveCreateService;
   protected MoveValidateService moveValidateService;
   protected MoveSimulateService moveSimulateService;
+  protected AccountService accountService;
+
+  protected static final int ACCOUNT_RANGE_SIZE = 500;
 
   protected boolean end = false;
   protected AccountingBatch accountingBatch;
@@ -89,7 +102,8 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       AccountingCloseAnnualService accountingCloseAnnualService,
       AccountConfigService accountConfigService,
       MoveCreateService moveCreateService,
-      MoveValidateService moveValidateService) {
+      MoveValidateService moveValidateService,
+      AccountService accountService) {
     this.partnerRepository = partnerRepository;
     this.yearRepository = yearRepository;
     this.accountRepository = accountRepository;
@@ -98,6 +112,7 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
     this.accountConfigService = accountConfigService;
     this.moveCreateService = moveCreateService;
     this.moveValidateService = moveValidateService;
+    this.accountService = accountService;
   }
 
   @Override
@@ -114,7 +129,7 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       }
 
       this.testCloseAnnualBatchFields(resultMoveAmount);
-      if (accountingBatch.getGenerateResultMove()) {
+      if (accountingBatch.getGenerateResultMove() && !accountingBatch.getClosureDryRun()) {
         this.generateResultMove(resultMoveAmount);
       }
     } catch (AxelorException | PersistenceException e) {
@@ -186,172 +201,247 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
   }
 
   protected void process() {
-    if (!end) {
-
-      Year year = accountingBatch.getYear();
-      boolean allocatePerPartner = accountingBatch.getAllocatePerPartner();
-
-      List<Long> closureAccountIdList =
-          accountingCloseAnnualService.getAllAccountOfYear(
-              accountingBatch.getClosureAccountSet(), year);
-
-      List<Long> openingAccountIdList =
-          accountingCloseAnnualService.getAllAccountOfYear(
-              accountingBatch.getOpeningAccountSet(), year);
-
-      List<Pair<Long, Long>> closureAccountAndPartnerPairList =
-          accountingCloseAnnualService.assignPartner(
-              closureAccountIdList, year, allocatePerPartner);
-
-      List<Pair<Long, Long>> openingAccountAndPartnerPairList =
-          accountingCloseAnnualService.assignPartner(
-              openingAccountIdList, year, allocatePerPartner);
-      Map<AccountByPartner, Map<Boolean, Boolean>> map = new HashMap<>();
-      map =
-          openAndCloseProcess(
-              closureAccountAndPartnerPairList, accountingBatch.getCloseYear(), false, map);
-      map =
-          openAndCloseProcess(
-              openingAccountAndPartnerPairList, false, accountingBatch.getOpenYear(), map);
-
-      generateMoves(map);
+    if (end) {
+      return;
     }
-  }
 
-  protected Map<AccountByPartner, Map<Boolean, Boolean>> openAndCloseProcess(
-      List<Pair<Long, Long>> accountAndPartnerPairList,
-      boolean close,
-      boolean open,
-      Map<AccountByPartner, Map<Boolean, Boolean>> map) {
-    for (Pair<Long, Long> accountAndPartnerPair : accountAndPartnerPairList) {
-      Account account = null;
-      Partner partner = null;
-      account = accountRepository.find(accountAndPartnerPair.getLeft());
-      if (accountAndPartnerPair.getRight() != null) {
-        partner = partnerRepository.find(accountAndPartnerPair.getRight());
+    Set<Long> closureAccountIdSet =
+        accountingBatch.getCloseYear()
+            ? getAccountIdSet(accountingBatch.getClosureAccountSet())
+            : new HashSet<>();
+    Set<Long> openingAccountIdSet =
+        accountingBatch.getOpenYear()
+            ? getAccountIdSet(accountingBatch.getOpeningAccountSet())
+            : new HashSet<>();
+
+    List<Long> accountIdList =
+        Stream.concat(closureAccountIdSet.stream(), openingAccountIdSet.stream())
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList());
+    Set<Long> partnerAccountIdSet =
+        accountingBatch.getAllocatePerPartner()
+            ? getPartnerBalanceAccountIdSet(accountIdList)
+            : new HashSet<>();
+
+    try {
+      if (accountingBatch.getClosureDryRun()) {
+        File exportFile = MetaFiles.createTempFile(getExportFileName(), ".csv").toFile();
+        try (CSVPrinter printer =
+            CSVFile.DEFAULT.withDelimiter(';').withQuoteAll().write(exportFile)) {
+          printer.printRecord(getExportHeader());
+          processBalances(
+              accountIdList,
+              partnerAccountIdSet,
+              closureAccountIdSet,
+              openingAccountIdSet,
+              printer);
+        }
+        attachExportFile(exportFile);
+      } else {
+        processBalances(
+            accountIdList, partnerAccountIdSet, closureAccountIdSet, openingAccountIdSet, null);
       }
-      Map<Boolean, Boolean> value = new HashMap<>();
-      if (close) {
-        value.put(close, false);
-        map.put(new AccountByPartner(account, partner), value);
-      } else if (open) {
-        AccountByPartner accountByPartner = new AccountByPartner(account, partner);
-        if (map.containsKey(accountByPartner)) {
-          boolean closeValue = map.get(accountByPartner).containsKey(true);
-          value.put(closeValue, open);
-          map.replace(accountByPartner, value);
-        } else {
-          value.put(false, open);
-          map.put(accountByPartner, value);
+    } catch (AxelorException e) {
+      TraceBackService.trace(e, null, batch.getId());
+      incrementAnomaly();
+    } catch (Exception e) {
+      TraceBackService.trace(e, null, batch.getId());
+      incrementAnomaly();
+      LOG.error("Anomaly generated while closing the year {}", accountingBatch.getYear());
+    }
+  }
+
+  /**
+   * Compute the balances to close and to open by ranges of accounts, with one grouped query per
+   * range, and generate their moves or export them by chunks.
+   *
+   * @param printer the printer of the exported balances, or null to generate the moves
+   */
+  protected void processBalances(
+      List<Long> accountIdList,
+      Set<Long> partnerAccountIdSet,
+      Set<Long> closureAccountIdSet,
+      Set<Long> openingAccountIdSet,
+      CSVPrinter printer)
+      throws Exception {
+
+    Long yearId = accountingBatch.getYear().getId();
+
+    for (boolean groupByPartner : new boolean[] {false, true}) {
+      List<Long> rangeAccountIdList =
+          accountIdList.stream()
+              .filter(id -> partnerAccountIdSet.contains(id) == groupByPartner)
+              .collect(Collectors.toList());
+
+      for (List<Long> accountIdRange : Lists.partition(rangeAccountIdList, ACCOUNT_RANGE_SIZE)) {
+        List<Triple<Long, Long, BigDecimal>> balanceList =
+            accountingCloseAnnualService.getBalances(
+                yearRepository.find(yearId), accountIdRange, groupByPartner);
+
+        for (List<Triple<Long, Long, BigDecimal>> balanceChunk :
+            Lists.partition(balanceList, getFetchLimit())) {
+          preload(balanceChunk);
+          int count =
+              printer != null
+                  ? exportBalances(balanceChunk, closureAccountIdSet, openingAccountIdSet, printer)
+                  : generateMoves(balanceChunk, closureAccountIdSet, openingAccountIdSet);
+          for (int i = 0; i < count; i++) {
+            incrementDone();
+          }
+          JPA.clear();
         }
       }
     }
-    return map;
   }
 
-  protected void generateMoves(Map<AccountByPartner, Map<Boolean, Boolean>> map) {
-    Map<Boolean, Boolean> value = new HashMap<Boolean, Boolean>();
-    boolean close = false;
-    boolean open = false;
-    boolean allocatePerPartner = accountingBatch.getAllocatePerPartner();
-    boolean closeYear = accountingBatch.getCloseYear();
-    boolean openYear = accountingBatch.getOpenYear();
+  protected Set<Long> getAccountIdSet(Set<Account> accountSet) {
+    if (CollectionUtils.isEmpty(accountSet)) {
+      return new HashSet<>();
+    }
+    return new HashSet<>(
+        accountService.getAllAccountsSubAccountIncluded(
+            accountSet.stream().map(Account::getId).collect(Collectors.toList())));
+  }
+
+  protected Set<Long> getPartnerBalanceAccountIdSet(List<Long> accountIdList) {
+    Set<Long> partnerAccountIdSet = new HashSet<>();
+    for (List<Long> accountIdRange : Lists.partition(accountIdList, ACCOUNT_RANGE_SIZE)) {
+      partnerAccountIdSet.addAll(
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id FROM Account self "
+                      + "WHERE self.id IN (:accountIdList) AND self.useForPartnerBalance = true",
+                  Long.class)
+              .setParameter("accountIdList", accountIdRange)
+              .getResultList());
+    }
+    return partnerAccountIdSet;
+  }
+
+  /** Load the accounts and partners of a chunk of balances with one query each. */
+  protected void preload(List<Triple<Long, Long, BigDecimal>> balanceChunk) {
+    Set<Long> accountIdSet =
+        balanceChunk.stream().map(Triple::getLeft).collect(Collectors.toSet());
+    Set<Long> partnerIdSet =
+        balanceChunk.stream()
+            .map(Triple::getMiddle)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+
+    accountRepository.all().filter("self.id IN (:ids)").bind("ids", accountIdSet).fetch();
+    if (!partnerIdSet.isEmpty()) {
+      partnerRepository.all().filter("self.id IN (:ids)").bind("ids", partnerIdSet).fetch();
+    }
+  }
+
+  /**
+   * Generate the closure and opening moves of a chunk of balances in a single transaction, so that
+   * their inserts are flushed together. The whole chunk is rolled back on the first error.
+   *
+   * @return the count of balances for which moves have been generated
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected int generateMoves(
+      List<Triple<Long, Long, BigDecimal>> balanceChunk,
+      Set<Long> closureAccountIdSet,
+      Set<Long> openingAccountIdSet)
+      throws AxelorException {
+
     boolean isSimulatedMove = accountingBatch.getSimulateGeneratedMoves();
     Year year = accountingBatch.getYear();
     LocalDate endOfYearDate = year.getToDate();
     LocalDate reportedBalanceDate = year.getReportedBalanceDate();
     String origin = accountingBatch.getCode();
     String moveDescription = accountingBatch.getMoveDescription();
-    for (AccountByPartner accountByPartner : map.keySet()) {
+
+    validateSimulatedConfiguration(isSimulatedMove, accountingBatch.getCompany());
+
+    Batch currentBatch = batchRepo.find(batch.getId());
+    int count = 0;
+    for (Triple<Long, Long, BigDecimal> balance : balanceChunk) {
+      Account account = accountRepository.find(balance.getLeft());
+      Partner partner =
+          balance.getMiddle() != null ? partnerRepository.find(balance.getMiddle()) : null;
+
+      List<Move> generatedMoves;
       try {
-        Account account = accountRepository.find(accountByPartner.account.getId());
-        Partner partner = null;
-        if (accountByPartner.partner != null) {
-          partner = partnerRepository.find(accountByPartner.partner.getId());
-        }
-        value = map.get(accountByPartner);
-        if (value != null) {
-
-          validateSimulatedConfiguration(isSimulatedMove, accountingBatch.getCompany());
-
-          close = value.containsKey(true);
-          open = value.containsValue(true);
-          List<Move> generatedMoves = new ArrayList<Move>();
-          if (close && !open) {
-            generatedMoves =
-                accountingCloseAnnualService.generateCloseAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    closeYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-
-          } else if (open && !close) {
-            generatedMoves =
-                accountingCloseAnnualService.generateOpenAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    openYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-
-          } else if (open && close) {
-            generatedMoves =
-                accountingCloseAnnualService.generateCloseAndOpenAnnualAccount(
-                    yearRepository.find(year.getId()),
-                    account,
-                    partner,
-                    endOfYearDate,
-                    reportedBalanceDate,
-                    origin,
-                    moveDescription,
-                    closeYear,
-                    openYear,
-                    allocatePerPartner,
-                    isSimulatedMove);
-          }
-          if (!CollectionUtils.isEmpty(generatedMoves)) {
-            updateAccount(account);
+        generatedMoves =
+            accountingCloseAnnualService.generateCloseAndOpenAnnualAccount(
+                account,
+                partner,
+                balance.getRight(),
+                endOfYearDate,
+                reportedBalanceDate,
+                origin,
+                moveDescription,
+                closureAccountIdSet.contains(account.getId()),
+                openingAccountIdSet.contains(account.getId()),
+                isSimulatedMove);
+      } catch (AxelorException e) {
+        throw new AxelorException(
+            e, e.getCategory(), I18n.get("Account") + " %s", account.getCode());
+      }
 
-            for (Move move : generatedMoves) {
-              updateAccountMove(move, false);
-            }
-          }
+      if (!CollectionUtils.isEmpty(generatedMoves)) {
+        account.addBatchSetItem(currentBatch);
+        for (Move move : generatedMoves) {
+          move.addBatchSetItem(currentBatch);
         }
-      } catch (AxelorException e) {
-        TraceBackService.trace(
-            new AxelorException(
-                e,
-                e.getCategory(),
-                I18n.get("Account") + " %s",
-                accountByPartner.account.getCode()),
-            null,
-            batch.getId());
-        incrementAnomaly();
-        break;
-      } catch (Exception e) {
-        TraceBackService.trace(
-            new Exception(
-                String.format(I18n.get("Account") + " %s", accountByPartner.account.getCode()), e),
-            null,
-            batch.getId());
-        incrementAnomaly();
-        LOG.error("Anomaly generated for the account {}", accountByPartner.account.getCode());
-        break;
-      } finally {
-        JPA.clear();
+        count++;
       }
     }
+    return count;
+  }
+
+  /** @return the count of exported balances */
+  protected int exportBalances(
+      List<Triple<Long, Long, BigDecimal>> balanceChunk,
+      Set<Long> closureAccountIdSet,
+      Set<Long> openingAccountIdSet,
+      CSVPrinter printer)
+      throws IOException {
+
+    for (Triple<Long, Long, BigDecimal> balance : balanceChunk) {
+      Account account = accountRepository.find(balance.getLeft());
+      Partner partner =
+          balance.getMiddle() != null ? partnerRepository.find(balance.getMiddle()) : null;
+
+      printer.printRecord(
+          account.getCode(),
+          account.getName(),
+          partner != null ? partner.getFullName() : "",
+          balance.getRight().toPlainString(),
+          getYesNo(closureAccountIdSet.contains(account.getId())),
+          getYesNo(openingAccountIdSet.contains(account.getId())));
+    }
+    return balanceChunk.size();
+  }
+
+  protected List<String> getExportHeader() {
+    return Arrays.asList(
+        I18n.get("Account code"),
+        I18n.get("Account name"),
+        I18n.get("Partner"),
+        I18n.get("Balance"),
+        I18n.get("Closure"),
+        I18n.get("Opening"));
+  }
+
+  protected String getYesNo(boolean value) {
+    return value ? I18n.get("Yes") : I18n.get("No");
+  }
+
+  protected String getExportFileName() {
+    return String.format(
+        "%s-%s-%s", I18n.get("Balances"), accountingBatch.getCode(), batch.getId());
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void attachExportFile(File exportFile) throws IOException {
+    MetaFile metaFile = new MetaFile();
+    metaFile.setFileName(getExportFileName() + ".csv");
+    findBatch().setMetaFile(Beans.get(MetaFiles.class).upload(exportFile, metaFile));
   }
 
   @Override
@@ -502,34 +592,4 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       moveValidateService.accounting(move);
     }
   }
-
-  class AccountByPartner {
-    protected Account account;
-    protected Partner partner;
-
-    public AccountByPartner(Account account, Partner partner) {
-      this.account = account;
-      this.partner = partner;
-    }
-
-    public int hashCode() {
-      return (int)
-          (this.account.getId() * 1000 + (this.partner != null ? this.partner.getId() : 0));
-    }
-
-    public boolean equals(Object o) {
-      if (o == this) {
-        return true;
-      }
-      if (!(o instanceof AccountByPartner)) {
-        return false;
-      }
-      AccountByPartner other = (AccountByPartner) o;
-      if (this.partner != null) {
-        return this.account.equals(other.account) && this.partner.equals(other.partner);
-      } else {
-        return this.account.equals(other.account) && other.partner == null;
-      }
-    }
-  }
 }
@@ -20,25 +20,45 @@ package com.axelor.apps.account.service.batch;
 
 import com.axelor.apps.account.db.AccountingBatch;
 import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.service.move.MoveToolService;
 import com.axelor.apps.account.service.move.MoveValidateService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.TraceBack;
+import com.axelor.apps.base.db.Year;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 
+/**
+ * Check the consistency of the daybook and accounted moves of the selected years.
+ *
+ * <p>The move ids are read by pages ordered by id, and the moves of each page are checked in
+ * parallel by the workers of {@link #processInPartitions(List, ItemProcessor)}, in read-only
+ * sessions. The inconsistencies found are traced together once each page is over.
+ */
 public class BatchControlMovesConsistency extends BatchStrategy {
 
+  protected static final int MOVE_ID_PAGE_SIZE = 10000;
+
   protected MoveToolService moveToolService;
   protected MoveValidateService moveValidateService;
   protected TraceBackRepository tracebackRepository;
 
+  protected final Queue<Exception> failureQueue = new ConcurrentLinkedQueue<>();
+
   @Inject
   public BatchControlMovesConsistency(
       MoveToolService moveToolService,
@@ -51,27 +71,82 @@ public class BatchControlMovesConsistency extends BatchStrategy {
 
   protected void process() {
     AccountingBatch accountingBatch = batch.getAccountingBatch();
-    if (!CollectionUtils.isEmpty(accountingBatch.getYearSet())) {
-      List<Move> moveList =
-          moveToolService.findDaybookAndAccountingByYear(accountingBatch.getYearSet());
-      if (!CollectionUtils.isEmpty(moveList)) {
-        for (Move move : moveList) {
-          try {
-            move = moveRepo.find(move.getId());
-            moveValidateService.checkConsistencyPreconditions(move);
-            incrementDone();
-          } catch (AxelorException e) {
-            TraceBackService.trace(
-                new AxelorException(move, e.getCategory(), I18n.get(e.getMessage())),
-                null,
-                batch.getId());
-            incrementAnomaly();
-          } finally {
-            JPA.clear();
+    if (CollectionUtils.isEmpty(accountingBatch.getYearSet())) {
+      return;
+    }
+    List<Long> yearIdList =
+        accountingBatch.getYearSet().stream().map(Year::getId).collect(Collectors.toList());
+
+    ItemProcessor<Long> processor =
+        new ItemProcessor<Long>() {
+          @Override
+          public int process(Long moveId) throws Exception {
+            return checkMoveConsistency(moveId);
           }
-        }
-      }
+
+          @Override
+          public void traceFailure(Long moveId, Exception e) {
+            failureQueue.add(e);
+          }
+        };
+
+    long lastId = 0L;
+    List<Long> moveIdList;
+    while (!(moveIdList = fetchMoveIdPage(yearIdList, lastId)).isEmpty()) {
+      processInPartitions(Lists.partition(moveIdList, getPartitionSize()), processor);
+      lastId = moveIdList.get(moveIdList.size() - 1);
+      traceFailures();
+      JPA.clear();
+    }
+  }
+
+  protected List<Long> fetchMoveIdPage(List<Long> yearIdList, long lastId) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM Move self "
+                + "WHERE self.period.year.id IN (:yearIdList) "
+                + "AND self.statusSelect IN (:statusList) "
+                + "AND self.id > :lastId "
+                + "ORDER BY self.id",
+            Long.class)
+        .setParameter("yearIdList", yearIdList)
+        .setParameter(
+            "statusList",
+            Arrays.asList(MoveRepository.STATUS_ACCOUNTED, MoveRepository.STATUS_DAYBOOK))
+        .setParameter("lastId", lastId)
+        .setMaxResults(MOVE_ID_PAGE_SIZE)
+        .getResultList();
+  }
+
+  /**
+   * Check the consistency of a move, called by the workers. The session is made read-only, as the
+   * checks can complete the move in memory and nothing must be saved.
+   */
+  protected int checkMoveConsistency(Long moveId) throws AxelorException {
+    Session session = JPA.em().unwrap(Session.class);
+    session.setDefaultReadOnly(true);
+    session.setHibernateFlushMode(FlushMode.MANUAL);
+
+    Move move = JPA.em().find(Move.class, moveId);
+    if (move == null) {
+      return 0;
+    }
+    try {
+      moveValidateService.checkConsistencyPreconditions(move);
+    } catch (AxelorException e) {
+      throw new AxelorException(move, e.getCategory(), I18n.get(e.getMessage()));
+    }
+    return 1;
+  }
+
+  /** Trace the inconsistencies found by the workers since the last call. */
+  protected void traceFailures() {
+    List<Exception> exceptionList = new ArrayList<>();
+    Exception e;
+    while ((e = failureQueue.poll()) != null) {
+      exceptionList.add(e);
     }
+    TraceBackService.trace(exceptionList, null, batch.getId());
   }
 
   public List<Long> getAllMovesId(Long batchId) {
@@ -21,6 +21,7 @@ package com.axelor.apps.account.service.batch;
 import com.axelor.apps.account.db.DebtRecovery;
 import com.axelor.apps.account.db.repo.DebtRecoveryRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryActionService;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryService;
 import com.axelor.apps.base.AxelorException;
@@ -30,25 +31,35 @@ import com.axelor.apps.base.db.TradingName;
 import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.db.repo.PartnerRepository;
+import com.axelor.apps.base.db.repo.TradingNameRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.BlockingService;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.message.db.repo.MessageRepository;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import javax.persistence.Table;
 
 public class BatchDebtRecovery extends BatchStrategy {
 
+  /** Count of rows inserted at once in the batch set tables. */
+  protected static final int BATCH_SET_INSERT_SIZE = 1000;
+
   protected boolean stopping = false;
   protected PartnerRepository partnerRepository;
+  protected TradingNameRepository tradingNameRepository;
   protected MessageRepository messageRepository;
   protected DebtRecoveryRepository debtRecoveryRepository;
   protected DebtRecoveryActionService debtRecoveryActionService;
@@ -56,12 +67,16 @@ public class BatchDebtRecovery extends BatchStrategy {
   @Inject
   public BatchDebtRecovery(
       DebtRecoveryService debtRecoveryService,
+      AccountCustomerService accountCustomerService,
       PartnerRepository partnerRepository,
+      TradingNameRepository tradingNameRepository,
       DebtRecoveryRepository debtRecoveryRepository,
       DebtRecoveryActionService debtRecoveryActionService,
       MessageRepository messageRepository) {
     super(debtRecoveryService);
+    this.accountCustomerService = accountCustomerService;
     this.partnerRepository = partnerRepository;
+    this.tradingNameRepository = tradingNameRepository;
     this.debtRecoveryRepository = debtRecoveryRepository;
     this.debtRecoveryActionService = debtRecoveryActionService;
     this.messageRepository = messageRepository;
@@ -99,6 +114,15 @@ public class BatchDebtRecovery extends BatchStrategy {
     }
   }
 
+  /**
+   * Run the debt recovery of the partners of the company.
+   *
+   * <p>Only the partners with a positive balance due, computed for all the partners with one
+   * grouped query, and the partners whose debt recovery has to be reset are processed. They are
+   * processed in parallel, each partner in its own transaction. The messages of the new debt
+   * recovery levels are generated once all the partners are processed, and the batch is linked to
+   * the reminded partners and their debt recoveries with bulk inserts.
+   */
   public void debtRecoveryPartner() {
     Company company = batch.getAccountingBatch().getCompany();
     Set<TradingName> tradingNameSet =
@@ -112,133 +136,244 @@ public class BatchDebtRecovery extends BatchStrategy {
       }
     }
 
-    Query<Partner> query =
-        partnerRepository
-            .all()
-            .filter(
-                "self.isContact = false "
-                    + "AND :_company MEMBER OF self.companySet "
-                    + "AND self.accountingSituationList IS NOT EMPTY "
-                    + "AND self.isCustomer = true "
-                    + "AND self.id NOT IN ("
-                    + Beans.get(BlockingService.class)
-                        .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
-                    + ")")
-            .bind("_company", company)
-            .order("id");
-
-    int offset = 0;
-    List<Partner> partnerList;
-
-    while (!(partnerList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      findBatch();
-
-      for (Partner partner : partnerList) {
-        ++offset;
-
-        boolean remindedOk;
-        // if recovery handled by trading name
-        if (tradingNameSet != null && !tradingNameSet.isEmpty()) {
-          boolean incrementPartner = false;
-          for (TradingName tradingName : tradingNameSet) {
-            try {
-              remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, tradingName);
-              if (remindedOk) {
-                DebtRecovery debtRecovery =
-                    debtRecoveryService.getDebtRecovery(partner, company, tradingName);
-                addBatchToModel(debtRecovery);
-                incrementPartner = true;
-              }
-              // Catching exceptions
-            } catch (AxelorException e) {
-              TraceBackService.trace(
-                  new AxelorException(
-                      e,
-                      e.getCategory(),
-                      I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
-                      partner.getName(),
-                      tradingName.getName()),
-                  ExceptionOriginRepository.DEBT_RECOVERY,
-                  batch.getId());
-              incrementAnomaly(partner);
-              break;
-            } catch (Exception e) {
-              TraceBackService.trace(
-                  new Exception(
-                      String.format(
-                          I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
-                          partner.getName(),
-                          tradingName.getName()),
-                      e),
-                  ExceptionOriginRepository.DEBT_RECOVERY,
-                  batch.getId());
-              incrementAnomaly(partner);
-              break;
-            }
-            // \Catching exceptions
-          }
-          if (incrementPartner) {
-            incrementDone(partner);
-          }
-        } else { // if recovery handled by company
-          try {
-            remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company, null);
+    Long companyId = company.getId();
+    List<Long> tradingNameIdList =
+        tradingNameSet == null
+            ? new ArrayList<>()
+            : tradingNameSet.stream().map(TradingName::getId).collect(Collectors.toList());
+    List<Long> partnerIdList = this.getPartnerIdList(company, tradingNameSet);
+
+    Queue<Long> remindedPartnerIdQueue = new ConcurrentLinkedQueue<>();
+    Queue<Long> debtRecoveryIdQueue = new ConcurrentLinkedQueue<>();
+    Queue<Long> messageDebtRecoveryIdQueue = new ConcurrentLinkedQueue<>();
+
+    processInPartitions(
+        Lists.partition(partnerIdList, getPartitionSize()),
+        new ItemProcessor<Long>() {
+          @Override
+          public int process(Long partnerId) throws Exception {
+            List<Long> debtRecoveryIdList = new ArrayList<>();
+            List<Long> messageDebtRecoveryIdList = new ArrayList<>();
+            boolean remindedOk =
+                debtRecoveryPartner(
+                    partnerId,
+                    companyId,
+                    tradingNameIdList,
+                    debtRecoveryIdList,
+                    messageDebtRecoveryIdList);
+
+            debtRecoveryIdQueue.addAll(debtRecoveryIdList);
+            messageDebtRecoveryIdQueue.addAll(messageDebtRecoveryIdList);
             if (remindedOk) {
-              DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
-              addBatchToModel(debtRecovery);
-              incrementDone(partner);
+              remindedPartnerIdQueue.add(partnerId);
+              return 1;
             }
-            // Catching exceptions
-          } catch (AxelorException e) {
-            TraceBackService.trace(
-                new AxelorException(
-                    e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
-                ExceptionOriginRepository.DEBT_RECOVERY,
-                batch.getId());
-            incrementAnomaly(partner);
-            break;
-          } catch (Exception e) {
-            TraceBackService.trace(
-                new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
-                ExceptionOriginRepository.DEBT_RECOVERY,
-                batch.getId());
-            incrementAnomaly(partner);
-            break;
+            return 0;
           }
-          // \Catching exceptions
+
+          @Override
+          public void traceFailure(Long partnerId, Exception e) {
+            TraceBackService.trace(e, ExceptionOriginRepository.DEBT_RECOVERY, getCurrentBatchId());
+          }
+        });
+
+    this.generateMessages(new ArrayList<>(messageDebtRecoveryIdQueue));
+
+    findBatch();
+    addBatchToModels(Partner.class, remindedPartnerIdQueue);
+    addBatchToModels(DebtRecovery.class, debtRecoveryIdQueue);
+  }
+
+  /**
+   * Run the debt recovery of a partner, for each trading name if given. Called by the worker
+   * threads, in the transaction of the partner.
+   *
+   * @return true if the partner has been reminded
+   */
+  protected boolean debtRecoveryPartner(
+      Long partnerId,
+      Long companyId,
+      List<Long> tradingNameIdList,
+      List<Long> debtRecoveryIdList,
+      List<Long> messageDebtRecoveryIdList)
+      throws Exception {
+    Partner partner = partnerRepository.find(partnerId);
+    Company company = companyRepo.find(companyId);
+
+    if (tradingNameIdList.isEmpty()) { // if recovery handled by company
+      try {
+        if (debtRecoveryService.debtRecoveryGenerate(
+            partner, company, null, messageDebtRecoveryIdList)) {
+          debtRecoveryIdList.add(debtRecoveryService.getDebtRecovery(partner, company).getId());
+          return true;
         }
+        return false;
+      } catch (AxelorException e) {
+        throw new AxelorException(
+            e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName());
+      } catch (Exception e) {
+        throw new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e);
       }
+    }
 
-      JPA.clear();
+    // if recovery handled by trading name
+    boolean remindedOk = false;
+    for (Long tradingNameId : tradingNameIdList) {
+      TradingName tradingName = tradingNameRepository.find(tradingNameId);
+      try {
+        if (debtRecoveryService.debtRecoveryGenerate(
+            partner, company, tradingName, messageDebtRecoveryIdList)) {
+          debtRecoveryIdList.add(
+              debtRecoveryService.getDebtRecovery(partner, company, tradingName).getId());
+          remindedOk = true;
+        }
+      } catch (AxelorException e) {
+        throw new AxelorException(
+            e,
+            e.getCategory(),
+            I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
+            partner.getName(),
+            tradingName.getName());
+      } catch (Exception e) {
+        throw new Exception(
+            String.format(
+                I18n.get("Partner") + " %s, " + I18n.get("Trading name") + " %s",
+                partner.getName(),
+                tradingName.getName()),
+            e);
+      }
     }
+    return remindedOk;
   }
 
-  protected void incrementDone(Partner partner) {
-    addBatchToModel(partner);
-    _incrementDone();
+  /**
+   * Get the ids of the partners to process: the customers of the company which are not blocked
+   * for reminders, and which have a positive balance due or a debt recovery to reset.
+   */
+  protected List<Long> getPartnerIdList(Company company, Set<TradingName> tradingNameSet) {
+    Set<Long> candidatePartnerIdSet = new HashSet<>(this.getPartnerIdsToReset(company));
+
+    if (tradingNameSet == null || tradingNameSet.isEmpty()) {
+      candidatePartnerIdSet.addAll(
+          accountCustomerService.getPositiveBalanceDueByPartner(company, null).keySet());
+    } else {
+      for (TradingName tradingName : tradingNameSet) {
+        candidatePartnerIdSet.addAll(
+            accountCustomerService.getPositiveBalanceDueByPartner(company, tradingName).keySet());
+      }
+    }
+
+    if (candidatePartnerIdSet.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    return partnerRepository
+        .all()
+        .filter(
+            "self.isContact = false "
+                + "AND :_company MEMBER OF self.companySet "
+                + "AND self.accountingSituationList IS NOT EMPTY "
+                + "AND self.isCustomer = true "
+                + "AND self.id NOT IN ("
+                + Beans.get(BlockingService.class)
+                    .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
+                + ")")
+        .bind("_company", company)
+        .order("id")
+        .select("id")
+        .fetch(0, 0)
+        .stream()
+        .map(m -> (Long) m.get("id"))
+        .filter(candidatePartnerIdSet::contains)
+        .collect(Collectors.toList());
   }
 
-  protected void incrementAnomaly(Partner partner) {
-    findBatch();
-    partner = partnerRepository.find(partner.getId());
-    // addBatchToModel(partner);
-    _incrementAnomaly();
+  /**
+   * Get the ids of the partners of the company with a debt recovery which is not in its initial
+   * state, so that it is reset if they have no balance due anymore.
+   */
+  protected List<Long> getPartnerIdsToReset(Company company) {
+    String debtRecoveryCondition =
+        "%1$s.debtRecoveryMethodLine IS NOT NULL "
+            + "OR %1$s.waitDebtRecoveryMethodLine IS NOT NULL "
+            + "OR %1$s.balanceDue != 0 "
+            + "OR %1$s.balanceDueDebtRecovery != 0 "
+            + "OR %1$s.invoiceDebtRecoverySet IS NOT EMPTY "
+            + "OR %1$s.paymentScheduleLineDebtRecoverySet IS NOT EMPTY";
+
+    return JPA.em()
+        .createQuery(
+            "SELECT DISTINCT self.partner.id FROM AccountingSituation self "
+                + "LEFT JOIN self.debtRecovery debtRecovery "
+                + "LEFT JOIN self.tradingNameDebtRecoveryList tradingNameDebtRecovery "
+                + "WHERE self.company = :company AND ("
+                + String.format(debtRecoveryCondition, "debtRecovery")
+                + " OR "
+                + String.format(debtRecoveryCondition, "tradingNameDebtRecovery")
+                + ")",
+            Long.class)
+        .setParameter("company", company)
+        .getResultList();
   }
 
-  protected void addBatchToModel(Model model) {
-    String tableName = getBatchSetTableName(model);
+  /**
+   * Generate the messages of the new debt recovery levels, in parallel, each debt recovery in its
+   * own transaction so that a message which can not be generated or sent does not cancel the debt
+   * recovery of the partner.
+   */
+  protected void generateMessages(List<Long> debtRecoveryIdList) {
+    processInPartitions(
+        Lists.partition(debtRecoveryIdList, getPartitionSize()),
+        new ItemProcessor<Long>() {
+          @Override
+          public int process(Long debtRecoveryId) throws Exception {
+            DebtRecovery debtRecovery = debtRecoveryRepository.find(debtRecoveryId);
+            if (debtRecovery != null) {
+              debtRecoveryActionService.runMessage(debtRecovery);
+            }
+            return 0;
+          }
 
-    // Insert using native query for performance reasons in case of big batch set.
-    String sqlString = String.format("INSERT INTO %s VALUES (:modelId, :batchId)", tableName);
-    javax.persistence.Query query = JPA.em().createNativeQuery(sqlString);
-    query.setParameter("modelId", model.getId());
-    query.setParameter("batchId", batch.getId());
-    JPA.runInTransaction(query::executeUpdate);
+          @Override
+          public void traceFailure(Long debtRecoveryId, Exception e) {
+            TraceBackService.trace(
+                new Exception(
+                    String.format(
+                        I18n.get(AccountExceptionMessage.BATCH_DEBT_RECOVERY_MESSAGE_NOT_GENERATED),
+                        debtRecoveryId),
+                    e),
+                ExceptionOriginRepository.DEBT_RECOVERY,
+                getCurrentBatchId());
+          }
+        });
   }
 
-  protected String getBatchSetTableName(Model model) {
-    String modelTableName = EntityHelper.getEntityClass(model).getAnnotation(Table.class).name();
-    return modelTableName + "_BATCH_SET";
+  /**
+   * Link the batch to the given records. Rows are inserted using native queries for performance
+   * reasons in case of big batch set.
+   */
+  protected void addBatchToModels(Class<? extends Model> entityClass, Collection<Long> idList) {
+    if (idList.isEmpty()) {
+      return;
+    }
+
+    String modelTableName = entityClass.getAnnotation(Table.class).name();
+    String sqlString =
+        String.format(
+            "INSERT INTO %s_BATCH_SET SELECT self.id, :batchId FROM %s self WHERE self.id IN (:ids)",
+            modelTableName, modelTableName);
+    List<Long> distinctIdList = idList.stream().distinct().collect(Collectors.toList());
+
+    JPA.runInTransaction(
+        () -> {
+          for (List<Long> idPartition : Lists.partition(distinctIdList, BATCH_SET_INSERT_SIZE)) {
+            JPA.em()
+                .createNativeQuery(sqlString)
+                .setParameter("ids", idPartition)
+                .setParameter("batchId", batch.getId())
+                .executeUpdate();
+          }
+        });
   }
 
   /**
@@ -0,0 +1,69 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.PartnerBalanceService;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+
+/**
+ * Recompute the partner balances of the company from its move lines, and correct the balances
+ * that drifted. Must be run once after enabling the partner balance ledger.
+ */
+public class BatchPartnerBalanceConsistencyControl extends BatchStrategy {
+
+  protected PartnerBalanceService partnerBalanceService;
+
+  protected int correctedCount;
+
+  @Inject
+  public BatchPartnerBalanceConsistencyControl(PartnerBalanceService partnerBalanceService) {
+    this.partnerBalanceService = partnerBalanceService;
+  }
+
+  @Override
+  protected void process() {
+    Company company = batch.getAccountingBatch().getCompany();
+    try {
+      correctedCount = partnerBalanceService.rebuild(company);
+      incrementDone();
+    } catch (Exception e) {
+      TraceBackService.trace(e, null, batch.getId());
+      incrementAnomaly();
+    }
+  }
+
+  @Override
+  protected void stop() {
+    String comment =
+        I18n.get(AccountExceptionMessage.BATCH_PARTNER_BALANCE_REPORT_TITLE)
+            + "\n\t"
+            + String.format(
+                I18n.get(AccountExceptionMessage.BATCH_PARTNER_BALANCE_CORRECTED), correctedCount)
+            + "\n\t"
+            + String.format(I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly());
+
+    super.stop();
+    addComment(comment);
+  }
+}
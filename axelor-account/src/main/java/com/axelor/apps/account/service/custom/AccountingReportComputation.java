@@ -0,0 +1,68 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * State of one computation of the values of a custom accounting report: line offset, period
+ * number and move line cube. Each computation has its own state, so that several reports can be
+ * computed at the same time.
+ */
+public class AccountingReportComputation {
+
+  protected final Long accountingReportId;
+  protected final AtomicInteger lineOffset = new AtomicInteger();
+  protected final AtomicInteger periodNumber = new AtomicInteger();
+  protected AccountingReportMoveLineCube moveLineCube;
+
+  public AccountingReportComputation(Long accountingReportId) {
+    this.accountingReportId = accountingReportId;
+  }
+
+  public Long getAccountingReportId() {
+    return accountingReportId;
+  }
+
+  public void incrementLineOffset() {
+    lineOffset.incrementAndGet();
+  }
+
+  public int getLineOffset() {
+    return lineOffset.get();
+  }
+
+  public void incrementPeriodNumber() {
+    periodNumber.incrementAndGet();
+  }
+
+  public int getPeriodNumber() {
+    return periodNumber.get();
+  }
+
+  /** Get the move line cube of the report, loading it on first use. */
+  public synchronized AccountingReportMoveLineCube getMoveLineCube(
+      Supplier<AccountingReportMoveLineCube> loader) {
+    if (moveLineCube == null) {
+      moveLineCube = loader.get();
+    }
+    return moveLineCube;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.AccountingReport;
+import com.google.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Computations of custom accounting reports in progress. A computation is bound to the thread
+ * running it, from {@link #start} to {@link #end}, so that concurrent computations of the same
+ * report each keep their own state.
+ */
+@Singleton
+public class AccountingReportComputationRegistry {
+
+  protected final ThreadLocal<Deque<AccountingReportComputation>> computationStack =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  public AccountingReportComputation start(AccountingReport accountingReport) {
+    AccountingReportComputation computation =
+        new AccountingReportComputation(accountingReport.getId());
+    computationStack.get().push(computation);
+    return computation;
+  }
+
+  /**
+   * @return the computation of the report in progress in the current thread, or null if there is
+   *     none
+   */
+  public AccountingReportComputation get(AccountingReport accountingReport) {
+    for (AccountingReportComputation computation : computationStack.get()) {
+      if (Objects.equals(computation.getAccountingReportId(), accountingReport.getId())) {
+        return computation;
+      }
+    }
+    return null;
+  }
+
+  public void end(AccountingReport accountingReport, AccountingReportComputation computation) {
+    Deque<AccountingReportComputation> computations = computationStack.get();
+    computations.remove(computation);
+    if (computations.isEmpty()) {
+      computationStack.remove();
+    }
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Debits, credits and analytic amounts of the move lines of a custom accounting report, aggregated
+ * once by account and date, and by analytic account for the analytic amounts.
+ *
+ * <p>Sums are kept as running totals sorted by date, so the value of a cell is computed from the
+ * accounts it selects without reading the move lines again. Once loaded, the cube is only read,
+ * and the values of several cells can be computed in parallel.
+ */
+public class AccountingReportMoveLineCube {
+
+  protected final Map<Long, AccountNode> accountMap = new HashMap<>();
+  protected final Map<CellSpec, BigDecimal> valueMap = new ConcurrentHashMap<>();
+  protected final Map<String, Set<Long>> analyticAccountCodeMap = new HashMap<>();
+  protected boolean analyticLoaded;
+
+  public void addAccount(Long accountId, String code, Long accountTypeId) {
+    AccountNode account = getAccount(accountId);
+    account.code = code;
+    account.accountTypeId = accountTypeId;
+  }
+
+  public void addBalance(Long accountId, LocalDate date, BigDecimal debit, BigDecimal credit) {
+    AccountNode account = getAccount(accountId);
+    account.debitSeries.add(date, debit);
+    account.creditSeries.add(date, credit);
+  }
+
+  public void addAnalyticAmount(
+      Long accountId, LocalDate date, Long analyticAccountId, boolean isDebit, BigDecimal amount) {
+    getAccount(accountId)
+        .analyticSeriesMap
+        .computeIfAbsent(analyticAccountId, key -> new Series[] {new Series(), new Series()})[
+            isDebit ? 1 : 0]
+        .add(date, amount);
+  }
+
+  public Set<Long> getAccountIdSet() {
+    return accountMap.keySet();
+  }
+
+  public boolean isAnalyticLoaded() {
+    return analyticLoaded;
+  }
+
+  /** To be called once the amounts are loaded, before computing any value. */
+  public void freeze(boolean analyticLoaded) {
+    this.analyticLoaded = analyticLoaded;
+    accountMap.values().forEach(AccountNode::freeze);
+  }
+
+  /** Get the ids of the analytic accounts matching a code pattern, loaded once per pattern. */
+  public Set<Long> getAnalyticAccountIdSet(String code, Function<String, Set<Long>> loader) {
+    return analyticAccountCodeMap.computeIfAbsent(code, loader);
+  }
+
+  public BigDecimal getValue(CellSpec cellSpec) {
+    BigDecimal value = valueMap.get(cellSpec);
+    if (value == null) {
+      value = computeValue(cellSpec);
+      valueMap.putIfAbsent(cellSpec, value);
+    }
+    return value;
+  }
+
+  /** Compute the values of the given cells in parallel, they are then read from the cube. */
+  public void computeValues(Collection<CellSpec> cellSpecs) {
+    new HashSet<>(cellSpecs).parallelStream().forEach(this::getValue);
+  }
+
+  protected BigDecimal computeValue(CellSpec cellSpec) {
+    if (cellSpec.noMoveLine) {
+      return BigDecimal.ZERO;
+    }
+
+    BigDecimal value = BigDecimal.ZERO;
+    for (AccountNode account : accountMap.values()) {
+      if (cellSpec.matches(account)) {
+        value = value.add(account.getAmount(cellSpec));
+      }
+    }
+    return cellSpec.negate ? value.negate() : value;
+  }
+
+  protected AccountNode getAccount(Long accountId) {
+    return accountMap.computeIfAbsent(accountId, AccountNode::new);
+  }
+
+  /**
+   * Filters and result of a cell. Sets left null are not filtered on, and a cell without move line
+   * has a zero value.
+   */
+  public static class CellSpec {
+    protected final Set<Long> accountIdSet;
+    protected final Set<Long> accountTypeIdSet;
+    protected final List<String> accountCodeFilterList;
+    protected final LocalDate dateFrom;
+    protected final LocalDate dateTo;
+    protected final int resultSelect;
+    protected final boolean negate;
+    protected final boolean analytic;
+    protected final Set<Long> analyticAccountIdSet;
+    protected final boolean noMoveLine;
+
+    protected List<List<Pattern>> accountCodePatternList;
+
+    public CellSpec(
+        Set<Long> accountIdSet,
+        Set<Long> accountTypeIdSet,
+        List<String> accountCodeFilterList,
+        LocalDate dateFrom,
+        LocalDate dateTo,
+        int resultSelect,
+        boolean negate,
+        boolean analytic,
+        Set<Long> analyticAccountIdSet,
+        boolean noMoveLine) {
+      this.accountIdSet = accountIdSet;
+      this.accountTypeIdSet = accountTypeIdSet;
+      this.accountCodeFilterList = accountCodeFilterList;
+      this.dateFrom = dateFrom;
+      this.dateTo = dateTo;
+      this.resultSelect = resultSelect;
+      this.negate = negate;
+      this.analytic = analytic;
+      this.analyticAccountIdSet = analyticAccountIdSet;
+      this.noMoveLine = noMoveLine;
+    }
+
+    protected boolean matches(AccountNode account) {
+      if (accountIdSet != null && !accountIdSet.contains(account.id)) {
+        return false;
+      }
+      if (accountTypeIdSet != null && !accountTypeIdSet.contains(account.accountTypeId)) {
+        return false;
+      }
+      for (List<Pattern> patternList : getAccountCodePatternList()) {
+        if (account.code == null
+            || patternList.stream().noneMatch(it -> it.matcher(account.code).matches())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Each account filter is a comma separated list of LIKE patterns. */
+    protected synchronized List<List<Pattern>> getAccountCodePatternList() {
+      if (accountCodePatternList == null) {
+        accountCodePatternList =
+            accountCodeFilterList.stream()
+                .map(
+                    filter ->
+                        Arrays.stream(filter.split(","))
+                            .map(CellSpec::toPattern)
+                            .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+      }
+      return accountCodePatternList;
+    }
+
+    protected static Pattern toPattern(String likePattern) {
+      StringBuilder regex = new StringBuilder();
+      StringBuilder literal = new StringBuilder();
+      for (char c : likePattern.toCharArray()) {
+        if (c == '%' || c == '_') {
+          regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+          literal.setLength(0);
+        } else {
+          literal.append(c);
+        }
+      }
+      regex.append(Pattern.quote(literal.toString()));
+      return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CellSpec)) {
+        return false;
+      }
+      CellSpec other = (CellSpec) o;
+      return resultSelect == other.resultSelect
+          && negate == other.negate
+          && analytic == other.analytic
+          && noMoveLine == other.noMoveLine
+          && Objects.equals(accountIdSet, other.accountIdSet)
+          && Objects.equals(accountTypeIdSet, other.accountTypeIdSet)
+          && Objects.equals(accountCodeFilterList, other.accountCodeFilterList)
+          && Objects.equals(dateFrom, other.dateFrom)
+          && Objects.equals(dateTo, other.dateTo)
+          && Objects.equals(analyticAccountIdSet, other.analyticAccountIdSet);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          accountIdSet,
+          accountTypeIdSet,
+          accountCodeFilterList,
+          dateFrom,
+          dateTo,
+          resultSelect,
+          negate,
+          analytic,
+          analyticAccountIdSet,
+          noMoveLine);
+    }
+  }
+
+  protected static class AccountNode {
+    protected final Long id;
+    protected String code;
+    protected Long accountTypeId;
+    protected final Series debitSeries = new Series();
+    protected final Series creditSeries = new Series();
+    protected final Map<Long, Series[]> analyticSeriesMap = new HashMap<>();
+
+    protected AccountNode(Long id) {
+      this.id = id;
+    }
+
+    protected void freeze() {
+      debitSeries.freeze();
+      creditSeries.freeze();
+      analyticSeriesMap.values().forEach(series -> Arrays.stream(series).forEach(Series::freeze));
+    }
+
+    protected BigDecimal getAmount(CellSpec cellSpec) {
+      BigDecimal debit = BigDecimal.ZERO;
+      BigDecimal credit = BigDecimal.ZERO;
+
+      if (cellSpec.analytic) {
+        for (Long analyticAccountId : cellSpec.analyticAccountIdSet) {
+          Series[] series = analyticSeriesMap.get(analyticAccountId);
+          if (series != null) {
+            debit = debit.add(series[1].sum(cellSpec.dateFrom, cellSpec.dateTo));
+            credit = credit.add(series[0].sum(cellSpec.dateFrom, cellSpec.dateTo));
+          }
+        }
+      } else {
+        debit = debitSeries.sum(cellSpec.dateFrom, cellSpec.dateTo);
+        credit = creditSeries.sum(cellSpec.dateFrom, cellSpec.dateTo);
+      }
+
+      switch (cellSpec.resultSelect) {
+        case AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT:
+          return debit.subtract(credit);
+        case AccountingReportConfigLineRepository.RESULT_DEBIT:
+          return debit;
+        case AccountingReportConfigLineRepository.RESULT_CREDIT:
+          return credit;
+        default:
+          return BigDecimal.ZERO;
+      }
+    }
+  }
+
+  /** Amounts by date, summed over a date range with running totals. */
+  protected static class Series {
+    protected BigDecimal noDateAmount = BigDecimal.ZERO;
+    protected TreeMap<LocalDate, BigDecimal> amountMap = new TreeMap<>();
+    protected LocalDate[] dates = new LocalDate[0];
+    protected BigDecimal[] runningTotals = new BigDecimal[0];
+
+    protected void add(LocalDate date, BigDecimal amount) {
+      if (amount == null) {
+        return;
+      }
+      if (date == null) {
+        noDateAmount = noDateAmount.add(amount);
+      } else {
+        amountMap.merge(date, amount, BigDecimal::add);
+      }
+    }
+
+    protected void freeze() {
+      if (amountMap.isEmpty()) {
+        return;
+      }
+      dates = amountMap.keySet().toArray(new LocalDate[0]);
+      runningTotals = new BigDecimal[dates.length];
+      BigDecimal total = BigDecimal.ZERO;
+      for (int i = 0; i < dates.length; i++) {
+        total = total.add(amountMap.get(dates[i]));
+        runningTotals[i] = total;
+      }
+      amountMap = new TreeMap<>();
+    }
+
+    /**
+     * Sum the amounts dated in the range, bounds included, and the amounts without date.
+     *
+     * @param dateFrom the start of the range, or null for no start
+     * @param dateTo the end of the range, or null for no end
+     */
+    protected BigDecimal sum(LocalDate dateFrom, LocalDate dateTo) {
+      int start = dateFrom == null ? 0 : countUntil(dateFrom.minusDays(1));
+      int end = dateTo == null ? dates.length : countUntil(dateTo);
+
+      BigDecimal sum = noDateAmount;
+      if (end > start) {
+        sum = sum.add(runningTotals[end - 1]);
+        if (start > 0) {
+          sum = sum.subtract(runningTotals[start - 1]);
+        }
+      }
+      return sum;
+    }
+
+    /** @return the count of dates until the given date, included */
+    protected int countUntil(LocalDate date) {
+      int index = Arrays.binarySearch(dates, date);
+      return index >= 0 ? index + 1 : -index - 1;
+    }
+  }
+}
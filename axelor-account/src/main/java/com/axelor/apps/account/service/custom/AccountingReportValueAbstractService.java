@@ -53,17 +53,20 @@ public abstract class AccountingReportValueAbstractService {
   protected AccountingReportValueRepository accountingReportValueRepo;
   protected AnalyticAccountRepository analyticAccountRepo;
   protected DateService dateService;
+  protected AccountingReportComputationRegistry computationRegistry;
 
   @Inject
   public AccountingReportValueAbstractService(
       AccountRepository accountRepo,
       AccountingReportValueRepository accountingReportValueRepo,
       AnalyticAccountRepository analyticAccountRepo,
-      DateService dateService) {
+      DateService dateService,
+      AccountingReportComputationRegistry computationRegistry) {
     this.accountRepo = accountRepo;
     this.accountingReportValueRepo = accountingReportValueRepo;
     this.analyticAccountRepo = analyticAccountRepo;
     this.dateService = dateService;
+    this.computationRegistry = computationRegistry;
   }
 
   protected void addNullValue(
@@ -103,13 +106,14 @@ public abstract class AccountingReportValueAbstractService {
     int groupNumber = groupColumn == null ? 0 : groupColumn.getSequence();
     int columnNumber = column.getSequence();
     int lineNumber = line.getSequence();
+    AccountingReportComputation computation = computationRegistry.get(accountingReport);
 
     AccountingReportValue accountingReportValue =
         new AccountingReportValue(
             groupNumber,
             columnNumber,
-            lineNumber + AccountingReportValueServiceImpl.getLineOffset(),
-            AccountingReportValueServiceImpl.getPeriodNumber(),
+            lineNumber + (computation != null ? computation.getLineOffset() : 0),
+            computation != null ? computation.getPeriodNumber() : 0,
             analyticCounter,
             this.getStyleSelect(groupColumn, column, line),
             groupColumn == null
@@ -49,8 +49,14 @@ public class AccountingReportValueCustomRuleServiceImpl extends AccountingReport
       AccountRepository accountRepo,
       AccountingReportValueRepository accountingReportValueRepo,
       AnalyticAccountRepository analyticAccountRepo,
-      DateService dateService) {
-    super(accountRepo, accountingReportValueRepo, analyticAccountRepo, dateService);
+      DateService dateService,
+      AccountingReportComputationRegistry computationRegistry) {
+    super(
+        accountRepo,
+        accountingReportValueRepo,
+        analyticAccountRepo,
+        dateService,
+        computationRegistry);
   }
 
   @Override
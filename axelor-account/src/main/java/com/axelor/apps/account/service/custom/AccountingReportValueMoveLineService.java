@@ -25,7 +25,9 @@ import com.axelor.apps.account.db.AccountingReportValue;
 import com.axelor.apps.account.db.AnalyticAccount;
 import com.axelor.apps.base.AxelorException;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
 
 public interface AccountingReportValueMoveLineService {
   void createValueFromMoveLines(
@@ -42,4 +44,17 @@ public interface AccountingReportValueMoveLineService {
       LocalDate endDate,
       int analyticCounter)
       throws AxelorException;
+
+  /**
+   * Compute in parallel, from the move line cube of the report, the values of the given (column,
+   * line) cells, so that they are read from the cube when the cells are created.
+   */
+  void computeValues(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      List<Pair<AccountingReportConfigLine, AccountingReportConfigLine>> cellList,
+      Account groupAccount,
+      AnalyticAccount configAnalyticAccount,
+      LocalDate startDate,
+      LocalDate endDate);
 }
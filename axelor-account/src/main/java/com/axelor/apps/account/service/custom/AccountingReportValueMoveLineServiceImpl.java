@@ -43,6 +43,7 @@ import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -61,11 +62,15 @@ import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.persistence.TypedQuery;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 
 public class AccountingReportValueMoveLineServiceImpl extends AccountingReportValueAbstractService
     implements AccountingReportValueMoveLineService {
+  protected static final int ACCOUNT_ID_PAGE_SIZE = 1000;
+
   protected MoveLineRepository moveLineRepo;
   protected MoveToolService moveToolService;
   protected Set<AnalyticAccount> groupColumnAnalyticAccountSet;
@@ -79,8 +84,14 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       AnalyticAccountRepository analyticAccountRepo,
       MoveLineRepository moveLineRepo,
       DateService dateService,
-      MoveToolService moveToolService) {
-    super(accountRepository, accountingReportValueRepo, analyticAccountRepo, dateService);
+      MoveToolService moveToolService,
+      AccountingReportComputationRegistry computationRegistry) {
+    super(
+        accountRepository,
+        accountingReportValueRepo,
+        analyticAccountRepo,
+        dateService,
+        computationRegistry);
     this.moveLineRepo = moveLineRepo;
     this.moveToolService = moveToolService;
   }
@@ -106,21 +117,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         && line.getDetailBySelect() == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT) {
       int counter = 1;
 
-      Set<Account> detailByAccountSet = new HashSet<>(line.getAccountSet());
-
-      if (CollectionUtils.isNotEmpty(line.getAccountTypeSet())) {
-        detailByAccountSet =
-            this.mergeWithAccountTypes(detailByAccountSet, line.getAccountTypeSet());
-      }
-
-      if (StringUtils.notEmpty(line.getAccountCode())) {
-        detailByAccountSet = this.mergeWithAccountCode(detailByAccountSet, line.getAccountCode());
-      }
-
-      detailByAccountSet =
-          this.sortSet(detailByAccountSet, Comparator.comparing(Account::getLabel));
-
-      for (Account account : detailByAccountSet) {
+      for (Account account : this.getDetailByAccountSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -161,24 +158,14 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             analyticCounter);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
+        this.incrementLineOffset(accountingReport);
       }
     } else if (accountingReport.getDisplayDetails()
         && line.getDetailBySelect()
             == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT_TYPE) {
       int counter = 1;
 
-      Set<AccountType> detailByAccountTypeSet = new HashSet<>(line.getAccountTypeSet());
-
-      if (CollectionUtils.isNotEmpty(line.getAccountSet())) {
-        detailByAccountTypeSet =
-            this.mergeWithAccounts(detailByAccountTypeSet, line.getAccountSet());
-      }
-
-      detailByAccountTypeSet =
-          this.sortSet(detailByAccountTypeSet, Comparator.comparing(AccountType::getName));
-
-      for (AccountType accountType : detailByAccountTypeSet) {
+      for (AccountType accountType : this.getDetailByAccountTypeSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -219,17 +206,14 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             analyticCounter);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
+        this.incrementLineOffset(accountingReport);
       }
     } else if (accountingReport.getDisplayDetails()
         && line.getDetailBySelect()
             == AccountingReportConfigLineRepository.DETAIL_BY_ANALYTIC_ACCOUNT) {
       int counter = 1;
-      Set<AnalyticAccount> sortedAnalyticAccountSet =
-          this.sortSet(
-              line.getAnalyticAccountSet(), Comparator.comparing(AnalyticAccount::getFullName));
 
-      for (AnalyticAccount analyticAccount : sortedAnalyticAccountSet) {
+      for (AnalyticAccount analyticAccount : this.getDetailByAnalyticAccountSet(line)) {
         String lineCode = String.format("%s_%d", line.getCode(), counter++);
 
         if (!valuesMapByLine.containsKey(lineCode)) {
@@ -270,7 +254,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
             analyticCounter);
 
         JPA.clear();
-        AccountingReportValueServiceImpl.incrementLineOffset();
+        this.incrementLineOffset(accountingReport);
       }
     } else {
       this.mergeSetsAndCreateValueFromMoveLines(
@@ -301,6 +285,43 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     return sortedSet;
   }
 
+  protected Set<Account> getDetailByAccountSet(AccountingReportConfigLine line) {
+    Set<Account> detailByAccountSet = new HashSet<>(line.getAccountSet());
+
+    if (CollectionUtils.isNotEmpty(line.getAccountTypeSet())) {
+      detailByAccountSet = this.mergeWithAccountTypes(detailByAccountSet, line.getAccountTypeSet());
+    }
+
+    if (StringUtils.notEmpty(line.getAccountCode())) {
+      detailByAccountSet = this.mergeWithAccountCode(detailByAccountSet, line.getAccountCode());
+    }
+
+    return this.sortSet(detailByAccountSet, Comparator.comparing(Account::getLabel));
+  }
+
+  protected Set<AccountType> getDetailByAccountTypeSet(AccountingReportConfigLine line) {
+    Set<AccountType> detailByAccountTypeSet = new HashSet<>(line.getAccountTypeSet());
+
+    if (CollectionUtils.isNotEmpty(line.getAccountSet())) {
+      detailByAccountTypeSet = this.mergeWithAccounts(detailByAccountTypeSet, line.getAccountSet());
+    }
+
+    return this.sortSet(detailByAccountTypeSet, Comparator.comparing(AccountType::getName));
+  }
+
+  protected Set<AnalyticAccount> getDetailByAnalyticAccountSet(AccountingReportConfigLine line) {
+    return this.sortSet(
+        line.getAnalyticAccountSet(), Comparator.comparing(AnalyticAccount::getFullName));
+  }
+
+  protected void incrementLineOffset(AccountingReport accountingReport) {
+    AccountingReportComputation computation = computationRegistry.get(accountingReport);
+
+    if (computation != null) {
+      computation.incrementLineOffset();
+    }
+  }
+
   protected void mergeSetsAndCreateValueFromMoveLines(
       AccountingReport accountingReport,
       AccountingReportConfigLine groupColumn,
@@ -320,6 +341,46 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       LocalDate endDate,
       int analyticCounter)
       throws AxelorException {
+    Triple<Set<Account>, Set<AccountType>, Set<AnalyticAccount>> cellSets =
+        this.getCellSets(
+            accountingReport,
+            groupColumn,
+            column,
+            line,
+            groupAccount,
+            detailByAccount,
+            detailByAccountType,
+            detailByAnalyticAccount);
+
+    this.createValueFromMoveLine(
+        accountingReport,
+        groupColumn,
+        column,
+        line,
+        valuesMapByColumn,
+        valuesMapByLine,
+        cellSets.getLeft(),
+        cellSets.getMiddle(),
+        cellSets.getRight(),
+        configAnalyticAccount,
+        startDate,
+        endDate,
+        parentTitle,
+        lineTitle,
+        lineCode,
+        analyticCounter);
+  }
+
+  /** @return the account, account type and analytic account sets of a cell */
+  protected Triple<Set<Account>, Set<AccountType>, Set<AnalyticAccount>> getCellSets(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Account groupAccount,
+      Account detailByAccount,
+      AccountType detailByAccountType,
+      AnalyticAccount detailByAnalyticAccount) {
     Set<Account> lineAccountSet = line.getAccountSet();
     Set<AccountType> lineAccountTypeSet = line.getAccountTypeSet();
     Set<AnalyticAccount> lineAnalyticAccountSet = line.getAnalyticAccountSet();
@@ -358,23 +419,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       analyticAccountSet = this.mergeSets(groupColumn.getAnalyticAccountSet(), analyticAccountSet);
     }
 
-    this.createValueFromMoveLine(
-        accountingReport,
-        groupColumn,
-        column,
-        line,
-        valuesMapByColumn,
-        valuesMapByLine,
-        accountSet,
-        accountTypeSet,
-        analyticAccountSet,
-        configAnalyticAccount,
-        startDate,
-        endDate,
-        parentTitle,
-        lineTitle,
-        lineCode,
-        analyticCounter);
+    return Triple.of(accountSet, accountTypeSet, analyticAccountSet);
   }
 
   protected Set<AnalyticAccount> getParentAnalyticAccountSet(AnalyticAccount analyticAccount) {
@@ -496,15 +541,15 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
       int analyticCounter)
       throws AxelorException {
     Set<AnalyticAccount> resultAnalyticAccountSet =
-        this.mergeSets(
-            analyticAccountSet,
-            configAnalyticAccount == null
-                ? null
-                : new HashSet<>(Collections.singletonList(configAnalyticAccount)));
-
-    List<MoveLine> moveLineList =
-        this.getMoveLineQuery(
+        this.getResultAnalyticAccountSet(analyticAccountSet, configAnalyticAccount);
+
+    AccountingReportMoveLineCube moveLineCube = this.getMoveLineCube(accountingReport);
+    AccountingReportMoveLineCube.CellSpec cellSpec =
+        moveLineCube == null
+            ? null
+            : this.getCellSpec(
                 accountingReport,
+                moveLineCube,
                 groupColumn,
                 column,
                 line,
@@ -512,20 +557,38 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
                 accountTypeSet,
                 resultAnalyticAccountSet,
                 startDate,
-                endDate)
-            .fetch();
+                endDate);
 
-    BigDecimal result =
-        this.getResultFromMoveLine(
-            accountingReport,
-            groupColumn,
-            column,
-            line,
-            moveLineList,
-            resultAnalyticAccountSet,
-            startDate,
-            endDate,
-            this.getResultSelect(column, line, groupColumn));
+    BigDecimal result;
+
+    if (cellSpec != null) {
+      result = moveLineCube.getValue(cellSpec);
+    } else {
+      List<MoveLine> moveLineList =
+          this.getMoveLineQuery(
+                  accountingReport,
+                  groupColumn,
+                  column,
+                  line,
+                  accountSet,
+                  accountTypeSet,
+                  resultAnalyticAccountSet,
+                  startDate,
+                  endDate)
+              .fetch();
+
+      result =
+          this.getResultFromMoveLine(
+              accountingReport,
+              groupColumn,
+              column,
+              line,
+              moveLineList,
+              resultAnalyticAccountSet,
+              startDate,
+              endDate,
+              this.getResultSelect(column, line, groupColumn));
+    }
 
     this.createReportValue(
         accountingReport,
@@ -679,22 +742,7 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
 
     this.addDateQueries(queryList, accountingReport);
-
-    if (accountingReport.getJournal() != null) {
-      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
-    }
-
-    if (accountingReport.getPaymentMode() != null) {
-      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
-    }
-
-    if (accountingReport.getCurrency() != null) {
-      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
-    }
-
-    if (accountingReport.getCompany() != null) {
-      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
-    }
+    this.addReportQueries(queryList, accountingReport);
 
     queryList.addAll(
         this.getAccountFilters(
@@ -728,6 +776,24 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
     return String.join(" AND ", queryList);
   }
 
+  protected void addReportQueries(List<String> queryList, AccountingReport accountingReport) {
+    if (accountingReport.getJournal() != null) {
+      queryList.add("(self.move.journal IS NULL OR self.move.journal = :journal)");
+    }
+
+    if (accountingReport.getPaymentMode() != null) {
+      queryList.add("(self.move.paymentMode IS NULL OR self.move.paymentMode = :paymentMode)");
+    }
+
+    if (accountingReport.getCurrency() != null) {
+      queryList.add("(self.move.currency IS NULL OR self.move.currency = :currency)");
+    }
+
+    if (accountingReport.getCompany() != null) {
+      queryList.add("(self.move.company IS NULL OR self.move.company = :company)");
+    }
+  }
+
   protected void addDateQueries(List<String> queryList, AccountingReport accountingReport) {
     if (accountingReport.getDateFrom() != null) {
       queryList.add("(self.date IS NULL OR self.date >= :dateFrom)");
@@ -862,4 +928,300 @@ public class AccountingReportValueMoveLineServiceImpl extends AccountingReportVa
         || columnAnalyticAccountSet.contains(analyticAccount)
         || lineAnalyticAccountSet.contains(analyticAccount);
   }
+
+  protected Set<AnalyticAccount> getResultAnalyticAccountSet(
+      Set<AnalyticAccount> analyticAccountSet, AnalyticAccount configAnalyticAccount) {
+    return this.mergeSets(
+        analyticAccountSet,
+        configAnalyticAccount == null
+            ? null
+            : new HashSet<>(Collections.singletonList(configAnalyticAccount)));
+  }
+
+  @Override
+  public void computeValues(
+      AccountingReport accountingReport,
+      AccountingReportConfigLine groupColumn,
+      List<Pair<AccountingReportConfigLine, AccountingReportConfigLine>> cellList,
+      Account groupAccount,
+      AnalyticAccount configAnalyticAccount,
+      LocalDate startDate,
+      LocalDate endDate) {
+    AccountingReportMoveLineCube moveLineCube = this.getMoveLineCube(accountingReport);
+
+    if (moveLineCube == null) {
+      return;
+    }
+
+    List<AccountingReportMoveLineCube.CellSpec> cellSpecList = new ArrayList<>();
+
+    for (Pair<AccountingReportConfigLine, AccountingReportConfigLine> cell : cellList) {
+      AccountingReportConfigLine column = cell.getLeft();
+      AccountingReportConfigLine line = cell.getRight();
+
+      try {
+        this.checkResultSelects(accountingReport, groupColumn, column, line);
+      } catch (AxelorException e) {
+        // Traced when the value of the cell is created
+        continue;
+      }
+
+      List<Triple<Set<Account>, Set<AccountType>, Set<AnalyticAccount>>> cellSetsList =
+          new ArrayList<>();
+      int detailBySelect =
+          accountingReport.getDisplayDetails()
+              ? line.getDetailBySelect()
+              : AccountingReportConfigLineRepository.DETAIL_BY_NOTHING;
+
+      if (detailBySelect == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT) {
+        for (Account account : this.getDetailByAccountSet(line)) {
+          cellSetsList.add(
+              this.getCellSets(
+                  accountingReport, groupColumn, column, line, groupAccount, account, null, null));
+        }
+      } else if (detailBySelect == AccountingReportConfigLineRepository.DETAIL_BY_ACCOUNT_TYPE) {
+        for (AccountType accountType : this.getDetailByAccountTypeSet(line)) {
+          cellSetsList.add(
+              this.getCellSets(
+                  accountingReport,
+                  groupColumn,
+                  column,
+                  line,
+                  groupAccount,
+                  null,
+                  accountType,
+                  null));
+        }
+      } else if (detailBySelect
+          == AccountingReportConfigLineRepository.DETAIL_BY_ANALYTIC_ACCOUNT) {
+        for (AnalyticAccount analyticAccount : this.getDetailByAnalyticAccountSet(line)) {
+          cellSetsList.add(
+              this.getCellSets(
+                  accountingReport,
+                  groupColumn,
+                  column,
+                  line,
+                  groupAccount,
+                  null,
+                  null,
+                  analyticAccount));
+        }
+      } else {
+        cellSetsList.add(
+            this.getCellSets(
+                accountingReport, groupColumn, column, line, groupAccount, null, null, null));
+      }
+
+      for (Triple<Set<Account>, Set<AccountType>, Set<AnalyticAccount>> cellSets : cellSetsList) {
+        AccountingReportMoveLineCube.CellSpec cellSpec =
+            this.getCellSpec(
+                accountingReport,
+                moveLineCube,
+                groupColumn,
+                column,
+                line,
+                cellSets.getLeft(),
+                cellSets.getMiddle(),
+                this.getResultAnalyticAccountSet(cellSets.getRight(), configAnalyticAccount),
+                startDate,
+                endDate);
+
+        if (cellSpec != null) {
+          cellSpecList.add(cellSpec);
+        }
+      }
+    }
+
+    moveLineCube.computeValues(cellSpecList);
+  }
+
+  /**
+   * Get the filters and the result of a cell, to compute its value from the move line cube. They
+   * are the same as the ones of the move line query of the cell and of {@link #getMoveLineAmount}.
+   *
+   * @return the cell spec, or null if the cell is filtered on several analytic conditions, as the
+   *     cube does not know which move lines the analytic accounts share
+   */
+  protected AccountingReportMoveLineCube.CellSpec getCellSpec(
+      AccountingReport accountingReport,
+      AccountingReportMoveLineCube moveLineCube,
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line,
+      Set<Account> accountSet,
+      Set<AccountType> accountTypeSet,
+      Set<AnalyticAccount> analyticAccountSet,
+      LocalDate startDate,
+      LocalDate endDate) {
+    List<Set<Long>> analyticFilterList = new ArrayList<>();
+    Set<Long> analyticAccountIdSet = this.getIdSet(analyticAccountSet);
+
+    if (!this.areAllAnalyticAccountSetsEmpty(accountingReport, groupColumn, column, line)) {
+      analyticFilterList.add(analyticAccountIdSet);
+    }
+
+    Set<Long> resultAnalyticAccountIdSet = new HashSet<>(analyticAccountIdSet);
+    boolean analytic = CollectionUtils.isNotEmpty(analyticAccountSet);
+
+    for (String analyticAccountCode :
+        Arrays.asList(
+            groupColumn == null ? null : groupColumn.getAnalyticAccountCode(),
+            column.getAnalyticAccountCode(),
+            line.getAnalyticAccountCode())) {
+      if (!Strings.isNullOrEmpty(analyticAccountCode)) {
+        Set<Long> codeAnalyticAccountIdSet =
+            moveLineCube.getAnalyticAccountIdSet(
+                analyticAccountCode,
+                code -> this.getIdSet(this.fetchAnalyticAccountsFromCode(code)));
+        analyticFilterList.add(codeAnalyticAccountIdSet);
+        resultAnalyticAccountIdSet.addAll(codeAnalyticAccountIdSet);
+        analytic = true;
+      }
+    }
+
+    if (analyticFilterList.size() > 1
+        || (analyticFilterList.size() == 1
+            && !analyticFilterList.get(0).equals(resultAnalyticAccountIdSet))) {
+      return null;
+    }
+
+    if (analytic && !moveLineCube.isAnalyticLoaded()) {
+      this.loadAnalyticAmounts(accountingReport, moveLineCube);
+    }
+
+    Pair<LocalDate, LocalDate> dates =
+        this.getDates(accountingReport, groupColumn, column, line, startDate, endDate);
+
+    return new AccountingReportMoveLineCube.CellSpec(
+        this.areAllAccountSetsEmpty(accountingReport, groupColumn, column, line)
+            ? null
+            : this.getIdSet(accountSet),
+        CollectionUtils.isNotEmpty(accountTypeSet) ? this.getIdSet(accountTypeSet) : null,
+        Stream.of(
+                groupColumn == null ? null : groupColumn.getAccountCode(),
+                column.getAccountCode(),
+                line.getAccountCode())
+            .filter(it -> !Strings.isNullOrEmpty(it))
+            .collect(Collectors.toList()),
+        accountingReport.getDateFrom() != null ? dates.getLeft() : null,
+        accountingReport.getDateTo() != null ? dates.getRight() : null,
+        this.getResultSelect(column, line, groupColumn),
+        (groupColumn != null && groupColumn.getNegateValue())
+            || column.getNegateValue()
+            || line.getNegateValue(),
+        analytic,
+        resultAnalyticAccountIdSet,
+        analyticFilterList.size() == 1 && analyticFilterList.get(0).isEmpty());
+  }
+
+  protected <T extends Model> Set<Long> getIdSet(Set<T> set) {
+    return set == null
+        ? new HashSet<>()
+        : set.stream().map(Model::getId).collect(Collectors.toSet());
+  }
+
+  /** @return the move line cube of the report, or null if the report is not being computed */
+  protected AccountingReportMoveLineCube getMoveLineCube(AccountingReport accountingReport) {
+    AccountingReportComputation computation = computationRegistry.get(accountingReport);
+
+    return computation == null
+        ? null
+        : computation.getMoveLineCube(() -> this.loadMoveLineCube(accountingReport));
+  }
+
+  /** Aggregate in one query the debits and credits of the move lines of the report. */
+  protected AccountingReportMoveLineCube loadMoveLineCube(AccountingReport accountingReport) {
+    AccountingReportMoveLineCube moveLineCube = new AccountingReportMoveLineCube();
+
+    TypedQuery<Object[]> balanceQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT self.account.id, self.date, SUM(self.debit), SUM(self.credit) "
+                    + "FROM MoveLine self WHERE "
+                    + this.getMoveLineCubeFilter(accountingReport)
+                    + " GROUP BY self.account.id, self.date",
+                Object[].class);
+    this.bindMoveLineCubeFilter(balanceQuery, accountingReport);
+
+    for (Object[] row : balanceQuery.getResultList()) {
+      moveLineCube.addBalance(
+          (Long) row[0], (LocalDate) row[1], (BigDecimal) row[2], (BigDecimal) row[3]);
+    }
+
+    for (List<Long> accountIdList :
+        Lists.partition(new ArrayList<>(moveLineCube.getAccountIdSet()), ACCOUNT_ID_PAGE_SIZE)) {
+      JPA.em()
+          .createQuery(
+              "SELECT self.id, self.code, accountType.id "
+                  + "FROM Account self LEFT JOIN self.accountType accountType "
+                  + "WHERE self.id IN (:accountIdList)",
+              Object[].class)
+          .setParameter("accountIdList", accountIdList)
+          .getResultList()
+          .forEach(row -> moveLineCube.addAccount((Long) row[0], (String) row[1], (Long) row[2]));
+    }
+
+    moveLineCube.freeze(false);
+    return moveLineCube;
+  }
+
+  /**
+   * Aggregate the analytic amounts of the move lines of the report, on the debit side and on the
+   * credit side of the move lines.
+   */
+  protected void loadAnalyticAmounts(
+      AccountingReport accountingReport, AccountingReportMoveLineCube moveLineCube) {
+    for (boolean isDebit : new boolean[] {true, false}) {
+      TypedQuery<Object[]> analyticQuery =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.account.id, self.date, aml.analyticAccount.id, SUM(aml.amount) "
+                      + "FROM AnalyticMoveLine aml JOIN aml.moveLine self WHERE "
+                      + this.getMoveLineCubeFilter(accountingReport)
+                      + (isDebit ? " AND self.debit > 0" : " AND self.debit <= 0")
+                      + " GROUP BY self.account.id, self.date, aml.analyticAccount.id",
+                  Object[].class);
+      this.bindMoveLineCubeFilter(analyticQuery, accountingReport);
+
+      for (Object[] row : analyticQuery.getResultList()) {
+        moveLineCube.addAnalyticAmount(
+            (Long) row[0], (LocalDate) row[1], (Long) row[2], isDebit, (BigDecimal) row[3]);
+      }
+    }
+
+    moveLineCube.freeze(true);
+  }
+
+  protected String getMoveLineCubeFilter(AccountingReport accountingReport) {
+    List<String> queryList =
+        new ArrayList<>(Collections.singletonList("self.move.statusSelect IN :statusList"));
+
+    this.addReportQueries(queryList, accountingReport);
+
+    return String.join(" AND ", queryList);
+  }
+
+  protected void bindMoveLineCubeFilter(
+      TypedQuery<Object[]> query, AccountingReport accountingReport) {
+    query.setParameter(
+        "statusList",
+        moveToolService.getMoveStatusSelect(
+            accountingReport.getMoveStatusSelect(), accountingReport.getCompany()));
+
+    if (accountingReport.getJournal() != null) {
+      query.setParameter("journal", accountingReport.getJournal());
+    }
+
+    if (accountingReport.getPaymentMode() != null) {
+      query.setParameter("paymentMode", accountingReport.getPaymentMode());
+    }
+
+    if (accountingReport.getCurrency() != null) {
+      query.setParameter("currency", accountingReport.getCurrency());
+    }
+
+    if (accountingReport.getCompany() != null) {
+      query.setParameter("company", accountingReport.getCompany());
+    }
+  }
 }
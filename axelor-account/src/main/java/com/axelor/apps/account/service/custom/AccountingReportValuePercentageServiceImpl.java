@@ -48,8 +48,14 @@ public class AccountingReportValuePercentageServiceImpl extends AccountingReport
       AccountRepository accountRepo,
       AccountingReportValueRepository accountingReportValueRepo,
       AnalyticAccountRepository analyticAccountRepo,
-      DateService dateService) {
-    super(accountRepo, accountingReportValueRepo, analyticAccountRepo, dateService);
+      DateService dateService,
+      AccountingReportComputationRegistry computationRegistry) {
+    super(
+        accountRepo,
+        accountingReportValueRepo,
+        analyticAccountRepo,
+        dateService,
+        computationRegistry);
   }
 
   @Override
@@ -48,6 +48,7 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -61,6 +62,7 @@ import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,8 +74,6 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
   protected AppBaseService appBaseService;
   protected TraceBackRepository traceBackRepository;
 
-  protected static int lineOffset = 0;
-  protected static int periodNumber = 0;
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   @Inject
@@ -86,8 +86,14 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       AppBaseService appBaseService,
       AnalyticAccountRepository analyticAccountRepo,
       DateService dateService,
-      TraceBackRepository traceBackRepository) {
-    super(accountRepo, accountingReportValueRepo, analyticAccountRepo, dateService);
+      TraceBackRepository traceBackRepository,
+      AccountingReportComputationRegistry computationRegistry) {
+    super(
+        accountRepo,
+        accountingReportValueRepo,
+        analyticAccountRepo,
+        dateService,
+        computationRegistry);
     this.accountingReportValueCustomRuleService = accountingReportValueCustomRuleService;
     this.accountingReportValueMoveLineService = accountingReportValueMoveLineService;
     this.accountingReportValuePercentageService = accountingReportValuePercentageService;
@@ -95,22 +101,6 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
     this.traceBackRepository = traceBackRepository;
   }
 
-  public static synchronized void incrementLineOffset() {
-    lineOffset++;
-  }
-
-  public static synchronized int getLineOffset() {
-    return lineOffset;
-  }
-
-  public static synchronized void incrementPeriodNumber() {
-    periodNumber++;
-  }
-
-  public static synchronized int getPeriodNumber() {
-    return periodNumber;
-  }
-
   @Override
   @Transactional
   public void clearReportValues(AccountingReport accountingReport) {
@@ -119,19 +109,26 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
 
   @Override
   public void computeReportValues(AccountingReport accountingReport) throws AxelorException {
-    Set<AnalyticAccount> configAnalyticAccountSet =
-        this.getConfigAnalyticAccountSet(
-            accountingReport.getAccountingReportAnalyticConfigLineList());
+    AccountingReportComputation computation = computationRegistry.start(accountingReport);
 
-    if (CollectionUtils.isEmpty(configAnalyticAccountSet)) {
-      this.computeReportValues(accountingReport, null, 0);
-    } else {
-      int analyticCounter = 0;
+    try {
+      Set<AnalyticAccount> configAnalyticAccountSet =
+          this.getConfigAnalyticAccountSet(
+              accountingReport.getAccountingReportAnalyticConfigLineList());
 
-      for (AnalyticAccount configAnalyticAccount :
-          this.getSortedAnalyticAccountSet(configAnalyticAccountSet)) {
-        this.computeReportValues(accountingReport, configAnalyticAccount, analyticCounter++);
+      if (CollectionUtils.isEmpty(configAnalyticAccountSet)) {
+        this.computeReportValues(accountingReport, computation, null, 0);
+      } else {
+        int analyticCounter = 0;
+
+        for (AnalyticAccount configAnalyticAccount :
+            this.getSortedAnalyticAccountSet(configAnalyticAccountSet)) {
+          this.computeReportValues(
+              accountingReport, computation, configAnalyticAccount, analyticCounter++);
+        }
       }
+    } finally {
+      computationRegistry.end(accountingReport, computation);
     }
   }
 
@@ -197,7 +194,10 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
   }
 
   protected void computeReportValues(
-      AccountingReport accountingReport, AnalyticAccount configAnalyticAccount, int analyticCounter)
+      AccountingReport accountingReport,
+      AccountingReportComputation computation,
+      AnalyticAccount configAnalyticAccount,
+      int analyticCounter)
       throws AxelorException {
     LocalDate startDate = accountingReport.getDateFrom();
     LocalDate endDate = accountingReport.getDateTo();
@@ -210,7 +210,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
     switch (reportType.getComparison()) {
       case AccountingReportTypeRepository.COMPARISON_PREVIOUS_YEAR:
         for (int i = 1; i < accountingReport.getReportType().getNoOfPeriods() + 1; i++) {
-          AccountingReportValueServiceImpl.incrementPeriodNumber();
+          computation.incrementPeriodNumber();
 
           this.computeReportValues(
               accountingReport,
@@ -222,7 +222,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
         break;
       case AccountingReportTypeRepository.COMPARISON_SAME_PERIOD_ON_PREVIOUS_YEAR:
         for (int i = 1; i < accountingReport.getReportType().getNoOfPeriods() + 1; i++) {
-          AccountingReportValueServiceImpl.incrementPeriodNumber();
+          computation.incrementPeriodNumber();
 
           this.computeReportValues(
               accountingReport,
@@ -233,7 +233,7 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
         }
         break;
       case AccountingReportTypeRepository.COMPARISON_OTHER_PERIOD:
-        AccountingReportValueServiceImpl.incrementPeriodNumber();
+        computation.incrementPeriodNumber();
 
         this.computeReportValues(
             accountingReport,
@@ -467,14 +467,21 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
       LocalDate startDate,
       LocalDate endDate,
       int analyticCounter) {
-    for (AccountingReportConfigLine column : columnList) {
-      if (StringUtils.notEmpty(column.getGroupsWithoutColumn()) && groupColumn != null) {
-        List<String> groupsWithoutColumnCodeList =
-            Arrays.asList(column.getGroupsWithoutColumn().split(","));
+    this.computeMoveLineValues(
+        accountingReport,
+        valuesMapByColumn,
+        groupColumn,
+        columnList,
+        lineList,
+        groupAccount,
+        configAnalyticAccount,
+        parentTitle,
+        startDate,
+        endDate);
 
-        if (groupsWithoutColumnCodeList.contains(groupColumn.getCode())) {
-          continue;
-        }
+    for (AccountingReportConfigLine column : columnList) {
+      if (this.isColumnHiddenInGroup(column, groupColumn)) {
+        continue;
       }
 
       String columnCode =
@@ -523,6 +530,78 @@ public class AccountingReportValueServiceImpl extends AccountingReportValueAbstr
     }
   }
 
+  protected boolean isColumnHiddenInGroup(
+      AccountingReportConfigLine column, AccountingReportConfigLine groupColumn) {
+    return StringUtils.notEmpty(column.getGroupsWithoutColumn())
+        && groupColumn != null
+        && Arrays.asList(column.getGroupsWithoutColumn().split(","))
+            .contains(groupColumn.getCode());
+  }
+
+  /**
+   * Compute at once, from the move line cube of the report, the values of the cells of this group
+   * which are not computed yet and only depend on move lines.
+   */
+  protected void computeMoveLineValues(
+      AccountingReport accountingReport,
+      Map<String, Map<String, AccountingReportValue>> valuesMapByColumn,
+      AccountingReportConfigLine groupColumn,
+      List<AccountingReportConfigLine> columnList,
+      List<AccountingReportConfigLine> lineList,
+      Account groupAccount,
+      AnalyticAccount configAnalyticAccount,
+      String parentTitle,
+      LocalDate startDate,
+      LocalDate endDate) {
+    List<Pair<AccountingReportConfigLine, AccountingReportConfigLine>> cellList =
+        new ArrayList<>();
+
+    for (AccountingReportConfigLine column : columnList) {
+      if (this.isColumnHiddenInGroup(column, groupColumn)) {
+        continue;
+      }
+
+      Map<String, AccountingReportValue> columnValueMap =
+          valuesMapByColumn.get(
+              this.getColumnCode(
+                  column.getCode(), parentTitle, groupColumn, configAnalyticAccount));
+
+      for (AccountingReportConfigLine line : lineList) {
+        if ((columnValueMap == null || columnValueMap.get(line.getCode()) == null)
+            && this.isMoveLineValue(groupColumn, column, line)) {
+          cellList.add(Pair.of(column, line));
+        }
+      }
+    }
+
+    if (!cellList.isEmpty()) {
+      accountingReportValueMoveLineService.computeValues(
+          accountingReport,
+          groupColumn,
+          cellList,
+          groupAccount,
+          configAnalyticAccount,
+          startDate,
+          endDate);
+    }
+  }
+
+  /** @return true if the value of the cell is computed from move lines only */
+  protected boolean isMoveLineValue(
+      AccountingReportConfigLine groupColumn,
+      AccountingReportConfigLine column,
+      AccountingReportConfigLine line) {
+    return !(groupColumn != null
+            && groupColumn.getRuleTypeSelect()
+                == AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE
+            && column.getRuleTypeSelect()
+                != AccountingReportConfigLineRepository.RULE_TYPE_PERCENTAGE)
+        && !this.isNotCompute(column, line)
+        && column.getRuleTypeSelect() != AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE
+        && column.getRuleTypeSelect() != AccountingReportConfigLineRepository.RULE_TYPE_PERCENTAGE
+        && line.getRuleTypeSelect() != AccountingReportConfigLineRepository.RULE_TYPE_CUSTOM_RULE;
+  }
+
   protected void createValue(
       AccountingReport accountingReport,
       AccountingReportConfigLine groupColumn,
@@ -429,6 +429,28 @@ public class DebtRecoveryService {
   public boolean debtRecoveryGenerate(Partner partner, Company company, TradingName tradingName)
       throws AxelorException, ClassNotFoundException, InstantiationException,
           IllegalAccessException, IOException, JSONException {
+    return this.debtRecoveryGenerate(partner, company, tradingName, null);
+  }
+
+  /**
+   * Handle the debt recovery process for a partner and company, optionally deferring the
+   * generation of the messages of the new debt recovery level.
+   *
+   * @param partner The partner that has debts to be recovered
+   * @param company The company for which to recover the debts
+   * @param tradingName (optional) A trading name of the company for which to recover the debts
+   * @param deferredMessageIdList (optional) If not null, the ids of the debt recoveries whose
+   *     messages have to be generated are added to this list instead of generating them
+   * @return true if the partner has been reminded
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public boolean debtRecoveryGenerate(
+      Partner partner,
+      Company company,
+      TradingName tradingName,
+      List<Long> deferredMessageIdList)
+      throws AxelorException, ClassNotFoundException, InstantiationException,
+          IllegalAccessException, IOException, JSONException {
     boolean remindedOk = false;
 
     DebtRecovery debtRecovery =
@@ -529,7 +551,11 @@ public class DebtRecoveryService {
                     .bind("relatedToSelectId", Math.toIntExact(debtRecoveryHistory.getId()))
                     .bind("relatedToSelect", DebtRecoveryHistory.class.getCanonicalName())
                     .fetch())) {
-              debtRecoveryActionService.runMessage(debtRecovery);
+              if (deferredMessageIdList != null) {
+                deferredMessageIdList.add(debtRecovery.getId());
+              } else {
+                debtRecoveryActionService.runMessage(debtRecovery);
+              }
             }
           }
         } else {
@@ -0,0 +1,694 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.fecimport;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.FECImport;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.ReconcileGroup;
+import com.axelor.apps.account.db.repo.FECImportRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.app.AppAccountService;
+import com.axelor.apps.account.service.move.MoveSaveControlService;
+import com.axelor.apps.account.service.move.MoveSequenceService;
+import com.axelor.apps.account.service.move.MoveValidateService;
+import com.axelor.apps.account.service.moveline.MoveLineToolService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.ImportHistory;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.repo.CompanyRepository;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.base.db.repo.YearRepository;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.base.service.imports.listener.ImporterListener;
+import com.axelor.common.StringUtils;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.i18n.I18n;
+import com.google.common.base.Throwables;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+/**
+ * FEC import engine for large files, used instead of the generic CSV importer when the bulk import
+ * option of the FEC import is checked.
+ *
+ * <p>The file is read line by line and the lines of a move, which follow each other in a FEC file,
+ * are grouped in memory by journal and move number. A line whose move was imported with a previous
+ * chunk is rejected. Accounts, journals, partners, currencies and periods are resolved from maps
+ * loaded once. The moves are persisted by chunks of lines, each chunk in its own transaction with
+ * JDBC batch inserts, after the controls done when saving a move, and an error only discards the
+ * move or the chunk it occurs in. Only the standard FEC columns are read, the binding file of the
+ * import type is not used.
+ */
+public class FECBulkImporter extends FECImporter {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+  protected static final String COLUMN_JOURNAL_CODE = "JournalCode";
+  protected static final String COLUMN_MOVE_NUMBER = "EcritureNum";
+  protected static final String COLUMN_MOVE_DATE = "EcritureDate";
+  protected static final String COLUMN_ACCOUNT_CODE = "CompteNum";
+  protected static final String COLUMN_PARTNER_SEQ = "CompAuxNum";
+  protected static final String COLUMN_ORIGIN = "PieceRef";
+  protected static final String COLUMN_ORIGIN_DATE = "PieceDate";
+  protected static final String COLUMN_DESCRIPTION = "EcritureLib";
+  protected static final String COLUMN_DEBIT = "Debit";
+  protected static final String COLUMN_CREDIT = "Credit";
+  protected static final String COLUMN_LETTERING_CODE = "EcritureLet";
+  protected static final String COLUMN_LETTERING_DATE = "DateLet";
+  protected static final String COLUMN_VALIDATION_DATE = "ValidDate";
+  protected static final String COLUMN_CURRENCY_AMOUNT = "Montantdevise";
+  protected static final String COLUMN_CURRENCY = "Idevise";
+
+  protected static final List<String> REQUIRED_COLUMNS =
+      Arrays.asList(
+          COLUMN_JOURNAL_CODE,
+          COLUMN_MOVE_NUMBER,
+          COLUMN_MOVE_DATE,
+          COLUMN_ACCOUNT_CODE,
+          COLUMN_DEBIT,
+          COLUMN_CREDIT);
+
+  protected MoveLineToolService moveLineToolService;
+  protected FECImportService fecImportService;
+  protected MoveSaveControlService moveSaveControlService;
+  protected MoveSequenceService moveSequenceService;
+
+  protected Map<String, Integer> columnMap;
+  protected Map<String, Long> accountIdMap;
+  protected Map<String, Long> journalIdMap;
+  protected Map<String, Long> partnerIdMap;
+  protected Map<String, Long> currencyIdMap;
+  protected TreeMap<LocalDate, PeriodRange> periodMap;
+
+  @Inject
+  public FECBulkImporter(
+      MoveValidateService moveValidateService,
+      AppAccountService appAccountService,
+      MoveRepository moveRepository,
+      FECImportRepository fecImportRepository,
+      CompanyRepository companyRepository,
+      MoveLineToolService moveLineToolService,
+      FECImportService fecImportService,
+      MoveSaveControlService moveSaveControlService,
+      MoveSequenceService moveSequenceService) {
+    super(
+        moveValidateService,
+        appAccountService,
+        moveRepository,
+        fecImportRepository,
+        companyRepository);
+    this.moveLineToolService = moveLineToolService;
+    this.fecImportService = fecImportService;
+    this.moveSaveControlService = moveSaveControlService;
+    this.moveSequenceService = moveSequenceService;
+  }
+
+  @Override
+  protected ImportHistory process(String bind, String data, Map<String, Object> importContext)
+      throws IOException {
+
+    ImporterListener listener =
+        new ImporterListener(getConfiguration().getName()) {
+          @Override
+          public void handle(Model bean, Exception e) {
+            Throwable rootCause = Throwables.getRootCause(e);
+            TraceBackService.trace(
+                new AxelorException(
+                    rootCause,
+                    fecImport,
+                    TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+                    e.getMessage()));
+            super.handle(bean, e);
+          }
+        };
+
+    try {
+      company = getImportCompany();
+      loadReferences(company);
+      importFile(getDataFile(data), listener);
+    } catch (AxelorException e) {
+      listener.handle(null, e);
+    }
+    saveFecImport();
+    return addHistory(listener);
+  }
+
+  protected Company getImportCompany() {
+    FECImport fecImport = fecImportRepository.find(this.fecImport.getId());
+    if (fecImport.getCompany() != null) {
+      return fecImport.getCompany();
+    }
+    return fecImportService.getCompany(fecImport.getDataMetaFile());
+  }
+
+  protected File getDataFile(String data) throws AxelorException {
+    File dataFile = new File(data);
+    if (dataFile.isDirectory()) {
+      File[] files = dataFile.listFiles(File::isFile);
+      dataFile = files == null || files.length == 0 ? null : files[0];
+    }
+    if (dataFile == null || !dataFile.exists()) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(BaseExceptionMessage.IMPORTER_2));
+    }
+    return dataFile;
+  }
+
+  /** Load the codes of the records referenced by the lines of the file, with their ids. */
+  protected void loadReferences(Company company) {
+    Long companyId = company.getId();
+    accountIdMap =
+        loadIdMap(
+            "SELECT self.code, self.id FROM Account self WHERE self.company.id = ?1", companyId);
+    journalIdMap =
+        loadIdMap(
+            "SELECT self.code, self.id FROM Journal self WHERE self.company.id = ?1", companyId);
+    partnerIdMap =
+        loadIdMap(
+            "SELECT self.partnerSeq, self.id FROM Partner self WHERE self.partnerSeq IS NOT NULL");
+    currencyIdMap = loadIdMap("SELECT self.code, self.id FROM Currency self");
+
+    periodMap = new TreeMap<>();
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.fromDate, self.toDate, self.id FROM Period self "
+                    + "WHERE self.year.company.id = :companyId "
+                    + "AND self.year.typeSelect = :typeSelect",
+                Object[].class)
+            .setParameter("companyId", companyId)
+            .setParameter("typeSelect", YearRepository.TYPE_FISCAL)
+            .getResultList();
+    for (Object[] result : resultList) {
+      periodMap.put(
+          (LocalDate) result[0], new PeriodRange((LocalDate) result[1], (Long) result[2]));
+    }
+  }
+
+  protected Map<String, Long> loadIdMap(String queryStr, Object... params) {
+    javax.persistence.Query query = JPA.em().createQuery(queryStr);
+    for (int i = 0; i < params.length; i++) {
+      query.setParameter(i + 1, params[i]);
+    }
+
+    Map<String, Long> idMap = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    List<Object[]> resultList = query.getResultList();
+    for (Object[] result : resultList) {
+      idMap.putIfAbsent((String) result[0], (Long) result[1]);
+    }
+    return idMap;
+  }
+
+  /**
+   * Read the file line by line, grouping the lines with the same journal and move number, and
+   * import the moves each time the chunk size is reached. The lines of a move already imported
+   * with a previous chunk are rejected.
+   */
+  protected void importFile(File file, ImporterListener listener)
+      throws IOException, AxelorException {
+    int chunkSize =
+        fecImport.getBulkImportChunkSize() > 0
+            ? fecImport.getBulkImportChunkSize()
+            : DEFAULT_CHUNK_SIZE;
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String header = reader.readLine();
+      if (header == null) {
+        return;
+      }
+      if (header.startsWith("\uFEFF")) {
+        header = header.substring(1);
+      }
+      char separator = header.indexOf('|') >= 0 ? '|' : '\t';
+      readHeader(split(header, separator));
+
+      Map<String, FECMove> chunk = new LinkedHashMap<>();
+      Set<String> importedMoveKeySet = new HashSet<>();
+      int chunkLineCount = 0;
+      int lineNumber = 1;
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] row = split(line, separator);
+        if (getValue(row, COLUMN_MOVE_NUMBER) == null) {
+          listener.imported(1, 0);
+          continue;
+        }
+
+        String moveKey = getMoveKey(row);
+        if (!chunk.containsKey(moveKey) && chunkLineCount >= chunkSize) {
+          importChunk(new ArrayList<>(chunk.values()), chunkSize, listener);
+          importedMoveKeySet.addAll(chunk.keySet());
+          chunk.clear();
+          chunkLineCount = 0;
+        }
+        if (importedMoveKeySet.contains(moveKey)) {
+          listener.handle(
+              null,
+              new AxelorException(
+                  fecImport,
+                  TraceBackRepository.CATEGORY_INCONSISTENCY,
+                  I18n.get(AccountExceptionMessage.IMPORT_FEC_MOVE_LINE_NOT_GROUPED),
+                  lineNumber,
+                  getValue(row, COLUMN_MOVE_NUMBER),
+                  getValue(row, COLUMN_JOURNAL_CODE)));
+          listener.imported(1, 0);
+          continue;
+        }
+        addRow(chunk, moveKey, row, lineNumber);
+        chunkLineCount++;
+      }
+
+      if (!chunk.isEmpty()) {
+        importChunk(new ArrayList<>(chunk.values()), chunkSize, listener);
+      }
+    }
+  }
+
+  protected String getMoveKey(String[] row) {
+    return getValue(row, COLUMN_JOURNAL_CODE) + "|" + getValue(row, COLUMN_MOVE_NUMBER);
+  }
+
+  protected void addRow(Map<String, FECMove> chunk, String moveKey, String[] row, int lineNumber) {
+    FECMove fecMove = chunk.computeIfAbsent(moveKey, key -> new FECMove(key, lineNumber));
+    fecMove.rowList.add(row);
+    fecMove.lastLineNumber = lineNumber;
+  }
+
+  protected void readHeader(String[] header) throws AxelorException {
+    columnMap = new HashMap<>();
+    for (int i = 0; i < header.length; i++) {
+      columnMap.putIfAbsent(header[i].trim(), i);
+    }
+    for (String column : REQUIRED_COLUMNS) {
+      if (!columnMap.containsKey(column)) {
+        throw new AxelorException(
+            fecImport,
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(AccountExceptionMessage.IMPORT_FEC_COLUMN_NOT_FOUND),
+            column);
+      }
+    }
+  }
+
+  protected String[] split(String line, char separator) {
+    List<String> valueList = new ArrayList<>();
+    int start = 0;
+    int index;
+    while ((index = line.indexOf(separator, start)) >= 0) {
+      valueList.add(line.substring(start, index));
+      start = index + 1;
+    }
+    valueList.add(line.substring(start));
+    return valueList.toArray(new String[0]);
+  }
+
+  protected String getValue(String[] row, String column) {
+    Integer index = columnMap.get(column);
+    if (index == null || index >= row.length) {
+      return null;
+    }
+    String value = row[index].trim();
+    return value.isEmpty() ? null : value;
+  }
+
+  protected void importChunk(List<FECMove> chunk, int chunkSize, ImporterListener listener) {
+    int lineCount = chunk.stream().mapToInt(fecMove -> fecMove.rowList.size()).sum();
+    List<Move> moveList;
+
+    try {
+      moveList = persistChunk(chunk, chunkSize, listener);
+    } catch (Exception e) {
+      listener.handle(
+          null,
+          new AxelorException(
+              e,
+              TraceBackRepository.CATEGORY_INCONSISTENCY,
+              I18n.get(AccountExceptionMessage.IMPORT_FEC_LINES_NOT_IMPORTED),
+              chunk.get(0).firstLineNumber,
+              chunk.stream().mapToInt(fecMove -> fecMove.lastLineNumber).max().getAsInt(),
+              e.getMessage()));
+      listener.imported(lineCount, 0);
+      JPA.clear();
+      return;
+    }
+
+    int successCount = 0;
+    List<Integer> moveIdList = new ArrayList<>();
+    for (Move move : moveList) {
+      moveIdList.add(move.getId().intValue());
+      for (MoveLine moveLine : move.getMoveLineList()) {
+        listener.imported(moveLine);
+        successCount++;
+      }
+    }
+    listener.imported(lineCount, successCount);
+    JPA.clear();
+
+    if (fecImport.getValidGeneratedMove() && !moveIdList.isEmpty()) {
+      String errors = moveValidateService.accountingMultiple(moveIdList);
+      if (StringUtils.notEmpty(errors)) {
+        listener.handle(
+            null,
+            new AxelorException(
+                TraceBackRepository.CATEGORY_INCONSISTENCY,
+                I18n.get(AccountExceptionMessage.IMPORT_FEC_MOVES_NOT_VALIDATED),
+                errors));
+      }
+      JPA.clear();
+    }
+  }
+
+  /**
+   * Create and persist the moves of the chunk. The moves are persisted before their lines so that
+   * the inserts of each table follow each other and are sent in JDBC batches.
+   *
+   * @return the persisted moves
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected List<Move> persistChunk(List<FECMove> chunk, int chunkSize, ImporterListener listener)
+      throws AxelorException {
+    EntityManager em = JPA.em();
+    Session session = em.unwrap(Session.class);
+    FlushMode flushMode = session.getHibernateFlushMode();
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+    session.setHibernateFlushMode(FlushMode.COMMIT);
+    session.setJdbcBatchSize(chunkSize);
+
+    try {
+      FECImport fecImport = fecImportRepository.find(this.fecImport.getId());
+      Company company = companyRepository.find(this.company.getId());
+      Map<String, ReconcileGroup> reconcileGroupMap = getReconcileGroupMap(chunk, company);
+
+      List<Move> moveList = new ArrayList<>();
+      for (FECMove fecMove : chunk) {
+        try {
+          Move move = createMove(fecImport, company, fecMove, reconcileGroupMap);
+          moveSaveControlService.checkMoveBeforeSave(move);
+          moveList.add(move);
+        } catch (AxelorException | RuntimeException e) {
+          listener.handle(
+              null,
+              new AxelorException(
+                  e,
+                  TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+                  I18n.get(AccountExceptionMessage.IMPORT_FEC_LINES_NOT_IMPORTED),
+                  fecMove.firstLineNumber,
+                  fecMove.lastLineNumber,
+                  e.getMessage()));
+        }
+      }
+
+      reconcileGroupMap.values().stream().filter(it -> it.getId() == null).forEach(em::persist);
+
+      List<List<MoveLine>> moveLineLists = new ArrayList<>();
+      for (Move move : moveList) {
+        List<MoveLine> moveLineList = new ArrayList<>(move.getMoveLineList());
+        move.getMoveLineList().clear();
+        em.persist(move);
+        if (move.getAccountingDate() == null) {
+          move.setReference(null);
+          moveSequenceService.setDraftSequence(move);
+        }
+        moveLineLists.add(moveLineList);
+      }
+      for (int i = 0; i < moveList.size(); i++) {
+        moveLineLists.get(i).forEach(em::persist);
+        moveList.get(i).getMoveLineList().addAll(moveLineLists.get(i));
+      }
+
+      em.flush();
+      return moveList;
+    } finally {
+      session.setJdbcBatchSize(jdbcBatchSize);
+      session.setHibernateFlushMode(flushMode);
+    }
+  }
+
+  /**
+   * Get the reconcile groups of the lettering codes of the chunk, creating the missing ones as the
+   * binding file of the generic import does.
+   */
+  protected Map<String, ReconcileGroup> getReconcileGroupMap(List<FECMove> chunk, Company company)
+      throws AxelorException {
+    Map<String, LocalDate> letteringDateMap = new HashMap<>();
+    for (FECMove fecMove : chunk) {
+      for (String[] row : fecMove.rowList) {
+        String code = getValue(row, COLUMN_LETTERING_CODE);
+        String letteringDate = getValue(row, COLUMN_LETTERING_DATE);
+        if (code != null && letteringDate != null) {
+          letteringDateMap.put(code, parseDate(letteringDate));
+        }
+      }
+    }
+
+    Map<String, ReconcileGroup> reconcileGroupMap = new HashMap<>();
+    if (letteringDateMap.isEmpty()) {
+      return reconcileGroupMap;
+    }
+
+    JPA.em()
+        .createQuery(
+            "SELECT self FROM ReconcileGroup self WHERE self.code IN :codes",
+            ReconcileGroup.class)
+        .setParameter("codes", letteringDateMap.keySet())
+        .getResultList()
+        .forEach(
+            reconcileGroup ->
+                reconcileGroupMap.putIfAbsent(reconcileGroup.getCode(), reconcileGroup));
+
+    for (Map.Entry<String, LocalDate> entry : letteringDateMap.entrySet()) {
+      ReconcileGroup reconcileGroup =
+          reconcileGroupMap.computeIfAbsent(entry.getKey(), code -> new ReconcileGroup());
+      reconcileGroup.setCode(entry.getKey());
+      reconcileGroup.setLetteringDateTime(entry.getValue().atTime(LocalTime.NOON));
+      reconcileGroup.setCompany(company);
+    }
+    return reconcileGroupMap;
+  }
+
+  protected Move createMove(
+      FECImport fecImport,
+      Company company,
+      FECMove fecMove,
+      Map<String, ReconcileGroup> reconcileGroupMap)
+      throws AxelorException {
+    EntityManager em = JPA.em();
+    String[] firstRow = fecMove.rowList.get(0);
+
+    Move move = new Move();
+    move.setFecImport(fecImport);
+    move.setDescription(fecImport.getMoveDescription());
+    move.setReference(getValue(firstRow, COLUMN_MOVE_NUMBER));
+    move.setOrigin(getValue(firstRow, COLUMN_ORIGIN));
+    move.setAccountingDate(parseDate(getValue(firstRow, COLUMN_VALIDATION_DATE)));
+    move.setStatusSelect(MoveRepository.STATUS_NEW);
+    move.setCompany(company);
+    move.setCompanyCurrency(company.getCurrency());
+
+    LocalDate date = parseDate(getValue(firstRow, COLUMN_MOVE_DATE));
+    move.setDate(date);
+    move.setPeriod(getPeriod(date, company));
+
+    String currencyCode = getValue(firstRow, COLUMN_CURRENCY);
+    if (currencyCode != null) {
+      Long currencyId = currencyIdMap.get(currencyCode);
+      move.setCurrency(currencyId != null ? em.getReference(Currency.class, currencyId) : null);
+      move.setCurrencyCode(currencyCode);
+    }
+
+    String journalCode = getValue(firstRow, COLUMN_JOURNAL_CODE);
+    Long journalId = journalIdMap.get(journalCode);
+    if (journalId == null) {
+      throw new AxelorException(
+          fecImport,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(AccountExceptionMessage.IMPORT_FEC_JOURNAL_NOT_FOUND),
+          journalCode);
+    }
+    Journal journal = em.find(Journal.class, journalId);
+    move.setJournal(journal);
+
+    move.setOriginDate(parseDate(getValue(firstRow, COLUMN_ORIGIN_DATE)));
+    move.setTechnicalOriginSelect(MoveRepository.TECHNICAL_ORIGIN_IMPORT);
+
+    if (fecImport.getImportFECType().getFunctionalOriginSelect() > 0) {
+      move.setFunctionalOriginSelect(fecImport.getImportFECType().getFunctionalOriginSelect());
+    } else {
+      String authorizedFunctionalOriginSelect = journal.getAuthorizedFunctionalOriginSelect();
+      if (StringUtils.notEmpty(authorizedFunctionalOriginSelect)
+          && authorizedFunctionalOriginSelect.split(",").length == 1) {
+        move.setFunctionalOriginSelect(Integer.parseInt(authorizedFunctionalOriginSelect));
+      }
+    }
+
+    int counter = 1;
+    for (String[] row : fecMove.rowList) {
+      createMoveLine(move, row, counter++, reconcileGroupMap);
+    }
+
+    Set<Long> partnerIdSet =
+        move.getMoveLineList().stream()
+            .map(MoveLine::getPartner)
+            .filter(Objects::nonNull)
+            .map(Partner::getId)
+            .collect(Collectors.toCollection(HashSet::new));
+    if (partnerIdSet.size() == 1) {
+      move.setPartner(em.getReference(Partner.class, partnerIdSet.iterator().next()));
+    }
+    return move;
+  }
+
+  protected MoveLine createMoveLine(
+      Move move, String[] row, int counter, Map<String, ReconcileGroup> reconcileGroupMap)
+      throws AxelorException {
+    EntityManager em = JPA.em();
+    MoveLine moveLine = new MoveLine();
+    moveLine.setCounter(counter);
+    moveLine.setDate(parseDate(getValue(row, COLUMN_MOVE_DATE)));
+    moveLine.setDebit(parseAmount(getValue(row, COLUMN_DEBIT)));
+    moveLine.setCredit(parseAmount(getValue(row, COLUMN_CREDIT)));
+    moveLine.setOrigin(getValue(row, COLUMN_ORIGIN));
+    moveLine.setDescription(getValue(row, COLUMN_DESCRIPTION));
+
+    String accountCode = getValue(row, COLUMN_ACCOUNT_CODE);
+    Long accountId = accountIdMap.get(accountCode);
+    if (accountId == null) {
+      throw new AxelorException(
+          fecImport,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(AccountExceptionMessage.IMPORT_FEC_ACCOUNT_NOT_FOUND),
+          accountCode);
+    }
+    moveLine.setAccount(em.getReference(Account.class, accountId));
+
+    Long partnerId = partnerIdMap.get(getValue(row, COLUMN_PARTNER_SEQ));
+    if (partnerId != null) {
+      moveLine.setPartner(em.getReference(Partner.class, partnerId));
+    }
+
+    String letteringCode = getValue(row, COLUMN_LETTERING_CODE);
+    if (letteringCode != null && getValue(row, COLUMN_LETTERING_DATE) != null) {
+      moveLine.setReconcileGroup(reconcileGroupMap.get(letteringCode));
+    }
+
+    move.addMoveLineListItem(moveLine);
+
+    String currencyAmount = getValue(row, COLUMN_CURRENCY_AMOUNT);
+    if (currencyAmount == null) {
+      moveLineToolService.setCurrencyAmount(moveLine);
+    } else {
+      BigDecimal amount = parseAmount(currencyAmount).abs();
+      moveLine.setCurrencyAmount(moveLine.getDebit().signum() > 0 ? amount : amount.negate());
+    }
+    return moveLine;
+  }
+
+  protected Period getPeriod(LocalDate date, Company company) throws AxelorException {
+    Map.Entry<LocalDate, PeriodRange> entry = date == null ? null : periodMap.floorEntry(date);
+    if (entry == null || entry.getValue().toDate.isBefore(date)) {
+      throw new AxelorException(
+          fecImport,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(AccountExceptionMessage.IMPORT_FEC_PERIOD_NOT_FOUND),
+          date,
+          company);
+    }
+    return JPA.em().getReference(Period.class, entry.getValue().id);
+  }
+
+  protected LocalDate parseDate(String date) throws AxelorException {
+    if (date == null) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(date, DateTimeFormatter.BASIC_ISO_DATE);
+    } catch (DateTimeParseException e) {
+      throw new AxelorException(
+          e, fecImport, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
+    }
+  }
+
+  protected BigDecimal parseAmount(String amount) {
+    return amount == null ? BigDecimal.ZERO : new BigDecimal(amount.replace(',', '.'));
+  }
+
+  /** Lines of a move, in the order of the file. */
+  protected static class FECMove {
+    protected final String key;
+    protected final int firstLineNumber;
+    protected int lastLineNumber;
+    protected final List<String[]> rowList = new ArrayList<>();
+
+    protected FECMove(String key, int firstLineNumber) {
+      this.key = key;
+      this.firstLineNumber = firstLineNumber;
+      this.lastLineNumber = firstLineNumber;
+    }
+  }
+
+  protected static class PeriodRange {
+    protected final LocalDate toDate;
+    protected final Long id;
+
+    protected PeriodRange(LocalDate toDate, Long id) {
+      this.toDate = toDate;
+      this.id = id;
+    }
+  }
+}
@@ -53,8 +53,8 @@ public class FECImporter extends Importer {
   protected FECImportRepository fecImportRepository;
   protected CompanyRepository companyRepository;
   private final List<Move> moveList = new ArrayList<>();
-  private FECImport fecImport;
-  private Company company;
+  protected FECImport fecImport;
+  protected Company company;
 
   @Inject
   public FECImporter(
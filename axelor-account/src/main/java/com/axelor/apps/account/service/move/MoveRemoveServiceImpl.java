@@ -27,6 +27,7 @@ import com.axelor.apps.account.db.repo.ReconcileRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
@@ -54,6 +55,8 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
 
   protected AccountCustomerService accountCustomerService;
 
+  protected PartnerBalanceService partnerBalanceService;
+
   @Inject
   public MoveRemoveServiceImpl(
       MoveRepository moveRepo,
@@ -61,13 +64,15 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
       ArchivingToolService archivingToolService,
       ReconcileService reconcileService,
       AccountingSituationService accountingSituationService,
-      AccountCustomerService accountCustomerService) {
+      AccountCustomerService accountCustomerService,
+      PartnerBalanceService partnerBalanceService) {
     this.moveRepo = moveRepo;
     this.moveLineRepo = moveLineRepo;
     this.archivingToolService = archivingToolService;
     this.reconcileService = reconcileService;
     this.accountingSituationService = accountingSituationService;
     this.accountCustomerService = accountCustomerService;
+    this.partnerBalanceService = partnerBalanceService;
   }
 
   @Override
@@ -91,6 +96,7 @@ public class MoveRemoveServiceImpl implements MoveRemoveService {
           I18n.get(AccountExceptionMessage.MOVE_CANCEL_4));
     }
 
+    partnerBalanceService.removeMove(move);
     move.setStatusSelect(MoveRepository.STATUS_CANCELED);
     return move;
   }
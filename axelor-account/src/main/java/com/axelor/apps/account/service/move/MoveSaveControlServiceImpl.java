@@ -0,0 +1,94 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.move;
+
+import com.axelor.apps.account.db.AnalyticMoveLine;
+import com.axelor.apps.account.db.InvoiceTerm;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.invoice.InvoiceTermService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.util.List;
+import org.apache.commons.collections.CollectionUtils;
+
+public class MoveSaveControlServiceImpl implements MoveSaveControlService {
+
+  protected MoveValidateService moveValidateService;
+  protected MoveLineControlService moveLineControlService;
+  protected InvoiceTermService invoiceTermService;
+
+  @Inject
+  public MoveSaveControlServiceImpl(
+      MoveValidateService moveValidateService,
+      MoveLineControlService moveLineControlService,
+      InvoiceTermService invoiceTermService) {
+    this.moveValidateService = moveValidateService;
+    this.moveLineControlService = moveLineControlService;
+    this.invoiceTermService = invoiceTermService;
+  }
+
+  @Override
+  public void checkMoveBeforeSave(Move move) throws AxelorException {
+    moveValidateService.checkMoveLinesPartner(move);
+    if (move.getStatusSelect() == MoveRepository.STATUS_ACCOUNTED
+        || move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
+        || move.getStatusSelect() == MoveRepository.STATUS_SIMULATED) {
+      moveValidateService.checkPreconditions(move);
+    }
+    if (move.getCurrency() != null) {
+      move.setCurrencyCode(move.getCurrency().getCodeISO());
+    }
+
+    List<MoveLine> moveLineList = move.getMoveLineList();
+    if (moveLineList != null) {
+      for (MoveLine moveLine : moveLineList) {
+        checkMoveLineBeforeSave(moveLine);
+      }
+    }
+  }
+
+  protected void checkMoveLineBeforeSave(MoveLine moveLine) throws AxelorException {
+    moveLineControlService.validateMoveLine(moveLine);
+    List<AnalyticMoveLine> analyticMoveLineList = moveLine.getAnalyticMoveLineList();
+    if (analyticMoveLineList != null) {
+      for (AnalyticMoveLine analyticMoveLine : analyticMoveLineList) {
+        analyticMoveLine.setAccount(moveLine.getAccount());
+        analyticMoveLine.setAccountType(moveLine.getAccount().getAccountType());
+      }
+    }
+    moveLineControlService.controlAccountingAccount(moveLine);
+
+    if (!moveLine.getAccount().getUseForPartnerBalance()
+        && CollectionUtils.isNotEmpty(moveLine.getInvoiceTermList())) {
+      if (moveLine.getInvoiceTermList().stream().allMatch(invoiceTermService::isNotReadonly)
+          && moveLine.getInvoiceTermList().stream().noneMatch(InvoiceTerm::getIsHoldBack)) {
+        moveLine.clearInvoiceTermList();
+      } else {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get(AccountExceptionMessage.MOVE_LINE_INVOICE_TERM_ACCOUNT_CHANGE));
+      }
+    }
+  }
+}
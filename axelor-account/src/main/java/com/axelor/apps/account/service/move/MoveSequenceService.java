@@ -23,11 +23,17 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Sequence;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.i18n.I18n;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MoveSequenceService {
 
@@ -68,4 +74,30 @@ public class MoveSequenceService {
         sequenceService.getSequenceNumber(
             journal.getSequence(), move.getDate(), Move.class, "reference"));
   }
+
+  /**
+   * Reserve at once the numbers of the given moves, before validating them one by one. Only the
+   * gap-tolerant journal sequences are reserved, one round-trip per sequence version.
+   *
+   * @param moveList the moves about to be numbered
+   */
+  public void reserveSequences(List<Move> moveList) {
+    Map<Long, Sequence> sequenceMap = new HashMap<>();
+    Map<Long, List<LocalDate>> dateListMap = new HashMap<>();
+
+    for (Move move : moveList) {
+      Sequence sequence = move.getJournal() != null ? move.getJournal().getSequence() : null;
+      if (sequence == null
+          || move.getDate() == null
+          || !sequenceService.isEmptyOrDraftSequenceNumber(move.getReference())) {
+        continue;
+      }
+      sequenceMap.putIfAbsent(sequence.getId(), sequence);
+      dateListMap.computeIfAbsent(sequence.getId(), key -> new ArrayList<>()).add(move.getDate());
+    }
+
+    dateListMap.forEach(
+        (sequenceId, dateList) ->
+            sequenceService.reserveSequenceNumbers(sequenceMap.get(sequenceId), dateList));
+  }
 }
@@ -39,6 +39,7 @@ import com.axelor.apps.account.db.repo.JournalTypeRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.PeriodServiceAccount;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -63,6 +64,7 @@ import com.axelor.i18n.I18n;
 import com.axelor.meta.MetaStore;
 import com.axelor.meta.schema.views.Selection.Option;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoped;
@@ -73,10 +75,13 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
@@ -104,6 +109,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
   protected MoveControlService moveControlService;
   protected MoveCutOffService moveCutOffService;
   protected MoveLineCheckService moveLineCheckService;
+  protected PartnerBalanceService partnerBalanceService;
 
   @Inject
   public MoveValidateServiceImpl(
@@ -124,7 +130,8 @@ public class MoveValidateServiceImpl implements MoveValidateService {
       PeriodServiceAccount periodServiceAccount,
       MoveControlService moveControlService,
       MoveCutOffService moveCutOffService,
-      MoveLineCheckService moveLineCheckService) {
+      MoveLineCheckService moveLineCheckService,
+      PartnerBalanceService partnerBalanceService) {
     this.moveLineControlService = moveLineControlService;
     this.moveLineToolService = moveLineToolService;
     this.accountConfigService = accountConfigService;
@@ -143,6 +150,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     this.moveControlService = moveControlService;
     this.moveCutOffService = moveCutOffService;
     this.moveLineCheckService = moveLineCheckService;
+    this.partnerBalanceService = partnerBalanceService;
   }
 
   /**
@@ -551,12 +559,20 @@ public class MoveValidateServiceImpl implements MoveValidateService {
 
   @Override
   public void updateValidateStatus(Move move, boolean daybook) throws AxelorException {
+    boolean isValidated =
+        move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
+            || move.getStatusSelect() == MoveRepository.STATUS_ACCOUNTED;
+
     if (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK || !daybook) {
       move.setStatusSelect(MoveRepository.STATUS_ACCOUNTED);
       move.setAccountingDate(appBaseService.getTodayDate(move.getCompany()));
     } else {
       move.setStatusSelect(MoveRepository.STATUS_DAYBOOK);
     }
+
+    if (!isValidated) {
+      partnerBalanceService.addMove(move);
+    }
   }
 
   @Override
@@ -576,6 +592,7 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     this.freezeFieldsOnMoveLines(move);
     moveRepository.save(move);
 
+    partnerBalanceService.recompute(move.getCompany(), partnerList);
     moveCustAccountService.updateCustomerAccount(partnerList, move.getCompany());
   }
 
@@ -648,6 +665,14 @@ public class MoveValidateServiceImpl implements MoveValidateService {
     moveLine.setAdjustingMove(move.getAdjustingMove());
   }
 
+  /**
+   * Validate the given moves one by one, each in its own transaction. The moves are loaded by
+   * chunks together with the accounts, journals, periods and analytic accounts they refer to, the
+   * numbers of the gap-tolerant journal sequences are reserved once per chunk, and the accounting
+   * situations of the partners are updated once at the end.
+   *
+   * @return the references of the moves that could not be validated
+   */
   @Override
   public String accountingMultiple(List<Integer> moveIds) {
     String errors = "";
@@ -655,43 +680,177 @@ public class MoveValidateServiceImpl implements MoveValidateService {
       return errors;
     }
     User user = AuthUtils.getUser();
-    int i = 0;
-    for (Integer moveId : moveIds) {
-      Move move = moveRepository.find(moveId.longValue());
-      try {
-        if (!periodServiceAccount.isAuthorizedToAccountOnPeriod(move, user)) {
-          throw new AxelorException(
-              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-              String.format(
-                  I18n.get(AccountExceptionMessage.ACCOUNT_PERIOD_TEMPORARILY_CLOSED),
-                  move.getReference()));
-        }
-        if (move.getStatusSelect() != MoveRepository.STATUS_ACCOUNTED
-            && move.getStatusSelect() != MoveRepository.STATUS_CANCELED) {
-          accounting(move);
-        }
-      } catch (Exception e) {
-        TraceBackService.trace(e);
-        if (errors.length() > 0) {
-          errors = errors.concat(", ");
-        }
-        errors = errors.concat(move.getReference());
-      } finally {
-        if (++i % jpaLimit == 0) {
-          JPA.clear();
+    Map<Long, Set<Long>> partnerIdMap = new HashMap<>();
+
+    for (List<Integer> moveIdList : Lists.partition(moveIds, jpaLimit)) {
+      List<Move> moveList =
+          preloadMoves(moveIdList.stream().map(Integer::longValue).collect(Collectors.toList()));
+      reserveSequences(moveList);
+
+      for (Move move : moveList) {
+        try {
+          if (!periodServiceAccount.isAuthorizedToAccountOnPeriod(move, user)) {
+            throw new AxelorException(
+                TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+                String.format(
+                    I18n.get(AccountExceptionMessage.ACCOUNT_PERIOD_TEMPORARILY_CLOSED),
+                    move.getReference()));
+          }
+          if (move.getStatusSelect() != MoveRepository.STATUS_ACCOUNTED
+              && move.getStatusSelect() != MoveRepository.STATUS_CANCELED) {
+            accounting(move, false);
+            addPartnerIds(partnerIdMap, move);
+          }
+        } catch (Exception e) {
+          TraceBackService.trace(e);
+          if (errors.length() > 0) {
+            errors = errors.concat(", ");
+          }
+          errors = errors.concat(move.getReference());
         }
       }
+      JPA.clear();
     }
 
+    updateCustomerAccounts(partnerIdMap);
     return errors;
   }
 
+  /**
+   * Validate the moves selected by the query, which must not select the validated moves anymore,
+   * by chunks as {@link #accountingMultiple(List)} does. Stops at the first move that can not be
+   * validated. The accounting situations of the partners are updated after each chunk, so that
+   * they are up to date for the chunks validated before a failure.
+   */
   public void accountingMultiple(Query<Move> moveListQuery) throws AxelorException {
-    Move move;
+    Map<Long, Set<Long>> partnerIdMap = new HashMap<>();
+    List<Move> moveList;
+
+    while (!(moveList = moveListQuery.fetch(jpaLimit)).isEmpty()) {
+      moveList = preloadMoves(moveList.stream().map(Move::getId).collect(Collectors.toList()));
+      reserveSequences(moveList);
 
-    while (!((move = moveListQuery.fetchOne()) == null)) {
-      accounting(move);
+      for (Move move : moveList) {
+        accounting(move, false);
+        addPartnerIds(partnerIdMap, move);
+      }
+      if (JPA.em().getTransaction().isActive()) {
+        JPA.flush();
+      }
       JPA.clear();
+
+      updateCustomerAccounts(partnerIdMap);
+      partnerIdMap.clear();
+    }
+  }
+
+  /**
+   * Load the given moves with their lines, and the records the validation checks read, in a few
+   * queries instead of one per record.
+   *
+   * @return the moves, in the order of the given ids
+   */
+  protected List<Move> preloadMoves(List<Long> moveIdList) {
+    Map<Long, Move> moveMap =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self FROM Move self "
+                    + "LEFT JOIN FETCH self.journal journal "
+                    + "LEFT JOIN FETCH journal.sequence "
+                    + "LEFT JOIN FETCH self.period period "
+                    + "LEFT JOIN FETCH period.year "
+                    + "LEFT JOIN FETCH self.moveLineList "
+                    + "WHERE self.id IN (:moveIdList)",
+                Move.class)
+            .setParameter("moveIdList", moveIdList)
+            .getResultList()
+            .stream()
+            .collect(Collectors.toMap(Move::getId, Function.identity()));
+
+    preload(
+        "SELECT DISTINCT account FROM MoveLine self JOIN self.account account "
+            + "LEFT JOIN FETCH account.accountType "
+            + "WHERE self.move.id IN (:moveIdList)",
+        moveIdList);
+    preload(
+        "SELECT DISTINCT self FROM MoveLine self LEFT JOIN FETCH self.analyticMoveLineList "
+            + "WHERE self.move.id IN (:moveIdList)",
+        moveIdList);
+    preload(
+        "SELECT DISTINCT self FROM MoveLine self LEFT JOIN FETCH self.invoiceTermList "
+            + "WHERE self.move.id IN (:moveIdList)",
+        moveIdList);
+    preload(
+        "SELECT DISTINCT analyticAccount FROM AnalyticMoveLine self "
+            + "JOIN self.analyticAccount analyticAccount "
+            + "WHERE self.moveLine.move.id IN (:moveIdList)",
+        moveIdList);
+    preload(
+        "SELECT DISTINCT analyticJournal FROM AnalyticMoveLine self "
+            + "JOIN self.analyticJournal analyticJournal "
+            + "WHERE self.moveLine.move.id IN (:moveIdList)",
+        moveIdList);
+
+    return moveIdList.stream()
+        .map(moveMap::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  protected void preload(String queryStr, List<Long> moveIdList) {
+    JPA.em().createQuery(queryStr).setParameter("moveIdList", moveIdList).getResultList();
+  }
+
+  /** Reserve the numbers of the moves which will be numbered by their validation. */
+  protected void reserveSequences(List<Move> moveList) {
+    moveSequenceService.reserveSequences(
+        moveList.stream()
+            .filter(
+                move ->
+                    (move.getStatusSelect() == MoveRepository.STATUS_NEW
+                            || move.getStatusSelect() == MoveRepository.STATUS_SIMULATED
+                            || move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK)
+                        && (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
+                            || !isDayBookMode(move)))
+            .collect(Collectors.toList()));
+  }
+
+  protected boolean isDayBookMode(Move move) {
+    AccountConfig accountConfig =
+        move.getCompany() != null ? move.getCompany().getAccountConfig() : null;
+    return accountConfig != null
+        && accountConfig.getAccountingDaybook()
+        && move.getJournal() != null
+        && move.getJournal().getAllowAccountingDaybook();
+  }
+
+  protected void addPartnerIds(Map<Long, Set<Long>> partnerIdMap, Move move) {
+    Set<Long> partnerIdSet =
+        partnerIdMap.computeIfAbsent(move.getCompany().getId(), key -> new HashSet<>());
+    moveCustAccountService.getPartnerOfMove(move).stream()
+        .map(Partner::getId)
+        .forEach(partnerIdSet::add);
+  }
+
+  /** Update the accounting situations of the partners of the validated moves, by company. */
+  protected void updateCustomerAccounts(Map<Long, Set<Long>> partnerIdMap) {
+    for (Map.Entry<Long, Set<Long>> entry : partnerIdMap.entrySet()) {
+      for (List<Long> partnerIdList :
+          Lists.partition(new ArrayList<>(entry.getValue()), jpaLimit)) {
+        try {
+          moveCustAccountService.updateCustomerAccount(
+              partnerRepository
+                  .all()
+                  .filter("self.id IN (:partnerIdList)")
+                  .bind("partnerIdList", partnerIdList)
+                  .fetch(),
+              JPA.find(Company.class, entry.getKey()));
+        } catch (Exception e) {
+          TraceBackService.trace(e);
+        } finally {
+          JPA.clear();
+        }
+      }
     }
   }
 
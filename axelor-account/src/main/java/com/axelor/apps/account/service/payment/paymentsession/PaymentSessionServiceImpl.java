@@ -25,7 +25,6 @@ import com.axelor.apps.account.db.InvoicePayment;
 import com.axelor.apps.account.db.InvoiceTerm;
 import com.axelor.apps.account.db.InvoiceTermPayment;
 import com.axelor.apps.account.db.Journal;
-import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.PaymentMode;
 import com.axelor.apps.account.db.PaymentSession;
 import com.axelor.apps.account.db.repo.AccountTypeRepository;
@@ -41,7 +40,6 @@ import com.axelor.apps.account.service.invoice.InvoiceTermService;
 import com.axelor.apps.account.translation.ITranslation;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.BankDetails;
-import com.axelor.apps.base.db.Blocking;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.BlockingRepository;
@@ -52,7 +50,6 @@ import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
-import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoped;
@@ -75,7 +72,7 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
   protected DateService dateService;
   protected PaymentSessionCancelService paymentSessionCancelService;
   protected PfpService pfpService;
-  protected int jpaLimit = 4;
+  protected int jpaLimit = AbstractBatch.FETCH_LIMIT;
 
   @Inject
   public PaymentSessionServiceImpl(
@@ -240,10 +237,12 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
     if (CollectionUtils.isEmpty(partnerIdList)) {
       partnerIdList.add((long) 0);
     }
+    List<Long> blockedPartnerIdList = this.getBlockedPartnerIdList(paymentSession);
+    String blockingCondition = this.getBlockingCondition(paymentSession, blockedPartnerIdList);
     Query<InvoiceTerm> eligibleInvoiceTermQuery =
         invoiceTermRepository
             .all()
-            .filter(retrieveEligibleTermsQuery(paymentSession.getCompany()))
+            .filter(retrieveEligibleTermsQuery(paymentSession.getCompany()) + blockingCondition)
             .bind("company", paymentSession.getCompany())
             .bind("paymentMode", paymentSession.getPaymentMode())
             .bind("paymentModeInOutSelect", paymentSession.getPaymentMode().getInOutSelect())
@@ -267,6 +266,9 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
             .bind("pfpValidateStatusNoPfp", InvoiceTermRepository.PFP_STATUS_NO_PFP)
             .bind("partnerIds", partnerIdList)
             .bind("accountingMethodSelect", paymentSession.getAccountingMethodSelect())
+            .bind("invoicePaymentStatusPending", InvoicePaymentRepository.STATUS_PENDING)
+            .bind("paymentDate", paymentSession.getPaymentDate())
+            .bind("blockedPartnerIds", blockedPartnerIdList)
             .order("id");
 
     this.filterInvoiceTerms(eligibleInvoiceTermQuery, paymentSession);
@@ -274,8 +276,9 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
 
   protected String retrieveEligibleTermsQuery(Company company) throws AxelorException {
     String generalCondition =
-        "self.moveLine.move.company = :company "
+        "self.company = :company "
             + " AND self.dueDate <= :paymentDatePlusMargin "
+            + " AND self.moveLine.move.company = :company "
             + " AND self.moveLine.move.currency = :currency "
             + " AND self.bankDetails IS NOT NULL "
             + " AND self.moveLine.account.isRetrievedOnPaymentSession = TRUE "
@@ -307,21 +310,70 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
     String paymentHistoryCondition =
         " AND self.isPaid = FALSE"
             + " AND self.amountRemaining > 0"
-            + " AND self.paymentSession IS NULL";
+            + " AND self.paymentSession IS NULL"
+            + " AND NOT EXISTS (SELECT 1 FROM InvoiceTermPayment invoiceTermPayment"
+            + " WHERE invoiceTermPayment.invoiceTerm = self"
+            + " AND invoiceTermPayment.invoicePayment.statusSelect = :invoicePaymentStatusPending)";
     return generalCondition + termsMoveLineCondition + pfpCondition + paymentHistoryCondition;
   }
 
+  /**
+   * Get the partners with a debit blocking on the payment date, only used by direct debit
+   * sessions.
+   */
+  protected List<Long> getBlockedPartnerIdList(PaymentSession paymentSession) {
+    if (paymentSession.getPaymentMode().getTypeSelect() != PaymentModeRepository.TYPE_DD) {
+      return new ArrayList<>();
+    }
+
+    return JPA.em()
+        .createQuery(
+            "SELECT DISTINCT self.partner.id FROM Blocking self "
+                + "WHERE self.blockingSelect = :debitBlocking "
+                + "AND self.blockingToDate >= :paymentDate "
+                + "AND self.partner IS NOT NULL",
+            Long.class)
+        .setParameter("debitBlocking", BlockingRepository.DEBIT_BLOCKING)
+        .setParameter("paymentDate", paymentSession.getPaymentDate())
+        .getResultList();
+  }
+
+  protected String getBlockingCondition(
+      PaymentSession paymentSession, List<Long> blockedPartnerIdList) {
+    if (paymentSession.getPaymentMode().getTypeSelect() != PaymentModeRepository.TYPE_DD) {
+      blockedPartnerIdList.add(0L);
+      return "";
+    }
+
+    String blockingCondition =
+        " AND (self.invoice IS NULL OR self.invoice.debitBlockingOk IS NULL"
+            + " OR self.invoice.debitBlockingOk = FALSE"
+            + " OR self.invoice.debitBlockingToDate < :paymentDate)";
+
+    if (CollectionUtils.isEmpty(blockedPartnerIdList)) {
+      blockedPartnerIdList.add(0L);
+      return blockingCondition;
+    }
+
+    return blockingCondition
+        + " AND (self.invoice IS NULL OR self.invoice.partner.id NOT IN (:blockedPartnerIds))"
+        + " AND (self.moveLine.partner IS NULL"
+        + " OR self.moveLine.partner.id NOT IN (:blockedPartnerIds))"
+        + " AND (self.moveLine.partner IS NOT NULL OR self.moveLine.move.partner IS NULL"
+        + " OR self.moveLine.move.partner.id NOT IN (:blockedPartnerIds))";
+  }
+
+  /**
+   * Select the terms returned by the eligible terms query page by page, each page being saved in
+   * one transaction. The awaiting payment and blocking conditions are part of the query, so every
+   * fetched term leaves the query once selected.
+   */
   public void filterInvoiceTerms(
       Query<InvoiceTerm> eligibleInvoiceTermQuery, PaymentSession paymentSession) {
     List<InvoiceTerm> invoiceTermList;
 
     while (!(invoiceTermList = eligibleInvoiceTermQuery.fetch(jpaLimit)).isEmpty()) {
-      for (InvoiceTerm invoiceTerm : invoiceTermList) {
-        if (this.isNotAwaitingPayment(invoiceTerm)
-            && !this.isBlocking(invoiceTerm, paymentSession)) {
-          this.saveFilledInvoiceTermWithPaymentSession(paymentSession, invoiceTerm);
-        }
-      }
+      this.saveFilledInvoiceTermsWithPaymentSession(paymentSession, invoiceTermList);
       JPA.clear();
       paymentSession = paymentSessionRepository.find(paymentSession.getId());
     }
@@ -346,49 +398,6 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
     return true;
   }
 
-  protected boolean isBlocking(InvoiceTerm invoiceTerm, PaymentSession paymentSession) {
-    if (paymentSession.getPaymentMode().getTypeSelect() != PaymentModeRepository.TYPE_DD) {
-      return false;
-    }
-
-    if (invoiceTerm.getInvoice() != null) {
-      Invoice invoice = invoiceTerm.getInvoice();
-
-      if (invoice.getDebitBlockingOk()
-          && !paymentSession.getPaymentDate().isAfter(invoice.getDebitBlockingToDate())) {
-        return true;
-      }
-
-      if (this.isBlocking(invoice.getPartner(), paymentSession)) {
-        return true;
-      }
-    }
-
-    if (invoiceTerm.getMoveLine() != null) {
-      MoveLine moveLine = invoiceTerm.getMoveLine();
-
-      if (moveLine.getPartner() != null && this.isBlocking(moveLine.getPartner(), paymentSession)) {
-        return true;
-      } else if (moveLine.getMove().getPartner() != null
-          && this.isBlocking(moveLine.getMove().getPartner(), paymentSession)) {
-        return true;
-      }
-    }
-
-    return false;
-  }
-
-  protected boolean isBlocking(Partner partner, PaymentSession paymentSession) {
-    for (Blocking blocking : partner.getBlockingList()) {
-      if (blocking.getBlockingSelect().equals(BlockingRepository.DEBIT_BLOCKING)
-          && !paymentSession.getPaymentDate().isAfter(blocking.getBlockingToDate())) {
-        return true;
-      }
-    }
-
-    return false;
-  }
-
   protected void fillEligibleTerm(PaymentSession paymentSession, InvoiceTerm invoiceTerm) {
     LocalDate nextSessionDate = paymentSession.getNextSessionDate();
     LocalDate paymentDate =
@@ -427,7 +436,7 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
       }
     }
 
-    Beans.get(InvoiceTermService.class).computeAmountPaid(invoiceTerm);
+    invoiceTermService.computeAmountPaid(invoiceTerm);
   }
 
   protected boolean getIsSignedNegative(InvoiceTerm invoiceTerm) {
@@ -492,10 +501,12 @@ public class PaymentSessionServiceImpl implements PaymentSessionService {
   }
 
   @Transactional
-  protected void saveFilledInvoiceTermWithPaymentSession(
-      PaymentSession paymentSession, InvoiceTerm invoiceTerm) {
-    fillEligibleTerm(paymentSession, invoiceTerm);
-    invoiceTermRepository.save(invoiceTerm);
+  protected void saveFilledInvoiceTermsWithPaymentSession(
+      PaymentSession paymentSession, List<InvoiceTerm> invoiceTermList) {
+    for (InvoiceTerm invoiceTerm : invoiceTermList) {
+      fillEligibleTerm(paymentSession, invoiceTerm);
+      invoiceTermRepository.save(invoiceTerm);
+    }
   }
 
   @Override
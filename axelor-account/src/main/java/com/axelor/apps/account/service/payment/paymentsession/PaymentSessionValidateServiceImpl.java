@@ -59,6 +59,7 @@ import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
@@ -67,9 +68,12 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.persistence.TypedQuery;
 import javax.xml.bind.JAXBException;
@@ -98,6 +102,7 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
   protected PaymentModeService paymentModeService;
   protected MoveLineInvoiceTermService moveLineInvoiceTermService;
   protected int counter = 0;
+  protected Map<Long, Move> updatedMoveMap = new LinkedHashMap<>();
 
   @Inject
   public PaymentSessionValidateServiceImpl(
@@ -253,26 +258,19 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
       boolean isGlobal)
       throws AxelorException {
     counter = 0;
-    int offset = 0;
-    List<InvoiceTerm> invoiceTermList;
-    Query<InvoiceTerm> invoiceTermQuery =
-        invoiceTermRepo
-            .all()
-            .filter("self.paymentSession = :paymentSession")
-            .bind("paymentSession", paymentSession)
-            .order("id");
+    updatedMoveMap.clear();
 
-    while (!(invoiceTermList = invoiceTermQuery.fetch(AbstractBatch.FETCH_LIMIT, offset))
-        .isEmpty()) {
+    List<Long> sessionInvoiceTermIdList = this.getInvoiceTermIdList(paymentSession);
+
+    for (List<Long> invoiceTermIdList :
+        Lists.partition(sessionInvoiceTermIdList, AbstractBatch.FETCH_LIMIT)) {
       paymentSession = paymentSessionRepo.find(paymentSession.getId());
 
-      for (InvoiceTerm invoiceTerm : invoiceTermList) {
+      for (InvoiceTerm invoiceTerm : this.getInvoiceTermList(invoiceTermIdList)) {
         if (paymentSession.getStatusSelect() == PaymentSessionRepository.STATUS_AWAITING_PAYMENT
             || this.shouldBeProcessed(invoiceTerm)) {
 
           if (invoiceTerm.getPaymentAmount().compareTo(BigDecimal.ZERO) > 0) {
-            offset++;
-
             this.processInvoiceTerm(
                 paymentSession,
                 invoiceTerm,
@@ -287,10 +285,54 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
         }
       }
 
+      this.saveUpdatedMoves();
       JPA.clear();
     }
   }
 
+  /**
+   * Get the ids of the terms of the session, sorted by partner so that the terms accounted in the
+   * same move are processed one after the other.
+   */
+  protected List<Long> getInvoiceTermIdList(PaymentSession paymentSession) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM InvoiceTerm self "
+                + "WHERE self.paymentSession = :paymentSession "
+                + "ORDER BY self.partner.id, self.id",
+            Long.class)
+        .setParameter("paymentSession", paymentSession)
+        .getResultList();
+  }
+
+  protected List<InvoiceTerm> getInvoiceTermList(List<Long> invoiceTermIdList) {
+    Map<Long, InvoiceTerm> invoiceTermMap =
+        invoiceTermRepo
+            .all()
+            .filter("self.id IN (:ids)")
+            .bind("ids", invoiceTermIdList)
+            .fetch()
+            .stream()
+            .collect(Collectors.toMap(InvoiceTerm::getId, Function.identity()));
+
+    return invoiceTermIdList.stream()
+        .map(invoiceTermMap::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Save the moves which received new lines since the last page of terms, once per move instead
+   * of once per term, as saving a move checks all of its lines.
+   */
+  protected void saveUpdatedMoves() {
+    for (Move move : updatedMoveMap.values()) {
+      moveCutOffService.autoApplyCutOffDates(move);
+      moveRepo.save(move);
+    }
+    updatedMoveMap.clear();
+  }
+
   protected boolean shouldBeProcessed(InvoiceTerm invoiceTerm) {
     return invoiceTerm.getIsSelectedOnPaymentSession()
         && !invoiceTerm.getIsPaid()
@@ -412,6 +454,11 @@ public class PaymentSessionValidateServiceImpl implements PaymentSessionValidate
       this.createFinancialDiscountMoveLine(paymentSession, invoiceTerm, move, out);
     }
 
+    if (move.getId() != null) {
+      updatedMoveMap.put(move.getId(), move);
+      return move;
+    }
+
     moveCutOffService.autoApplyCutOffDates(move);
 
     return moveRepo.save(move);
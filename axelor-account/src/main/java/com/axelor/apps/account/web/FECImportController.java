@@ -20,6 +20,7 @@ package com.axelor.apps.account.web;
 
 import com.axelor.apps.account.db.FECImport;
 import com.axelor.apps.account.db.repo.FECImportRepository;
+import com.axelor.apps.account.service.fecimport.FECBulkImporter;
 import com.axelor.apps.account.service.fecimport.FECImportService;
 import com.axelor.apps.account.service.fecimport.FECImporter;
 import com.axelor.apps.base.db.ImportConfiguration;
@@ -51,7 +52,9 @@ public class FECImportController {
                   new FileInputStream(MetaFiles.getPath(fecImport.getDataMetaFile()).toFile()),
                   "FEC.csv"));
 
-      FECImporter fecImporter = Beans.get(FECImporter.class).addFecImport(fecImport);
+      FECImporter fecImporter =
+          Beans.get(fecImport.getBulkImportOk() ? FECBulkImporter.class : FECImporter.class)
+              .addFecImport(fecImport);
       ImportHistory importHistory = fecImporter.init(importConfig).run();
 
       File readFile = MetaFiles.getPath(importHistory.getLogMetaFile()).toFile();
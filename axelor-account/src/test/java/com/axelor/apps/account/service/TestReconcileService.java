@@ -0,0 +1,141 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountConfig;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.Reconcile;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.TradingName;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestReconcileService {
+
+  private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+  /** Ledger keeping the balance increments instead of updating the database. */
+  private static class RecordingPartnerBalanceService extends PartnerBalanceServiceImpl {
+    private final List<BigDecimal> incrementList = new ArrayList<>();
+
+    RecordingPartnerBalanceService() {
+      super(null);
+    }
+
+    @Override
+    protected void addToBalance(
+        Partner partner, Company company, TradingName tradingName, BigDecimal amount) {
+      if (partner != null && amount.signum() != 0) {
+        incrementList.add(amount);
+      }
+    }
+  }
+
+  private ReconcileServiceImpl reconcileService;
+  private RecordingPartnerBalanceService partnerBalanceService;
+  private AccountConfig accountConfig;
+  private Reconcile reconcile;
+
+  @BeforeEach
+  void prepare() {
+    partnerBalanceService = new RecordingPartnerBalanceService();
+    reconcileService = mock(ReconcileServiceImpl.class, CALLS_REAL_METHODS);
+    reconcileService.partnerBalanceService = partnerBalanceService;
+
+    accountConfig = new AccountConfig();
+    accountConfig.setUsePartnerBalanceLedger(true);
+    Company company = new Company();
+    company.setAccountConfig(accountConfig);
+    Account account = new Account();
+    account.setReconcileOk(true);
+    account.setUseForPartnerBalance(true);
+    Partner partner = new Partner();
+
+    reconcile = new Reconcile();
+    reconcile.setAmount(new BigDecimal(40));
+    reconcile.setDebitMoveLine(createMoveLine(company, account, partner, HUNDRED, null));
+    reconcile.setCreditMoveLine(createMoveLine(company, account, partner, null, HUNDRED));
+  }
+
+  private MoveLine createMoveLine(
+      Company company, Account account, Partner partner, BigDecimal debit, BigDecimal credit) {
+    Move move = new Move();
+    move.setCompany(company);
+    move.setStatusSelect(MoveRepository.STATUS_ACCOUNTED);
+
+    MoveLine moveLine = new MoveLine();
+    moveLine.setMove(move);
+    moveLine.setAccount(account);
+    moveLine.setPartner(partner);
+    if (debit != null) {
+      moveLine.setDebit(debit);
+    }
+    if (credit != null) {
+      moveLine.setCredit(credit);
+    }
+    return moveLine;
+  }
+
+  private void assertIncrements(BigDecimal expected) {
+    Assertions.assertEquals(2, partnerBalanceService.incrementList.size());
+    for (BigDecimal increment : partnerBalanceService.incrementList) {
+      Assertions.assertEquals(0, expected.compareTo(increment));
+    }
+  }
+
+  @Test
+  void reconcileDecreasesTheBalanceByTheReconciledAmount() {
+    reconcileService.updateAmountPaid(reconcile, reconcile.getAmount());
+
+    assertIncrements(new BigDecimal(-40));
+    Assertions.assertEquals(
+        0, reconcile.getDebitMoveLine().getAmountPaid().compareTo(reconcile.getAmount()));
+  }
+
+  @Test
+  void unreconcileRestoresTheBalance() {
+    reconcileService.updateAmountPaid(reconcile, reconcile.getAmount());
+    partnerBalanceService.incrementList.clear();
+
+    reconcileService.updateAmountPaid(reconcile, reconcile.getAmount().negate());
+
+    assertIncrements(new BigDecimal(40));
+    Assertions.assertEquals(0, reconcile.getCreditMoveLine().getAmountPaid().signum());
+  }
+
+  @Test
+  void nothingIsRecordedWhenTheLedgerIsDisabled() {
+    accountConfig.setUsePartnerBalanceLedger(false);
+
+    reconcileService.updateAmountPaid(reconcile, reconcile.getAmount());
+
+    Assertions.assertTrue(partnerBalanceService.incrementList.isEmpty());
+  }
+}
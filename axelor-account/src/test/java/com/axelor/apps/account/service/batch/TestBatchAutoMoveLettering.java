@@ -0,0 +1,166 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.batch;
+
+import com.axelor.apps.account.db.AccountingBatch;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.Reconcile;
+import com.axelor.apps.account.db.repo.AccountingBatchRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestBatchAutoMoveLettering {
+
+  /** Records the reconciled pairs instead of creating reconciles. */
+  private static class TestBatch extends BatchAutoMoveLettering {
+    private final List<Pair<MoveLine, MoveLine>> reconciledPairs = new ArrayList<>();
+    private long comparisons;
+
+    TestBatch() {
+      super(null, null, null, null, null, null, null);
+    }
+
+    @Override
+    protected boolean canBeReconciled(
+        AccountingBatch accountingBatch,
+        int reconcileMethodSelect,
+        MoveLine debitMoveLine,
+        MoveLine creditMoveLine,
+        boolean isBalanced) {
+      comparisons++;
+      return super.canBeReconciled(
+          accountingBatch, reconcileMethodSelect, debitMoveLine, creditMoveLine, isBalanced);
+    }
+
+    @Override
+    protected Reconcile reconcile(
+        AccountingBatch accountingBatch,
+        MoveLine debitMoveLine,
+        MoveLine creditMoveLine,
+        BigDecimal debitTotalRemaining,
+        BigDecimal creditTotalRemaining) {
+      BigDecimal amount =
+          debitMoveLine.getAmountRemaining().min(creditMoveLine.getAmountRemaining());
+      debitMoveLine.setAmountRemaining(debitMoveLine.getAmountRemaining().subtract(amount));
+      creditMoveLine.setAmountRemaining(creditMoveLine.getAmountRemaining().subtract(amount));
+      reconciledPairs.add(Pair.of(debitMoveLine, creditMoveLine));
+
+      Reconcile reconcile = new Reconcile();
+      reconcile.setAmount(amount);
+      return reconcile;
+    }
+  }
+
+  @Test
+  void testReconcileByAmount() throws Exception {
+    MoveLine debit1 = createMoveLine("100.00", true);
+    MoveLine debit2 = createMoveLine("50.00", true);
+    MoveLine debit3 = createMoveLine("100", true);
+    MoveLine credit1 = createMoveLine("100.00", false);
+    MoveLine credit2 = createMoveLine("100.00", false);
+    MoveLine credit3 = createMoveLine("30.00", false);
+
+    TestBatch batch = new TestBatch();
+    Set<MoveLine> moveLineReconciledSet = new HashSet<>();
+    batch.reconcileWithMethod(
+        createAccountingBatch(),
+        Arrays.asList(debit1, debit2, debit3),
+        Arrays.asList(credit1, credit2, credit3),
+        AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_AMOUNT,
+        moveLineReconciledSet);
+
+    Assertions.assertEquals(
+        Arrays.asList(Pair.of(debit1, credit1), Pair.of(debit3, credit2)), batch.reconciledPairs);
+    Assertions.assertEquals(4, moveLineReconciledSet.size());
+  }
+
+  @Test
+  void testReconcileWithBalancedMove() throws Exception {
+    MoveLine debit1 = createMoveLine("100.00", true);
+    MoveLine credit1 = createMoveLine("60.00", false);
+    MoveLine credit2 = createMoveLine("40.00", false);
+    MoveLine debit2 = createMoveLine("20.00", true);
+    MoveLine credit3 = createMoveLine("20.00", false);
+    MoveLine debit3 = createMoveLine("10.00", true);
+
+    TestBatch batch = new TestBatch();
+    Set<MoveLine> moveLineReconciledSet = new HashSet<>();
+    batch.reconcileWithBalancedMove(
+        createAccountingBatch(),
+        Arrays.asList(debit1, credit1, credit2, debit2, credit3, debit3),
+        moveLineReconciledSet);
+
+    Assertions.assertEquals(
+        Arrays.asList(
+            Pair.of(debit1, credit1), Pair.of(debit1, credit2), Pair.of(debit2, credit3)),
+        batch.reconciledPairs);
+    Assertions.assertEquals(5, moveLineReconciledSet.size());
+    Assertions.assertEquals(0, new BigDecimal("10.00").compareTo(debit3.getAmountRemaining()));
+  }
+
+  /**
+   * The debit move lines being indexed by amount, the count of compared pairs must grow linearly
+   * with the count of move lines, where comparing each credit to each debit grows quadratically.
+   */
+  @Test
+  void testComparisonsGrowLinearly() throws Exception {
+    for (int size = 1000; size <= 8000; size *= 2) {
+      List<MoveLine> debitMoveLines = new ArrayList<>();
+      List<MoveLine> creditMoveLines = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        debitMoveLines.add(createMoveLine(String.valueOf(100 + i % 50), true));
+        creditMoveLines.add(createMoveLine(String.valueOf(100 + (i + 7) % 50), false));
+      }
+
+      TestBatch batch = new TestBatch();
+      batch.reconcileWithMethod(
+          createAccountingBatch(),
+          debitMoveLines,
+          creditMoveLines,
+          AccountingBatchRepository.AUTO_MOVE_LETTERING_RECONCILE_BY_AMOUNT,
+          Collections.newSetFromMap(new IdentityHashMap<>()));
+
+      Assertions.assertEquals(size, batch.reconciledPairs.size());
+      Assertions.assertTrue(batch.comparisons <= 2L * size);
+    }
+  }
+
+  private AccountingBatch createAccountingBatch() {
+    AccountingBatch accountingBatch = new AccountingBatch();
+    accountingBatch.setIsPartialReconcile(false);
+    return accountingBatch;
+  }
+
+  private MoveLine createMoveLine(String amount, boolean isDebit) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setDebit(isDebit ? new BigDecimal(amount) : BigDecimal.ZERO);
+    moveLine.setCredit(isDebit ? BigDecimal.ZERO : new BigDecimal(amount));
+    moveLine.setAmountRemaining(new BigDecimal(amount));
+    return moveLine;
+  }
+}
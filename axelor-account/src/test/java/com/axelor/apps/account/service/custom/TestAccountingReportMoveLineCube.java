@@ -0,0 +1,159 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.custom;
+
+import com.axelor.apps.account.db.repo.AccountingReportConfigLineRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestAccountingReportMoveLineCube {
+
+  private static final LocalDate JANUARY = LocalDate.of(2023, 1, 15);
+  private static final LocalDate FEBRUARY = LocalDate.of(2023, 2, 15);
+  private static final LocalDate MARCH = LocalDate.of(2023, 3, 15);
+
+  private AccountingReportMoveLineCube moveLineCube;
+
+  @BeforeEach
+  void prepare() {
+    moveLineCube = new AccountingReportMoveLineCube();
+    moveLineCube.addBalance(1L, JANUARY, new BigDecimal("100"), BigDecimal.ZERO);
+    moveLineCube.addBalance(1L, FEBRUARY, new BigDecimal("50"), new BigDecimal("20"));
+    moveLineCube.addBalance(1L, MARCH, BigDecimal.ZERO, new BigDecimal("10"));
+    moveLineCube.addBalance(1L, null, new BigDecimal("1"), BigDecimal.ZERO);
+    moveLineCube.addBalance(2L, FEBRUARY, new BigDecimal("7"), BigDecimal.ZERO);
+    moveLineCube.addAccount(1L, "411000", 10L);
+    moveLineCube.addAccount(2L, "601000", 20L);
+    moveLineCube.addAnalyticAmount(1L, FEBRUARY, 100L, true, new BigDecimal("30"));
+    moveLineCube.addAnalyticAmount(1L, MARCH, 100L, false, new BigDecimal("4"));
+    moveLineCube.addAnalyticAmount(1L, MARCH, 200L, false, new BigDecimal("6"));
+    moveLineCube.freeze(true);
+  }
+
+  @Test
+  void testDateRangeIncludesBoundsAndLinesWithoutDate() {
+    Assertions.assertEquals(
+        new BigDecimal("138"),
+        moveLineCube.getValue(
+            createCellSpec(
+                null,
+                Collections.emptyList(),
+                JANUARY,
+                FEBRUARY,
+                AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT)));
+    Assertions.assertEquals(
+        new BigDecimal("10"),
+        moveLineCube.getValue(
+            createCellSpec(
+                null,
+                Collections.emptyList(),
+                FEBRUARY.plusDays(1),
+                null,
+                AccountingReportConfigLineRepository.RESULT_CREDIT)));
+  }
+
+  @Test
+  void testAccountFilters() {
+    Assertions.assertEquals(
+        new BigDecimal("7"),
+        moveLineCube.getValue(
+            createCellSpec(
+                null,
+                Collections.singletonList("60%,70%"),
+                null,
+                null,
+                AccountingReportConfigLineRepository.RESULT_DEBIT)));
+    Assertions.assertEquals(
+        BigDecimal.ZERO,
+        moveLineCube.getValue(
+            createCellSpec(
+                Collections.emptySet(),
+                Collections.emptyList(),
+                null,
+                null,
+                AccountingReportConfigLineRepository.RESULT_DEBIT)));
+  }
+
+  @Test
+  void testAnalyticAmountsAndNegation() {
+    AccountingReportMoveLineCube.CellSpec cellSpec =
+        new AccountingReportMoveLineCube.CellSpec(
+            null,
+            null,
+            Collections.emptyList(),
+            null,
+            null,
+            AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT,
+            true,
+            true,
+            Set.of(100L),
+            false);
+
+    Assertions.assertEquals(new BigDecimal("-26"), moveLineCube.getValue(cellSpec));
+  }
+
+  @Test
+  void testParallelValuesMatchSequentialValues() {
+    List<AccountingReportMoveLineCube.CellSpec> cellSpecList = new ArrayList<>();
+    for (int day = 0; day < 90; day++) {
+      cellSpecList.add(
+          createCellSpec(
+              null,
+              Collections.emptyList(),
+              JANUARY.plusDays(day),
+              MARCH,
+              AccountingReportConfigLineRepository.RESULT_DEBIT_MINUS_CREDIT));
+    }
+
+    moveLineCube.computeValues(cellSpecList);
+
+    AccountingReportMoveLineCube sequentialCube = new AccountingReportMoveLineCube();
+    sequentialCube.accountMap.putAll(moveLineCube.accountMap);
+    for (AccountingReportMoveLineCube.CellSpec cellSpec : cellSpecList) {
+      Assertions.assertEquals(
+          sequentialCube.getValue(cellSpec), moveLineCube.valueMap.get(cellSpec));
+    }
+  }
+
+  private AccountingReportMoveLineCube.CellSpec createCellSpec(
+      Set<Long> accountIdSet,
+      List<String> accountCodeFilterList,
+      LocalDate dateFrom,
+      LocalDate dateTo,
+      int resultSelect) {
+    return new AccountingReportMoveLineCube.CellSpec(
+        accountIdSet,
+        null,
+        accountCodeFilterList,
+        dateFrom,
+        dateTo,
+        resultSelect,
+        false,
+        false,
+        Collections.emptySet(),
+        false);
+  }
+}
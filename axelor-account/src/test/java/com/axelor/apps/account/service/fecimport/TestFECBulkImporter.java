@@ -0,0 +1,183 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.fecimport;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.FECImport;
+import com.axelor.apps.account.db.repo.FECImportRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.app.AppAccountService;
+import com.axelor.apps.account.service.move.MoveSaveControlService;
+import com.axelor.apps.account.service.move.MoveSequenceService;
+import com.axelor.apps.account.service.move.MoveValidateService;
+import com.axelor.apps.account.service.moveline.MoveLineToolService;
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.CompanyRepository;
+import com.axelor.apps.base.service.imports.listener.ImporterListener;
+import com.axelor.db.Model;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestFECBulkImporter {
+
+  private static final String HEADER =
+      "JournalCode|JournalLib|EcritureNum|EcritureDate|CompteNum|Debit|Credit";
+
+  /** Importer whose chunks are kept instead of being persisted. */
+  private static class ChunkCollector extends FECBulkImporter {
+    private final List<List<FECMove>> chunkList = new ArrayList<>();
+
+    ChunkCollector() {
+      super(
+          mock(MoveValidateService.class),
+          mock(AppAccountService.class),
+          mock(MoveRepository.class),
+          mock(FECImportRepository.class),
+          mock(CompanyRepository.class),
+          mock(MoveLineToolService.class),
+          mock(FECImportService.class),
+          mock(MoveSaveControlService.class),
+          mock(MoveSequenceService.class));
+    }
+
+    @Override
+    protected void importChunk(List<FECMove> chunk, int chunkSize, ImporterListener listener) {
+      chunkList.add(chunk);
+    }
+  }
+
+  /** Listener keeping the errors instead of tracing them. */
+  private static class ErrorCollector extends ImporterListener {
+    private final List<Exception> errorList = new ArrayList<>();
+
+    ErrorCollector() {
+      super("FEC");
+    }
+
+    @Override
+    public void handle(Model bean, Exception e) {
+      errorList.add(e);
+    }
+  }
+
+  @TempDir Path tempDir;
+
+  private ChunkCollector importer;
+  private ErrorCollector listener;
+
+  @BeforeEach
+  void prepare() {
+    importer = new ChunkCollector();
+    importer.fecImport = new FECImport();
+    listener = new ErrorCollector();
+  }
+
+  private File createFile(String... lines) throws Exception {
+    Path path = tempDir.resolve("fec.txt");
+    Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+    return path.toFile();
+  }
+
+  @Test
+  void splitKeepsEmptyValues() {
+    Assertions.assertArrayEquals(new String[] {"VE", "", "1", ""}, importer.split("VE||1|", '|'));
+    Assertions.assertArrayEquals(new String[] {"VE", "1"}, importer.split("VE\t1", '\t'));
+    Assertions.assertArrayEquals(new String[] {""}, importer.split("", '|'));
+  }
+
+  @Test
+  void readHeaderMapsTrimmedColumns() throws AxelorException {
+    importer.readHeader(importer.split(HEADER.replace("CompteNum", " CompteNum "), '|'));
+    String[] row = importer.split("VE|Ventes|12|20230131|411000|100,00|", '|');
+
+    Assertions.assertEquals("411000", importer.getValue(row, FECBulkImporter.COLUMN_ACCOUNT_CODE));
+    Assertions.assertEquals("12", importer.getValue(row, FECBulkImporter.COLUMN_MOVE_NUMBER));
+    Assertions.assertNull(importer.getValue(row, FECBulkImporter.COLUMN_CREDIT));
+    Assertions.assertNull(importer.getValue(row, FECBulkImporter.COLUMN_CURRENCY));
+  }
+
+  @Test
+  void readHeaderRejectsMissingColumn() {
+    assertThrows(
+        AxelorException.class,
+        () -> importer.readHeader(importer.split(HEADER.replace("|CompteNum", ""), '|')));
+  }
+
+  @Test
+  void linesAreGroupedByMoveAcrossTheChunk() throws Exception {
+    importer.fecImport.setBulkImportChunkSize(3);
+    File file =
+        createFile(
+            HEADER,
+            "VE|Ventes|1|20230101|411000|100|0",
+            "VE|Ventes|2|20230101|411000|50|0",
+            "VE|Ventes|1|20230101|706000|0|100",
+            "VE|Ventes|2|20230101|706000|0|50",
+            "AC|Achats|1|20230101|401000|0|20",
+            "AC|Achats|1|20230101|607000|20|0");
+
+    importer.importFile(file, listener);
+
+    Assertions.assertEquals(2, importer.chunkList.size());
+    List<FECBulkImporter.FECMove> firstChunk = importer.chunkList.get(0);
+    Assertions.assertEquals(2, firstChunk.size());
+    Assertions.assertEquals("VE|1", firstChunk.get(0).key);
+    Assertions.assertEquals(2, firstChunk.get(0).rowList.size());
+    Assertions.assertEquals(2, firstChunk.get(0).firstLineNumber);
+    Assertions.assertEquals(4, firstChunk.get(0).lastLineNumber);
+    Assertions.assertEquals("VE|2", firstChunk.get(1).key);
+    Assertions.assertEquals(2, firstChunk.get(1).rowList.size());
+    Assertions.assertEquals("AC|1", importer.chunkList.get(1).get(0).key);
+    Assertions.assertEquals(2, importer.chunkList.get(1).get(0).rowList.size());
+    Assertions.assertTrue(listener.errorList.isEmpty());
+  }
+
+  @Test
+  void lineOfAnAlreadyImportedMoveIsRejected() throws Exception {
+    importer.fecImport.setBulkImportChunkSize(2);
+    File file =
+        createFile(
+            HEADER,
+            "VE|Ventes|1|20230101|411000|100|0",
+            "VE|Ventes|1|20230101|706000|0|100",
+            "VE|Ventes|2|20230101|411000|50|0",
+            "VE|Ventes|1|20230101|706000|0|10",
+            "VE|Ventes|2|20230101|706000|0|50");
+
+    importer.importFile(file, listener);
+
+    Assertions.assertEquals(2, importer.chunkList.size());
+    Assertions.assertEquals(2, importer.chunkList.get(0).get(0).rowList.size());
+    Assertions.assertEquals("VE|2", importer.chunkList.get(1).get(0).key);
+    Assertions.assertEquals(2, importer.chunkList.get(1).get(0).rowList.size());
+    Assertions.assertEquals(1, listener.errorList.size());
+    Assertions.assertTrue(listener.errorList.get(0) instanceof AxelorException);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.MoveLine;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory index of the move lines that can be reconciled automatically with a bank
+ * reconciliation line.
+ *
+ * <p>Move lines are indexed by absolute currency amount and by date/due date, so that only the
+ * move lines within the configured amount and date margins are tested against the bank statement
+ * queries. Candidates are always returned in the order of the initial list, which keeps the result
+ * of the auto reconciliation identical to a full scan.
+ */
+public class BankReconciliationMoveLineIndex {
+
+  protected final List<MoveLine> moveLines;
+  protected final Map<MoveLine, Integer> ordinalMap = new IdentityHashMap<>();
+  protected final NavigableMap<BigDecimal, List<MoveLine>> amountIndex = new TreeMap<>();
+  protected final NavigableMap<LocalDate, List<MoveLine>> dateIndex = new TreeMap<>();
+  protected final Set<MoveLine> matchedMoveLineSet =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  public BankReconciliationMoveLineIndex(List<MoveLine> moveLines) {
+    this.moveLines = moveLines;
+
+    int ordinal = 0;
+    for (MoveLine moveLine : moveLines) {
+      ordinalMap.put(moveLine, ordinal++);
+
+      if (moveLine.getCurrencyAmount() != null) {
+        amountIndex
+            .computeIfAbsent(moveLine.getCurrencyAmount().abs(), key -> new ArrayList<>())
+            .add(moveLine);
+      }
+      if (moveLine.getDate() != null) {
+        dateIndex.computeIfAbsent(moveLine.getDate(), key -> new ArrayList<>()).add(moveLine);
+      }
+      if (moveLine.getDueDate() != null && !moveLine.getDueDate().equals(moveLine.getDate())) {
+        dateIndex.computeIfAbsent(moveLine.getDueDate(), key -> new ArrayList<>()).add(moveLine);
+      }
+    }
+  }
+
+  /**
+   * Get the move lines which are not matched yet and which are within the given amount and date
+   * ranges.
+   *
+   * @param amountFrom lower bound of the absolute currency amount, no amount restriction if null
+   * @param amountTo upper bound of the absolute currency amount, no amount restriction if null
+   * @param dates the bank statement line dates, no date restriction if null
+   * @param dateMargin the number of days allowed around each date
+   * @return the candidate move lines, in the order of the indexed list
+   */
+  public List<MoveLine> getCandidates(
+      BigDecimal amountFrom, BigDecimal amountTo, Collection<LocalDate> dates, int dateMargin) {
+    boolean restrictAmount = amountFrom != null && amountTo != null;
+    boolean restrictDate = dates != null;
+
+    if (!restrictAmount && !restrictDate) {
+      return getUnmatchedMoveLines(moveLines);
+    }
+
+    List<LocalDate> dateList = new ArrayList<>();
+    if (restrictDate) {
+      dates.stream().filter(Objects::nonNull).forEach(dateList::add);
+      if (dateList.isEmpty()) {
+        return new ArrayList<>();
+      }
+    }
+
+    Set<MoveLine> candidateSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (restrictAmount) {
+      if (amountFrom.compareTo(amountTo) > 0) {
+        BigDecimal swap = amountFrom;
+        amountFrom = amountTo;
+        amountTo = swap;
+      }
+      for (List<MoveLine> bucket : amountIndex.subMap(amountFrom, true, amountTo, true).values()) {
+        for (MoveLine moveLine : bucket) {
+          if (!restrictDate || isInDateRange(moveLine, dateList, dateMargin)) {
+            candidateSet.add(moveLine);
+          }
+        }
+      }
+    } else {
+      for (LocalDate date : dateList) {
+        for (List<MoveLine> bucket :
+            dateIndex
+                .subMap(date.minusDays(dateMargin), true, date.plusDays(dateMargin), true)
+                .values()) {
+          candidateSet.addAll(bucket);
+        }
+      }
+    }
+
+    return getUnmatchedMoveLines(candidateSet);
+  }
+
+  /**
+   * Exclude the given move line from the next candidate lookups.
+   *
+   * @param moveLine a move line reconciled with a bank reconciliation line
+   */
+  public void setMatched(MoveLine moveLine) {
+    matchedMoveLineSet.add(moveLine);
+  }
+
+  public int size() {
+    return moveLines.size() - matchedMoveLineSet.size();
+  }
+
+  protected boolean isInDateRange(MoveLine moveLine, List<LocalDate> dateList, int dateMargin) {
+    for (LocalDate date : dateList) {
+      LocalDate fromDate = date.minusDays(dateMargin);
+      LocalDate toDate = date.plusDays(dateMargin);
+      if (isInDateRange(moveLine.getDate(), fromDate, toDate)
+          || isInDateRange(moveLine.getDueDate(), fromDate, toDate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected boolean isInDateRange(LocalDate date, LocalDate fromDate, LocalDate toDate) {
+    return date != null && !date.isBefore(fromDate) && !date.isAfter(toDate);
+  }
+
+  protected List<MoveLine> getUnmatchedMoveLines(Collection<MoveLine> candidates) {
+    List<MoveLine> unmatchedMoveLines = new ArrayList<>(candidates.size());
+    for (MoveLine moveLine : candidates) {
+      if (!matchedMoveLineSet.contains(moveLine)) {
+        unmatchedMoveLines.add(moveLine);
+      }
+    }
+    unmatchedMoveLines.sort(Comparator.comparingInt(ordinalMap::get));
+    return unmatchedMoveLines;
+  }
+}
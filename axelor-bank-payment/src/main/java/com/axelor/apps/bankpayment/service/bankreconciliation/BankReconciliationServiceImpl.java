@@ -61,6 +61,7 @@ import com.axelor.apps.bankpayment.db.repo.BankStatementRuleRepository;
 import com.axelor.apps.bankpayment.exception.BankPaymentExceptionMessage;
 import com.axelor.apps.bankpayment.service.bankreconciliation.load.BankReconciliationLoadService;
 import com.axelor.apps.bankpayment.service.bankreconciliation.load.afb120.BankReconciliationLoadAFB120Service;
+import com.axelor.apps.bankpayment.service.bankstatementquery.BankStatementQueryScriptCache;
 import com.axelor.apps.bankpayment.service.bankstatementrule.BankStatementRuleService;
 import com.axelor.apps.bankpayment.service.config.BankPaymentConfigService;
 import com.axelor.apps.base.AxelorException;
@@ -80,7 +81,6 @@ import com.axelor.db.JPA;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.i18n.I18n;
 import com.axelor.rpc.Context;
-import com.axelor.script.GroovyScriptHelper;
 import com.axelor.utils.StringTool;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
@@ -133,6 +133,7 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
   protected DateService dateService;
   protected TaxAccountService taxAccountService;
   protected CurrencyService currencyService;
+  protected BankStatementQueryScriptCache bankStatementQueryScriptCache;
 
   @Inject
   public BankReconciliationServiceImpl(
@@ -164,7 +165,8 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
       AccountingSituationRepository accountingSituationRepository,
       TaxAccountService taxAccountService,
       DateService dateService,
-      CurrencyService currencyService) {
+      CurrencyService currencyService,
+      BankStatementQueryScriptCache bankStatementQueryScriptCache) {
 
     this.bankReconciliationRepository = bankReconciliationRepository;
     this.accountService = accountService;
@@ -195,6 +197,7 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
     this.taxAccountService = taxAccountService;
     this.dateService = dateService;
     this.currencyService = currencyService;
+    this.bankStatementQueryScriptCache = bankStatementQueryScriptCache;
   }
 
   @Override
@@ -238,17 +241,19 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
 
         for (BankStatementRule bankStatementRule : bankStatementRules) {
 
-          if (bankStatementRule != null
-              && bankStatementRule.getBankStatementQuery() != null
-              && !Strings.isNullOrEmpty(bankStatementRule.getBankStatementQuery().getQuery())
-              && Boolean.TRUE.equals(
-                  new GroovyScriptHelper(scriptContext)
-                      .eval(
-                          bankStatementRule
-                              .getBankStatementQuery()
-                              .getQuery()
-                              .replaceAll(
-                                  "%s", "\"" + bankStatementRule.getSearchLabel() + "\"")))) {
+          if (bankStatementRule == null
+              || bankStatementRule.getBankStatementQuery() == null
+              || Strings.isNullOrEmpty(bankStatementRule.getBankStatementQuery().getQuery())) {
+            continue;
+          }
+          // An empty label is bound as "null", as it was when spliced in the query text
+          scriptContext.put(
+              BankStatementQueryScriptCache.VAR_SEARCH_LABEL,
+              String.valueOf(bankStatementRule.getSearchLabel()));
+
+          if (Boolean.TRUE.equals(
+              bankStatementQueryScriptCache.eval(
+                  bankStatementRule.getBankStatementQuery(), scriptContext))) {
 
             checkAccountBeforeAutoAccounting(bankStatementRule, bankReconciliation);
 
@@ -1011,6 +1016,7 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
     BigDecimal amountMarginHigh = BigDecimal.ONE;
 
     Context scriptContext;
+    BankReconciliationMoveLineIndex moveLineIndex = new BankReconciliationMoveLineIndex(moveLines);
 
     for (BankStatementQuery bankStatementQuery : bankStatementQueries) {
       for (BankReconciliationLine bankReconciliationLine : bankReconciliationLines) {
@@ -1018,15 +1024,23 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
         if (bankReconciliationLine.getMoveLine() != null || bankStatementLine == null) {
           continue;
         }
-        for (MoveLine moveLine : moveLines) {
+        List<MoveLine> candidateMoveLines =
+            getCandidateMoveLines(
+                moveLineIndex,
+                bankStatementQuery,
+                bankReconciliationLine,
+                dateMargin,
+                amountMarginLow,
+                amountMarginHigh);
+        for (MoveLine moveLine : candidateMoveLines) {
           bankStatementLine.setMoveLine(moveLine);
 
           scriptContext =
               this.getScriptContext(
                   bankReconciliation, bankStatementLine, bankReconciliationLine, moveLine);
-          String query =
-              computeQuery(bankStatementQuery, dateMargin, amountMarginLow, amountMarginHigh);
-          Boolean result = (Boolean) new GroovyScriptHelper(scriptContext).eval(query);
+          bindQueryVariables(scriptContext, dateMargin, amountMarginLow, amountMarginHigh);
+          Boolean result =
+              (Boolean) bankStatementQueryScriptCache.eval(bankStatementQuery, scriptContext);
 
           if (result) {
             bankReconciliationLine =
@@ -1042,7 +1056,7 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
             }
 
             moveLine.setPostedNbr(bankReconciliationLine.getPostedNbr());
-            moveLines.remove(moveLine);
+            moveLineIndex.setMatched(moveLine);
             break;
           }
 
@@ -1053,6 +1067,40 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
     return bankReconciliation;
   }
 
+  /**
+   * Get the move lines to test against the given query for a bank reconciliation line. If the query
+   * is flagged as restricted to the amount or date margins, only the move lines within these
+   * margins are returned.
+   */
+  protected List<MoveLine> getCandidateMoveLines(
+      BankReconciliationMoveLineIndex moveLineIndex,
+      BankStatementQuery bankStatementQuery,
+      BankReconciliationLine bankReconciliationLine,
+      BigInteger dateMargin,
+      BigDecimal amountMarginLow,
+      BigDecimal amountMarginHigh) {
+    BigDecimal amountFrom = null;
+    BigDecimal amountTo = null;
+    List<LocalDate> dates = null;
+
+    if (bankStatementQuery.getRestrictToAmountMargin()) {
+      BigDecimal debit = bankReconciliationLine.getDebit();
+      BigDecimal amount =
+          debit.compareTo(BigDecimal.ZERO) == 0 ? bankReconciliationLine.getCredit() : debit;
+      amountFrom = amount.multiply(amountMarginLow.min(BigDecimal.ONE));
+      amountTo = amount.multiply(amountMarginHigh.max(BigDecimal.ONE));
+    }
+
+    if (bankStatementQuery.getRestrictToDateMargin()) {
+      BankStatementLine bankStatementLine = bankReconciliationLine.getBankStatementLine();
+      dates = new ArrayList<>();
+      dates.add(bankStatementLine.getOperationDate());
+      dates.add(bankStatementLine.getValueDate());
+    }
+
+    return moveLineIndex.getCandidates(amountFrom, amountTo, dates, dateMargin.intValue());
+  }
+
   protected BigDecimal getAmountMarginLow(BankReconciliation bankReconciliation) {
     BigDecimal amountMargin =
         bankReconciliation
@@ -1102,16 +1150,14 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
     return bankReconciliationLine;
   }
 
-  protected String computeQuery(
-      BankStatementQuery bankStatementQuery,
+  protected void bindQueryVariables(
+      Context scriptContext,
       BigInteger dateMargin,
       BigDecimal amountMarginLow,
       BigDecimal amountMarginHigh) {
-    String query = bankStatementQuery.getQuery();
-    query = query.replace("%amt+", amountMarginHigh.toString());
-    query = query.replace("%amt-", amountMarginLow.toString());
-    query = query.replace("%date", dateMargin.toString());
-    return query;
+    scriptContext.put(BankStatementQueryScriptCache.VAR_AMOUNT_MARGIN_HIGH, amountMarginHigh);
+    scriptContext.put(BankStatementQueryScriptCache.VAR_AMOUNT_MARGIN_LOW, amountMarginLow);
+    scriptContext.put(BankStatementQueryScriptCache.VAR_DATE_MARGIN, dateMargin.intValue());
   }
 
   @Override
@@ -0,0 +1,115 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankstatementquery;
+
+import com.axelor.apps.bankpayment.db.BankStatementQuery;
+import com.axelor.apps.bankpayment.db.repo.BankStatementRuleRepository;
+import com.axelor.rpc.Context;
+import com.axelor.script.GroovyScriptHelper;
+import com.axelor.script.ScriptBindings;
+import com.axelor.script.ScriptHelper;
+import com.google.inject.Singleton;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the bank statement query expressions used by auto accounting and auto reconciliation.
+ *
+ * <p>The dynamic parameters of a query are rewritten once into script variables, so the expression
+ * text only depends on the query id and version. All the evaluations go through a single script
+ * helper, which compiles each expression text once and keeps the compiled script, while the search
+ * label and margins are bound in the context given to each evaluation. Only the parameters that
+ * were substituted for the rule type of the query are rewritten: %s for auto accounting, %amt+,
+ * %amt- and %date for auto reconciliation. Partner and move line fetching queries are evaluated
+ * unchanged.
+ */
+@Singleton
+public class BankStatementQueryScriptCache {
+
+  public static final String VAR_SEARCH_LABEL = "searchLabel";
+  public static final String VAR_AMOUNT_MARGIN_HIGH = "amountMarginHigh";
+  public static final String VAR_AMOUNT_MARGIN_LOW = "amountMarginLow";
+  public static final String VAR_DATE_MARGIN = "dateMargin";
+
+  protected final Map<Long, CachedExpression> expressionMap = new ConcurrentHashMap<>();
+
+  protected final ScriptHelper scriptHelper =
+      new GroovyScriptHelper(new ScriptBindings(Collections.emptyMap()));
+
+  /**
+   * Evaluate the query with the given context. The variables used by the dynamic parameters must
+   * be bound in the context beforehand.
+   *
+   * @param bankStatementQuery the query to evaluate
+   * @param scriptContext the context of the evaluation
+   * @return the result of the evaluation
+   */
+  public Object eval(BankStatementQuery bankStatementQuery, Context scriptContext) {
+    return scriptHelper.eval(
+        getExpression(bankStatementQuery), new ScriptBindings(scriptContext));
+  }
+
+  public String getExpression(BankStatementQuery bankStatementQuery) {
+    Long id = bankStatementQuery.getId();
+    Integer version = bankStatementQuery.getVersion();
+
+    if (id != null) {
+      CachedExpression cachedExpression = expressionMap.get(id);
+      if (cachedExpression != null && Objects.equals(cachedExpression.version, version)) {
+        return cachedExpression.expression;
+      }
+    }
+
+    String expression = compute(bankStatementQuery);
+    if (id != null) {
+      expressionMap.put(id, new CachedExpression(version, expression));
+    }
+    return expression;
+  }
+
+  protected String compute(BankStatementQuery bankStatementQuery) {
+    String query = bankStatementQuery.getQuery();
+    if (query == null) {
+      return null;
+    }
+    switch (bankStatementQuery.getRuleTypeSelect()) {
+      case BankStatementRuleRepository.RULE_TYPE_ACCOUNTING_AUTO:
+        return query.replace("%s", VAR_SEARCH_LABEL);
+      case BankStatementRuleRepository.RULE_TYPE_RECONCILIATION_AUTO:
+        return query
+            .replace("%amt+", VAR_AMOUNT_MARGIN_HIGH)
+            .replace("%amt-", VAR_AMOUNT_MARGIN_LOW)
+            .replace("%date", VAR_DATE_MARGIN);
+      default:
+        return query;
+    }
+  }
+
+  protected static class CachedExpression {
+    protected final Integer version;
+    protected final String expression;
+
+    protected CachedExpression(Integer version, String expression) {
+      this.version = version;
+      this.expression = expression;
+    }
+  }
+}
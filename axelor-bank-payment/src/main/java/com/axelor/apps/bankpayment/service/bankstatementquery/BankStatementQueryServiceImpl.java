@@ -32,11 +32,19 @@ import com.axelor.db.EntityHelper;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.i18n.I18n;
 import com.axelor.rpc.Context;
-import com.axelor.script.GroovyScriptHelper;
+import com.google.inject.Inject;
 import java.util.Objects;
 
 public class BankStatementQueryServiceImpl implements BankStatementQueryService {
 
+  protected BankStatementQueryScriptCache bankStatementQueryScriptCache;
+
+  @Inject
+  public BankStatementQueryServiceImpl(
+      BankStatementQueryScriptCache bankStatementQueryScriptCache) {
+    this.bankStatementQueryScriptCache = bankStatementQueryScriptCache;
+  }
+
   @Override
   public Object evalQuery(
       BankStatementQuery bankStatementQuery, BankStatementLine bankStatementLine, Move move)
@@ -63,7 +71,7 @@ public class BankStatementQueryServiceImpl implements BankStatementQueryService
     Context scriptContext =
         new Context(Mapper.toMap(bankStatementLine), BankStatementLineAFB120.class);
     scriptContext.put("generatedMove", EntityHelper.getEntity(move));
-    Object moveLine = new GroovyScriptHelper(scriptContext).eval(bankStatementQuery.getQuery());
+    Object moveLine = bankStatementQueryScriptCache.eval(bankStatementQuery, scriptContext);
 
     if (moveLine == null) {
       return null;
@@ -85,7 +93,7 @@ public class BankStatementQueryServiceImpl implements BankStatementQueryService
       throws AxelorException {
     Context scriptContext =
         new Context(Mapper.toMap(bankStatementLine), BankStatementLineAFB120.class);
-    Object partner = new GroovyScriptHelper(scriptContext).eval(partnerFetchQuery.getQuery());
+    Object partner = bankStatementQueryScriptCache.eval(partnerFetchQuery, scriptContext);
 
     if (partner == null) {
       return null;
@@ -52,6 +52,7 @@ import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
@@ -154,12 +155,11 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
   public BankOrder createBankOrderFromPaymentScheduleLines(Batch batch)
       throws AxelorException, JAXBException, IOException, DatatypeConfigurationException {
 
-    List<PaymentScheduleLine> paymentScheduleLineList;
-    int offset = 0;
+    KeysetQueryIterator<PaymentScheduleLine> iterator =
+        getPaymentScheduleLineDoneListIterator(batch);
 
-    while (!(paymentScheduleLineList = fetchPaymentScheduleLineDoneList(batch, offset)).isEmpty()) {
-      createBankOrders(batch, paymentScheduleLineList);
-      offset += paymentScheduleLineList.size();
+    while (iterator.hasNext()) {
+      createBankOrders(batch, iterator.next());
       JPA.clear();
       batch = batchRepo.find(batch.getId());
     }
@@ -269,15 +269,14 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
             PaymentModeRepository.ACCOUNTING_TRIGGER_IMMEDIATE);
     bankOrder = JPA.save(bankOrder);
 
-    List<PaymentScheduleLine> paymentScheduleLineList;
-    int offset = 0;
+    KeysetQueryIterator<PaymentScheduleLine> iterator =
+        getPaymentScheduleLineDoneListIterator(batch);
 
     try {
-      while (!(paymentScheduleLineList = fetchPaymentScheduleLineDoneList(batch, offset))
-          .isEmpty()) {
+      while (iterator.hasNext()) {
         bankOrder = bankOrderRepo.find(bankOrder.getId());
 
-        for (PaymentScheduleLine paymentScheduleLine : paymentScheduleLineList) {
+        for (PaymentScheduleLine paymentScheduleLine : iterator.next()) {
           PaymentSchedule paymentSchedule = paymentScheduleLine.getPaymentSchedule();
           Partner partner = paymentSchedule.getPartner();
           BankDetails bankDetails = paymentScheduleService.getBankDetails(paymentSchedule);
@@ -300,7 +299,6 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
         }
 
         bankOrder = JPA.save(bankOrder);
-        offset += paymentScheduleLineList.size();
         JPA.clear();
       }
     } catch (Exception e) {
@@ -319,8 +317,20 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
     return bankOrder;
   }
 
-  protected List<PaymentScheduleLine> fetchPaymentScheduleLineDoneList(Batch batch, int offset) {
-    return getPaymentScheduleLineDoneListQuery(batch).fetch(AbstractBatch.FETCH_LIMIT, offset);
+  protected KeysetQueryIterator<PaymentScheduleLine> getPaymentScheduleLineDoneListIterator(
+      Batch batch) {
+    return KeysetQueryIterator.of(
+            PaymentScheduleLine.class,
+            ":batch MEMBER OF self.batchSet AND self.statusSelect = :statusSelect")
+        .bind("batch", batch)
+        .bind("statusSelect", PaymentScheduleLineRepository.STATUS_VALIDATED)
+        .pageSize(getFetchLimit(batch));
+  }
+
+  /** @return the fetch limit of the accounting batch, or 0 for the default one */
+  protected int getFetchLimit(Batch batch) {
+    AccountingBatch accountingBatch = batch.getAccountingBatch();
+    return accountingBatch != null ? accountingBatch.getFetchLimit() : 0;
   }
 
   private Query<PaymentScheduleLine> getPaymentScheduleLineDoneListQuery(Batch batch) {
@@ -40,10 +40,10 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.common.StringUtils;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.message.db.Message;
 import com.axelor.message.service.MessageService;
@@ -121,15 +121,13 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
     }
     AccountingBatch accountingBatch = batch.getAccountingBatch();
     Map<Partner, List<Invoice>> mapPartnerInvoices = new HashMap<>();
-    List<Invoice> invoicesList = null;
 
     List<Long> anomalyList = Lists.newArrayList(0L); // Can't pass an empty collection to the query
-    Query<Invoice> query = buildOrderedQueryFetchLcrAccountedInvoices(accountingBatch, anomalyList);
+    KeysetQueryIterator<Invoice> iterator =
+        buildLcrAccountedInvoiceIterator(accountingBatch, anomalyList);
 
-    int offSet = 0;
-    while (!(invoicesList = query.fetch(FETCH_LIMIT, offSet)).isEmpty()) {
-      sortInvoicesPerPartner(invoicesList, mapPartnerInvoices);
-      offSet += FETCH_LIMIT;
+    while (iterator.hasNext()) {
+      sortInvoicesPerPartner(iterator.next(), mapPartnerInvoices);
       JPA.clear();
     }
 
@@ -255,7 +253,7 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
         });
   }
 
-  protected Query<Invoice> buildOrderedQueryFetchLcrAccountedInvoices(
+  protected KeysetQueryIterator<Invoice> buildLcrAccountedInvoiceIterator(
       AccountingBatch accountingBatch, List<Long> anomalyList) {
     StringBuilder filter = new StringBuilder();
     boolean manageMultiBanks = appAccountService.getAppBase().getManageMultiBanks();
@@ -295,9 +293,9 @@ public class BatchBillOfExchangeSendBilling extends AbstractBatch {
       bindings.put("bankDetailsSet", bankDetailsSet);
     }
 
-    Query<Invoice> query =
-        invoiceRepository.all().filter(filter.toString()).bind(bindings).order("id");
-    return query;
+    return KeysetQueryIterator.of(Invoice.class, filter.toString())
+        .bind(bindings)
+        .pageSize(getFetchLimit());
   }
 
   @Override
@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.account.service.move.MoveRemoveServiceImpl;
 import com.axelor.apps.bankpayment.db.BankStatementLineAFB120;
@@ -50,6 +51,7 @@ public class MoveRemoveServiceBankPaymentImpl extends MoveRemoveServiceImpl {
       ReconcileService reconcileService,
       AccountingSituationService accountingSituationService,
       AccountCustomerService accountCustomerService,
+      PartnerBalanceService partnerBalanceService,
       BankStatementLineAFB120Repository bankStatementLineAFB120Repository) {
     super(
         moveRepo,
@@ -57,7 +59,8 @@ public class MoveRemoveServiceBankPaymentImpl extends MoveRemoveServiceImpl {
         archivingToolService,
         reconcileService,
         accountingSituationService,
-        accountCustomerService);
+        accountCustomerService,
+        partnerBalanceService);
     this.bankStatementLineAFB120Repository = bankStatementLineAFB120Repository;
   }
 
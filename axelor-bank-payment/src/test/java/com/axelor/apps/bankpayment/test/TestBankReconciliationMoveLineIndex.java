@@ -0,0 +1,154 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.test;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMoveLineIndex;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestBankReconciliationMoveLineIndex {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestBankReconciliationMoveLineIndex.class);
+
+  private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+  private static final BigDecimal AMOUNT_MARGIN_LOW = new BigDecimal("0.95");
+  private static final int DATE_MARGIN = 3;
+
+  @Test
+  public void testAmountMargin() {
+    MoveLine moveLine1 = createMoveLine("100.00", START_DATE);
+    MoveLine moveLine2 = createMoveLine("-96.00", START_DATE);
+    MoveLine moveLine3 = createMoveLine("120.00", START_DATE);
+    BankReconciliationMoveLineIndex index =
+        new BankReconciliationMoveLineIndex(Arrays.asList(moveLine1, moveLine2, moveLine3));
+
+    Assert.assertEquals(
+        Arrays.asList(moveLine1, moveLine2),
+        index.getCandidates(
+            new BigDecimal("100").multiply(AMOUNT_MARGIN_LOW), new BigDecimal("100"), null, 0));
+  }
+
+  @Test
+  public void testDateMargin() {
+    MoveLine moveLine1 = createMoveLine("100.00", START_DATE);
+    MoveLine moveLine2 = createMoveLine("100.00", START_DATE.plusDays(10));
+    moveLine2.setDueDate(START_DATE.plusDays(2));
+    MoveLine moveLine3 = createMoveLine("100.00", START_DATE.plusDays(10));
+    BankReconciliationMoveLineIndex index =
+        new BankReconciliationMoveLineIndex(Arrays.asList(moveLine1, moveLine2, moveLine3));
+
+    List<LocalDate> dates = Collections.singletonList(START_DATE);
+    Assert.assertEquals(
+        Arrays.asList(moveLine1, moveLine2), index.getCandidates(null, null, dates, DATE_MARGIN));
+    Assert.assertEquals(
+        Arrays.asList(moveLine1, moveLine2),
+        index.getCandidates(BigDecimal.ZERO, new BigDecimal("1000"), dates, DATE_MARGIN));
+  }
+
+  @Test
+  public void testMatchedMoveLinesAreExcluded() {
+    MoveLine moveLine1 = createMoveLine("100.00", START_DATE);
+    MoveLine moveLine2 = createMoveLine("100.00", START_DATE);
+    BankReconciliationMoveLineIndex index =
+        new BankReconciliationMoveLineIndex(Arrays.asList(moveLine1, moveLine2));
+
+    index.setMatched(moveLine1);
+
+    Assert.assertEquals(
+        Collections.singletonList(moveLine2), index.getCandidates(null, null, null, 0));
+    Assert.assertEquals(1, index.size());
+  }
+
+  /**
+   * Synthetic statement and ledger of growing size: the number of evaluated (statement line, move
+   * line) pairs must grow linearly with the size, where a full scan grows quadratically.
+   */
+  @Test
+  public void testCandidatePairsGrowLinearly() {
+    long previousPairs = 0;
+    for (int size = 2000; size <= 16000; size *= 2) {
+      long start = System.nanoTime();
+      long pairs = countCandidatePairs(size);
+      LOG.info(
+          "{} statement lines, {} ledger lines: {} pairs evaluated in {} ms",
+          size,
+          size,
+          pairs,
+          (System.nanoTime() - start) / 1_000_000);
+
+      Assert.assertTrue(pairs <= 4L * size);
+      if (previousPairs > 0) {
+        Assert.assertTrue(pairs <= 3 * previousPairs);
+      }
+      previousPairs = pairs;
+    }
+  }
+
+  private long countCandidatePairs(int size) {
+    List<MoveLine> moveLines = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      moveLines.add(createMoveLine(getAmount(i).toString(), getDate(i)));
+    }
+    BankReconciliationMoveLineIndex index = new BankReconciliationMoveLineIndex(moveLines);
+
+    long pairs = 0;
+    for (int i = 0; i < size; i++) {
+      BigDecimal amount = getAmount(i);
+      List<MoveLine> candidates =
+          index.getCandidates(
+              amount.multiply(AMOUNT_MARGIN_LOW),
+              amount,
+              Collections.singletonList(getDate(i)),
+              DATE_MARGIN);
+      pairs += candidates.size();
+      if (!candidates.isEmpty()) {
+        index.setMatched(candidates.get(0));
+      }
+    }
+    return pairs;
+  }
+
+  /** 50 amounts 10% apart, so that the amount margin never spans two of them. */
+  private BigDecimal getAmount(int i) {
+    return BigDecimal.valueOf(100 * Math.pow(1.1, i % 50)).setScale(2, RoundingMode.HALF_UP);
+  }
+
+  /** 20 lines per day, so that the date margin always spans the same number of lines. */
+  private LocalDate getDate(int i) {
+    return START_DATE.plusDays(i / 20);
+  }
+
+  private MoveLine createMoveLine(String currencyAmount, LocalDate date) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setCurrencyAmount(new BigDecimal(currencyAmount));
+    moveLine.setDate(date);
+    return moveLine;
+  }
+}
@@ -19,6 +19,8 @@
 package com.axelor.apps.base.db.repo;
 
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.service.administration.SequenceBlockAllocator;
+import com.axelor.inject.Beans;
 
 public class SequenceBaseRepository extends SequenceRepository {
 
@@ -31,4 +33,10 @@ public class SequenceBaseRepository extends SequenceRepository {
 
     return copy;
   }
+
+  @Override
+  public Sequence save(Sequence sequence) {
+    Beans.get(SequenceBlockAllocator.class).invalidate(sequence);
+    return super.save(sequence);
+  }
 }
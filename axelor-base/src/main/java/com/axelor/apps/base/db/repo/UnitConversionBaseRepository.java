@@ -0,0 +1,38 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.service.UnitConversionGraph;
+import com.axelor.inject.Beans;
+
+public class UnitConversionBaseRepository extends UnitConversionRepository {
+
+  @Override
+  public UnitConversion save(UnitConversion unitConversion) {
+    Beans.get(UnitConversionGraph.class).invalidate();
+    return super.save(unitConversion);
+  }
+
+  @Override
+  public void remove(UnitConversion unitConversion) {
+    Beans.get(UnitConversionGraph.class).invalidate();
+    super.remove(unitConversion);
+  }
+}
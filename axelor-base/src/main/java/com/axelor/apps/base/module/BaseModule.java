@@ -57,6 +57,8 @@ import com.axelor.apps.base.db.repo.SequenceBaseRepository;
 import com.axelor.apps.base.db.repo.SequenceRepository;
 import com.axelor.apps.base.db.repo.TaxBaseRepository;
 import com.axelor.apps.base.db.repo.TeamTaskBaseRepository;
+import com.axelor.apps.base.db.repo.UnitConversionBaseRepository;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
 import com.axelor.apps.base.db.repo.UserBaseRepository;
 import com.axelor.apps.base.db.repo.YearBaseRepository;
 import com.axelor.apps.base.db.repo.YearRepository;
@@ -286,6 +288,7 @@ public class BaseModule extends AxelorModule {
     bind(DurationService.class).to(DurationServiceImpl.class);
     bind(AppBaseService.class).to(AppBaseServiceImpl.class);
     bind(SequenceRepository.class).to(SequenceBaseRepository.class);
+    bind(UnitConversionRepository.class).to(UnitConversionBaseRepository.class);
     bind(ProductRepository.class).to(ProductBaseRepository.class);
     bind(WeeklyPlanningService.class).to(WeeklyPlanningServiceImp.class);
     bind(MailServiceMessageImpl.class).to(MailServiceBaseImpl.class);
@@ -33,6 +33,7 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
@@ -196,17 +197,14 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
   }
 
   protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
-    int offset = 0;
-
-    List<Product> productList;
-    Query<Product> productQuery =
-        productRepository
-            .all()
-            .filter("self.id IN (" + StringTool.getIdListString(getProductSet(abcAnalysis)) + ")");
+    KeysetQueryIterator<Product> iterator =
+        KeysetQueryIterator.of(
+            Product.class,
+            "self.id IN (" + StringTool.getIdListString(getProductSet(abcAnalysis)) + ")");
 
-    while (!(productList = productQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    while (iterator.hasNext()) {
+      List<Product> productList = iterator.next();
       abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-      offset += productList.size();
 
       for (Product product : productList) {
         product = productRepository.find(product.getId());
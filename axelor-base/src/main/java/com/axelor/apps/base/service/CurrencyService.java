@@ -25,9 +25,11 @@ import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.currency.CurrencyConversionRateCache;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.meta.CallMethod;
 import com.axelor.utils.date.DateTool;
 import com.google.inject.Inject;
@@ -50,23 +52,29 @@ public class CurrencyService {
 
   protected CurrencyConversionLineRepository currencyConversionLineRepo;
 
+  protected CurrencyConversionRateCache currencyConversionRateCache;
+
   private LocalDate today;
 
   @Inject
   public CurrencyService(
-      AppBaseService appBaseService, CurrencyConversionLineRepository currencyConversionLineRepo) {
+      AppBaseService appBaseService,
+      CurrencyConversionLineRepository currencyConversionLineRepo,
+      CurrencyConversionRateCache currencyConversionRateCache) {
 
     this.appBaseService = appBaseService;
     this.today =
         appBaseService.getTodayDate(
             Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null));
     this.currencyConversionLineRepo = currencyConversionLineRepo;
+    this.currencyConversionRateCache = currencyConversionRateCache;
   }
 
   public CurrencyService(AppBaseService appBaseService, LocalDate today) {
 
     this.appBaseService = appBaseService;
     this.today = today;
+    this.currencyConversionRateCache = Beans.get(CurrencyConversionRateCache.class);
   }
 
   @CallMethod
@@ -86,17 +94,16 @@ public class CurrencyService {
       boolean isInverse = true;
       BigDecimal exchangeRate = null;
 
-      CurrencyConversionLine currencyConversionLine =
-          this.getCurrencyConversionLine(startCurrency, endCurrency, dateToConvert);
-      if (currencyConversionLine != null) {
-        exchangeRate = currencyConversionLine.getExchangeRate();
+      CurrencyConversionRateCache.Rate rate =
+          currencyConversionRateCache.getRate(startCurrency, endCurrency, dateToConvert);
+      if (rate != null) {
+        exchangeRate = rate.getExchangeRate();
         isInverse = false;
 
       } else {
-        currencyConversionLine =
-            this.getCurrencyConversionLine(endCurrency, startCurrency, dateToConvert);
+        rate = currencyConversionRateCache.getRate(endCurrency, startCurrency, dateToConvert);
 
-        if (currencyConversionLine == null) {
+        if (rate == null) {
           throw new AxelorException(
               TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
               I18n.get(BaseExceptionMessage.CURRENCY_1),
@@ -104,7 +111,7 @@ public class CurrencyService {
               endCurrency.getName(),
               dateToConvert);
         }
-        exchangeRate = currencyConversionLine.getExchangeRate();
+        exchangeRate = rate.getExchangeRate();
       }
 
       if (exchangeRate == null || exchangeRate.compareTo(BigDecimal.ZERO) == 0) {
@@ -0,0 +1,318 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.transaction.Synchronization;
+import org.apache.commons.lang3.tuple.Pair;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.hibernate.Session;
+
+/**
+ * In-memory graph of the unit conversions, shared between requests.
+ *
+ * <p>The graph is loaded once from the {@link UnitConversion} table and dropped each time a unit
+ * conversion is saved or removed, then again once the transaction of that change is over.
+ * Coefficients between two units, including conversions going through intermediate units (A to B
+ * to C), are computed once and memoised per pair of units. Formula conversions depend on the
+ * product, their formulas are compiled once and evaluated for each product.
+ */
+@Singleton
+public class UnitConversionGraph {
+
+  public static final int DEFAULT_COEFFICIENT_SCALE = 12;
+
+  protected static final int FORMULA_CACHE_SIZE = 1000;
+
+  protected final UnitConversionRepository unitConversionRepo;
+
+  protected final AtomicLong generation = new AtomicLong();
+  protected volatile Graph graph;
+
+  protected final ThreadLocal<Boolean> invalidationPending = new ThreadLocal<>();
+
+  /** Placeholders of the formulas, such as {@code $Product.netMass$}. */
+  protected static final Pattern FORMULA_PLACEHOLDER =
+      Pattern.compile("\\$([A-Za-z_][A-Za-z0-9_.]*)\\$");
+
+  protected static final String FORMULA_CONTEXT = "_formulaContext";
+
+  protected final Map<String, Class<? extends Script>> formulaScriptMap =
+      new ConcurrentHashMap<>();
+  protected GroovyShell formulaShell;
+
+  @Inject
+  public UnitConversionGraph(UnitConversionRepository unitConversionRepo) {
+    this.unitConversionRepo = unitConversionRepo;
+    this.formulaShell = createFormulaShell();
+  }
+
+  /** Drop the loaded graph, it will be reloaded on next use. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    graph = null;
+    invalidateAfterCompletion();
+  }
+
+  /**
+   * Drop the loaded graph again once the current transaction is over, so that a graph loaded in
+   * the meantime from uncommitted or outdated data is not kept.
+   */
+  protected void invalidateAfterCompletion() {
+    Session session = JPA.em().unwrap(Session.class);
+    if (!session.getTransaction().isActive() || invalidationPending.get() != null) {
+      return;
+    }
+
+    invalidationPending.set(Boolean.TRUE);
+    session
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                invalidationPending.remove();
+                generation.incrementAndGet();
+                graph = null;
+              }
+            });
+  }
+
+  /**
+   * Get the coefficient of a conversion defined between the two units, in one way or the other.
+   *
+   * @return the coefficient, or null if there is no such conversion
+   */
+  public BigDecimal getDirectCoefficient(Unit startUnit, Unit endUnit) {
+    return getGraph().getEdge(startUnit.getId(), endUnit.getId());
+  }
+
+  /**
+   * Get the coefficient to convert from the start unit to the end unit, going through other units
+   * if there is no direct conversion. Only coefficient conversions are used.
+   *
+   * @return the coefficient, or null if the units can not be converted
+   */
+  public BigDecimal getCoefficient(Unit startUnit, Unit endUnit) {
+    return getGraph().getCoefficient(startUnit.getId(), endUnit.getId());
+  }
+
+  /**
+   * Get the formula conversion defined between the two units, in one way or the other.
+   *
+   * @return the formula conversion, or null if there is no such conversion
+   */
+  public FormulaConversion getFormulaConversion(Unit startUnit, Unit endUnit) {
+    return getGraph().formulaMap.get(Pair.of(startUnit.getId(), endUnit.getId()));
+  }
+
+  /**
+   * Evaluate a formula for the given product. The formula is compiled once, with its {@code
+   * $Product.field$} placeholders turned into reads of the product given in the binding, so that
+   * the compiled scripts do not depend on the product values. Compiled formulas are kept in a
+   * bounded cache, dropped along with their class loader once full.
+   */
+  public BigDecimal evaluateFormula(String formula, Product product) {
+    Class<? extends Script> scriptClass = formulaScriptMap.get(formula);
+    if (scriptClass == null) {
+      scriptClass = compileFormula(formula);
+    }
+    Binding binding = new Binding();
+    binding.setVariable(FORMULA_CONTEXT, Collections.singletonMap("Product", product));
+    Object result = InvokerHelper.createScript(scriptClass, binding).run();
+    return new BigDecimal(result.toString());
+  }
+
+  protected synchronized Class<? extends Script> compileFormula(String formula) {
+    Class<? extends Script> scriptClass = formulaScriptMap.get(formula);
+    if (scriptClass != null) {
+      return scriptClass;
+    }
+    if (formulaScriptMap.size() >= FORMULA_CACHE_SIZE) {
+      formulaScriptMap.clear();
+      formulaShell = createFormulaShell();
+    }
+    scriptClass =
+        formulaShell
+            .parse(FORMULA_PLACEHOLDER.matcher(formula).replaceAll("(" + FORMULA_CONTEXT + ".$1)"))
+            .getClass();
+    formulaScriptMap.put(formula, scriptClass);
+    return scriptClass;
+  }
+
+  protected GroovyShell createFormulaShell() {
+    CompilerConfiguration conf = new CompilerConfiguration();
+    ImportCustomizer customizer = new ImportCustomizer();
+    customizer.addStaticStars("java.lang.Math");
+    conf.addCompilationCustomizers(customizer);
+    return new GroovyShell(conf);
+  }
+
+  protected Graph getGraph() {
+    Graph currentGraph = graph;
+    if (currentGraph != null) {
+      return currentGraph;
+    }
+
+    long currentGeneration = generation.get();
+    currentGraph = new Graph(unitConversionRepo.all().fetch());
+    if (generation.get() == currentGeneration) {
+      graph = currentGraph;
+    }
+    return currentGraph;
+  }
+
+  /** A formula conversion, to be inverted if it is defined from the end unit to the start unit. */
+  public static class FormulaConversion {
+    protected final String formula;
+    protected final boolean inverse;
+
+    protected FormulaConversion(String formula, boolean inverse) {
+      this.formula = formula;
+      this.inverse = inverse;
+    }
+
+    public String getFormula() {
+      return formula;
+    }
+
+    public boolean isInverse() {
+      return inverse;
+    }
+  }
+
+  protected static class Graph {
+
+    protected final Map<Long, Map<Long, BigDecimal>> edgeMap = new HashMap<>();
+    protected final Map<Pair<Long, Long>, FormulaConversion> formulaMap = new HashMap<>();
+    protected final Map<Pair<Long, Long>, Optional<BigDecimal>> coefficientMap =
+        new ConcurrentHashMap<>();
+
+    protected Graph(List<? extends UnitConversion> unitConversionList) {
+      // Conversions defined in the requested way take precedence over inverted ones
+      for (UnitConversion unitConversion : unitConversionList) {
+        Long startUnitId = unitConversion.getStartUnit().getId();
+        Long endUnitId = unitConversion.getEndUnit().getId();
+
+        if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
+          edgeMap
+              .computeIfAbsent(startUnitId, key -> new HashMap<>())
+              .put(endUnitId, unitConversion.getCoef());
+        } else {
+          formulaMap.put(
+              Pair.of(startUnitId, endUnitId),
+              new FormulaConversion(unitConversion.getFormula(), false));
+        }
+      }
+
+      for (UnitConversion unitConversion : unitConversionList) {
+        Long startUnitId = unitConversion.getStartUnit().getId();
+        Long endUnitId = unitConversion.getEndUnit().getId();
+
+        if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
+          if (unitConversion.getCoef().signum() != 0) {
+            edgeMap
+                .computeIfAbsent(endUnitId, key -> new HashMap<>())
+                .putIfAbsent(
+                    startUnitId,
+                    BigDecimal.ONE.divide(
+                        unitConversion.getCoef(),
+                        DEFAULT_COEFFICIENT_SCALE,
+                        RoundingMode.HALF_UP));
+          }
+        } else {
+          formulaMap.putIfAbsent(
+              Pair.of(endUnitId, startUnitId),
+              new FormulaConversion(unitConversion.getFormula(), true));
+        }
+      }
+    }
+
+    protected BigDecimal getEdge(Long startUnitId, Long endUnitId) {
+      Map<Long, BigDecimal> edges = edgeMap.get(startUnitId);
+      return edges == null ? null : edges.get(endUnitId);
+    }
+
+    protected BigDecimal getCoefficient(Long startUnitId, Long endUnitId) {
+      return coefficientMap
+          .computeIfAbsent(
+              Pair.of(startUnitId, endUnitId),
+              key -> Optional.ofNullable(computeCoefficient(startUnitId, endUnitId)))
+          .orElse(null);
+    }
+
+    /** Breadth-first search of the shortest conversion path between the two units. */
+    protected BigDecimal computeCoefficient(Long startUnitId, Long endUnitId) {
+      BigDecimal directCoefficient = getEdge(startUnitId, endUnitId);
+      if (directCoefficient != null) {
+        return directCoefficient;
+      }
+
+      Map<Long, BigDecimal> reachedMap = new HashMap<>();
+      Deque<Long> queue = new ArrayDeque<>();
+      reachedMap.put(startUnitId, BigDecimal.ONE);
+      queue.add(startUnitId);
+
+      while (!queue.isEmpty()) {
+        Long unitId = queue.poll();
+        BigDecimal coefficient = reachedMap.get(unitId);
+
+        for (Map.Entry<Long, BigDecimal> edge :
+            edgeMap.getOrDefault(unitId, new HashMap<>()).entrySet()) {
+          if (reachedMap.containsKey(edge.getKey())) {
+            continue;
+          }
+          BigDecimal nextCoefficient = coefficient.multiply(edge.getValue());
+          if (edge.getKey().equals(endUnitId)) {
+            return nextCoefficient.setScale(DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_UP);
+          }
+          reachedMap.put(edge.getKey(), nextCoefficient);
+          queue.add(edge.getKey());
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -62,6 +62,8 @@ public class UnitConversionService {
 
   @Inject protected UnitConversionRepository unitConversionRepo;
 
+  @Inject protected UnitConversionGraph unitConversionGraph;
+
   /**
    * Convert a value from a unit to another
    *
@@ -98,8 +100,7 @@ public class UnitConversionService {
     if (startUnit.equals(endUnit)) return value;
     else {
       try {
-        BigDecimal coefficient =
-            this.getCoefficient(unitConversionRepo.all().fetch(), startUnit, endUnit, product);
+        BigDecimal coefficient = this.getCoefficient(startUnit, endUnit, product);
 
         return value.multiply(coefficient).setScale(scale, RoundingMode.HALF_UP);
       } catch (IOException | ClassNotFoundException e) {
@@ -109,11 +110,61 @@ public class UnitConversionService {
     return value;
   }
 
+  /**
+   * Get the conversion coefficient between two units from the cached conversion graph. A
+   * conversion defined between the two units is used first, then a formula conversion if a
+   * product is given, then a chain of conversions through other units.
+   *
+   * @param startUnit The start unit
+   * @param endUnit The end unit
+   * @param product Optional, a product used for complex conversions. Input null if needless.
+   * @return A conversion coefficient to convert from startUnit to endUnit.
+   * @throws AxelorException The units can not be converted.
+   * @throws ClassNotFoundException
+   * @throws IOException
+   */
+  public BigDecimal getCoefficient(Unit startUnit, Unit endUnit, Product product)
+      throws AxelorException, ClassNotFoundException, IOException {
+    BigDecimal coefficient = unitConversionGraph.getDirectCoefficient(startUnit, endUnit);
+    if (coefficient != null) {
+      return coefficient;
+    }
+
+    if (product != null) {
+      UnitConversionGraph.FormulaConversion formulaConversion =
+          unitConversionGraph.getFormulaConversion(startUnit, endUnit);
+      if (formulaConversion != null) {
+        BigDecimal result =
+            unitConversionGraph.evaluateFormula(formulaConversion.getFormula(), product);
+        if (!formulaConversion.isInverse()) {
+          return result;
+        }
+        if (result.compareTo(BigDecimal.ZERO) != 0) {
+          return BigDecimal.ONE.divide(result, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_UP);
+        }
+      }
+    }
+
+    coefficient = unitConversionGraph.getCoefficient(startUnit, endUnit);
+    if (coefficient != null) {
+      return coefficient;
+    }
+
+    throw new AxelorException(
+        TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+        I18n.get(BaseExceptionMessage.UNIT_CONVERSION_1),
+        startUnit.getName(),
+        endUnit.getName());
+  }
+
   /**
    * Get the conversion coefficient between two units from a conversion list. If the start unit and
    * the end unit can not be found in the list, then the units are swapped. If there still isn't any
    * result, an Exception is thrown.
    *
+   * <p>Prefer {@link #getCoefficient(Unit, Unit, Product)}, which does not need to load the
+   * conversions.
+   *
    * @param unitConversionList A list of conversions between units
    * @param startUnit The start unit
    * @param endUnit The end unit
@@ -132,19 +183,7 @@ public class UnitConversionService {
       throws AxelorException, CompilationFailedException, ClassNotFoundException, IOException {
     /* Looking for the start unit and the end unit in the unitConversionList to get the coefficient */
     if (product != null) {
-      this.maker =
-          new TemplateMaker(
-              Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
-                      != null
-                  ? Optional.ofNullable(AuthUtils.getUser())
-                      .map(User::getActiveCompany)
-                      .map(Company::getTimezone)
-                      .orElse(null)
-                  : "",
-              AppFilter.getLocale(),
-              TEMPLATE_DELIMITER,
-              TEMPLATE_DELIMITER);
-      this.maker.setContext(product, "Product");
+      initMaker(product);
     }
     String eval = null;
     for (UnitConversion unitConversion : unitConversionList) {
@@ -197,4 +236,20 @@ public class UnitConversionService {
         startUnit.getName(),
         endUnit.getName());
   }
+
+  protected void initMaker(Product product) {
+    this.maker =
+        new TemplateMaker(
+            Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
+                    != null
+                ? Optional.ofNullable(AuthUtils.getUser())
+                    .map(User::getActiveCompany)
+                    .map(Company::getTimezone)
+                    .orElse(null)
+                : "",
+            AppFilter.getLocale(),
+            TEMPLATE_DELIMITER,
+            TEMPLATE_DELIMITER);
+    this.maker.setContext(product, "Product");
+  }
 }
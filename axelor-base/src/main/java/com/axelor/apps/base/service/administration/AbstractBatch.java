@@ -18,23 +18,32 @@
  */
 package com.axelor.apps.base.service.administration;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.AuditableModel;
 import com.axelor.common.StringUtils;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
+import com.axelor.db.Query;
 import com.axelor.db.mapper.Mapper;
+import com.axelor.db.mapper.Property;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.utils.MetaSelectTool;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -43,9 +52,20 @@ import java.sql.SQLException;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
+import javax.persistence.EntityTransaction;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +74,20 @@ public abstract class AbstractBatch {
 
   public static final int FETCH_LIMIT = 10;
 
+  /** Setting of the default count of records fetched at once, see {@link #getFetchLimit()}. */
+  public static final String FETCH_LIMIT_SETTING = "aos.batch.fetch-limit";
+
+  /** Setting of the count of worker threads used by {@link #processInPartitions}. */
+  public static final String PARTITION_THREADS_SETTING = "aos.batch.partition.threads";
+
+  public static final int PARTITION_SIZE = 100;
+
+  /** Count of increments after which the counters are saved on the batch. */
+  public static final int COUNTERS_SAVE_COUNT = 500;
+
+  /** Delay in milliseconds after which the counters are saved on the batch. */
+  public static final long COUNTERS_SAVE_DELAY = 2000;
+
   @Inject protected AppBaseService appBaseService;
   @Inject protected MetaSelectTool metaSelectTool;
 
@@ -64,19 +98,19 @@ public abstract class AbstractBatch {
 
   @Inject protected BatchRepository batchRepo;
 
-  private int done;
-  private int anomaly;
+  private final AtomicInteger done = new AtomicInteger();
+  private final AtomicInteger anomaly = new AtomicInteger();
+
+  private int unsavedIncrements;
+  private long lastCountersSave = System.currentTimeMillis();
 
   protected AbstractBatch() {
     this.batch = new Batch();
 
     this.batch.setStartDate(ZonedDateTime.now());
 
-    this.done = 0;
-    this.anomaly = 0;
-
-    this.batch.setDone(this.done);
-    this.batch.setAnomaly(this.anomaly);
+    this.batch.setDone(this.done.get());
+    this.batch.setAnomaly(this.anomaly.get());
 
     JPA.runInTransaction(() -> batch = JPA.persist(batch));
   }
@@ -117,9 +151,15 @@ public abstract class AbstractBatch {
         setHistoryInformation(model);
         start();
         process();
+        saveCounters();
         stop();
         return batch;
       } catch (Exception e) {
+        try {
+          saveCounters();
+        } catch (Exception saveException) {
+          e.addSuppressed(saveException);
+        }
         throw new RuntimeException(e);
       } finally {
         threadBatchId.remove();
@@ -205,6 +245,8 @@ public abstract class AbstractBatch {
   protected void stop() {
     findBatch();
 
+    batch.setDone(done.get());
+    batch.setAnomaly(anomaly.get());
     batch.setEndDate(ZonedDateTime.now());
     batch.setDuration(getDuring());
 
@@ -214,29 +256,230 @@ public abstract class AbstractBatch {
   }
 
   protected void incrementDone() {
-    findBatch();
     _incrementDone();
   }
 
+  /**
+   * Count a record as done. The counter is kept in memory and saved on the batch every {@value
+   * #COUNTERS_SAVE_COUNT} increments or {@value #COUNTERS_SAVE_DELAY} ms, and when the batch is
+   * over.
+   */
   protected void _incrementDone() {
-    done += 1;
-    batch.setDone(done);
-    checkPoint();
-
+    done.incrementAndGet();
     LOG.debug("Done ::: {}", done);
+
+    countersUpdated();
   }
 
   protected void incrementAnomaly() {
-    findBatch();
     _incrementAnomaly();
   }
 
+  /** Count a record as an anomaly, see {@link #_incrementDone()}. */
   protected void _incrementAnomaly() {
-    anomaly += 1;
-    batch.setAnomaly(anomaly);
+    anomaly.incrementAndGet();
+    LOG.debug("Anomaly ::: {}", anomaly);
+
+    countersUpdated();
+  }
+
+  protected void countersUpdated() {
+    if (++unsavedIncrements >= COUNTERS_SAVE_COUNT
+        || System.currentTimeMillis() - lastCountersSave >= COUNTERS_SAVE_DELAY) {
+      saveCounters();
+    }
+  }
+
+  /**
+   * Process the records selected by the given query in parallel.
+   *
+   * <p>The ids of the records are split in partitions of {@link #getPartitionSize()} records, which
+   * are processed by {@link #getPartitionThreadCount()} worker threads. Each worker has its own
+   * entity manager and processes each record in its own transaction: the record is counted as done
+   * if the transaction is committed, or as an anomaly if the processor throws an exception, in
+   * which case {@link #traceRecordFailure} is called. Counters are saved on the batch each time a
+   * partition is over.
+   *
+   * <p>The processor is called concurrently and must not use the {@code batch} field nor the
+   * increment methods of this class. The running batch can be retrieved with {@link
+   * #getCurrentBatch()} in the worker transaction.
+   *
+   * @param entityClass the class of the records
+   * @param query the query selecting the records to process
+   * @param processor the unit of work run on each record
+   */
+  protected <T extends Model> void processInPartitions(
+      Class<T> entityClass, Query<T> query, RecordProcessor<T> processor) {
+    List<Long> idList =
+        query.order("id").select("id").fetch(0, 0).stream()
+            .map(m -> (Long) m.get("id"))
+            .collect(Collectors.toList());
+
+    processInPartitions(
+        Lists.partition(idList, getPartitionSize()),
+        new ItemProcessor<Long>() {
+          @Override
+          public int process(Long id) throws Exception {
+            T record = JPA.em().find(entityClass, id);
+            if (record == null) {
+              return 0;
+            }
+            processor.process(record);
+            return 1;
+          }
+
+          @Override
+          public void traceFailure(Long id, Exception e) {
+            traceRecordFailure(entityClass, id, e);
+          }
+        });
+  }
+
+  /**
+   * Process the given partitions of items in parallel, see {@link #processInPartitions(Class,
+   * Query, RecordProcessor)}.
+   *
+   * <p>The items of a partition are processed in order by the same worker, each one in its own
+   * transaction. The count returned by the processor is added to the done counter if the
+   * transaction is committed, and an anomaly is counted if the processor throws an exception.
+   *
+   * @param partitionList the partitions of items to process
+   * @param processor the unit of work run on each item
+   */
+  protected <K> void processInPartitions(
+      List<? extends List<K>> partitionList, ItemProcessor<K> processor) {
+    if (partitionList.isEmpty()) {
+      return;
+    }
+
+    int threadCount = Math.max(1, Math.min(getPartitionThreadCount(), partitionList.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+
+    LOG.debug(
+        "Processing {} items in {} partitions with {} threads",
+        partitionList.stream().mapToInt(List::size).sum(),
+        partitionList.size(),
+        threadCount);
+
+    try {
+      Long batchId = batch.getId();
+      Subject subject = AuthUtils.getSubject();
+      for (List<K> partition : partitionList) {
+        Callable<Void> worker = () -> processPartition(partition, processor, batchId);
+        completionService.submit(subject != null ? subject.associateWith(worker) : worker);
+      }
+
+      for (int i = 0; i < partitionList.size(); i++) {
+        try {
+          completionService.take().get();
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause(), null, batch.getId());
+        }
+        saveCounters();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e, null, batch.getId());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  protected <K> Void processPartition(List<K> partition, ItemProcessor<K> processor, Long batchId) {
+    UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+    RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    threadBatchId.set(batchId);
+
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      for (K item : partition) {
+        if (Thread.currentThread().isInterrupted()) {
+          break;
+        }
+        processItem(item, processor, unitOfWork);
+      }
+    } finally {
+      threadBatchId.remove();
+      unitOfWork.end();
+    }
+    return null;
+  }
+
+  protected <K> void processItem(K item, ItemProcessor<K> processor, UnitOfWork unitOfWork) {
+    EntityTransaction transaction = JPA.em().getTransaction();
+    try {
+      transaction.begin();
+      int count = processor.process(item);
+      transaction.commit();
+      done.addAndGet(count);
+    } catch (Exception e) {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      // The persistence context is not usable anymore after a rollback
+      unitOfWork.end();
+      anomaly.incrementAndGet();
+      processor.traceFailure(item, e);
+    }
+    JPA.clear();
+  }
+
+  /**
+   * Trace the failure of the unit of work on a record processed by {@link #processInPartitions}.
+   * Called in the worker thread, outside of any transaction.
+   */
+  protected void traceRecordFailure(Class<? extends Model> entityClass, Long id, Exception e) {
+    TraceBackService.trace(e, null, getCurrentBatchId());
+  }
+
+  /**
+   * Get the count of records to fetch at once. It is read from the {@code fetchLimit} field of the
+   * batch configuration if it has one and it is filled, else from the {@value #FETCH_LIMIT_SETTING}
+   * setting, and defaults to {@link #FETCH_LIMIT}.
+   */
+  protected int getFetchLimit() {
+    if (model != null) {
+      Property fetchLimitProperty =
+          Mapper.of(EntityHelper.getEntityClass(model)).getProperty("fetchLimit");
+      if (fetchLimitProperty != null) {
+        Object fetchLimit = fetchLimitProperty.get(model);
+        if (fetchLimit instanceof Integer && (Integer) fetchLimit > 0) {
+          return (Integer) fetchLimit;
+        }
+      }
+    }
+    return getDefaultFetchLimit();
+  }
+
+  /**
+   * Get the count of records to fetch at once when the batch configuration does not set it, from
+   * the {@value #FETCH_LIMIT_SETTING} setting, and defaults to {@link #FETCH_LIMIT}.
+   */
+  public static int getDefaultFetchLimit() {
+    return AppSettings.get().getInt(FETCH_LIMIT_SETTING, FETCH_LIMIT);
+  }
+
+  /** @return the count of worker threads used by {@link #processInPartitions} */
+  protected int getPartitionThreadCount() {
+    return AppSettings.get()
+        .getInt(
+            PARTITION_THREADS_SETTING, Math.min(4, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /** @return the count of records of each partition processed by {@link #processInPartitions} */
+  protected int getPartitionSize() {
+    return PARTITION_SIZE;
+  }
+
+  /** Save the counters kept in memory on the batch. */
+  protected void saveCounters() {
+    findBatch();
+    batch.setDone(done.get());
+    batch.setAnomaly(anomaly.get());
     checkPoint();
 
-    LOG.debug("Anomaly ::: {}", anomaly);
+    unsavedIncrements = 0;
+    lastCountersSave = System.currentTimeMillis();
   }
 
   protected void addComment(String comment) {
@@ -293,6 +536,32 @@ public abstract class AbstractBatch {
     return field.getType().equals(EntityHelper.getEntityClass(model));
   }
 
+  /**
+   * Unit of work run by {@link #processInPartitions} on each record.
+   *
+   * @param <T> the type of the records
+   */
+  @FunctionalInterface
+  public interface RecordProcessor<T extends Model> {
+    void process(T record) throws Exception;
+  }
+
+  /**
+   * Unit of work run by {@link #processInPartitions(List, ItemProcessor)} on each item.
+   *
+   * @param <K> the type of the items
+   */
+  @FunctionalInterface
+  public interface ItemProcessor<K> {
+    /** @return the count of records processed, added to the done counter */
+    int process(K item) throws Exception;
+
+    /** Trace the failure of the unit of work on an item, outside of any transaction. */
+    default void traceFailure(K item, Exception e) {
+      TraceBackService.trace(e, null, getCurrentBatchId());
+    }
+  }
+
   protected Batch findBatch() {
     if (!JPA.em().contains(batch)) {
       batch = JPA.find(Batch.class, batch.getId());
@@ -0,0 +1,234 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.SequenceVersion;
+import com.axelor.db.JPA;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out numbers of gap-tolerant sequences from blocks reserved on {@link
+ * SequenceVersion#getNextNum()}.
+ *
+ * <p>A block is reserved in its own short transaction, so the sequence version row is only locked
+ * once per block instead of being locked until the end of each document validation. Numbers of a
+ * block that are not used before a restart or an invalidation are lost, so this must never be used
+ * for sequences which require a continuous numbering.
+ *
+ * <p>Blocks are kept per node. Before a number is taken from a block, the version of the sequence
+ * version row is compared with the one seen when the block was reserved, so that a block is dropped
+ * once the row has been changed from another node, for example when its numbering is reset.
+ */
+@ThreadSafe
+@Singleton
+public class SequenceBlockAllocator {
+
+  public static final int DEFAULT_BLOCK_SIZE = 50;
+
+  protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected final Map<Long, NumberBlock> blockMap = new ConcurrentHashMap<>();
+
+  /**
+   * Get the next number of the given sequence version, reserving a new block if needed.
+   *
+   * @param sequenceVersion a persisted sequence version
+   * @param increment the increment of the sequence
+   * @param blockSize the count of numbers to reserve at once
+   * @return the next number, or -1 if the sequence version is not committed yet
+   */
+  public long nextNum(SequenceVersion sequenceVersion, int increment, int blockSize) {
+    Long sequenceVersionId = sequenceVersion.getId();
+    int size = blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+    int step = increment > 0 ? increment : 1;
+
+    while (true) {
+      NumberBlock block = getCurrentBlock(sequenceVersionId);
+      if (block != null) {
+        long nextNum = block.take(step);
+        if (nextNum > 0) {
+          return nextNum;
+        }
+      }
+
+      synchronized (this) {
+        if (blockMap.get(sequenceVersionId) == block
+            && !putNewBlock(sequenceVersionId, size, step)) {
+          return -1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Make sure the current block of the given sequence version holds at least the given count of
+   * numbers, reserving a new block large enough otherwise, so that the numbers of a bulk operation
+   * are reserved at once. The numbers left in the replaced block are lost.
+   *
+   * @param sequenceVersion a persisted sequence version
+   * @param increment the increment of the sequence
+   * @param count the count of numbers about to be taken
+   * @param blockSize the minimal count of numbers to reserve
+   */
+  public void reserve(SequenceVersion sequenceVersion, int increment, int count, int blockSize) {
+    Long sequenceVersionId = sequenceVersion.getId();
+    int size = Math.max(count, blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE);
+    int step = increment > 0 ? increment : 1;
+
+    if (count <= 0) {
+      return;
+    }
+
+    synchronized (this) {
+      NumberBlock block = getCurrentBlock(sequenceVersionId);
+      if (block == null || block.remaining(step) < count) {
+        putNewBlock(sequenceVersionId, size, step);
+      }
+    }
+  }
+
+  /** Drop the blocks reserved for the versions of the given sequence. */
+  public void invalidate(Sequence sequence) {
+    if (sequence.getSequenceVersionList() == null) {
+      return;
+    }
+    for (SequenceVersion sequenceVersion : sequence.getSequenceVersionList()) {
+      if (sequenceVersion.getId() != null) {
+        blockMap.remove(sequenceVersion.getId());
+      }
+    }
+  }
+
+  /**
+   * Get the block of the sequence version, dropping it if the sequence version has been changed
+   * since the block was reserved.
+   *
+   * @return the block, or null if there is no valid block
+   */
+  protected NumberBlock getCurrentBlock(Long sequenceVersionId) {
+    NumberBlock block = blockMap.get(sequenceVersionId);
+    if (block != null && !Objects.equals(block.version, readVersion(sequenceVersionId))) {
+      log.debug("Sequence version {} has been changed, its block is dropped", sequenceVersionId);
+      blockMap.remove(sequenceVersionId, block);
+      return null;
+    }
+    return block;
+  }
+
+  /** @return false if the sequence version is not found */
+  protected boolean putNewBlock(Long sequenceVersionId, int size, int step) {
+    NumberBlock block = reserveBlock(sequenceVersionId, size, step);
+    if (block == null) {
+      return false;
+    }
+    blockMap.put(sequenceVersionId, block);
+    log.debug(
+        "Reserved numbers {} to {} of sequence version {}",
+        block.next,
+        block.end - step,
+        sequenceVersionId);
+    return true;
+  }
+
+  /**
+   * Read the current version of the sequence version row, without flushing nor locking.
+   *
+   * @return the version, or null if the sequence version is not found
+   */
+  protected Integer readVersion(Long sequenceVersionId) {
+    List<Integer> versionList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.version FROM SequenceVersion self WHERE self.id = :id", Integer.class)
+            .setParameter("id", sequenceVersionId)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getResultList();
+    return versionList.isEmpty() ? null : versionList.get(0);
+  }
+
+  /**
+   * Reserve a block of numbers in a separate transaction, committed before returning.
+   *
+   * @return the block, or null if the sequence version is not found
+   */
+  protected NumberBlock reserveBlock(Long sequenceVersionId, int size, int step) {
+    EntityManager em = JPA.em().getEntityManagerFactory().createEntityManager();
+    EntityTransaction transaction = em.getTransaction();
+    try {
+      transaction.begin();
+      SequenceVersion sequenceVersion =
+          em.find(SequenceVersion.class, sequenceVersionId, LockModeType.PESSIMISTIC_WRITE);
+      if (sequenceVersion == null) {
+        transaction.rollback();
+        return null;
+      }
+      long start = sequenceVersion.getNextNum();
+      sequenceVersion.setNextNum(start + (long) size * step);
+      transaction.commit();
+      return new NumberBlock(start, start + (long) size * step, sequenceVersion.getVersion());
+    } catch (RuntimeException e) {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      throw e;
+    } finally {
+      em.close();
+    }
+  }
+
+  protected static class NumberBlock {
+    protected long next;
+    protected final long end;
+    protected final Integer version;
+
+    /** @param version the version of the sequence version row once the block is reserved */
+    protected NumberBlock(long next, long end, Integer version) {
+      this.next = next;
+      this.end = end;
+      this.version = version;
+    }
+
+    /** @return the next number of the block, or -1 if the block is exhausted */
+    protected synchronized long take(int step) {
+      if (next >= end) {
+        return -1;
+      }
+      long nextNum = next;
+      next += step;
+      return nextNum;
+    }
+
+    protected synchronized long remaining(int step) {
+      return next >= end ? 0 : (end - next + step - 1) / step;
+    }
+  }
+}
@@ -45,7 +45,9 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoField;
 import java.time.temporal.IsoFields;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.persistence.FlushModeType;
@@ -84,17 +86,21 @@ public class SequenceService {
 
   protected final SequenceRepository sequenceRepo;
 
+  protected final SequenceBlockAllocator sequenceBlockAllocator;
+
   @Inject
   public SequenceService(
       SequenceVersionRepository sequenceVersionRepository,
       AppBaseService appBaseService,
       SequenceRepository sequenceRepo,
-      SequenceVersionGeneratorService sequenceVersionGeneratorService) {
+      SequenceVersionGeneratorService sequenceVersionGeneratorService,
+      SequenceBlockAllocator sequenceBlockAllocator) {
 
     this.sequenceVersionRepository = sequenceVersionRepository;
     this.appBaseService = appBaseService;
     this.sequenceRepo = sequenceRepo;
     this.sequenceVersionGeneratorService = sequenceVersionGeneratorService;
+    this.sequenceBlockAllocator = sequenceBlockAllocator;
   }
 
   public static boolean isYearValid(Sequence sequence) {
@@ -192,6 +198,13 @@ public class SequenceService {
   public String getSequenceNumber(
       Sequence sequence, LocalDate refDate, Class objectClass, String fieldName)
       throws AxelorException {
+    if (sequence.getGapTolerantOk()) {
+      String nextSeq = getGapTolerantSequenceNumber(sequence, refDate, objectClass, fieldName);
+      if (nextSeq != null) {
+        return nextSeq;
+      }
+    }
+
     Sequence seq =
         JPA.em()
             .createQuery("SELECT self FROM Sequence self WHERE id = :id", Sequence.class)
@@ -215,8 +228,85 @@ public class SequenceService {
     return nextSeq;
   }
 
+  /**
+   * Get a sequence number from the blocks reserved by this node, without locking the sequence. The
+   * numbering can contain gaps and is not chronological between nodes.
+   *
+   * @return the sequence number, or null if the sequence version is not committed yet, in which
+   *     case the number must be computed in strict mode
+   */
+  protected String getGapTolerantSequenceNumber(
+      Sequence sequence, LocalDate refDate, Class objectClass, String fieldName)
+      throws AxelorException {
+    SequenceVersion sequenceVersion = getVersion(sequence, refDate);
+    if (sequenceVersion.getId() == null) {
+      return null;
+    }
+
+    long nextNum =
+        sequenceBlockAllocator.nextNum(
+            sequenceVersion, sequence.getToBeAdded(), sequence.getReservedBlockSize());
+    if (nextNum < 0) {
+      return null;
+    }
+    String nextSeq = computeNextSeq(sequence, getSequenceValue(sequence, nextNum), refDate);
+
+    // reserved numbers are unique, the existence check does not need to lock anything
+    if (appBaseService.getAppBase().getCheckExistingSequenceOnGeneration()
+        && objectClass != null
+        && !Strings.isNullOrEmpty(fieldName)) {
+      this.isSequenceAlreadyExisting(objectClass, fieldName, nextSeq, sequence, LockModeType.NONE);
+    }
+
+    return nextSeq;
+  }
+
+  /**
+   * Reserve at once the numbers of a gap-tolerant sequence about to be taken by a bulk operation,
+   * one number per reference date, so that they are then taken without locking nor reserving
+   * anything. Does nothing for the other sequences, whose numbers must be taken one by one in the
+   * transaction of each record.
+   *
+   * @param sequence the sequence
+   * @param refDateList the reference date of each number to take
+   */
+  public void reserveSequenceNumbers(Sequence sequence, List<LocalDate> refDateList) {
+    if (!sequence.getGapTolerantOk() || CollectionUtils.isEmpty(refDateList)) {
+      return;
+    }
+
+    Map<LocalDate, Integer> dateCountMap = new HashMap<>();
+    refDateList.forEach(refDate -> dateCountMap.merge(refDate, 1, Integer::sum));
+
+    Map<Long, SequenceVersion> sequenceVersionMap = new HashMap<>();
+    Map<Long, Integer> countMap = new HashMap<>();
+    dateCountMap.forEach(
+        (refDate, count) -> {
+          SequenceVersion sequenceVersion = getVersion(sequence, refDate);
+          if (sequenceVersion.getId() != null) {
+            sequenceVersionMap.putIfAbsent(sequenceVersion.getId(), sequenceVersion);
+            countMap.merge(sequenceVersion.getId(), count, Integer::sum);
+          }
+        });
+
+    countMap.forEach(
+        (sequenceVersionId, count) ->
+            sequenceBlockAllocator.reserve(
+                sequenceVersionMap.get(sequenceVersionId),
+                sequence.getToBeAdded(),
+                count,
+                sequence.getReservedBlockSize()));
+  }
+
   protected void isSequenceAlreadyExisting(
       Class objectClass, String fieldName, String nextSeq, Sequence seq) throws AxelorException {
+    isSequenceAlreadyExisting(
+        objectClass, fieldName, nextSeq, seq, LockModeType.PESSIMISTIC_WRITE);
+  }
+
+  protected void isSequenceAlreadyExisting(
+      Class objectClass, String fieldName, String nextSeq, Sequence seq, LockModeType lockMode)
+      throws AxelorException {
     String table = objectClass.getSimpleName();
     boolean isSequenceAlreadyExisting =
         CollectionUtils.isNotEmpty(
@@ -225,7 +315,7 @@ public class SequenceService {
                     "SELECT self FROM " + table + " self WHERE " + fieldName + " = :nextSeq",
                     objectClass)
                 .setParameter("nextSeq", nextSeq)
-                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setLockMode(lockMode)
                 .setFlushMode(FlushModeType.COMMIT)
                 .getResultList());
     if (isSequenceAlreadyExisting) {
@@ -240,12 +330,14 @@ public class SequenceService {
   protected String computeNextSeq(
       SequenceVersion sequenceVersion, Sequence sequence, LocalDate refDate)
       throws AxelorException {
+    return computeNextSeq(sequence, getSequenceValue(sequenceVersion), refDate);
+  }
+
+  protected String computeNextSeq(Sequence sequence, String sequenceValue, LocalDate refDate) {
 
     String seqPrefixe = StringUtils.defaultString(sequence.getPrefixe(), "");
     String seqSuffixe = StringUtils.defaultString(sequence.getSuffixe(), "");
 
-    String sequenceValue = getSequenceValue(sequenceVersion);
-
     String nextSeq =
         (seqPrefixe + sequenceValue + seqSuffixe)
             .replace(PATTERN_FULL_YEAR, Integer.toString(refDate.get(ChronoField.YEAR_OF_ERA)))
@@ -262,10 +354,12 @@ public class SequenceService {
   }
 
   protected String getSequenceValue(SequenceVersion sequenceVersion) throws AxelorException {
+    return getSequenceValue(sequenceVersion.getSequence(), sequenceVersion.getNextNum());
+  }
+
+  protected String getSequenceValue(Sequence sequence, Long nextNum) throws AxelorException {
 
-    Sequence sequence = sequenceVersion.getSequence();
     SequenceTypeSelect sequenceTypeSelect = sequence.getSequenceTypeSelect();
-    Long nextNum = sequenceVersion.getNextNum();
 
     String padStr;
     String nextSequence;
@@ -284,7 +378,7 @@ public class SequenceService {
 
       default:
         throw new AxelorException(
-            sequenceVersion,
+            sequence,
             TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
             I18n.get(BaseExceptionMessage.SEQUENCE_TYPE_UNHANDLED),
             sequenceTypeSelect);
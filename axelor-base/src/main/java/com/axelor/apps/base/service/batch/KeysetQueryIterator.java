@@ -0,0 +1,147 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.batch;
+
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate over the records matching a filter by pages, ordered by id.
+ *
+ * <p>Each page is fetched with a {@code self.id > :lastId} condition on the last id of the
+ * previous page instead of an offset, so the cost of fetching a page does not depend on the count
+ * of records already processed. As the position is kept on the id, records which stop matching the
+ * filter once processed are neither skipped nor processed twice, and the persistence context can be
+ * cleared between pages.
+ *
+ * <pre>
+ * KeysetQueryIterator&lt;Invoice&gt; iterator =
+ *     KeysetQueryIterator.of(Invoice.class, "self.statusSelect = :status")
+ *         .bind("status", InvoiceRepository.STATUS_VALIDATED)
+ *         .pageSize(getFetchLimit());
+ * while (iterator.hasNext()) {
+ *   for (Invoice invoice : iterator.next()) { ... }
+ *   JPA.clear();
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the records
+ */
+public class KeysetQueryIterator<T extends Model> implements Iterator<List<T>> {
+
+  protected static final String LAST_ID_PARAM = "keysetLastId";
+
+  protected final Class<T> entityClass;
+  protected final String filter;
+  protected final Map<String, Object> bindings = new HashMap<>();
+  protected int pageSize = AbstractBatch.getDefaultFetchLimit();
+
+  protected long lastId = 0L;
+  protected List<T> nextPage;
+  protected boolean exhausted;
+
+  protected KeysetQueryIterator(Class<T> entityClass, String filter) {
+    this.entityClass = entityClass;
+    this.filter = filter;
+  }
+
+  /**
+   * @param entityClass the class of the records
+   * @param filter the filter of the records, with named parameters only, or null for all records
+   */
+  public static <T extends Model> KeysetQueryIterator<T> of(Class<T> entityClass, String filter) {
+    return new KeysetQueryIterator<>(entityClass, filter);
+  }
+
+  public KeysetQueryIterator<T> bind(String name, Object value) {
+    bindings.put(name, value);
+    return this;
+  }
+
+  public KeysetQueryIterator<T> bind(Map<String, Object> values) {
+    bindings.putAll(values);
+    return this;
+  }
+
+  /**
+   * @param pageSize the count of records of each page, or 0 for the default fetch limit of the
+   *     batches
+   */
+  public KeysetQueryIterator<T> pageSize(int pageSize) {
+    this.pageSize = pageSize > 0 ? pageSize : AbstractBatch.getDefaultFetchLimit();
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextPage == null && !exhausted) {
+      List<T> page = fetchPage(lastId, pageSize);
+      if (page.isEmpty()) {
+        exhausted = true;
+      } else {
+        nextPage = page;
+      }
+    }
+    return nextPage != null;
+  }
+
+  /** @return the next page of records, never empty */
+  @Override
+  public List<T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<T> page = nextPage;
+    nextPage = null;
+    lastId = page.get(page.size() - 1).getId();
+    exhausted = page.size() < pageSize;
+    return page;
+  }
+
+  /**
+   * Resume the iteration right after the given id, dropping the rest of the current page. Useful
+   * when the processing of a page is interrupted before its end.
+   */
+  public KeysetQueryIterator<T> seek(Long lastId) {
+    this.lastId = lastId != null ? lastId : 0L;
+    this.nextPage = null;
+    this.exhausted = false;
+    return this;
+  }
+
+  protected List<T> fetchPage(long lastId, int pageSize) {
+    String keysetFilter = "self.id > :" + LAST_ID_PARAM;
+    if (filter != null) {
+      keysetFilter = "(" + filter + ") AND " + keysetFilter;
+    }
+
+    return Query.of(entityClass)
+        .filter(keysetFilter)
+        .bind(bindings)
+        .bind(LAST_ID_PARAM, lastId)
+        .order("id")
+        .fetch(pageSize);
+  }
+}
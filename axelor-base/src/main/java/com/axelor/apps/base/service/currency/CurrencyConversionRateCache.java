@@ -0,0 +1,245 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.currency;
+
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.db.repo.CurrencyConversionLineRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.FlushModeType;
+import javax.transaction.Synchronization;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.Session;
+
+/**
+ * In-memory time series of the currency conversion rates, shared between requests.
+ *
+ * <p>The conversion lines of the application are loaded once and indexed per pair of currencies on
+ * their from date, so that finding the rate applicable at a date is a single navigable map lookup
+ * instead of a scan of the lines. The cache is dropped each time a conversion line is created,
+ * updated or removed, and after each update of the rates from a web service, then again once the
+ * transaction of that change is over. As changes made on another node are not notified, the count,
+ * the greatest id and the last update date of the conversion lines are also checked at most every
+ * {@link #STAMP_CHECK_INTERVAL_MILLIS} milliseconds, and the rates reloaded if they have changed.
+ */
+@Singleton
+public class CurrencyConversionRateCache {
+
+  protected static final long STAMP_CHECK_INTERVAL_MILLIS = 10_000;
+
+  protected final CurrencyConversionLineRepository currencyConversionLineRepo;
+
+  protected final AtomicLong generation = new AtomicLong();
+  protected volatile Rates rates;
+
+  protected final ThreadLocal<Boolean> invalidationPending = new ThreadLocal<>();
+
+  @Inject
+  public CurrencyConversionRateCache(CurrencyConversionLineRepository currencyConversionLineRepo) {
+    this.currencyConversionLineRepo = currencyConversionLineRepo;
+  }
+
+  /** Drop the loaded rates, they will be reloaded on next use. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    rates = null;
+    invalidateAfterCompletion();
+  }
+
+  /**
+   * Drop the loaded rates again once the current transaction is over, so that rates loaded in the
+   * meantime from uncommitted or outdated data are not kept.
+   */
+  protected void invalidateAfterCompletion() {
+    Session session = JPA.em().unwrap(Session.class);
+    if (!session.getTransaction().isActive() || invalidationPending.get() != null) {
+      return;
+    }
+
+    invalidationPending.set(Boolean.TRUE);
+    session
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                invalidationPending.remove();
+                generation.incrementAndGet();
+                rates = null;
+              }
+            });
+  }
+
+  /**
+   * Get the rate defined from the start currency to the end currency at the given date. Inverse
+   * conversions are not looked up. When several lines cover the date, the first one in id order is
+   * used.
+   *
+   * @return the rate, or null if no conversion line covers the date
+   */
+  public Rate getRate(Currency startCurrency, Currency endCurrency, LocalDate date) {
+    PairRates pairRates =
+        getRates().rateMap.get(Pair.of(startCurrency.getCodeISO(), endCurrency.getCodeISO()));
+    return pairRates == null ? null : pairRates.getRate(date);
+  }
+
+  protected Rates getRates() {
+    Rates currentRates = rates;
+    long now = System.currentTimeMillis();
+    List<Object> stamp = null;
+    if (currentRates != null) {
+      if (now - currentRates.checkTime < STAMP_CHECK_INTERVAL_MILLIS) {
+        return currentRates;
+      }
+      stamp = fetchStamp();
+      if (stamp.equals(currentRates.stamp)) {
+        currentRates.checkTime = now;
+        return currentRates;
+      }
+    }
+
+    long currentGeneration = generation.get();
+    // Read before the lines, so that a change committed in between only causes another reload
+    if (stamp == null) {
+      stamp = fetchStamp();
+    }
+    currentRates = new Rates(buildRateMap(fetchCurrencyConversionLines()), stamp, now);
+    if (generation.get() == currentGeneration) {
+      rates = currentRates;
+    }
+    return currentRates;
+  }
+
+  /** @return the count, the greatest id and the last update date of the conversion lines */
+  protected List<Object> fetchStamp() {
+    return Arrays.asList(
+        JPA.em()
+            .createQuery(
+                "SELECT COUNT(self.id), MAX(self.id), MAX(self.updatedOn) "
+                    + "FROM CurrencyConversionLine self WHERE self.appBase IS NOT NULL",
+                Object[].class)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult());
+  }
+
+  protected List<CurrencyConversionLine> fetchCurrencyConversionLines() {
+    return currencyConversionLineRepo
+        .all()
+        .filter("self.appBase IS NOT NULL")
+        .order("id")
+        .fetch();
+  }
+
+  /** @param currencyConversionLineList the conversion lines, in id order */
+  protected Map<Pair<String, String>, PairRates> buildRateMap(
+      List<CurrencyConversionLine> currencyConversionLineList) {
+    Map<Pair<String, String>, PairRates> newRateMap = new HashMap<>();
+
+    for (CurrencyConversionLine ccl : currencyConversionLineList) {
+      newRateMap
+          .computeIfAbsent(
+              Pair.of(ccl.getStartCurrency().getCodeISO(), ccl.getEndCurrency().getCodeISO()),
+              key -> new PairRates())
+          .add(new Rate(ccl.getExchangeRate(), ccl.getFromDate(), ccl.getToDate()));
+    }
+    return newRateMap;
+  }
+
+  /** Loaded rates, with the stamp of the conversion lines they were loaded from. */
+  protected static class Rates {
+    protected final Map<Pair<String, String>, PairRates> rateMap;
+    protected final List<Object> stamp;
+    protected volatile long checkTime;
+
+    protected Rates(
+        Map<Pair<String, String>, PairRates> rateMap, List<Object> stamp, long checkTime) {
+      this.rateMap = rateMap;
+      this.stamp = stamp;
+      this.checkTime = checkTime;
+    }
+  }
+
+  /**
+   * Rates of a pair of currencies. Rates are looked up on their from date, unless the periods of
+   * the pair overlap: the rates are then scanned in id order, as the first line covering the date
+   * takes precedence.
+   */
+  protected static class PairRates {
+    protected final List<Rate> rateList = new ArrayList<>();
+    protected final NavigableMap<LocalDate, Rate> rateByFromDateMap = new TreeMap<>();
+    protected boolean overlapping;
+
+    protected void add(Rate rate) {
+      rateList.add(rate);
+      if (overlapping) {
+        return;
+      }
+      Map.Entry<LocalDate, Rate> previous = rateByFromDateMap.floorEntry(rate.fromDate);
+      Map.Entry<LocalDate, Rate> next = rateByFromDateMap.ceilingEntry(rate.fromDate);
+      overlapping =
+          (previous != null && previous.getValue().covers(rate.fromDate))
+              || (next != null && rate.covers(next.getKey()));
+      rateByFromDateMap.put(rate.fromDate, rate);
+    }
+
+    protected Rate getRate(LocalDate date) {
+      if (overlapping) {
+        return rateList.stream().filter(rate -> rate.covers(date)).findFirst().orElse(null);
+      }
+      Map.Entry<LocalDate, Rate> entry = rateByFromDateMap.floorEntry(date);
+      return entry == null || !entry.getValue().covers(date) ? null : entry.getValue();
+    }
+  }
+
+  /** Exchange rate of a conversion line, valid from its from date until its to date. */
+  public static class Rate {
+    protected final BigDecimal exchangeRate;
+    protected final LocalDate fromDate;
+    protected final LocalDate toDate;
+
+    protected Rate(BigDecimal exchangeRate, LocalDate fromDate, LocalDate toDate) {
+      this.exchangeRate = exchangeRate;
+      this.fromDate = fromDate;
+      this.toDate = toDate;
+    }
+
+    public BigDecimal getExchangeRate() {
+      return exchangeRate;
+    }
+
+    protected boolean covers(LocalDate date) {
+      return !fromDate.isAfter(date) && (toDate == null || !toDate.isBefore(date));
+    }
+  }
+}
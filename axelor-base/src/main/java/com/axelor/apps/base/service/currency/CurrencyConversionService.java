@@ -42,12 +42,16 @@ public abstract class CurrencyConversionService {
 
   protected AppBaseService appBaseService;
   protected CurrencyConversionLineRepository cclRepo;
+  protected CurrencyConversionRateCache currencyConversionRateCache;
 
   @Inject
   public CurrencyConversionService(
-      AppBaseService appBaseService, CurrencyConversionLineRepository cclRepo) {
+      AppBaseService appBaseService,
+      CurrencyConversionLineRepository cclRepo,
+      CurrencyConversionRateCache currencyConversionRateCache) {
     this.appBaseService = appBaseService;
     this.cclRepo = cclRepo;
+    this.currencyConversionRateCache = currencyConversionRateCache;
   }
 
   /**
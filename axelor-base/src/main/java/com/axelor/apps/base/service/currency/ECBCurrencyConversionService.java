@@ -60,8 +60,10 @@ public class ECBCurrencyConversionService extends CurrencyConversionService {
 
   @Inject
   public ECBCurrencyConversionService(
-      AppBaseService appBaseService, CurrencyConversionLineRepository cclRepo) {
-    super(appBaseService, cclRepo);
+      AppBaseService appBaseService,
+      CurrencyConversionLineRepository cclRepo,
+      CurrencyConversionRateCache currencyConversionRateCache) {
+    super(appBaseService, cclRepo, currencyConversionRateCache);
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -142,6 +144,8 @@ public class ECBCurrencyConversionService extends CurrencyConversionService {
         }
       }
     }
+    // The new lines are committed, drop the rates that may have been reloaded meanwhile
+    currencyConversionRateCache.invalidate();
   }
 
   @Override
@@ -64,8 +64,10 @@ public class FixerCurrencyConversionService extends CurrencyConversionService {
 
   @Inject
   public FixerCurrencyConversionService(
-      AppBaseService appBaseService, CurrencyConversionLineRepository cclRepo) {
-    super(appBaseService, cclRepo);
+      AppBaseService appBaseService,
+      CurrencyConversionLineRepository cclRepo,
+      CurrencyConversionRateCache currencyConversionRateCache) {
+    super(appBaseService, cclRepo, currencyConversionRateCache);
   }
 
   @Override
@@ -131,6 +133,8 @@ public class FixerCurrencyConversionService extends CurrencyConversionService {
               variations);
         }
       }
+      // The new lines are committed, drop the rates that may have been reloaded meanwhile
+      currencyConversionRateCache.invalidate();
 
     } catch (Exception e) {
       throw new AxelorException(
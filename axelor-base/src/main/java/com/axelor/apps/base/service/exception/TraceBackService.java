@@ -33,6 +33,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -182,6 +183,32 @@ public class TraceBackService {
     JPA.runInTransaction(() -> LOG.error(_create(e, origin, 0, batchId).getTrace()));
   }
 
+  /**
+   * Trace the exceptions collected by a batch in a single transaction, so that the trace backs are
+   * inserted together instead of one transaction each.
+   *
+   * @param exceptions the exceptions to trace
+   * @param origin the origin of the exceptions
+   * @param batchId the id of the batch
+   */
+  public static void trace(
+      final Collection<? extends Throwable> exceptions, final String origin, final long batchId) {
+    if (exceptions.isEmpty()) {
+      return;
+    }
+
+    JPA.runInTransaction(
+        () -> {
+          for (Throwable e : exceptions) {
+            if (e instanceof AxelorException) {
+              LOG.trace(_create((AxelorException) e, origin, batchId).getTrace());
+            } else {
+              LOG.error(_create(e, origin, 0, batchId).getTrace());
+            }
+          }
+        });
+  }
+
   /**
    * Tracer une exception dans Traceback correspondant à un bug.
    *
@@ -0,0 +1,154 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.db.Query;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestUnitConversionGraph {
+
+  private UnitConversionRepository unitConversionRepo;
+  private UnitConversionGraph unitConversionGraph;
+
+  private Unit kilogram;
+  private Unit gram;
+  private Unit milligram;
+  private Unit ton;
+  private Unit box;
+  private Unit piece;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void prepare() {
+    kilogram = createUnit(1L, "kg");
+    gram = createUnit(2L, "g");
+    milligram = createUnit(3L, "mg");
+    ton = createUnit(4L, "t");
+    box = createUnit(5L, "box");
+    piece = createUnit(6L, "pc");
+
+    List<UnitConversion> unitConversionList =
+        Arrays.asList(
+            createCoefConversion(kilogram, gram, "1000"),
+            createCoefConversion(gram, milligram, "1000"),
+            createCoefConversion(ton, kilogram, "1000"),
+            createFormulaConversion(box, piece, "$Product.netMass$ * 10"));
+
+    Query<UnitConversion> query = mock(Query.class);
+    when(query.fetch()).thenReturn(unitConversionList);
+    unitConversionRepo = mock(UnitConversionRepository.class);
+    when(unitConversionRepo.all()).thenReturn(query);
+
+    unitConversionGraph =
+        new UnitConversionGraph(unitConversionRepo) {
+          @Override
+          protected void invalidateAfterCompletion() {}
+        };
+  }
+
+  @Test
+  void testDirectCoefficient() {
+    assertEquals("1000", unitConversionGraph.getDirectCoefficient(kilogram, gram));
+    assertEquals("0.001", unitConversionGraph.getDirectCoefficient(gram, kilogram));
+    Assertions.assertNull(unitConversionGraph.getDirectCoefficient(kilogram, milligram));
+  }
+
+  @Test
+  void testMultiHopCoefficient() {
+    assertEquals("1000000000", unitConversionGraph.getCoefficient(ton, milligram));
+    assertEquals("0.000000001", unitConversionGraph.getCoefficient(milligram, ton));
+    Assertions.assertNull(unitConversionGraph.getCoefficient(ton, piece));
+  }
+
+  @Test
+  void testFormulaConversion() {
+    Assertions.assertFalse(unitConversionGraph.getFormulaConversion(box, piece).isInverse());
+    Assertions.assertTrue(unitConversionGraph.getFormulaConversion(piece, box).isInverse());
+    Assertions.assertNull(unitConversionGraph.getFormulaConversion(kilogram, gram));
+  }
+
+  @Test
+  void testFormulaIsCompiledOnce() {
+    String formula = unitConversionGraph.getFormulaConversion(box, piece).getFormula();
+    assertEquals("25", unitConversionGraph.evaluateFormula(formula, createProduct("2.5")));
+    assertEquals("40", unitConversionGraph.evaluateFormula(formula, createProduct("4")));
+    Assertions.assertEquals(1, unitConversionGraph.formulaScriptMap.size());
+  }
+
+  @Test
+  void testConversionsAreLoadedOnce() {
+    unitConversionGraph.getCoefficient(ton, milligram);
+    unitConversionGraph.getCoefficient(ton, milligram);
+    unitConversionGraph.getDirectCoefficient(kilogram, gram);
+    verify(unitConversionRepo, times(1)).all();
+
+    unitConversionGraph.invalidate();
+    unitConversionGraph.getCoefficient(ton, milligram);
+    verify(unitConversionRepo, times(2)).all();
+  }
+
+  private void assertEquals(String expected, BigDecimal actual) {
+    Assertions.assertEquals(0, new BigDecimal(expected).compareTo(actual));
+  }
+
+  private Unit createUnit(Long id, String name) {
+    Unit unit = new Unit();
+    unit.setId(id);
+    unit.setName(name);
+    return unit;
+  }
+
+  private Product createProduct(String netMass) {
+    Product product = new Product();
+    product.setNetMass(new BigDecimal(netMass));
+    return product;
+  }
+
+  private UnitConversion createCoefConversion(Unit startUnit, Unit endUnit, String coef) {
+    UnitConversion unitConversion = new UnitConversion();
+    unitConversion.setStartUnit(startUnit);
+    unitConversion.setEndUnit(endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_COEFF);
+    unitConversion.setCoef(new BigDecimal(coef));
+    return unitConversion;
+  }
+
+  private UnitConversion createFormulaConversion(Unit startUnit, Unit endUnit, String formula) {
+    UnitConversion unitConversion = new UnitConversion();
+    unitConversion.setStartUnit(startUnit);
+    unitConversion.setEndUnit(endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_FORMULA);
+    unitConversion.setFormula(formula);
+    return unitConversion;
+  }
+}
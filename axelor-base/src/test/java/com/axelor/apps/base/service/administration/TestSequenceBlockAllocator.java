@@ -0,0 +1,193 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.apps.base.db.SequenceVersion;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Strict and gap-tolerant sequence modes with 32 concurrent validators taking numbers from the
+ * same sequence version, the database row lock being simulated by a monitor.
+ */
+class TestSequenceBlockAllocator {
+
+  private static final int VALIDATORS = 32;
+  private static final int NUMBERS_PER_VALIDATOR = 20;
+  private static final long LOCK_MILLIS = 1;
+
+  /** Simulated sequence version row. */
+  private static class SequenceVersionRow {
+    private long nextNum = 1;
+    private int version = 0;
+
+    synchronized long lockAndIncrement(long count) throws InterruptedException {
+      Thread.sleep(LOCK_MILLIS);
+      long start = nextNum;
+      nextNum += count;
+      version++;
+      return start;
+    }
+
+    synchronized void update(long nextNum) {
+      this.nextNum = nextNum;
+      version++;
+    }
+
+    synchronized int getVersion() {
+      return version;
+    }
+  }
+
+  /** Allocator reserving its blocks on a simulated sequence version row. */
+  private static class SimulatedAllocator extends SequenceBlockAllocator {
+    private final SequenceVersionRow row;
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    SimulatedAllocator(SequenceVersionRow row) {
+      this.row = row;
+    }
+
+    @Override
+    protected NumberBlock reserveBlock(Long sequenceVersionId, int size, int step) {
+      reservations.incrementAndGet();
+      try {
+        synchronized (row) {
+          long start = row.lockAndIncrement((long) size * step);
+          return new NumberBlock(start, start + (long) size * step, row.getVersion());
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    protected Integer readVersion(Long sequenceVersionId) {
+      return row.getVersion();
+    }
+  }
+
+  @Test
+  void gapTolerantNumbersAreUnique() throws Exception {
+    SequenceVersion sequenceVersion = new SequenceVersion();
+    sequenceVersion.setId(1L);
+
+    SequenceVersionRow strictRow = new SequenceVersionRow();
+    List<Long> strictNumbers =
+        runValidators(
+            () -> {
+              try {
+                return strictRow.lockAndIncrement(1);
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+
+    SequenceBlockAllocator allocator = new SimulatedAllocator(new SequenceVersionRow());
+    List<Long> gapTolerantNumbers = runValidators(() -> allocator.nextNum(sequenceVersion, 1, 50));
+
+    Assertions.assertEquals(strictNumbers.size(), new HashSet<>(strictNumbers).size());
+    Assertions.assertEquals(gapTolerantNumbers.size(), new HashSet<>(gapTolerantNumbers).size());
+  }
+
+  @Test
+  void blocksFollowEachOther() {
+    SequenceVersion sequenceVersion = new SequenceVersion();
+    sequenceVersion.setId(1L);
+    SequenceBlockAllocator allocator = new SimulatedAllocator(new SequenceVersionRow());
+
+    Set<Long> numbers = new HashSet<>();
+    for (int i = 0; i < 7; i++) {
+      numbers.add(allocator.nextNum(sequenceVersion, 2, 3));
+    }
+
+    Assertions.assertEquals(Set.of(1L, 3L, 5L, 7L, 9L, 11L, 13L), numbers);
+  }
+
+  @Test
+  void bulkReservationTakesOneRoundTrip() {
+    SequenceVersion sequenceVersion = new SequenceVersion();
+    sequenceVersion.setId(1L);
+    SimulatedAllocator allocator = new SimulatedAllocator(new SequenceVersionRow());
+
+    allocator.reserve(sequenceVersion, 1, 120, 50);
+    List<Long> numbers = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      numbers.add(allocator.nextNum(sequenceVersion, 1, 50));
+    }
+    allocator.reserve(sequenceVersion, 1, 0, 50);
+
+    Assertions.assertEquals(1, allocator.reservations.get());
+    Assertions.assertEquals(1L, numbers.get(0));
+    Assertions.assertEquals(120L, numbers.get(119));
+  }
+
+  @Test
+  void blockIsDroppedOnceChangedFromAnotherNode() {
+    SequenceVersion sequenceVersion = new SequenceVersion();
+    sequenceVersion.setId(1L);
+    SequenceVersionRow row = new SequenceVersionRow();
+    SimulatedAllocator allocator = new SimulatedAllocator(row);
+
+    Assertions.assertEquals(1L, allocator.nextNum(sequenceVersion, 1, 50));
+    Assertions.assertEquals(2L, allocator.nextNum(sequenceVersion, 1, 50));
+
+    // Numbering reset from another node, which does not invalidate the blocks of this one
+    row.update(1000);
+
+    Assertions.assertEquals(1000L, allocator.nextNum(sequenceVersion, 1, 50));
+    Assertions.assertEquals(1001L, allocator.nextNum(sequenceVersion, 1, 50));
+    Assertions.assertEquals(2, allocator.reservations.get());
+  }
+
+  private List<Long> runValidators(Supplier<Long> numberSupplier) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(VALIDATORS);
+    try {
+      List<Callable<List<Long>>> validators = new ArrayList<>();
+      for (int i = 0; i < VALIDATORS; i++) {
+        validators.add(
+            () -> {
+              List<Long> numbers = new ArrayList<>();
+              for (int j = 0; j < NUMBERS_PER_VALIDATOR; j++) {
+                numbers.add(numberSupplier.get());
+              }
+              return numbers;
+            });
+      }
+
+      List<Long> numbers = new ArrayList<>();
+      for (Future<List<Long>> future : executor.invokeAll(validators)) {
+        numbers.addAll(future.get());
+      }
+      return numbers;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -44,13 +44,15 @@ class TestSequenceService {
     SequenceRepository sequenceRepo = mock(SequenceRepository.class);
     SequenceVersionGeneratorService sequenceVersionGeneratorService =
         mock(SequenceVersionGeneratorService.class);
+    SequenceBlockAllocator sequenceBlockAllocator = mock(SequenceBlockAllocator.class);
 
     sequenceService =
         new SequenceService(
             sequenceVersionRepository,
             appBaseService,
             sequenceRepo,
-            sequenceVersionGeneratorService);
+            sequenceVersionGeneratorService,
+            sequenceBlockAllocator);
   }
 
   @Test
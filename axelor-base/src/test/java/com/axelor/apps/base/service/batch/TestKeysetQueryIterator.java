@@ -0,0 +1,176 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.batch;
+
+import com.axelor.apps.base.db.Product;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Benchmark of the keyset pagination against the offset pagination, on a simulated id index: the
+ * count of rows read to fetch a page must not grow with the position of the page.
+ */
+class TestKeysetQueryIterator {
+
+  private static final int RECORDS = 20000;
+  private static final int PAGE_SIZE = 100;
+
+  /** Simulated table with an index on the id, counting the rows read. */
+  private static class ProductTable {
+    private final NavigableMap<Long, Product> index = new TreeMap<>();
+    private long rowsRead;
+
+    ProductTable(int size) {
+      for (long id = 1; id <= size; id++) {
+        Product product = new Product();
+        product.setId(id);
+        index.put(id, product);
+      }
+    }
+
+    List<Product> fetchAfter(long lastId, int limit, Predicate<Product> filter) {
+      List<Product> page = new ArrayList<>();
+      for (Product product : index.tailMap(lastId, false).values()) {
+        rowsRead++;
+        if (filter.test(product)) {
+          page.add(product);
+          if (page.size() == limit) {
+            break;
+          }
+        }
+      }
+      return page;
+    }
+
+    List<Product> fetchOffset(int offset, int limit, Predicate<Product> filter) {
+      List<Product> page = new ArrayList<>();
+      int skipped = 0;
+      for (Product product : index.values()) {
+        rowsRead++;
+        if (!filter.test(product)) {
+          continue;
+        }
+        if (skipped < offset) {
+          skipped++;
+          continue;
+        }
+        page.add(product);
+        if (page.size() == limit) {
+          break;
+        }
+      }
+      return page;
+    }
+  }
+
+  private static class SimulatedIterator extends KeysetQueryIterator<Product> {
+    private final ProductTable table;
+    private final Predicate<Product> filter;
+
+    SimulatedIterator(ProductTable table, Predicate<Product> filter) {
+      super(Product.class, null);
+      this.table = table;
+      this.filter = filter;
+    }
+
+    @Override
+    protected List<Product> fetchPage(long lastId, int pageSize) {
+      return table.fetchAfter(lastId, pageSize, filter);
+    }
+  }
+
+  @Test
+  void pageCostStaysFlat() {
+    ProductTable keysetTable = new ProductTable(RECORDS);
+    KeysetQueryIterator<Product> iterator =
+        new SimulatedIterator(keysetTable, product -> true).pageSize(PAGE_SIZE);
+    List<Long> keysetPageCosts = new ArrayList<>();
+    int keysetCount = 0;
+    while (iterator.hasNext()) {
+      long before = keysetTable.rowsRead;
+      keysetCount += iterator.next().size();
+      keysetPageCosts.add(keysetTable.rowsRead - before);
+    }
+
+    ProductTable offsetTable = new ProductTable(RECORDS);
+    List<Long> offsetPageCosts = new ArrayList<>();
+    int offset = 0;
+    List<Product> page;
+    do {
+      long before = offsetTable.rowsRead;
+      page = offsetTable.fetchOffset(offset, PAGE_SIZE, product -> true);
+      offset += page.size();
+      offsetPageCosts.add(offsetTable.rowsRead - before);
+    } while (!page.isEmpty());
+
+    Assertions.assertEquals(RECORDS, keysetCount);
+    Assertions.assertEquals(RECORDS, offset);
+    Assertions.assertEquals(
+        keysetPageCosts.get(0), keysetPageCosts.get(keysetPageCosts.size() - 1));
+    Assertions.assertTrue(keysetTable.rowsRead <= RECORDS);
+    Assertions.assertTrue(offsetPageCosts.get(offsetPageCosts.size() - 1) >= RECORDS);
+    Assertions.assertTrue(offsetTable.rowsRead > 50 * keysetTable.rowsRead);
+  }
+
+  @Test
+  void processedRecordsLeavingTheFilterAreNotSkipped() {
+    ProductTable table = new ProductTable(1000);
+    Map<Long, Boolean> processedMap = new TreeMap<>();
+    KeysetQueryIterator<Product> iterator =
+        new SimulatedIterator(table, product -> !processedMap.containsKey(product.getId()))
+            .pageSize(PAGE_SIZE);
+
+    while (iterator.hasNext()) {
+      for (Product product : iterator.next()) {
+        processedMap.put(product.getId(), true);
+      }
+    }
+
+    Assertions.assertEquals(1000, processedMap.size());
+  }
+
+  @Test
+  void seekResumesAfterTheGivenRecord() {
+    ProductTable table = new ProductTable(10);
+    KeysetQueryIterator<Product> iterator =
+        new SimulatedIterator(table, product -> true).pageSize(4);
+
+    List<Long> ids = new ArrayList<>();
+    Product interrupted = null;
+    for (Product product : iterator.next()) {
+      ids.add(product.getId());
+      if (product.getId() == 2L) {
+        interrupted = product;
+        break;
+      }
+    }
+    iterator.seek(interrupted.getId());
+    while (iterator.hasNext()) {
+      iterator.next().forEach(product -> ids.add(product.getId()));
+    }
+
+    Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ids);
+  }
+}
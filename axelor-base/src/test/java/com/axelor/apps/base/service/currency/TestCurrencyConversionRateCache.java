@@ -0,0 +1,132 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.currency;
+
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestCurrencyConversionRateCache {
+
+  private static final LocalDate DATE = LocalDate.of(2024, 1, 10);
+
+  private Currency euro;
+  private Currency dollar;
+  private List<CurrencyConversionLine> currencyConversionLineList;
+  private List<Object> stamp;
+  private AtomicInteger fetchCount;
+  private CurrencyConversionRateCache currencyConversionRateCache;
+
+  @BeforeEach
+  void prepare() {
+    euro = createCurrency("EUR");
+    dollar = createCurrency("USD");
+    currencyConversionLineList = new ArrayList<>();
+    stamp = List.of(0);
+    fetchCount = new AtomicInteger();
+
+    currencyConversionRateCache =
+        new CurrencyConversionRateCache(null) {
+          @Override
+          protected List<CurrencyConversionLine> fetchCurrencyConversionLines() {
+            fetchCount.incrementAndGet();
+            return currencyConversionLineList;
+          }
+
+          @Override
+          protected List<Object> fetchStamp() {
+            return stamp;
+          }
+
+          @Override
+          protected void invalidateAfterCompletion() {}
+        };
+  }
+
+  @Test
+  void rateIsFoundOnItsPeriod() {
+    addLine("1.1", DATE, DATE.plusDays(9));
+    addLine("1.2", DATE.plusDays(10), null);
+
+    Assertions.assertNull(getRate(DATE.minusDays(1)));
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE));
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE.plusDays(9)));
+    Assertions.assertEquals(new BigDecimal("1.2"), getRate(DATE.plusDays(100)));
+    Assertions.assertNull(currencyConversionRateCache.getRate(dollar, euro, DATE));
+  }
+
+  @Test
+  void firstLineIsUsedWhenPeriodsOverlap() {
+    addLine("1.1", DATE.plusDays(5), null);
+    addLine("1.2", DATE, DATE.plusDays(30));
+
+    Assertions.assertEquals(new BigDecimal("1.2"), getRate(DATE));
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE.plusDays(5)));
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE.plusDays(40)));
+  }
+
+  @Test
+  void ratesAreReloadedOnceChangedFromAnotherNode() {
+    addLine("1.1", DATE, null);
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE));
+
+    // Created from another node: no invalidation, but the stamp read from the database changes
+    currencyConversionLineList.add(0, createLine("1.3", DATE, null));
+    stamp = List.of(1);
+    Assertions.assertEquals(new BigDecimal("1.1"), getRate(DATE));
+    Assertions.assertEquals(1, fetchCount.get());
+
+    currencyConversionRateCache.rates.checkTime = 0;
+    Assertions.assertEquals(new BigDecimal("1.3"), getRate(DATE));
+    Assertions.assertEquals(2, fetchCount.get());
+  }
+
+  private BigDecimal getRate(LocalDate date) {
+    CurrencyConversionRateCache.Rate rate = currencyConversionRateCache.getRate(euro, dollar, date);
+    return rate == null ? null : rate.getExchangeRate();
+  }
+
+  private Currency createCurrency(String codeISO) {
+    Currency currency = new Currency();
+    currency.setCodeISO(codeISO);
+    return currency;
+  }
+
+  private void addLine(String exchangeRate, LocalDate fromDate, LocalDate toDate) {
+    currencyConversionLineList.add(createLine(exchangeRate, fromDate, toDate));
+  }
+
+  private CurrencyConversionLine createLine(
+      String exchangeRate, LocalDate fromDate, LocalDate toDate) {
+    CurrencyConversionLine currencyConversionLine = new CurrencyConversionLine();
+    currencyConversionLine.setStartCurrency(euro);
+    currencyConversionLine.setEndCurrency(dollar);
+    currencyConversionLine.setExchangeRate(new BigDecimal(exchangeRate));
+    currencyConversionLine.setFromDate(fromDate);
+    currencyConversionLine.setToDate(toDate);
+    return currencyConversionLine;
+  }
+}
@@ -25,6 +25,7 @@ import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.AccountExceptionMessage;
 import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.bankpayment.db.repo.BankStatementLineAFB120Repository;
 import com.axelor.apps.bankpayment.exception.BankPaymentExceptionMessage;
@@ -54,6 +55,7 @@ public class MoveRemoveBudgetService extends MoveRemoveServiceBankPaymentImpl {
       ReconcileService reconcileService,
       AccountingSituationService accountingSituationService,
       AccountCustomerService accountCustomerService,
+      PartnerBalanceService partnerBalanceService,
       BankStatementLineAFB120Repository bankStatementLineAFB120Repository,
       BudgetService budgetService) {
     super(
@@ -63,6 +65,7 @@ public class MoveRemoveBudgetService extends MoveRemoveServiceBankPaymentImpl {
         reconcileService,
         accountingSituationService,
         accountCustomerService,
+        partnerBalanceService,
         bankStatementLineAFB120Repository);
     this.budgetService = budgetService;
   }
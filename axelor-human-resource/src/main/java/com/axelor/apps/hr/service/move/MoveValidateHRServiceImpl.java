@@ -21,6 +21,7 @@ package com.axelor.apps.hr.service.move;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.PeriodServiceAccount;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -70,6 +71,7 @@ public class MoveValidateHRServiceImpl extends MoveValidateServiceImpl
       MoveControlService moveControlService,
       MoveCutOffService moveCutOffService,
       MoveLineCheckService moveLineCheckService,
+      PartnerBalanceService partnerBalanceService,
       ExpenseRepository expenseRepository) {
     super(
         moveLineControlService,
@@ -89,7 +91,8 @@ public class MoveValidateHRServiceImpl extends MoveValidateServiceImpl
         periodServiceAccount,
         moveControlService,
         moveCutOffService,
-        moveLineCheckService);
+        moveLineCheckService,
+        partnerBalanceService);
     this.expenseRepository = expenseRepository;
   }
 
@@ -48,6 +48,13 @@ public final class ProductionExceptionMessage {
   public static final String BATCH_COMPUTE_VALUATION = /*$$(*/
       "* %s Computed work in progress valuation" /*)*/;
 
+  /** Batch Replan manufacturing orders */
+  public static final String BATCH_REPLAN_MANUF_ORDERS = /*$$(*/
+      "* %s Manufacturing order(s) replanned" /*)*/;
+
+  public static final String BATCH_REPLAN_MANUF_ORDERS_DELAY = /*$$(*/
+      "* %s Manufacturing order(s) delayed, by %s hour(s) in total" /*)*/;
+
   public static final String IN_OR_OUT_INVALID_ARG = /*$$(*/ "inOrOut is invalid" /*)*/;
 
   /** Bill of Materials Service */
@@ -0,0 +1,149 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.model.machine;
+
+import com.axelor.apps.base.db.DayPlanning;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory capacity calendar of a machine: its open hours per day of week, its public holidays
+ * and the time slots booked by its operation orders.
+ *
+ * <p>Booked slots are indexed by start date and the longest booked duration is tracked, so the
+ * slots overlapping a period are found by only scanning the slots starting between the period
+ * start minus that duration and the period end.
+ */
+public class MachineCapacityCalendar {
+
+  private final boolean weeklyPlanningDefined;
+  private final Map<DayOfWeek, DayPlanning> dayPlanningMap = new EnumMap<>(DayOfWeek.class);
+  private final Set<LocalDate> holidaySet;
+
+  private final NavigableMap<LocalDateTime, Map<Long, MachineTimeSlot>> slotByStartMap =
+      new TreeMap<>();
+  private final Map<Long, MachineTimeSlot> slotMap = new HashMap<>();
+  private Duration longestSlotDuration = Duration.ZERO;
+
+  /**
+   * @param dayPlanningMap the open hours of each day of week, or null if the machine has no weekly
+   *     planning
+   * @param holidaySet the public holidays of the machine
+   */
+  public MachineCapacityCalendar(
+      Map<DayOfWeek, DayPlanning> dayPlanningMap, Set<LocalDate> holidaySet) {
+    this.weeklyPlanningDefined = dayPlanningMap != null;
+    if (dayPlanningMap != null) {
+      this.dayPlanningMap.putAll(dayPlanningMap);
+    }
+    this.holidaySet = Objects.requireNonNull(holidaySet);
+  }
+
+  public boolean isWeeklyPlanningDefined() {
+    return weeklyPlanningDefined;
+  }
+
+  /** @return the open hours of the given date, or null if the machine does not work that day */
+  public DayPlanning getDayPlanning(LocalDate date) {
+    return dayPlanningMap.get(date.getDayOfWeek());
+  }
+
+  public boolean isHoliday(LocalDate date) {
+    return holidaySet.contains(date);
+  }
+
+  /**
+   * Book a time slot for an operation order, replacing its previous booking if any.
+   *
+   * @param operationOrderId the id of the operation order
+   * @param startDateT the planned start date
+   * @param endDateT the planned end date
+   */
+  public void book(Long operationOrderId, LocalDateTime startDateT, LocalDateTime endDateT) {
+    release(operationOrderId);
+
+    MachineTimeSlot slot = new MachineTimeSlot(startDateT, endDateT);
+    slotMap.put(operationOrderId, slot);
+    slotByStartMap.computeIfAbsent(startDateT, key -> new HashMap<>()).put(operationOrderId, slot);
+
+    Duration duration = Duration.between(startDateT, endDateT);
+    if (duration.compareTo(longestSlotDuration) > 0) {
+      longestSlotDuration = duration;
+    }
+  }
+
+  /** Release the time slot booked for an operation order, if any. */
+  public void release(Long operationOrderId) {
+    MachineTimeSlot slot = slotMap.remove(operationOrderId);
+    if (slot == null) {
+      return;
+    }
+
+    Map<Long, MachineTimeSlot> slotsAtStart = slotByStartMap.get(slot.getStartDateT());
+    slotsAtStart.remove(operationOrderId);
+    if (slotsAtStart.isEmpty()) {
+      slotByStartMap.remove(slot.getStartDateT());
+    }
+  }
+
+  /**
+   * Get the booked time slots overlapping the given period, that is starting before its end and
+   * ending after its start.
+   *
+   * @param startDateT the start of the period
+   * @param endDateT the end of the period
+   * @param excludedOperationOrderId the operation order whose booking is ignored, can be null
+   * @return the overlapping time slots
+   */
+  public List<MachineTimeSlot> getOverlappingSlots(
+      LocalDateTime startDateT, LocalDateTime endDateT, Long excludedOperationOrderId) {
+    List<MachineTimeSlot> overlappingSlots = new ArrayList<>();
+    if (!startDateT.isBefore(endDateT)) {
+      return overlappingSlots;
+    }
+
+    for (Map<Long, MachineTimeSlot> slotsAtStart :
+        slotByStartMap
+            .subMap(startDateT.minus(longestSlotDuration), true, endDateT, false)
+            .values()) {
+      for (Map.Entry<Long, MachineTimeSlot> entry : slotsAtStart.entrySet()) {
+        if (!entry.getKey().equals(excludedOperationOrderId)
+            && entry.getValue().getEndDateT().isAfter(startDateT)) {
+          overlappingSlots.add(entry.getValue());
+        }
+      }
+    }
+    return overlappingSlots;
+  }
+
+  public int getBookedSlotCount() {
+    return slotMap.size();
+  }
+}
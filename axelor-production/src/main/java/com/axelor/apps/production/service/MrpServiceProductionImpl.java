@@ -63,7 +63,6 @@ import com.axelor.apps.supplychain.service.MrpLineService;
 import com.axelor.apps.supplychain.service.MrpLineTypeService;
 import com.axelor.apps.supplychain.service.MrpSaleOrderCheckLateSaleService;
 import com.axelor.apps.supplychain.service.MrpServiceImpl;
-import com.axelor.db.JPA;
 import com.axelor.i18n.I18n;
 import com.axelor.message.service.MailMessageService;
 import com.axelor.utils.StringTool;
@@ -73,7 +72,9 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
@@ -93,6 +94,9 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
 
   protected ProdProcessLineService prodProcessLineService;
 
+  // Only set when computing in memory
+  protected Map<Long, BillOfMaterial> defaultBillOfMaterialMap;
+
   @Inject
   public MrpServiceProductionImpl(
       MrpRepository mrpRepository,
@@ -202,7 +206,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
           manufOrderRepository.find(manufOrder.getId()),
           mrpLineTypeRepository.find(manufOrderMrpLineType.getId()),
           mrpLineTypeRepository.find(manufOrderNeedMrpLineType.getId()));
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -249,7 +253,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                 stockLocation,
                 manufOrder);
         if (mrpLine != null) {
-          mrpLineRepository.save(mrpLine);
+          this.saveMrpLine(mrpLine);
         }
       }
     }
@@ -293,7 +297,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                     stockLocation,
                     operationOrder);
             if (mrpLine != null) {
-              mrpLineRepository.save(mrpLine);
+              this.saveMrpLine(mrpLine);
             }
           }
         }
@@ -334,7 +338,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                   stockLocation,
                   manufOrder);
           if (mrpLine != null) {
-            mrpLineRepository.save(mrpLine);
+            this.saveMrpLine(mrpLine);
           }
         }
       }
@@ -402,7 +406,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
           mrpRepository.find(mrp.getId()),
           mrpLineRepository.find(mpsMrpLine.getId()),
           mrpLineTypeRepository.find(mpsNeedMrpLineType.getId()));
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -424,7 +428,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
               mpsMrpLine.getStockLocation(),
               mrp);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -443,7 +447,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
       throws AxelorException {
 
     Company company = mrp.getStockLocation().getCompany();
-    BillOfMaterial defaultBillOfMaterial = billOfMaterialService.getDefaultBOM(product, company);
+    BillOfMaterial defaultBillOfMaterial = this.getDefaultBOM(product, company);
 
     if (appProductionService.isApp("production")
         && mrpLineType.getElementSelect() == MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL
@@ -469,8 +473,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
         && defaultBillOfMaterial != null) {
 
       MrpLineType manufProposalNeedMrpLineType =
-          mrpLineTypeService.getMrpLineType(
-              MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL_NEED, mrp.getMrpTypeSelect());
+          this.getMrpLineType(MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL_NEED);
 
       if (manufProposalNeedMrpLineType == null) {
         return;
@@ -543,26 +546,21 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
     }
 
     if (mrp.getMrpTypeSelect() == MrpRepository.MRP_TYPE_MPS) {
-      return mrpLineTypeService.getMrpLineType(
-          MrpLineTypeRepository.ELEMENT_MASTER_PRODUCTION_SCHEDULING, mrp.getMrpTypeSelect());
+      return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_MASTER_PRODUCTION_SCHEDULING);
     } else {
       if (stockRules != null) {
         if (stockRules.getOrderAlertSelect() == StockRulesRepository.ORDER_ALERT_PRODUCTION_ORDER) {
-          return mrpLineTypeService.getMrpLineType(
-              MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL, mrp.getMrpTypeSelect());
+          return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL);
         } else {
-          return mrpLineTypeService.getMrpLineType(
-              MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, mrp.getMrpTypeSelect());
+          return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL);
         }
       }
 
       if (ProductRepository.PROCUREMENT_METHOD_BUY.equals(
           ((String) productCompanyService.get(product, "procurementMethodSelect", company)))) {
-        return mrpLineTypeService.getMrpLineType(
-            MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, mrp.getMrpTypeSelect());
+        return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL);
       } else {
-        return mrpLineTypeService.getMrpLineType(
-            MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL, mrp.getMrpTypeSelect());
+        return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_MANUFACTURING_PROPOSAL);
       }
     }
   }
@@ -596,7 +594,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
       return;
     }
     Company company = mrp.getStockLocation().getCompany();
-    BillOfMaterial billOfMaterial = billOfMaterialService.getDefaultBOM(product, company);
+    BillOfMaterial billOfMaterial = this.getDefaultBOM(product, company);
 
     if (billOfMaterial != null && mrp.getMrpTypeSelect() == MrpRepository.MRP_TYPE_MRP) {
       this.assignProductLevel(billOfMaterial, 0);
@@ -654,7 +652,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
           this.assignProductLevel(billOfMaterialLine.getBillOfMaterial(), level);
 
           Company company = mrp.getStockLocation().getCompany();
-          BillOfMaterial defaultBOM = billOfMaterialService.getDefaultBOM(subProduct, company);
+          BillOfMaterial defaultBOM = this.getDefaultBOM(subProduct, company);
           if (defaultBOM != null) {
             this.assignProductLevel(defaultBOM, level);
           }
@@ -694,12 +692,37 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
       return;
     }
 
-    mrpLineRepository.save(
-        this.createAvailableStockMrpLine(
-            mrpRepository.find(mrp.getId()),
-            productRepository.find(product.getId()),
-            stockLocation,
-            availableStockMrpLineType));
+    this.createAvailableStockMrpLine(
+        mrpRepository.find(mrp.getId()),
+        productRepository.find(product.getId()),
+        stockLocation,
+        availableStockMrpLineType);
+  }
+
+  /**
+   * Get the default bill of materials of the product. When computing in memory, it is only fetched
+   * once per product, as it is needed by each level of the BOM explosion and by each proposal.
+   */
+  protected BillOfMaterial getDefaultBOM(Product product, Company company) throws AxelorException {
+
+    if (!this.isComputedInMemory()) {
+      return billOfMaterialService.getDefaultBOM(product, company);
+    }
+
+    if (defaultBillOfMaterialMap == null) {
+      defaultBillOfMaterialMap = new HashMap<>();
+    }
+    if (!defaultBillOfMaterialMap.containsKey(product.getId())) {
+      defaultBillOfMaterialMap.put(
+          product.getId(), billOfMaterialService.getDefaultBOM(product, company));
+    }
+    return defaultBillOfMaterialMap.get(product.getId());
+  }
+
+  @Override
+  protected void clearInMemoryData() {
+    super.clearInMemoryData();
+    defaultBillOfMaterialMap = null;
   }
 
   @Override
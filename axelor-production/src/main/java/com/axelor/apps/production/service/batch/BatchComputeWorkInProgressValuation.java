@@ -24,6 +24,7 @@ import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.production.db.ManufOrder;
 import com.axelor.apps.production.db.ProductionBatch;
@@ -33,13 +34,11 @@ import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
 import com.axelor.apps.production.service.costsheet.CostSheetService;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class BatchComputeWorkInProgressValuation extends AbstractBatch {
@@ -47,6 +46,7 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
   protected CostSheetService costSheetService;
   protected ManufOrderRepository manufOrderRepository;
 
+  /** Count of orders valued at once when the batch does not set it. */
   protected static final int FETCH_LIMIT = 1;
 
   @Inject
@@ -67,7 +67,6 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
     }
     LocalDate valuationDate = productionBatch.getValuationDate();
 
-    List<ManufOrder> manufOrderList;
     Map<String, Object> bindValues = new HashMap<>();
     String domain =
         "(self.statusSelect = :statusSelectInProgress or self.statusSelect = :statusSelectStandBy "
@@ -88,14 +87,12 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
       bindValues.put("stockLocationId", workshopStockLocation.getId());
     }
 
-    Query<ManufOrder> manufOrderQuery = manufOrderRepository.all().filter(domain).bind(bindValues);
+    KeysetQueryIterator<ManufOrder> iterator =
+        KeysetQueryIterator.of(ManufOrder.class, domain).bind(bindValues).pageSize(getFetchLimit());
 
-    int offset = 0;
+    while (iterator.hasNext()) {
 
-    while (!(manufOrderList = manufOrderQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
-
-      for (ManufOrder manufOrder : manufOrderList) {
-        ++offset;
+      for (ManufOrder manufOrder : iterator.next()) {
         try {
           costSheetService.computeCostPrice(
               manufOrder, CostSheetRepository.CALCULATION_WORK_IN_PROGRESS, valuationDate);
@@ -122,6 +119,14 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
     super.stop();
   }
 
+  @Override
+  protected int getFetchLimit() {
+    ProductionBatch productionBatch = batch.getProductionBatch();
+    return productionBatch != null && productionBatch.getFetchLimit() > 0
+        ? productionBatch.getFetchLimit()
+        : FETCH_LIMIT;
+  }
+
   protected void setBatchTypeSelect() {
     this.batch.setBatchTypeSelect(BatchRepository.BATCH_TYPE_PRODUCTION_BATCH);
   }
@@ -0,0 +1,116 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.batch;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.BatchRepository;
+import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
+import com.axelor.apps.base.exceptions.BaseExceptionMessage;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.production.db.ManufOrder;
+import com.axelor.apps.production.db.ProductionBatch;
+import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
+import com.axelor.apps.production.service.manuforder.ManufOrderReplanService;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replan at once the open manufacturing orders having operations on the work centers of the
+ * batch, for instance after a machine breakdown. The delay of each order is measured against its
+ * planned end date before the re-planning.
+ */
+public class BatchReplanManufOrders extends AbstractBatch {
+
+  protected ManufOrderReplanService manufOrderReplanService;
+
+  protected int delayedCount;
+  protected long totalDelay;
+
+  @Inject
+  public BatchReplanManufOrders(ManufOrderReplanService manufOrderReplanService) {
+    this.manufOrderReplanService = manufOrderReplanService;
+  }
+
+  @Override
+  protected void process() {
+    ProductionBatch productionBatch = batch.getProductionBatch();
+
+    List<ManufOrder> manufOrderList =
+        manufOrderReplanService.getManufOrderListToReplan(
+            productionBatch.getCompany(), productionBatch.getWorkCenterSet());
+
+    Map<Long, LocalDateTime> dueDateTMap = new HashMap<>();
+    for (ManufOrder manufOrder : manufOrderList) {
+      dueDateTMap.put(manufOrder.getId(), manufOrder.getPlannedEndDateT());
+    }
+
+    Map<Long, AxelorException> errorMap =
+        manufOrderReplanService.replan(
+            manufOrderList, appBaseService.getTodayDateTime().toLocalDateTime());
+
+    for (ManufOrder manufOrder : manufOrderList) {
+      AxelorException error = errorMap.get(manufOrder.getId());
+      if (error != null) {
+        incrementAnomaly();
+        TraceBackService.trace(error, ExceptionOriginRepository.MANUF_ORDER_REPLAN, batch.getId());
+        continue;
+      }
+
+      LocalDateTime dueDateT = dueDateTMap.get(manufOrder.getId());
+      if (dueDateT != null && manufOrder.getPlannedEndDateT().isAfter(dueDateT)) {
+        delayedCount++;
+        totalDelay += Duration.between(dueDateT, manufOrder.getPlannedEndDateT()).getSeconds();
+      }
+      incrementDone();
+    }
+  }
+
+  @Override
+  protected void stop() {
+
+    String comment =
+        String.format(
+            I18n.get(ProductionExceptionMessage.BATCH_REPLAN_MANUF_ORDERS), batch.getDone());
+    comment += "\n";
+    comment +=
+        String.format(
+            I18n.get(ProductionExceptionMessage.BATCH_REPLAN_MANUF_ORDERS_DELAY),
+            delayedCount,
+            BigDecimal.valueOf(totalDelay)
+                .divide(BigDecimal.valueOf(3600), 2, RoundingMode.HALF_UP));
+    comment += "\n";
+    comment += String.format(I18n.get(BaseExceptionMessage.BASE_BATCH_3), batch.getAnomaly());
+
+    addComment(comment);
+    super.stop();
+  }
+
+  @Override
+  protected void setBatchTypeSelect() {
+    this.batch.setBatchTypeSelect(BatchRepository.BATCH_TYPE_PRODUCTION_BATCH);
+  }
+}
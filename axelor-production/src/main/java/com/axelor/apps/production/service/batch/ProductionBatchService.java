@@ -46,6 +46,9 @@ public class ProductionBatchService extends AbstractBatchService {
       case ProductionBatchRepository.ACTION_COMPUTE_WORK_IN_PROGRESS_VALUATION:
         batch = computeValuation(productionBatch);
         break;
+      case ProductionBatchRepository.ACTION_REPLAN_MANUF_ORDERS:
+        batch = replanManufOrders(productionBatch);
+        break;
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -59,4 +62,8 @@ public class ProductionBatchService extends AbstractBatchService {
   public Batch computeValuation(ProductionBatch productionBatch) {
     return Beans.get(BatchComputeWorkInProgressValuation.class).run(productionBatch);
   }
+
+  public Batch replanManufOrders(ProductionBatch productionBatch) {
+    return Beans.get(BatchReplanManufOrders.class).run(productionBatch);
+  }
 }
@@ -0,0 +1,215 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.machine;
+
+import com.axelor.apps.base.db.DayPlanning;
+import com.axelor.apps.base.db.EventsPlanning;
+import com.axelor.apps.base.db.EventsPlanningLine;
+import com.axelor.apps.base.db.WeeklyPlanning;
+import com.axelor.apps.base.service.weeklyplanning.WeeklyPlanningService;
+import com.axelor.apps.production.db.Machine;
+import com.axelor.apps.production.db.ManufOrder;
+import com.axelor.apps.production.db.OperationOrder;
+import com.axelor.apps.production.db.repo.ManufOrderRepository;
+import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.model.machine.MachineCapacityCalendar;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+
+/**
+ * Provides the capacity calendars of the machines to the finite capacity planning.
+ *
+ * <p>A calendar is loaded once per machine and per transaction, with a single query on the
+ * operation orders of the machine, then kept up to date as operation orders are planned and
+ * unplanned in the transaction. Calendars are dropped when the transaction completes, so they never
+ * outlive a rollback nor hide the plannings committed by other transactions.
+ */
+@Singleton
+public class MachineCapacityCalendarService {
+
+  protected final OperationOrderRepository operationOrderRepository;
+  protected final WeeklyPlanningService weeklyPlanningService;
+
+  protected final ThreadLocal<Map<Long, MachineCapacityCalendar>> calendarMap =
+      new ThreadLocal<>();
+
+  @Inject
+  public MachineCapacityCalendarService(
+      OperationOrderRepository operationOrderRepository,
+      WeeklyPlanningService weeklyPlanningService) {
+    this.operationOrderRepository = operationOrderRepository;
+    this.weeklyPlanningService = weeklyPlanningService;
+  }
+
+  /**
+   * Get the capacity calendar of the machine for the current transaction. Outside of a transaction,
+   * a new calendar is loaded on each call.
+   */
+  public MachineCapacityCalendar getCalendar(Machine machine) {
+    Map<Long, MachineCapacityCalendar> transactionCalendarMap = getTransactionCalendarMap();
+    if (transactionCalendarMap == null || machine.getId() == null) {
+      return loadCalendar(machine);
+    }
+    return transactionCalendarMap.computeIfAbsent(machine.getId(), id -> loadCalendar(machine));
+  }
+
+  /**
+   * Update the booking of the operation order in the calendars loaded in the current transaction,
+   * once its planned dates are set.
+   */
+  public void book(OperationOrder operationOrder) {
+    Map<Long, MachineCapacityCalendar> transactionCalendarMap = calendarMap.get();
+    if (transactionCalendarMap == null || operationOrder.getId() == null) {
+      return;
+    }
+
+    release(operationOrder);
+
+    Machine machine = operationOrder.getMachine();
+    if (machine == null || !isBooking(operationOrder)) {
+      return;
+    }
+    MachineCapacityCalendar calendar = transactionCalendarMap.get(machine.getId());
+    if (calendar != null) {
+      calendar.book(
+          operationOrder.getId(),
+          operationOrder.getPlannedStartDateT(),
+          operationOrder.getPlannedEndDateT());
+    }
+  }
+
+  /** Release the booking of the operation order in the calendars loaded in the transaction. */
+  public void release(OperationOrder operationOrder) {
+    Map<Long, MachineCapacityCalendar> transactionCalendarMap = calendarMap.get();
+    if (transactionCalendarMap == null || operationOrder.getId() == null) {
+      return;
+    }
+    for (MachineCapacityCalendar calendar : transactionCalendarMap.values()) {
+      calendar.release(operationOrder.getId());
+    }
+  }
+
+  protected Map<Long, MachineCapacityCalendar> getTransactionCalendarMap() {
+    Map<Long, MachineCapacityCalendar> transactionCalendarMap = calendarMap.get();
+    if (transactionCalendarMap != null) {
+      return transactionCalendarMap;
+    }
+
+    Session session = JPA.em().unwrap(Session.class);
+    if (!session.getTransaction().isActive()) {
+      return null;
+    }
+
+    transactionCalendarMap = new HashMap<>();
+    calendarMap.set(transactionCalendarMap);
+    session
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                calendarMap.remove();
+              }
+            });
+    return transactionCalendarMap;
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected MachineCapacityCalendar loadCalendar(Machine machine) {
+    MachineCapacityCalendar calendar =
+        new MachineCapacityCalendar(getDayPlanningMap(machine), getHolidaySet(machine));
+    if (machine.getId() == null) {
+      return calendar;
+    }
+
+    List<Map> bookingList =
+        operationOrderRepository
+            .all()
+            .filter(
+                "self.machine.id = :machineId"
+                    + " AND self.plannedStartDateT IS NOT NULL"
+                    + " AND self.plannedEndDateT IS NOT NULL"
+                    + " AND self.manufOrder.statusSelect NOT IN (:cancelled, :finished)")
+            .bind("machineId", machine.getId())
+            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
+            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
+            .select("plannedStartDateT", "plannedEndDateT")
+            .fetch(0, 0);
+
+    for (Map booking : bookingList) {
+      calendar.book(
+          (Long) booking.get("id"),
+          (LocalDateTime) booking.get("plannedStartDateT"),
+          (LocalDateTime) booking.get("plannedEndDateT"));
+    }
+    return calendar;
+  }
+
+  protected Map<DayOfWeek, DayPlanning> getDayPlanningMap(Machine machine) {
+    WeeklyPlanning weeklyPlanning = machine.getWeeklyPlanning();
+    if (weeklyPlanning == null) {
+      return null;
+    }
+
+    Map<DayOfWeek, DayPlanning> dayPlanningMap = new EnumMap<>(DayOfWeek.class);
+    LocalDate monday = LocalDate.now().with(DayOfWeek.MONDAY);
+    for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+      dayPlanningMap.put(
+          dayOfWeek,
+          weeklyPlanningService.findDayPlanning(
+              weeklyPlanning, monday.plusDays(dayOfWeek.ordinal())));
+    }
+    return dayPlanningMap;
+  }
+
+  protected Set<LocalDate> getHolidaySet(Machine machine) {
+    Set<LocalDate> holidaySet = new HashSet<>();
+    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
+    if (planning != null && planning.getEventsPlanningLineList() != null) {
+      for (EventsPlanningLine eventsPlanningLine : planning.getEventsPlanningLineList()) {
+        holidaySet.add(eventsPlanningLine.getDate());
+      }
+    }
+    return holidaySet;
+  }
+
+  protected boolean isBooking(OperationOrder operationOrder) {
+    ManufOrder manufOrder = operationOrder.getManufOrder();
+    return operationOrder.getPlannedStartDateT() != null
+        && operationOrder.getPlannedEndDateT() != null
+        && manufOrder != null
+        && manufOrder.getStatusSelect() != ManufOrderRepository.STATUS_CANCELED
+        && manufOrder.getStatusSelect() != ManufOrderRepository.STATUS_FINISHED;
+  }
+}
@@ -20,16 +20,15 @@ package com.axelor.apps.production.service.machine;
 
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.DayPlanning;
-import com.axelor.apps.base.db.EventsPlanning;
 import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.dayplanning.DayPlanningService;
 import com.axelor.apps.base.service.weeklyplanning.WeeklyPlanningService;
 import com.axelor.apps.production.db.Machine;
 import com.axelor.apps.production.db.OperationOrder;
 import com.axelor.apps.production.db.WorkCenter;
-import com.axelor.apps.production.db.repo.ManufOrderRepository;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
+import com.axelor.apps.production.model.machine.MachineCapacityCalendar;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
 import com.axelor.i18n.I18n;
 import com.axelor.utils.date.DurationTool;
@@ -45,15 +44,18 @@ public class MachineServiceImpl implements MachineService {
   protected OperationOrderRepository operationOrderRepository;
   protected WeeklyPlanningService weeklyPlanningService;
   protected DayPlanningService dayPlanningService;
+  protected MachineCapacityCalendarService machineCapacityCalendarService;
 
   @Inject
   public MachineServiceImpl(
       OperationOrderRepository operationOrderRepository,
       WeeklyPlanningService weeklyPlanningService,
-      DayPlanningService dayPlanningService) {
+      DayPlanningService dayPlanningService,
+      MachineCapacityCalendarService machineCapacityCalendarService) {
     this.operationOrderRepository = operationOrderRepository;
     this.weeklyPlanningService = weeklyPlanningService;
     this.dayPlanningService = dayPlanningService;
+    this.machineCapacityCalendarService = machineCapacityCalendarService;
   }
 
   @Override
@@ -72,7 +74,6 @@ public class MachineServiceImpl implements MachineService {
         DurationTool.getSecondsDuration(Duration.between(startDateT, endDateT)));
   }
 
-  @SuppressWarnings("unchecked")
   protected MachineTimeSlot getClosestAvailableTimeSlotFrom(
       Machine machine,
       LocalDateTime startDateT,
@@ -81,111 +82,95 @@ public class MachineServiceImpl implements MachineService {
       long initialDuration)
       throws AxelorException {
 
-    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
-
-    // If startDate is not available because of planning
-    // Then we try for the next day
-    LocalDateTime nextDayDateT = startDateT.plusDays(1).with(LocalTime.MIN);
-    LocalDateTime plannedStartDateT = null;
-    LocalDateTime plannedEndDateT = null;
-
-    if (planning != null
-        && planning.getEventsPlanningLineList() != null
-        && planning.getEventsPlanningLineList().stream()
-            .anyMatch(epl -> epl.getDate().equals(startDateT.toLocalDate()))) {
-
-      return getClosestAvailableTimeSlotFrom(
-          machine,
-          nextDayDateT,
-          nextDayDateT.plusSeconds(initialDuration),
-          operationOrder,
-          initialDuration);
-    }
+    MachineCapacityCalendar calendar = machineCapacityCalendarService.getCalendar(machine);
+    long timeBeforeNextOperation = getTimeBeforeNextOperation(operationOrder);
+
+    while (true) {
+      // If startDate is not available because of planning
+      // Then we try for the next day
+      if (calendar.isHoliday(startDateT.toLocalDate())) {
+        startDateT = startDateT.plusDays(1).with(LocalTime.MIN);
+        endDateT = startDateT.plusSeconds(initialDuration);
+        continue;
+      }
+
+      MachineTimeSlot plannedTimeSlot =
+          getPlannedTimeSlotFrom(calendar, startDateT, endDateT, operationOrder, initialDuration);
+
+      // Must check if dates are occupied by other operation orders
+      // The next try starts after the last one to finish
+      List<MachineTimeSlot> concurrentTimeSlots =
+          calendar.getOverlappingSlots(
+              plannedTimeSlot.getStartDateT().minusSeconds(timeBeforeNextOperation),
+              plannedTimeSlot.getEndDateT(),
+              operationOrder.getId());
 
-    if (machine.getWeeklyPlanning() != null) {
-      // Planning on date at startDateT
-      DayPlanning dayPlanning =
-          weeklyPlanningService.findDayPlanning(
-              machine.getWeeklyPlanning(), startDateT.toLocalDate());
-      Optional<LocalDateTime> allowedStartDateTPeriodAt =
-          dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, startDateT);
-
-      if (allowedStartDateTPeriodAt.isEmpty()) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(ProductionExceptionMessage.OPERATION_ORDER_NO_PERIOD_FOUND_FOR_PLAN_DATES),
-            operationOrder.getName());
+      if (concurrentTimeSlots.isEmpty()) {
+        return plannedTimeSlot;
       }
 
-      plannedStartDateT = allowedStartDateTPeriodAt.get();
-      plannedEndDateT = plannedStartDateT.plusSeconds(initialDuration);
-
-      // Must end in a existing period.
-      plannedEndDateT =
-          dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, plannedEndDateT).get();
-      // Void duration is time where machine is not used (not in any period)
-      long voidDuration =
-          dayPlanningService.computeVoidDurationBetween(
-              dayPlanning, plannedStartDateT, plannedEndDateT);
-
-      long remainingTime =
-          initialDuration
-              - DurationTool.getSecondsDuration(
-                  Duration.between(plannedStartDateT, plannedEndDateT).minusSeconds(voidDuration));
-      // So the time 'spent' must be reported
-      plannedEndDateT = plannedEndDateT.plusSeconds(remainingTime);
-
-      // And of course it must end in a existing period.
-      plannedEndDateT =
-          dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, plannedEndDateT).get();
-
-    } else {
+      LocalDateTime lastEndDateT =
+          concurrentTimeSlots.stream()
+              .map(MachineTimeSlot::getEndDateT)
+              .max(LocalDateTime::compareTo)
+              .get();
+      startDateT = lastEndDateT.plusSeconds(timeBeforeNextOperation);
+      endDateT = startDateT.plusSeconds(initialDuration);
+    }
+  }
+
+  /**
+   * Fit a time slot starting from startDateT in the open hours of the machine, reporting the time
+   * spent outside of them.
+   */
+  protected MachineTimeSlot getPlannedTimeSlotFrom(
+      MachineCapacityCalendar calendar,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      long initialDuration)
+      throws AxelorException {
+
+    if (!calendar.isWeeklyPlanningDefined()) {
       // The machine does not have weekly planning so dates are ok for now.
-      plannedStartDateT = startDateT;
-      plannedEndDateT = endDateT;
+      return new MachineTimeSlot(startDateT, endDateT);
     }
 
-    long timeBeforeNextOperation =
-        Optional.ofNullable(operationOrder.getWorkCenter())
-            .map(WorkCenter::getTimeBeforeNextOperation)
-            .orElse(0l);
-    // Must check if dates are occupied by other operation orders
-    // The first one of the list will be the last to finish
-
-    List<OperationOrder> concurrentOperationOrders =
-        operationOrderRepository
-            .all()
-            .filter(
-                "self.machine = :machine"
-                    + " AND ((self.plannedStartDateT <= :startDate AND self.plannedEndDateT > :startDateWithTime)"
-                    + " OR (self.plannedStartDateT <= :endDate AND self.plannedEndDateT > :endDateWithTime))"
-                    + " AND (self.manufOrder.statusSelect != :cancelled AND self.manufOrder.statusSelect != :finished)"
-                    + " AND self.id != :operationOrderId")
-            .bind("startDate", plannedStartDateT)
-            .bind("endDate", plannedEndDateT)
-            .bind("startDateWithTime", plannedStartDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("endDateWithTime", plannedEndDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("machine", machine)
-            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
-            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
-            .bind("operationOrderId", operationOrder.getId())
-            .order("-plannedEndDateT")
-            .fetch();
-
-    if (concurrentOperationOrders.isEmpty()) {
-      return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
-    } else {
-      OperationOrder lastOperationOrder = concurrentOperationOrders.get(0);
-
-      return getClosestAvailableTimeSlotFrom(
-          machine,
-          lastOperationOrder.getPlannedEndDateT().plusSeconds(timeBeforeNextOperation),
-          lastOperationOrder
-              .getPlannedEndDateT()
-              .plusSeconds(timeBeforeNextOperation + initialDuration),
-          operationOrder,
-          initialDuration);
+    // Planning on date at startDateT
+    DayPlanning dayPlanning = calendar.getDayPlanning(startDateT.toLocalDate());
+    Optional<LocalDateTime> allowedStartDateTPeriodAt =
+        dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, startDateT);
+
+    if (allowedStartDateTPeriodAt.isEmpty()) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(ProductionExceptionMessage.OPERATION_ORDER_NO_PERIOD_FOUND_FOR_PLAN_DATES),
+          operationOrder.getName());
     }
+
+    LocalDateTime plannedStartDateT = allowedStartDateTPeriodAt.get();
+    LocalDateTime plannedEndDateT = plannedStartDateT.plusSeconds(initialDuration);
+
+    // Must end in a existing period.
+    plannedEndDateT =
+        dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, plannedEndDateT).get();
+    // Void duration is time where machine is not used (not in any period)
+    long voidDuration =
+        dayPlanningService.computeVoidDurationBetween(
+            dayPlanning, plannedStartDateT, plannedEndDateT);
+
+    long remainingTime =
+        initialDuration
+            - DurationTool.getSecondsDuration(
+                Duration.between(plannedStartDateT, plannedEndDateT).minusSeconds(voidDuration));
+    // So the time 'spent' must be reported
+    plannedEndDateT = plannedEndDateT.plusSeconds(remainingTime);
+
+    // And of course it must end in a existing period.
+    plannedEndDateT =
+        dayPlanningService.getAllowedStartDateTPeriodAt(dayPlanning, plannedEndDateT).get();
+
+    return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
   }
 
   @Override
@@ -204,7 +189,6 @@ public class MachineServiceImpl implements MachineService {
         DurationTool.getSecondsDuration(Duration.between(startDateT, endDateT)));
   }
 
-  @SuppressWarnings("unchecked")
   protected MachineTimeSlot getFurthestAvailableTimeSlotFrom(
       Machine machine,
       LocalDateTime startDateT,
@@ -213,112 +197,100 @@ public class MachineServiceImpl implements MachineService {
       long initialDuration)
       throws AxelorException {
 
-    EventsPlanning planning = machine.getPublicHolidayEventsPlanning();
-
-    if (planning != null
-        && planning.getEventsPlanningLineList() != null
-        && planning.getEventsPlanningLineList().stream()
-            .anyMatch(epl -> epl.getDate().equals(endDateT.toLocalDate()))) {
+    MachineCapacityCalendar calendar = machineCapacityCalendarService.getCalendar(machine);
+    long timeBeforeNextOperation = getTimeBeforeNextOperation(operationOrder);
 
+    while (true) {
       // If endDate is not available because of planning
       // Then we try for the previous day
-      LocalDateTime previousDayDateT = endDateT.plusDays(1).with(LocalTime.MIN);
-
-      return getFurthestAvailableTimeSlotFrom(
-          machine,
-          previousDayDateT.minusSeconds(initialDuration),
-          previousDayDateT,
-          operationOrder,
-          initialDuration);
-    }
+      if (calendar.isHoliday(endDateT.toLocalDate())) {
+        endDateT = endDateT.minusDays(1).with(LocalTime.MAX);
+        startDateT = endDateT.minusSeconds(initialDuration);
+        continue;
+      }
+
+      MachineTimeSlot plannedTimeSlot =
+          getPlannedTimeSlotTo(calendar, startDateT, endDateT, operationOrder, initialDuration);
 
-    LocalDateTime plannedStartDateT = null;
-    LocalDateTime plannedEndDateT = null;
-
-    if (machine.getWeeklyPlanning() != null) {
-      // Planning on date at startDateT
-      DayPlanning dayPlanning =
-          weeklyPlanningService.findDayPlanning(
-              machine.getWeeklyPlanning(), startDateT.toLocalDate());
-      Optional<LocalDateTime> allowedEndDateTPeriodAt =
-          dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, startDateT);
-
-      if (allowedEndDateTPeriodAt.isEmpty()) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(ProductionExceptionMessage.OPERATION_ORDER_NO_PERIOD_FOUND_FOR_PLAN_DATES),
-            operationOrder.getName());
+      // Must check if dates are occupied by other operation orders
+      // The next try ends before the first one to start
+      List<MachineTimeSlot> concurrentTimeSlots =
+          calendar.getOverlappingSlots(
+              plannedTimeSlot.getStartDateT().minusSeconds(timeBeforeNextOperation),
+              plannedTimeSlot.getEndDateT(),
+              operationOrder.getId());
+
+      if (concurrentTimeSlots.isEmpty()) {
+        return plannedTimeSlot;
       }
 
-      plannedEndDateT = allowedEndDateTPeriodAt.get();
-      plannedStartDateT = plannedEndDateT.minusSeconds(initialDuration);
-
-      // Must end in an existing period.
-      plannedStartDateT =
-          dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, plannedStartDateT).get();
-      // Void duration is time when machine is not used (not in any period)
-      long voidDuration =
-          dayPlanningService.computeVoidDurationBetween(
-              dayPlanning, plannedStartDateT, plannedEndDateT);
-
-      long remainingTime =
-          initialDuration
-              - DurationTool.getSecondsDuration(
-                  Duration.between(plannedStartDateT, plannedEndDateT).minusSeconds(voidDuration));
-      // So the time 'spent' must be reported
-      plannedStartDateT = plannedStartDateT.plusSeconds(remainingTime);
-
-      // And of course it must start also in an existing period.
-      plannedStartDateT =
-          dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, plannedStartDateT).get();
-
-    } else {
+      LocalDateTime firstStartDateT =
+          concurrentTimeSlots.stream()
+              .map(MachineTimeSlot::getStartDateT)
+              .min(LocalDateTime::compareTo)
+              .get();
+      endDateT = firstStartDateT.minusSeconds(timeBeforeNextOperation);
+      startDateT = endDateT.minusSeconds(initialDuration);
+    }
+  }
+
+  /**
+   * Fit a time slot ending at endDateT in the open hours of the machine, reporting the time spent
+   * outside of them.
+   */
+  protected MachineTimeSlot getPlannedTimeSlotTo(
+      MachineCapacityCalendar calendar,
+      LocalDateTime startDateT,
+      LocalDateTime endDateT,
+      OperationOrder operationOrder,
+      long initialDuration)
+      throws AxelorException {
+
+    if (!calendar.isWeeklyPlanningDefined()) {
       // The machine does not have weekly planning so dates are ok for now.
-      plannedStartDateT = startDateT;
-      plannedEndDateT = endDateT;
+      return new MachineTimeSlot(startDateT, endDateT);
     }
 
-    long timeBeforeNextOperation =
-        Optional.ofNullable(operationOrder.getWorkCenter())
-            .map(WorkCenter::getTimeBeforeNextOperation)
-            .orElse(0l);
-    // Must check if dates are occupied by other operation orders
-    // The first one of the list will be the first to start
-
-    List<OperationOrder> concurrentOperationOrders =
-        operationOrderRepository
-            .all()
-            .filter(
-                "self.machine = :machine"
-                    + " AND ((self.plannedStartDateT <= :startDate AND self.plannedEndDateT > :startDateWithTime)"
-                    + " OR (self.plannedStartDateT < :endDate AND self.plannedEndDateT > :endDateWithTime)"
-                    + " OR (self.plannedStartDateT >= :startDate AND self.plannedEndDateT <= :endDateWithTime))"
-                    + " AND (self.manufOrder.statusSelect != :cancelled AND self.manufOrder.statusSelect != :finished)"
-                    + " AND self.id != :operationOrderId")
-            .bind("startDate", plannedStartDateT)
-            .bind("endDate", plannedEndDateT)
-            .bind("startDateWithTime", plannedStartDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("endDateWithTime", plannedEndDateT.minusSeconds(timeBeforeNextOperation))
-            .bind("machine", machine)
-            .bind("cancelled", ManufOrderRepository.STATUS_CANCELED)
-            .bind("finished", ManufOrderRepository.STATUS_FINISHED)
-            .bind("operationOrderId", operationOrder.getId())
-            .order("plannedStartDateT")
-            .fetch();
-
-    if (concurrentOperationOrders.isEmpty()) {
-      return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
-    } else {
-      OperationOrder firstOperationOrder = concurrentOperationOrders.get(0);
-
-      return getFurthestAvailableTimeSlotFrom(
-          machine,
-          firstOperationOrder
-              .getPlannedStartDateT()
-              .minusSeconds(initialDuration + timeBeforeNextOperation),
-          firstOperationOrder.getPlannedStartDateT().minusSeconds(timeBeforeNextOperation),
-          operationOrder,
-          initialDuration);
+    // Planning on date at startDateT
+    DayPlanning dayPlanning = calendar.getDayPlanning(startDateT.toLocalDate());
+    Optional<LocalDateTime> allowedEndDateTPeriodAt =
+        dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, startDateT);
+
+    if (allowedEndDateTPeriodAt.isEmpty()) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(ProductionExceptionMessage.OPERATION_ORDER_NO_PERIOD_FOUND_FOR_PLAN_DATES),
+          operationOrder.getName());
     }
+
+    LocalDateTime plannedEndDateT = allowedEndDateTPeriodAt.get();
+    LocalDateTime plannedStartDateT = plannedEndDateT.minusSeconds(initialDuration);
+
+    // Must end in an existing period.
+    plannedStartDateT =
+        dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, plannedStartDateT).get();
+    // Void duration is time when machine is not used (not in any period)
+    long voidDuration =
+        dayPlanningService.computeVoidDurationBetween(
+            dayPlanning, plannedStartDateT, plannedEndDateT);
+
+    long remainingTime =
+        initialDuration
+            - DurationTool.getSecondsDuration(
+                Duration.between(plannedStartDateT, plannedEndDateT).minusSeconds(voidDuration));
+    // So the time 'spent' must be reported
+    plannedStartDateT = plannedStartDateT.plusSeconds(remainingTime);
+
+    // And of course it must start also in an existing period.
+    plannedStartDateT =
+        dayPlanningService.getAllowedEndDateTPeriodAt(dayPlanning, plannedStartDateT).get();
+
+    return new MachineTimeSlot(plannedStartDateT, plannedEndDateT);
+  }
+
+  protected long getTimeBeforeNextOperation(OperationOrder operationOrder) {
+    return Optional.ofNullable(operationOrder.getWorkCenter())
+        .map(WorkCenter::getTimeBeforeNextOperation)
+        .orElse(0l);
   }
 }
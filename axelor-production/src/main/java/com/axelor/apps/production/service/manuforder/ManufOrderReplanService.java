@@ -0,0 +1,54 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.manuforder;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.production.db.ManufOrder;
+import com.axelor.apps.production.db.WorkCenter;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ManufOrderReplanService {
+
+  /**
+   * Get the open manufacturing orders having planned operations on the given work centers, the
+   * most urgent first: by priority, then by planned end date.
+   *
+   * @param company the company of the manufacturing orders, can be null
+   * @param workCenterSet the work centers to replan, all of them if empty
+   * @return the manufacturing orders to replan
+   */
+  List<ManufOrder> getManufOrderListToReplan(Company company, Set<WorkCenter> workCenterSet);
+
+  /**
+   * Replan the planned operations of the given manufacturing orders as soon as possible from the
+   * given date, against the capacity calendars of the machines. The time slots of all the orders
+   * are released, then the orders are placed one after the other. All the planned dates are written
+   * in a single flush at the end.
+   *
+   * @param manufOrderList the manufacturing orders, in the order in which they are replanned
+   * @param fromDateT the date before which no operation is planned
+   * @return the errors by id of the manufacturing orders which could not be replanned and kept
+   *     their previous planned dates
+   */
+  Map<Long, AxelorException> replan(List<ManufOrder> manufOrderList, LocalDateTime fromDateT);
+}
@@ -0,0 +1,348 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.manuforder;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.production.db.Machine;
+import com.axelor.apps.production.db.ManufOrder;
+import com.axelor.apps.production.db.OperationOrder;
+import com.axelor.apps.production.db.WorkCenter;
+import com.axelor.apps.production.db.repo.ManufOrderRepository;
+import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.model.machine.MachineTimeSlot;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
+import com.axelor.apps.production.service.machine.MachineService;
+import com.axelor.apps.production.service.operationorder.OperationOrderService;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.utils.date.DurationTool;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import org.apache.commons.collections.CollectionUtils;
+
+public class ManufOrderReplanServiceImpl implements ManufOrderReplanService {
+
+  protected ManufOrderRepository manufOrderRepository;
+  protected OperationOrderService operationOrderService;
+  protected MachineService machineService;
+  protected MachineCapacityCalendarService machineCapacityCalendarService;
+
+  @Inject
+  public ManufOrderReplanServiceImpl(
+      ManufOrderRepository manufOrderRepository,
+      OperationOrderService operationOrderService,
+      MachineService machineService,
+      MachineCapacityCalendarService machineCapacityCalendarService) {
+    this.manufOrderRepository = manufOrderRepository;
+    this.operationOrderService = operationOrderService;
+    this.machineService = machineService;
+    this.machineCapacityCalendarService = machineCapacityCalendarService;
+  }
+
+  @Override
+  public List<ManufOrder> getManufOrderListToReplan(
+      Company company, Set<WorkCenter> workCenterSet) {
+    String filter =
+        "self.statusSelect IN (:statusPlanned, :statusInProgress, :statusStandby)"
+            + " AND EXISTS (SELECT 1 FROM OperationOrder operationOrder"
+            + " WHERE operationOrder.manufOrder = self"
+            + " AND operationOrder.statusSelect = :operationOrderStatusPlanned"
+            + (CollectionUtils.isNotEmpty(workCenterSet)
+                ? " AND operationOrder.workCenter.id IN (:workCenterIdList))"
+                : ")");
+    if (company != null) {
+      filter += " AND self.company.id = :companyId";
+    }
+
+    Query<ManufOrder> query =
+        manufOrderRepository
+            .all()
+            .filter(filter)
+            .bind("statusPlanned", ManufOrderRepository.STATUS_PLANNED)
+            .bind("statusInProgress", ManufOrderRepository.STATUS_IN_PROGRESS)
+            .bind("statusStandby", ManufOrderRepository.STATUS_STANDBY)
+            .bind("operationOrderStatusPlanned", OperationOrderRepository.STATUS_PLANNED);
+    if (CollectionUtils.isNotEmpty(workCenterSet)) {
+      query.bind(
+          "workCenterIdList",
+          workCenterSet.stream().map(WorkCenter::getId).collect(Collectors.toList()));
+    }
+    if (company != null) {
+      query.bind("companyId", company.getId());
+    }
+
+    return query.order("-prioritySelect").order("plannedEndDateT").order("id").fetch();
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public Map<Long, AxelorException> replan(
+      List<ManufOrder> manufOrderList, LocalDateTime fromDateT) {
+    Map<Long, AxelorException> errorMap = new LinkedHashMap<>();
+    List<List<OperationOrder>> operationOrderLists = new ArrayList<>();
+
+    for (ManufOrder manufOrder : manufOrderList) {
+      List<OperationOrder> operationOrderList =
+          operationOrderService.getSortedOperationOrderList(
+              getOperationOrderListToReplan(manufOrder));
+      operationOrderLists.add(operationOrderList);
+
+      // Calendars are loaded while the previous planned dates are still in the database
+      for (OperationOrder operationOrder : operationOrderList) {
+        if (operationOrder.getMachine() != null) {
+          machineCapacityCalendarService.getCalendar(operationOrder.getMachine());
+        }
+      }
+    }
+
+    EntityManager em = JPA.em();
+    FlushModeType flushMode = em.getFlushMode();
+    // Operations are placed in memory only, the planned dates are written at once at the end
+    em.setFlushMode(FlushModeType.COMMIT);
+
+    try {
+      replanManufOrders(manufOrderList, operationOrderLists, fromDateT, errorMap);
+
+      em.flush();
+    } finally {
+      em.setFlushMode(flushMode);
+    }
+    return errorMap;
+  }
+
+  /**
+   * Replan the operations of the manufacturing orders. The time slots of all the orders are
+   * released first, so that an order can take the slots of the orders placed after it, then the
+   * orders are placed one after the other in the given order. The orders whose durations cannot be
+   * computed are left untouched, and the previous time slots of an order which cannot be placed
+   * are booked again.
+   */
+  protected void replanManufOrders(
+      List<ManufOrder> manufOrderList,
+      List<List<OperationOrder>> operationOrderLists,
+      LocalDateTime fromDateT,
+      Map<Long, AxelorException> errorMap) {
+    Map<Long, Long> durationMap = new HashMap<>();
+    List<Map<Long, MachineTimeSlot>> previousTimeSlotMapList = new ArrayList<>();
+
+    for (int i = 0; i < manufOrderList.size(); i++) {
+      ManufOrder manufOrder = manufOrderList.get(i);
+      List<OperationOrder> operationOrderList = operationOrderLists.get(i);
+      try {
+        for (OperationOrder operationOrder : operationOrderList) {
+          durationMap.put(
+              operationOrder.getId(), operationOrderService.getDuration(operationOrder));
+        }
+        previousTimeSlotMapList.add(release(operationOrderList));
+      } catch (AxelorException e) {
+        previousTimeSlotMapList.add(null);
+        errorMap.put(manufOrder.getId(), e);
+      }
+    }
+
+    for (int i = 0; i < manufOrderList.size(); i++) {
+      Map<Long, MachineTimeSlot> previousTimeSlotMap = previousTimeSlotMapList.get(i);
+      if (previousTimeSlotMap != null) {
+        replanManufOrder(
+            manufOrderList.get(i),
+            operationOrderLists.get(i),
+            previousTimeSlotMap,
+            durationMap,
+            fromDateT,
+            errorMap);
+      }
+    }
+  }
+
+  /**
+   * Place the released operations of one manufacturing order, booking their previous time slots
+   * again if the order cannot be placed.
+   */
+  protected void replanManufOrder(
+      ManufOrder manufOrder,
+      List<OperationOrder> operationOrderList,
+      Map<Long, MachineTimeSlot> previousTimeSlotMap,
+      Map<Long, Long> durationMap,
+      LocalDateTime fromDateT,
+      Map<Long, AxelorException> errorMap) {
+    try {
+      place(manufOrder, operationOrderList, durationMap, fromDateT);
+    } catch (AxelorException e) {
+      restore(operationOrderList, previousTimeSlotMap);
+      errorMap.put(manufOrder.getId(), e);
+    }
+    updatePlannedDates(manufOrder);
+  }
+
+  /**
+   * Unplan the operations and release their time slots.
+   *
+   * @return the previous time slots by id of the operations
+   */
+  protected Map<Long, MachineTimeSlot> release(List<OperationOrder> operationOrderList) {
+    Map<Long, MachineTimeSlot> previousTimeSlotMap = new HashMap<>();
+    for (OperationOrder operationOrder : operationOrderList) {
+      previousTimeSlotMap.put(
+          operationOrder.getId(),
+          new MachineTimeSlot(
+              operationOrder.getPlannedStartDateT(), operationOrder.getPlannedEndDateT()));
+      operationOrder.setPlannedStartDateT(null);
+      operationOrder.setPlannedEndDateT(null);
+      machineCapacityCalendarService.release(operationOrder);
+    }
+    return previousTimeSlotMap;
+  }
+
+  protected List<OperationOrder> getOperationOrderListToReplan(ManufOrder manufOrder) {
+    if (manufOrder.getOperationOrderList() == null) {
+      return new ArrayList<>();
+    }
+    return manufOrder.getOperationOrderList().stream()
+        .filter(
+            operationOrder ->
+                operationOrder.getStatusSelect() == OperationOrderRepository.STATUS_PLANNED
+                    && operationOrder.getPlannedStartDateT() != null
+                    && operationOrder.getPlannedEndDateT() != null)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Place the operations of the manufacturing order one after the other, each one on the closest
+   * available time slot of its machine.
+   */
+  protected void place(
+      ManufOrder manufOrder,
+      List<OperationOrder> operationOrderList,
+      Map<Long, Long> durationMap,
+      LocalDateTime fromDateT)
+      throws AxelorException {
+    LocalDateTime manufOrderStartDateT = manufOrder.getPlannedStartDateT();
+    if (manufOrderStartDateT == null || manufOrderStartDateT.isBefore(fromDateT)) {
+      manufOrderStartDateT = fromDateT;
+    }
+
+    for (OperationOrder operationOrder : operationOrderList) {
+      LocalDateTime startDateT = getPreviousOperationEndDateT(operationOrder, manufOrderStartDateT);
+      LocalDateTime endDateT =
+          startDateT.plusSeconds(durationMap.get(operationOrder.getId()));
+
+      Machine machine = operationOrder.getMachine();
+      MachineTimeSlot timeSlot =
+          machine != null
+              ? machineService.getClosestAvailableTimeSlotFrom(
+                  machine, startDateT, endDateT, operationOrder)
+              : new MachineTimeSlot(startDateT, endDateT);
+
+      operationOrder.setPlannedStartDateT(timeSlot.getStartDateT());
+      operationOrder.setPlannedEndDateT(timeSlot.getEndDateT());
+      operationOrder.setPlannedDuration(
+          DurationTool.getSecondsDuration(
+              Duration.between(timeSlot.getStartDateT(), timeSlot.getEndDateT())));
+      machineCapacityCalendarService.book(operationOrder);
+    }
+  }
+
+  /**
+   * Get the date from which the operation can start: the end of the operations of the same order
+   * with a lower priority, or with the same priority on the same machine.
+   */
+  protected LocalDateTime getPreviousOperationEndDateT(
+      OperationOrder operationOrder, LocalDateTime manufOrderStartDateT) {
+    LocalDateTime startDateT = manufOrderStartDateT;
+
+    for (OperationOrder previousOperationOrder :
+        operationOrder.getManufOrder().getOperationOrderList()) {
+      if (previousOperationOrder == operationOrder
+          || previousOperationOrder.getPlannedEndDateT() == null
+          || previousOperationOrder.getStatusSelect() < OperationOrderRepository.STATUS_PLANNED
+          || previousOperationOrder.getStatusSelect() > OperationOrderRepository.STATUS_STANDBY) {
+        continue;
+      }
+
+      boolean isPrevious =
+          previousOperationOrder.getPriority() < operationOrder.getPriority()
+              || (previousOperationOrder.getPriority().equals(operationOrder.getPriority())
+                  && Objects.equals(
+                      previousOperationOrder.getMachine(), operationOrder.getMachine()));
+      if (isPrevious && previousOperationOrder.getPlannedEndDateT().isAfter(startDateT)) {
+        startDateT = previousOperationOrder.getPlannedEndDateT();
+      }
+    }
+    return startDateT;
+  }
+
+  /**
+   * Book the previous time slots of the operations again, releasing the ones booked by a partial
+   * placement. These slots may have been taken by the orders placed before, the order is then
+   * reported in the errors to be planned again.
+   */
+  protected void restore(
+      List<OperationOrder> operationOrderList,
+      Map<Long, MachineTimeSlot> previousTimeSlotMap) {
+    for (OperationOrder operationOrder : operationOrderList) {
+      MachineTimeSlot previousTimeSlot = previousTimeSlotMap.get(operationOrder.getId());
+      operationOrder.setPlannedStartDateT(previousTimeSlot.getStartDateT());
+      operationOrder.setPlannedEndDateT(previousTimeSlot.getEndDateT());
+      operationOrder.setPlannedDuration(
+          DurationTool.getSecondsDuration(
+              Duration.between(
+                  previousTimeSlot.getStartDateT(), previousTimeSlot.getEndDateT())));
+      machineCapacityCalendarService.book(operationOrder);
+    }
+  }
+
+  /** Set the planned dates of the manufacturing order from the ones of its operations. */
+  protected void updatePlannedDates(ManufOrder manufOrder) {
+    LocalDateTime plannedStartDateT = null;
+    LocalDateTime plannedEndDateT = null;
+
+    for (OperationOrder operationOrder : manufOrder.getOperationOrderList()) {
+      if (operationOrder.getStatusSelect() == OperationOrderRepository.STATUS_CANCELED
+          || operationOrder.getPlannedStartDateT() == null
+          || operationOrder.getPlannedEndDateT() == null) {
+        continue;
+      }
+      if (plannedStartDateT == null
+          || operationOrder.getPlannedStartDateT().isBefore(plannedStartDateT)) {
+        plannedStartDateT = operationOrder.getPlannedStartDateT();
+      }
+      if (plannedEndDateT == null || operationOrder.getPlannedEndDateT().isAfter(plannedEndDateT)) {
+        plannedEndDateT = operationOrder.getPlannedEndDateT();
+      }
+    }
+
+    if (plannedStartDateT != null) {
+      manufOrder.setPlannedStartDateT(plannedStartDateT);
+      manufOrder.setPlannedEndDateT(plannedEndDateT);
+    }
+  }
+}
@@ -52,6 +52,7 @@ import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
 import com.axelor.apps.production.service.app.AppProductionService;
 import com.axelor.apps.production.service.config.ProductionConfigService;
 import com.axelor.apps.production.service.costsheet.CostSheetService;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
 import com.axelor.apps.production.service.operationorder.OperationOrderPlanningService;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
 import com.axelor.apps.production.service.operationorder.OperationOrderWorkflowService;
@@ -457,6 +458,7 @@ public class ManufOrderWorkflowServiceImpl implements ManufOrderWorkflowService
         if (operationOrder.getStatusSelect() != OperationOrderRepository.STATUS_CANCELED) {
           operationOrderWorkflowService.cancel(operationOrder);
         }
+        Beans.get(MachineCapacityCalendarService.class).release(operationOrder);
       }
     }
 
@@ -32,6 +32,7 @@ import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.db.repo.ProductionConfigRepository;
 import com.axelor.apps.production.exceptions.ProductionExceptionMessage;
 import com.axelor.apps.production.service.config.ProductionConfigService;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
 import com.axelor.apps.production.service.machine.MachineService;
 import com.axelor.apps.production.service.manuforder.ManufOrderService;
 import com.axelor.apps.production.service.manuforder.ManufOrderWorkflowService;
@@ -65,6 +66,7 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
   protected OperationOrderPlanningInfiniteCapacityService
       operationOrderPlanningInfiniteCapacityService;
   protected ManufOrderWorkflowService manufOrderWorkflowService;
+  protected MachineCapacityCalendarService machineCapacityCalendarService;
 
   @Inject
   public OperationOrderPlanningServiceImpl(
@@ -76,7 +78,8 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
       ManufOrderService manufOrderService,
       OperationOrderService operationOrderService,
       OperationOrderPlanningInfiniteCapacityService operationOrderPlanningInfiniteCapacityService,
-      ManufOrderWorkflowService manufOrderWorkflowService) {
+      ManufOrderWorkflowService manufOrderWorkflowService,
+      MachineCapacityCalendarService machineCapacityCalendarService) {
     this.productionConfigService = productionConfigService;
     this.operationOrderStockMoveService = operationOrderStockMoveService;
     this.machineService = machineService;
@@ -87,6 +90,7 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
     this.operationOrderPlanningInfiniteCapacityService =
         operationOrderPlanningInfiniteCapacityService;
     this.manufOrderWorkflowService = manufOrderWorkflowService;
+    this.machineCapacityCalendarService = machineCapacityCalendarService;
   }
 
   @Override
@@ -164,6 +168,7 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
           oo -> {
             oo.setPlannedStartDateT(null);
             oo.setPlannedEndDateT(null);
+            machineCapacityCalendarService.release(oo);
           });
       plan(operationOrders);
     } else if (capacity == ProductionConfigRepository.INFINITE_CAPACITY_SCHEDULING) {
@@ -177,6 +182,7 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
             DurationTool.getSecondsDuration(
                 Duration.between(
                     operationOrder.getPlannedStartDateT(), operationOrder.getPlannedEndDateT())));
+        machineCapacityCalendarService.book(operationOrder);
       }
     } else {
       throw new AxelorException(
@@ -225,6 +231,7 @@ public class OperationOrderPlanningServiceImpl implements OperationOrderPlanning
 
     operationOrder.setPlannedStartDateT(plannedStartDateT);
     operationOrder.setPlannedEndDateT(plannedEndDateT);
+    machineCapacityCalendarService.book(operationOrder);
 
     ManufOrder manufOrder = operationOrder.getManufOrder();
     ProductionConfig productionConfig =
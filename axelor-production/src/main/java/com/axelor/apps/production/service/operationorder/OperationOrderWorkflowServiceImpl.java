@@ -30,6 +30,7 @@ import com.axelor.apps.production.db.repo.OperationOrderDurationRepository;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.db.repo.ProductionConfigRepository;
 import com.axelor.apps.production.service.app.AppProductionService;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
 import com.axelor.apps.production.service.manuforder.ManufOrderStockMoveService;
 import com.axelor.apps.production.service.manuforder.ManufOrderWorkflowService;
 import com.axelor.apps.stock.db.StockMove;
@@ -91,6 +92,7 @@ public class OperationOrderWorkflowServiceImpl implements OperationOrderWorkflow
       operationOrder.setPlannedStartDateT(null);
       operationOrder.setPlannedEndDateT(null);
       operationOrder.setPlannedDuration(null);
+      Beans.get(MachineCapacityCalendarService.class).release(operationOrder);
     }
 
     return operationOrderList;
@@ -23,6 +23,7 @@ import com.axelor.apps.production.db.Machine;
 import com.axelor.apps.production.db.OperationOrder;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
 import com.axelor.apps.production.model.machine.MachineTimeSlot;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
 import com.axelor.apps.production.service.machine.MachineService;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
 import com.axelor.apps.production.service.operationorder.OperationOrderStockMoveService;
@@ -42,8 +43,13 @@ public class OperationOrderPlanningAsapFiniteCapacityService
       OperationOrderService operationOrderService,
       OperationOrderStockMoveService operationOrderStockMoveService,
       OperationOrderRepository operationOrderRepository,
+      MachineCapacityCalendarService machineCapacityCalendarService,
       MachineService machineService) {
-    super(operationOrderService, operationOrderStockMoveService, operationOrderRepository);
+    super(
+        operationOrderService,
+        operationOrderStockMoveService,
+        operationOrderRepository,
+        machineCapacityCalendarService);
     this.machineService = machineService;
   }
 
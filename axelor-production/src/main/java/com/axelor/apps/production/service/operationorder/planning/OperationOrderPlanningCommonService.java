@@ -22,6 +22,7 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.production.db.ManufOrder;
 import com.axelor.apps.production.db.OperationOrder;
 import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
 import com.axelor.apps.production.service.operationorder.OperationOrderService;
 import com.axelor.apps.production.service.operationorder.OperationOrderStockMoveService;
 import com.google.inject.Inject;
@@ -31,15 +32,18 @@ public abstract class OperationOrderPlanningCommonService {
   protected OperationOrderService operationOrderService;
   protected OperationOrderStockMoveService operationOrderStockMoveService;
   protected OperationOrderRepository operationOrderRepository;
+  protected MachineCapacityCalendarService machineCapacityCalendarService;
 
   @Inject
   protected OperationOrderPlanningCommonService(
       OperationOrderService operationOrderService,
       OperationOrderStockMoveService operationOrderStockMoveService,
-      OperationOrderRepository operationOrderRepository) {
+      OperationOrderRepository operationOrderRepository,
+      MachineCapacityCalendarService machineCapacityCalendarService) {
     this.operationOrderService = operationOrderService;
     this.operationOrderStockMoveService = operationOrderStockMoveService;
     this.operationOrderRepository = operationOrderRepository;
+    this.machineCapacityCalendarService = machineCapacityCalendarService;
   }
 
   protected abstract void planWithStrategy(OperationOrder operationOrder) throws AxelorException;
@@ -54,6 +58,8 @@ public abstract class OperationOrderPlanningCommonService {
     }
 
     operationOrder.setStatusSelect(OperationOrderRepository.STATUS_PLANNED);
-    return operationOrderRepository.save(operationOrder);
+    operationOrder = operationOrderRepository.save(operationOrder);
+    machineCapacityCalendarService.book(operationOrder);
+    return operationOrder;
   }
 }
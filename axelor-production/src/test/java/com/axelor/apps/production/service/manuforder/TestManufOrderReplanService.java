@@ -0,0 +1,419 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.production.service.manuforder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.repo.TraceBackRepository;
+import com.axelor.apps.production.db.Machine;
+import com.axelor.apps.production.db.ManufOrder;
+import com.axelor.apps.production.db.OperationOrder;
+import com.axelor.apps.production.db.repo.ManufOrderRepository;
+import com.axelor.apps.production.db.repo.OperationOrderRepository;
+import com.axelor.apps.production.model.machine.MachineCapacityCalendar;
+import com.axelor.apps.production.service.machine.MachineCapacityCalendarService;
+import com.axelor.apps.production.service.machine.MachineServiceImpl;
+import com.axelor.apps.production.service.operationorder.OperationOrderService;
+import com.axelor.db.Query;
+import com.axelor.db.mapper.Mapper;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the bulk re-planning on a synthetic shop: orders of a few operations, each on a
+ * random machine, are placed in memory against the machine capacity calendars. The wall time and
+ * the tardiness against the due dates are reported, for the order given by the service and for the
+ * creation order.
+ */
+class TestManufOrderReplanService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TestManufOrderReplanService.class);
+
+  private static final int MACHINES = 20;
+  private static final int ORDERS = 5000;
+  private static final int MAX_OPERATIONS = 5;
+  private static final long SEED = 42;
+
+  private static final LocalDateTime FROM_DATE_T = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+  /** Capacity calendars kept in memory, without database nor transaction. */
+  private static class InMemoryCalendarService extends MachineCapacityCalendarService {
+
+    InMemoryCalendarService() {
+      super(null, null);
+      calendarMap.set(new HashMap<>());
+    }
+
+    @Override
+    protected Map<Long, MachineCapacityCalendar> getTransactionCalendarMap() {
+      return calendarMap.get();
+    }
+
+    @Override
+    protected MachineCapacityCalendar loadCalendar(Machine machine) {
+      return new MachineCapacityCalendar(null, new HashSet<>());
+    }
+  }
+
+  /** A synthetic shop, rebuilt identically from the seed. */
+  private static class Shop {
+    final List<ManufOrder> manufOrderList = new ArrayList<>();
+    final List<OperationOrder> operationOrderList = new ArrayList<>();
+    final Map<Long, Long> durationMap = new HashMap<>();
+    final Map<Long, LocalDateTime> dueDateTMap = new HashMap<>();
+
+    Shop() {
+      Random random = new Random(SEED);
+      List<Machine> machineList = new ArrayList<>();
+      for (long id = 1; id <= MACHINES; id++) {
+        Machine machine = new Machine();
+        machine.setId(id);
+        machineList.add(machine);
+      }
+
+      long operationOrderId = 1;
+      for (long id = 1; id <= ORDERS; id++) {
+        ManufOrder manufOrder = new ManufOrder();
+        manufOrder.setId(id);
+        manufOrder.setStatusSelect(ManufOrderRepository.STATUS_PLANNED);
+        manufOrder.setPrioritySelect(1 + random.nextInt(4));
+        manufOrder.setPlannedStartDateT(FROM_DATE_T.plusHours(random.nextInt(24 * 30)));
+        manufOrder.setOperationOrderList(new ArrayList<>());
+        manufOrderList.add(manufOrder);
+
+        long totalDuration = 0;
+        int operationCount = 1 + random.nextInt(MAX_OPERATIONS);
+        for (int priority = 1; priority <= operationCount; priority++) {
+          OperationOrder operationOrder = new OperationOrder();
+          operationOrder.setId(operationOrderId++);
+          operationOrder.setPriority(priority * 10);
+          operationOrder.setStatusSelect(OperationOrderRepository.STATUS_PLANNED);
+          operationOrder.setMachine(machineList.get(random.nextInt(MACHINES)));
+          operationOrder.setManufOrder(manufOrder);
+          manufOrder.getOperationOrderList().add(operationOrder);
+          operationOrderList.add(operationOrder);
+
+          long duration = Duration.ofMinutes(30 + random.nextInt(8 * 60)).getSeconds();
+          durationMap.put(operationOrder.getId(), duration);
+          operationOrder.setPlannedStartDateT(
+              manufOrder.getPlannedStartDateT().plusSeconds(totalDuration));
+          totalDuration += duration;
+          operationOrder.setPlannedEndDateT(
+              manufOrder.getPlannedStartDateT().plusSeconds(totalDuration));
+        }
+        LocalDateTime dueDateT =
+            manufOrder.getPlannedStartDateT().plusSeconds(totalDuration * (2 + random.nextInt(8)));
+        dueDateTMap.put(id, dueDateT);
+        manufOrder.setPlannedEndDateT(dueDateT);
+      }
+    }
+  }
+
+  private static class Result {
+    long wallTimeMillis;
+    int lateCount;
+    long tardinessHours;
+    int errorCount;
+  }
+
+  @Test
+  void manufOrdersToReplanAreMostUrgentFirst() throws AxelorException {
+    Shop shop = new Shop();
+    List<ManufOrder> manufOrderList =
+        createReplanService(shop, new InMemoryCalendarService())
+            .getManufOrderListToReplan(null, null);
+
+    Assertions.assertEquals(shop.manufOrderList.size(), manufOrderList.size());
+    for (int i = 1; i < manufOrderList.size(); i++) {
+      ManufOrder previousManufOrder = manufOrderList.get(i - 1);
+      ManufOrder manufOrder = manufOrderList.get(i);
+      int priorityComparison =
+          Integer.compare(previousManufOrder.getPrioritySelect(), manufOrder.getPrioritySelect());
+      Assertions.assertTrue(
+          priorityComparison > 0
+              || (priorityComparison == 0
+                  && !previousManufOrder
+                      .getPlannedEndDateT()
+                      .isAfter(manufOrder.getPlannedEndDateT())));
+    }
+  }
+
+  @Test
+  void replanSyntheticShop() throws Exception {
+    Result urgentFirst = replan(new Shop(), true);
+    Result creationOrder = replan(new Shop(), false);
+
+    LOG.info(
+        "Replanned {} orders on {} machines, most urgent first: {} ms, {} late, {} h of tardiness",
+        ORDERS,
+        MACHINES,
+        urgentFirst.wallTimeMillis,
+        urgentFirst.lateCount,
+        urgentFirst.tardinessHours);
+    LOG.info(
+        "Replanned {} orders on {} machines, creation order: {} ms, {} late, {} h of tardiness",
+        ORDERS,
+        MACHINES,
+        creationOrder.wallTimeMillis,
+        creationOrder.lateCount,
+        creationOrder.tardinessHours);
+
+    Assertions.assertEquals(0, urgentFirst.errorCount);
+    Assertions.assertEquals(0, creationOrder.errorCount);
+  }
+
+  /**
+   * Replan all the orders of the shop, in the order given by the service or in the creation order,
+   * and check the resulting planning.
+   */
+  private Result replan(Shop shop, boolean urgentFirst) throws AxelorException {
+    ManufOrderReplanServiceImpl replanService =
+        createReplanService(shop, new InMemoryCalendarService());
+    List<ManufOrder> manufOrderList =
+        urgentFirst ? replanService.getManufOrderListToReplan(null, null) : shop.manufOrderList;
+    List<List<OperationOrder>> operationOrderLists =
+        manufOrderList.stream()
+            .map(manufOrder -> new ArrayList<>(manufOrder.getOperationOrderList()))
+            .collect(Collectors.toList());
+    Map<Long, AxelorException> errorMap = new HashMap<>();
+
+    long start = System.nanoTime();
+    replanService.replanManufOrders(manufOrderList, operationOrderLists, FROM_DATE_T, errorMap);
+
+    Result result = new Result();
+    result.errorCount = errorMap.size();
+    result.wallTimeMillis = (System.nanoTime() - start) / 1_000_000;
+    for (ManufOrder manufOrder : manufOrderList) {
+      LocalDateTime dueDateT = shop.dueDateTMap.get(manufOrder.getId());
+      if (manufOrder.getPlannedEndDateT().isAfter(dueDateT)) {
+        result.lateCount++;
+        result.tardinessHours +=
+            Duration.between(dueDateT, manufOrder.getPlannedEndDateT()).toHours();
+      }
+    }
+    checkPlanning(shop);
+    return result;
+  }
+
+  /**
+   * Create the service on the shop. The query of the orders to replan is not filtered, all the
+   * orders of the shop are to be replanned, but its order is applied.
+   */
+  @SuppressWarnings("unchecked")
+  private ManufOrderReplanServiceImpl createReplanService(
+      Shop shop, MachineCapacityCalendarService calendarService) throws AxelorException {
+    List<Comparator<ManufOrder>> comparatorList = new ArrayList<>();
+    Query<ManufOrder> query =
+        mock(
+            Query.class,
+            invocation -> {
+              switch (invocation.getMethod().getName()) {
+                case "filter":
+                case "bind":
+                  return invocation.getMock();
+                case "order":
+                  comparatorList.add(createComparator(invocation.getArgument(0)));
+                  return invocation.getMock();
+                case "fetch":
+                  return shop.manufOrderList.stream()
+                      .sorted(
+                          comparatorList.stream()
+                              .reduce(
+                                  (first, second) -> 0,
+                                  (first, second) -> first.thenComparing(second)))
+                      .collect(Collectors.toList());
+                default:
+                  throw new UnsupportedOperationException(invocation.getMethod().getName());
+              }
+            });
+    ManufOrderRepository manufOrderRepository = mock(ManufOrderRepository.class);
+    when(manufOrderRepository.all()).thenReturn(query);
+
+    OperationOrderService operationOrderService = mock(OperationOrderService.class);
+    when(operationOrderService.getDuration(any(OperationOrder.class)))
+        .thenAnswer(
+            invocation -> shop.durationMap.get(invocation.<OperationOrder>getArgument(0).getId()));
+
+    return new ManufOrderReplanServiceImpl(
+        manufOrderRepository,
+        operationOrderService,
+        new MachineServiceImpl(null, null, null, calendarService),
+        calendarService);
+  }
+
+  /** Compare the orders on a field, descending if prefixed by a minus sign. */
+  @SuppressWarnings("unchecked")
+  private Comparator<ManufOrder> createComparator(String order) {
+    boolean descending = order.startsWith("-");
+    String name = descending ? order.substring(1) : order;
+    Mapper mapper = Mapper.of(ManufOrder.class);
+    Comparator<ManufOrder> comparator =
+        Comparator.comparing(manufOrder -> (Comparable<Object>) mapper.get(manufOrder, name));
+    return descending ? comparator.reversed() : comparator;
+  }
+
+  @Test
+  void failedOrderKeepsItsSlotsWithoutOverlap() throws Exception {
+    Machine machine = new Machine();
+    machine.setId(1L);
+    ManufOrder urgentOrder = createManufOrder(1L, machine, FROM_DATE_T.plusHours(12));
+    ManufOrder failingOrder = createManufOrder(2L, machine, FROM_DATE_T);
+    OperationOrder urgentOperation = urgentOrder.getOperationOrderList().get(0);
+    OperationOrder failingOperation = failingOrder.getOperationOrderList().get(0);
+
+    MachineCapacityCalendarService calendarService = new InMemoryCalendarService();
+    calendarService.getCalendar(machine);
+    calendarService.book(urgentOperation);
+    calendarService.book(failingOperation);
+
+    OperationOrderService operationOrderService = mock(OperationOrderService.class);
+    when(operationOrderService.getDuration(urgentOperation)).thenReturn(7200L);
+    when(operationOrderService.getDuration(failingOperation))
+        .thenThrow(new AxelorException(TraceBackRepository.CATEGORY_INCONSISTENCY, "Not placed"));
+    ManufOrderReplanServiceImpl replanService =
+        new ManufOrderReplanServiceImpl(
+            null,
+            operationOrderService,
+            new MachineServiceImpl(null, null, null, calendarService),
+            calendarService);
+
+    Map<Long, AxelorException> errorMap = new HashMap<>();
+    replanService.replanManufOrders(
+        Arrays.asList(urgentOrder, failingOrder),
+        Arrays.asList(urgentOrder.getOperationOrderList(), failingOrder.getOperationOrderList()),
+        FROM_DATE_T,
+        errorMap);
+
+    Assertions.assertEquals(Collections.singleton(failingOrder.getId()), errorMap.keySet());
+    Assertions.assertEquals(FROM_DATE_T, failingOperation.getPlannedStartDateT());
+    Assertions.assertFalse(
+        urgentOperation.getPlannedStartDateT().isBefore(failingOperation.getPlannedEndDateT()));
+  }
+
+  @Test
+  void urgentOrderTakesTheSlotsOfLaterOrders() throws Exception {
+    Machine machine = new Machine();
+    machine.setId(1L);
+    ManufOrder urgentOrder = createManufOrder(1L, machine, FROM_DATE_T.plusHours(12));
+    ManufOrder laterOrder = createManufOrder(2L, machine, FROM_DATE_T);
+    OperationOrder urgentOperation = urgentOrder.getOperationOrderList().get(0);
+    OperationOrder laterOperation = laterOrder.getOperationOrderList().get(0);
+
+    MachineCapacityCalendarService calendarService = new InMemoryCalendarService();
+    calendarService.getCalendar(machine);
+    calendarService.book(urgentOperation);
+    calendarService.book(laterOperation);
+
+    OperationOrderService operationOrderService = mock(OperationOrderService.class);
+    when(operationOrderService.getDuration(any(OperationOrder.class))).thenReturn(7200L);
+    ManufOrderReplanServiceImpl replanService =
+        new ManufOrderReplanServiceImpl(
+            null,
+            operationOrderService,
+            new MachineServiceImpl(null, null, null, calendarService),
+            calendarService);
+
+    Map<Long, AxelorException> errorMap = new HashMap<>();
+    replanService.replanManufOrders(
+        Arrays.asList(urgentOrder, laterOrder),
+        Arrays.asList(urgentOrder.getOperationOrderList(), laterOrder.getOperationOrderList()),
+        FROM_DATE_T,
+        errorMap);
+
+    Assertions.assertTrue(errorMap.isEmpty());
+    Assertions.assertEquals(FROM_DATE_T, urgentOperation.getPlannedStartDateT());
+    Assertions.assertFalse(
+        laterOperation.getPlannedStartDateT().isBefore(urgentOperation.getPlannedEndDateT()));
+  }
+
+  /**
+   * Order starting at the beginning of the replanning, with one two hours operation on the machine
+   * planned at the given date.
+   */
+  private ManufOrder createManufOrder(Long id, Machine machine, LocalDateTime plannedStartDateT) {
+    ManufOrder manufOrder = new ManufOrder();
+    manufOrder.setId(id);
+    manufOrder.setStatusSelect(ManufOrderRepository.STATUS_PLANNED);
+    manufOrder.setPlannedStartDateT(FROM_DATE_T);
+    manufOrder.setPlannedEndDateT(plannedStartDateT.plusHours(2));
+    manufOrder.setOperationOrderList(new ArrayList<>());
+
+    OperationOrder operationOrder = new OperationOrder();
+    operationOrder.setId(id);
+    operationOrder.setPriority(10);
+    operationOrder.setStatusSelect(OperationOrderRepository.STATUS_PLANNED);
+    operationOrder.setMachine(machine);
+    operationOrder.setManufOrder(manufOrder);
+    operationOrder.setPlannedStartDateT(plannedStartDateT);
+    operationOrder.setPlannedEndDateT(plannedStartDateT.plusHours(2));
+    manufOrder.getOperationOrderList().add(operationOrder);
+    return manufOrder;
+  }
+
+  /** Operations must not overlap on a machine and must follow each other in an order. */
+  private void checkPlanning(Shop shop) {
+    Map<Long, List<OperationOrder>> machineOperationMap =
+        shop.operationOrderList.stream()
+            .collect(Collectors.groupingBy(operationOrder -> operationOrder.getMachine().getId()));
+
+    for (List<OperationOrder> operationOrderList : machineOperationMap.values()) {
+      operationOrderList.sort(Comparator.comparing(OperationOrder::getPlannedStartDateT));
+      for (int i = 1; i < operationOrderList.size(); i++) {
+        Assertions.assertFalse(
+            operationOrderList
+                .get(i)
+                .getPlannedStartDateT()
+                .isBefore(operationOrderList.get(i - 1).getPlannedEndDateT()));
+      }
+    }
+
+    for (ManufOrder manufOrder : shop.manufOrderList) {
+      List<OperationOrder> operationOrderList = manufOrder.getOperationOrderList();
+      Assertions.assertFalse(
+          operationOrderList.get(0).getPlannedStartDateT().isBefore(FROM_DATE_T));
+      for (int i = 1; i < operationOrderList.size(); i++) {
+        Assertions.assertFalse(
+            operationOrderList
+                .get(i)
+                .getPlannedStartDateT()
+                .isBefore(operationOrderList.get(i - 1).getPlannedEndDateT()));
+      }
+      Assertions.assertEquals(
+          operationOrderList.get(operationOrderList.size() - 1).getPlannedEndDateT(),
+          manufOrder.getPlannedEndDateT());
+    }
+  }
+}
@@ -60,6 +60,8 @@ import com.axelor.apps.stock.service.PartnerProductQualityRatingServiceImpl;
 import com.axelor.apps.stock.service.PartnerStockSettingsService;
 import com.axelor.apps.stock.service.PartnerStockSettingsServiceImpl;
 import com.axelor.apps.stock.service.ProductVariantServiceStockImpl;
+import com.axelor.apps.stock.service.ProjectedStockQtyService;
+import com.axelor.apps.stock.service.ProjectedStockQtyServiceImpl;
 import com.axelor.apps.stock.service.StockCorrectionService;
 import com.axelor.apps.stock.service.StockCorrectionServiceImpl;
 import com.axelor.apps.stock.service.StockHistoryService;
@@ -102,6 +104,7 @@ public class StockModule extends AxelorModule {
     bind(InventoryRepository.class).to(InventoryManagementRepository.class);
     bind(StockMoveRepository.class).to(StockMoveManagementRepository.class);
     bind(StockLocationLineService.class).to(StockLocationLineServiceImpl.class);
+    bind(ProjectedStockQtyService.class).to(ProjectedStockQtyServiceImpl.class);
     bind(StockMoveLineService.class).to(StockMoveLineServiceImpl.class);
     bind(StockMoveService.class).to(StockMoveServiceImpl.class);
     bind(StockMoveUpdateService.class).to(StockMoveUpdateServiceImpl.class);
@@ -18,8 +18,6 @@
  */
 package com.axelor.apps.stock.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
-
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.ABCAnalysis;
 import com.axelor.apps.base.db.ABCAnalysisLine;
@@ -31,11 +29,11 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.service.ABCAnalysisServiceImpl;
 import com.axelor.apps.base.service.UnitConversionService;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
 import java.util.List;
@@ -77,19 +75,15 @@ public class ABCAnalysisServiceStockImpl extends ABCAnalysisServiceImpl {
         stockLocationService.getAllLocationAndSubLocation(abcAnalysis.getStockLocation(), false);
     BigDecimal productQty = BigDecimal.ZERO;
     BigDecimal productWorth = BigDecimal.ZERO;
-    List<StockLocationLine> stockLocationLineList;
-    int offset = 0;
-
-    Query<StockLocationLine> stockLocationLineQuery =
-        stockLocationLineRepository
-            .all()
-            .filter(
+    KeysetQueryIterator<StockLocationLine> iterator =
+        KeysetQueryIterator.of(
+                StockLocationLine.class,
                 "self.stockLocation IN :stockLocationList AND self.product.id = :productId AND self.currentQty != 0 ")
             .bind("stockLocationList", stockLocationList)
             .bind("productId", product.getId());
 
-    while (!(stockLocationLineList = stockLocationLineQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += stockLocationLineList.size();
+    while (iterator.hasNext()) {
+      List<StockLocationLine> stockLocationLineList = iterator.next();
       abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
 
       if (abcAnalysisLine == null) {
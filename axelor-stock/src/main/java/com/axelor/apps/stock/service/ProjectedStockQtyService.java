@@ -0,0 +1,56 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocationLine;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Projected quantities of a product in a stock location, summed from the stock move lines by the
+ * database: each query returns one sum per unit, which is converted once, instead of loading the
+ * stock move lines.
+ */
+public interface ProjectedStockQtyService {
+
+  /**
+   * Get the quantity of the planned stock move lines coming into the stock location of the given
+   * line, in the unit of the line.
+   */
+  BigDecimal getPlannedIncomingQty(StockLocationLine stockLocationLine) throws AxelorException;
+
+  /**
+   * Get the quantity of the planned stock move lines going out of the stock location of the given
+   * line, in the unit of the line.
+   */
+  BigDecimal getPlannedOutgoingQty(StockLocationLine stockLocationLine) throws AxelorException;
+
+  /**
+   * Get the quantity of the product in the stock location at the end of each day of the period,
+   * from its stock moves which are not canceled, in the unit of the product.
+   *
+   * @return the quantity per date, ordered by date
+   */
+  Map<LocalDate, BigDecimal> getQtyPerDate(
+      Long stockLocationId, Product product, LocalDate fromDate, LocalDate toDate)
+      throws AxelorException;
+}
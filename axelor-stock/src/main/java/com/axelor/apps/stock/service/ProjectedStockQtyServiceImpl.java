@@ -0,0 +1,208 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.repo.UnitRepository;
+import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+
+public class ProjectedStockQtyServiceImpl implements ProjectedStockQtyService {
+
+  protected static final String PLANNED_STOCK_MOVE_LINE_FILTER =
+      "(self.stockMove.archived IS NULL OR self.archived IS FALSE) "
+          + "AND self.stockMove.statusSelect = :planned "
+          + "AND self.product.id = :productId ";
+
+  protected static final String DATED_STOCK_MOVE_LINE_FILTER =
+      "self.product.id = :productId "
+          + "AND self.stockMove.statusSelect != :canceled "
+          + "AND (self.stockMove.estimatedDate <= :toDate OR self.stockMove.realDate <= :toDate) ";
+
+  protected UnitRepository unitRepository;
+  protected UnitConversionService unitConversionService;
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public ProjectedStockQtyServiceImpl(
+      UnitRepository unitRepository,
+      UnitConversionService unitConversionService,
+      AppBaseService appBaseService) {
+    this.unitRepository = unitRepository;
+    this.unitConversionService = unitConversionService;
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public BigDecimal getPlannedIncomingQty(StockLocationLine stockLocationLine)
+      throws AxelorException {
+    return getPlannedQty(stockLocationLine, "self.toStockLocation.id");
+  }
+
+  @Override
+  public BigDecimal getPlannedOutgoingQty(StockLocationLine stockLocationLine)
+      throws AxelorException {
+    return getPlannedQty(stockLocationLine, "self.fromStockLocation.id");
+  }
+
+  protected BigDecimal getPlannedQty(StockLocationLine stockLocationLine, String stockLocationField)
+      throws AxelorException {
+    Product product = stockLocationLine.getProduct();
+    StringBuilder filter = new StringBuilder(PLANNED_STOCK_MOVE_LINE_FILTER);
+    Map<String, Object> parameterMap = new HashMap<>();
+    parameterMap.put("planned", StockMoveRepository.STATUS_PLANNED);
+    parameterMap.put("productId", product.getId());
+
+    filter.append("AND ").append(stockLocationField).append(" = :stockLocationId");
+    if (stockLocationLine.getDetailsStockLocation() != null) {
+      filter.append(" AND self.trackingNumber.id = :trackingNumberId");
+      parameterMap.put("stockLocationId", stockLocationLine.getDetailsStockLocation().getId());
+      parameterMap.put("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
+    } else {
+      parameterMap.put("stockLocationId", stockLocationLine.getStockLocation().getId());
+    }
+
+    TypedQuery<Tuple> sumOfQtyPerUnitQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT unit.id, SUM(self.realQty) FROM StockMoveLine self"
+                    + " LEFT JOIN self.unit unit WHERE "
+                    + filter
+                    + " GROUP BY unit.id",
+                Tuple.class);
+    parameterMap.forEach(sumOfQtyPerUnitQuery::setParameter);
+
+    BigDecimal sumOfQty = BigDecimal.ZERO;
+    for (Tuple qtyPerUnit : sumOfQtyPerUnitQuery.getResultList()) {
+      sumOfQty =
+          sumOfQty.add(
+              convert(
+                  (Long) qtyPerUnit.get(0),
+                  stockLocationLine.getUnit(),
+                  (BigDecimal) qtyPerUnit.get(1),
+                  product));
+    }
+    return sumOfQty;
+  }
+
+  @Override
+  public Map<LocalDate, BigDecimal> getQtyPerDate(
+      Long stockLocationId, Product product, LocalDate fromDate, LocalDate toDate)
+      throws AxelorException {
+    NavigableMap<LocalDate, BigDecimal> qtyVariationMap = new TreeMap<>();
+    addQtyVariations(
+        qtyVariationMap, "self.toStockLocation.id", stockLocationId, product, toDate, false);
+    addQtyVariations(
+        qtyVariationMap, "self.fromStockLocation.id", stockLocationId, product, toDate, true);
+
+    int qtyScale = appBaseService.getNbDecimalDigitForQty();
+    BigDecimal qty =
+        qtyVariationMap.headMap(fromDate, false).values().stream()
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    Map<LocalDate, BigDecimal> qtyPerDateMap = new LinkedHashMap<>();
+    for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+      qty = qty.add(qtyVariationMap.getOrDefault(date, BigDecimal.ZERO));
+      qtyPerDateMap.put(date, qty.setScale(qtyScale, RoundingMode.HALF_UP));
+    }
+    return qtyPerDateMap;
+  }
+
+  /**
+   * Add to the given map the quantities of the stock move lines moving the product in or out of
+   * the stock location, per date from which they are counted: the estimated or the real date of
+   * their stock move, whichever comes first.
+   */
+  protected void addQtyVariations(
+      NavigableMap<LocalDate, BigDecimal> qtyVariationMap,
+      String stockLocationField,
+      Long stockLocationId,
+      Product product,
+      LocalDate toDate,
+      boolean isOutgoing)
+      throws AxelorException {
+    TypedQuery<Tuple> sumOfQtyPerUnitQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT unit.id, self.stockMove.estimatedDate, self.stockMove.realDate,"
+                    + " SUM(self.qty) FROM StockMoveLine self LEFT JOIN self.unit unit WHERE "
+                    + DATED_STOCK_MOVE_LINE_FILTER
+                    + "AND "
+                    + stockLocationField
+                    + " = :stockLocationId"
+                    + " GROUP BY unit.id, self.stockMove.estimatedDate, self.stockMove.realDate",
+                Tuple.class);
+    sumOfQtyPerUnitQuery.setParameter("productId", product.getId());
+    sumOfQtyPerUnitQuery.setParameter("canceled", StockMoveRepository.STATUS_CANCELED);
+    sumOfQtyPerUnitQuery.setParameter("toDate", toDate);
+    sumOfQtyPerUnitQuery.setParameter("stockLocationId", stockLocationId);
+
+    Map<Long, NavigableMap<LocalDate, BigDecimal>> qtyPerUnitMap = new HashMap<>();
+    for (Tuple qtyPerUnit : sumOfQtyPerUnitQuery.getResultList()) {
+      LocalDate estimatedDate = (LocalDate) qtyPerUnit.get(1);
+      LocalDate realDate = (LocalDate) qtyPerUnit.get(2);
+      LocalDate date = estimatedDate;
+      if (date == null || (realDate != null && realDate.isBefore(date))) {
+        date = realDate;
+      }
+      qtyPerUnitMap
+          .computeIfAbsent((Long) qtyPerUnit.get(0), key -> new TreeMap<>())
+          .merge(date, (BigDecimal) qtyPerUnit.get(3), BigDecimal::add);
+    }
+
+    for (Map.Entry<Long, NavigableMap<LocalDate, BigDecimal>> entry : qtyPerUnitMap.entrySet()) {
+      for (Map.Entry<LocalDate, BigDecimal> qtyPerDate : entry.getValue().entrySet()) {
+        BigDecimal qty = convert(entry.getKey(), product.getUnit(), qtyPerDate.getValue(), product);
+        qtyVariationMap.merge(
+            qtyPerDate.getKey(), isOutgoing ? qty.negate() : qty, BigDecimal::add);
+      }
+    }
+  }
+
+  /**
+   * Convert a quantity summed per unit into the given unit. Quantities are kept as is when no
+   * target unit is given.
+   */
+  protected BigDecimal convert(Long unitId, Unit toUnit, BigDecimal qty, Product product)
+      throws AxelorException {
+    if (qty == null) {
+      return BigDecimal.ZERO;
+    }
+    if (toUnit == null || toUnit.getId().equals(unitId)) {
+      return qty;
+    }
+    Unit unit = unitId != null ? unitRepository.find(unitId) : null;
+    return unitConversionService.convert(unit, toUnit, qty, qty.scale(), product);
+  }
+}
@@ -68,6 +68,7 @@ public class StockLocationServiceImpl implements StockLocationService {
   protected AppBaseService appBaseService;
   protected UnitRepository unitRepository;
   protected UnitConversionService unitConversionService;
+  protected StockLocationTreeCache stockLocationTreeCache;
 
   protected Set<Long> locationIdSet = new HashSet<>();
 
@@ -79,7 +80,8 @@ public class StockLocationServiceImpl implements StockLocationService {
       StockConfigService stockConfigService,
       AppBaseService appBaseService,
       UnitRepository unitRepository,
-      UnitConversionService unitConversionService) {
+      UnitConversionService unitConversionService,
+      StockLocationTreeCache stockLocationTreeCache) {
     this.stockLocationRepo = stockLocationRepo;
     this.stockLocationLineService = stockLocationLineService;
     this.productRepo = productRepo;
@@ -87,6 +89,7 @@ public class StockLocationServiceImpl implements StockLocationService {
     this.appBaseService = appBaseService;
     this.unitRepository = unitRepository;
     this.unitConversionService = unitConversionService;
+    this.stockLocationTreeCache = stockLocationTreeCache;
   }
 
   protected List<StockLocation> getNonVirtualStockLocations(Long companyId) {
@@ -224,10 +227,7 @@ public class StockLocationServiceImpl implements StockLocationService {
   public Set<Long> getContentStockLocationIds(StockLocation stockLocation) {
     locationIdSet = new HashSet<>();
     if (stockLocation != null) {
-      List<StockLocation> stockLocations = getAllLocationAndSubLocation(stockLocation, false);
-      for (StockLocation item : stockLocations) {
-        locationIdSet.add(item.getId());
-      }
+      locationIdSet.addAll(getAllLocationAndSubLocationId(stockLocation, false));
     } else {
       locationIdSet.add(0L);
     }
@@ -242,27 +242,28 @@ public class StockLocationServiceImpl implements StockLocationService {
     if (stockLocation == null) {
       return resultList;
     }
-    if (isVirtualInclude) {
-      for (StockLocation subLocation :
-          stockLocationRepo
-              .all()
-              .filter("self.parentStockLocation.id = :stockLocationId")
-              .bind("stockLocationId", stockLocation.getId())
-              .fetch()) {
+    if (stockLocation.getId() == null) {
+      resultList.add(stockLocation);
+      return resultList;
+    }
 
-        resultList.addAll(this.getAllLocationAndSubLocation(subLocation, isVirtualInclude));
-      }
-    } else {
+    List<Long> idList =
+        stockLocationTreeCache.getSubTreeIdList(stockLocation.getId(), isVirtualInclude);
+    Map<Long, StockLocation> subLocationMap = new HashMap<>();
+    if (idList.size() > 1) {
       for (StockLocation subLocation :
           stockLocationRepo
               .all()
-              .filter(
-                  "self.parentStockLocation.id = :stockLocationId AND self.typeSelect != :virtual")
-              .bind("stockLocationId", stockLocation.getId())
-              .bind("virtual", StockLocationRepository.TYPE_VIRTUAL)
+              .filter("self.id IN :idList")
+              .bind("idList", idList.subList(0, idList.size() - 1))
               .fetch()) {
-
-        resultList.addAll(this.getAllLocationAndSubLocation(subLocation, isVirtualInclude));
+        subLocationMap.put(subLocation.getId(), subLocation);
+      }
+    }
+    for (Long id : idList) {
+      StockLocation subLocation = subLocationMap.get(id);
+      if (subLocation != null) {
+        resultList.add(subLocation);
       }
     }
     resultList.add(stockLocation);
@@ -299,14 +300,14 @@ public class StockLocationServiceImpl implements StockLocationService {
   @Override
   public List<Long> getAllLocationAndSubLocationId(
       StockLocation stockLocation, boolean isVirtualInclude) {
-    List<StockLocation> stockLocationList =
-        getAllLocationAndSubLocation(stockLocation, isVirtualInclude);
-    List<Long> stockLocationListId = null;
-    if (stockLocationList != null) {
-      stockLocationListId =
-          stockLocationList.stream().map(StockLocation::getId).collect(Collectors.toList());
+    if (stockLocation == null) {
+      return new ArrayList<>();
+    }
+    if (stockLocation.getId() == null) {
+      // Not saved yet, so without any sub location
+      return Lists.newArrayList((Long) null);
     }
-    return stockLocationListId;
+    return stockLocationTreeCache.getSubTreeIdList(stockLocation.getId(), isVirtualInclude);
   }
 
   @Override
@@ -340,8 +341,8 @@ public class StockLocationServiceImpl implements StockLocationService {
     }
     return String.format(
         "self.id in (%s)",
-        getAllLocationAndSubLocation(stockLocation, false).stream()
-            .map(location -> location.getId().toString())
+        getAllLocationAndSubLocationId(stockLocation, false).stream()
+            .map(String::valueOf)
             .collect(Collectors.joining(",")));
   }
 }
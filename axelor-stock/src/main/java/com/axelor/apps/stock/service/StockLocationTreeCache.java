@@ -0,0 +1,181 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.FlushModeType;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+
+/**
+ * In-memory tree of the stock locations, shared between requests.
+ *
+ * <p>The parent of each stock location is loaded once with a single query, so that getting the
+ * sub locations of a stock location is a walk in memory instead of a query per node. The tree is
+ * dropped each time a stock location is created, updated or removed, and again once the
+ * transaction of that change is over, so that a tree loaded in the meantime from uncommitted or
+ * outdated data is not kept. As changes made on another node are not notified, the count, the
+ * greatest id and the last update date of the stock locations are also checked before reusing the
+ * tree, which is reloaded if they have changed.
+ */
+@Singleton
+public class StockLocationTreeCache {
+
+  protected final AtomicLong generation = new AtomicLong();
+  protected volatile Tree tree;
+
+  protected final ThreadLocal<Boolean> invalidationPending = new ThreadLocal<>();
+
+  /** Drop the loaded tree, it will be reloaded on next use. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    tree = null;
+    invalidateAfterCompletion();
+  }
+
+  /**
+   * Get the ids of the given stock location and of all its sub locations, children coming before
+   * their parent. Virtual sub locations, with their own sub locations, are skipped unless asked.
+   *
+   * @param stockLocationId the id of the root stock location
+   * @param isVirtualInclude whether virtual sub locations are included
+   * @return the ids of the sub tree, the root being the last one
+   */
+  public List<Long> getSubTreeIdList(Long stockLocationId, boolean isVirtualInclude) {
+    return getTree().getSubTreeIdList(stockLocationId, isVirtualInclude);
+  }
+
+  protected Tree getTree() {
+    // Read before the rows, so that a change committed in between only causes another reload
+    List<Object> stamp = fetchStamp();
+    Tree currentTree = tree;
+    if (currentTree != null && currentTree.stamp.equals(stamp)) {
+      return currentTree;
+    }
+
+    long currentGeneration = generation.get();
+    currentTree = new Tree(fetchStockLocationRows(), stamp);
+    if (generation.get() == currentGeneration) {
+      tree = currentTree;
+    }
+    return currentTree;
+  }
+
+  /** @return the id, the parent id and the type of every stock location */
+  protected List<Object[]> fetchStockLocationRows() {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id, parent.id, self.typeSelect FROM StockLocation self"
+                + " LEFT JOIN self.parentStockLocation parent",
+            Object[].class)
+        .getResultList();
+  }
+
+  /** @return the count, the greatest id and the last update date of the stock locations */
+  protected List<Object> fetchStamp() {
+    return Arrays.asList(
+        JPA.em()
+            .createQuery(
+                "SELECT COUNT(self.id), MAX(self.id), MAX(self.updatedOn) FROM StockLocation self",
+                Object[].class)
+            .setFlushMode(FlushModeType.COMMIT)
+            .getSingleResult());
+  }
+
+  protected void invalidateAfterCompletion() {
+    Session session = JPA.em().unwrap(Session.class);
+    if (!session.getTransaction().isActive() || invalidationPending.get() != null) {
+      return;
+    }
+
+    invalidationPending.set(Boolean.TRUE);
+    session
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                invalidationPending.remove();
+                generation.incrementAndGet();
+                tree = null;
+              }
+            });
+  }
+
+  protected static class Tree {
+
+    protected final Map<Long, List<Long>> childIdMap = new HashMap<>();
+    protected final Set<Long> virtualIdSet = new HashSet<>();
+    protected final List<Object> stamp;
+
+    protected Tree(List<Object[]> stockLocationRows, List<Object> stamp) {
+      this.stamp = stamp;
+      for (Object[] row : stockLocationRows) {
+        Long id = (Long) row[0];
+        Long parentId = (Long) row[1];
+        if (parentId != null) {
+          childIdMap.computeIfAbsent(parentId, key -> new ArrayList<>()).add(id);
+        }
+        if (Integer.valueOf(StockLocationRepository.TYPE_VIRTUAL).equals(row[2])) {
+          virtualIdSet.add(id);
+        }
+      }
+    }
+
+    protected List<Long> getSubTreeIdList(Long stockLocationId, boolean isVirtualInclude) {
+      List<Long> idList = new ArrayList<>();
+      Set<Long> visitedIdSet = new HashSet<>();
+      Deque<Long> stack = new ArrayDeque<>();
+      stack.push(stockLocationId);
+
+      while (!stack.isEmpty()) {
+        Long id = stack.pop();
+        if (!visitedIdSet.add(id)) {
+          continue;
+        }
+        idList.add(id);
+        for (Long childId : childIdMap.getOrDefault(id, Collections.emptyList())) {
+          if (isVirtualInclude || !virtualIdSet.contains(childId)) {
+            stack.push(childId);
+          }
+        }
+      }
+
+      // Reversed pre-order: sub locations come before their parent, as with the former recursion
+      Collections.reverse(idList);
+      return idList;
+    }
+  }
+}
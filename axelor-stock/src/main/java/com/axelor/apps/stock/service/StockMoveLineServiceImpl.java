@@ -65,10 +65,12 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -503,6 +505,8 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
       throws AxelorException {
 
     stockMoveLineList = MoreObjects.firstNonNull(stockMoveLineList, Collections.emptyList());
+    List<Product> avgPriceProductList = new ArrayList<>();
+    Set<Long> avgPriceProductIdSet = new HashSet<>();
 
     for (StockMoveLine stockMoveLine : stockMoveLineList) {
       StockLocation fromStockLocation = stockMoveLine.getFromStockLocation();
@@ -540,7 +544,9 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
             this.updateAveragePriceAndLocationLineHistory(
                 toStockLocation, stockMoveLine, fromStatus, toStatus, date, origin);
           }
-          weightedAveragePriceService.computeAvgPriceForProduct(stockMoveLine.getProduct());
+          if (avgPriceProductIdSet.add(product.getId())) {
+            avgPriceProductList.add(product);
+          }
         }
         if (fromStatus == StockMoveRepository.STATUS_REALIZED
             && toStatus == StockMoveRepository.STATUS_CANCELED) {
@@ -556,6 +562,23 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
         }
       }
     }
+
+    // Average prices are computed once per product, after all its lines are taken into account
+    computeAvgPrices(avgPriceProductList);
+  }
+
+  protected void computeAvgPrices(List<Product> productList) throws AxelorException {
+    if (appStockService.getAppStock().getIsAvgPriceComputationDeferred()) {
+      WeightedAveragePriceQueue weightedAveragePriceQueue =
+          Beans.get(WeightedAveragePriceQueue.class);
+      for (Product product : productList) {
+        weightedAveragePriceQueue.enqueue(product);
+      }
+    } else {
+      for (Product product : productList) {
+        weightedAveragePriceService.computeAvgPriceForProduct(product);
+      }
+    }
   }
 
   @Override
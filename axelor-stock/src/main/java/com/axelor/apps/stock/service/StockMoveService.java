@@ -152,7 +152,8 @@ public interface StockMoveService {
       throws AxelorException;
 
   public List<Map<String, Object>> getStockPerDate(
-      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate);
+      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate)
+      throws AxelorException;
 
   /**
    * Change conformity on each stock move line according to the stock move conformity.
@@ -1102,57 +1102,24 @@ public class StockMoveServiceImpl implements StockMoveService {
 
   @Override
   public List<Map<String, Object>> getStockPerDate(
-      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate) {
+      Long locationId, Long productId, LocalDate fromDate, LocalDate toDate)
+      throws AxelorException {
 
     List<Map<String, Object>> stock = new ArrayList<>();
 
-    while (!fromDate.isAfter(toDate)) {
-      Double qty = getStock(locationId, productId, fromDate);
+    Map<LocalDate, BigDecimal> qtyPerDateMap =
+        Beans.get(ProjectedStockQtyService.class)
+            .getQtyPerDate(locationId, productRepository.find(productId), fromDate, toDate);
+    for (Map.Entry<LocalDate, BigDecimal> qtyPerDate : qtyPerDateMap.entrySet()) {
       Map<String, Object> dateStock = new HashMap<>();
-      dateStock.put("$date", fromDate);
-      dateStock.put("$qty", new BigDecimal(qty));
+      dateStock.put("$date", qtyPerDate.getKey());
+      dateStock.put("$qty", qtyPerDate.getValue());
       stock.add(dateStock);
-      fromDate = fromDate.plusDays(1);
     }
 
     return stock;
   }
 
-  protected Double getStock(Long locationId, Long productId, LocalDate date) {
-
-    List<StockMoveLine> inLines =
-        stockMoveLineRepo
-            .all()
-            .filter(
-                "self.product.id = ?1 AND self.toStockLocation.id = ?2 AND self.stockMove.statusSelect != ?3 AND (self.stockMove.estimatedDate <= ?4 OR self.stockMove.realDate <= ?4)",
-                productId,
-                locationId,
-                StockMoveRepository.STATUS_CANCELED,
-                date)
-            .fetch();
-
-    List<StockMoveLine> outLines =
-        stockMoveLineRepo
-            .all()
-            .filter(
-                "self.product.id = ?1 AND self.fromStockLocation.id = ?2 AND self.stockMove.statusSelect != ?3 AND (self.stockMove.estimatedDate <= ?4 OR self.stockMove.realDate <= ?4)",
-                productId,
-                locationId,
-                StockMoveRepository.STATUS_CANCELED,
-                date)
-            .fetch();
-
-    Double inQty =
-        inLines.stream().mapToDouble(inl -> Double.parseDouble(inl.getQty().toString())).sum();
-
-    Double outQty =
-        outLines.stream().mapToDouble(out -> Double.parseDouble(out.getQty().toString())).sum();
-
-    Double qty = inQty - outQty;
-
-    return qty;
-  }
-
   @Override
   public List<StockMoveLine> changeConformityStockMove(StockMove stockMove) {
     List<StockMoveLine> stockMoveLineList = stockMove.getStockMoveLineList();
@@ -0,0 +1,229 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of the products whose average price has to be recomputed after a stock move realization.
+ *
+ * <p>Products are collected per transaction and queued once the transaction is committed, a
+ * product realized several times being queued once. A single background task then recomputes the
+ * queued products by chunks, each chunk with one grouped query and in its own transaction, see
+ * {@link WeightedAveragePriceService#computeAvgPriceForProducts(List)}. A product whose
+ * computation fails, for example on a concurrent update of its stock location lines, is queued
+ * again up to {@link #MAX_RETRY_COUNT} times. Products queued but not computed yet are lost on a
+ * server restart, until their next realization.
+ */
+@Singleton
+public class WeightedAveragePriceQueue {
+
+  public static final int PRODUCT_CHUNK_SIZE = 100;
+
+  public static final int MAX_RETRY_COUNT = 3;
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected final Set<Long> queuedProductIdSet = ConcurrentHashMap.newKeySet();
+  protected final Map<Long, Integer> retryCountMap = new ConcurrentHashMap<>();
+  protected final ThreadLocal<Set<Long>> transactionProductIdSet = new ThreadLocal<>();
+  protected final AtomicBoolean workerScheduled = new AtomicBoolean();
+  protected final ExecutorService executor = Executors.newCachedThreadPool();
+
+  /**
+   * Queue the product, its average price being recomputed in background once the current
+   * transaction is committed, or right away if there is no transaction.
+   */
+  public void enqueue(Product product) {
+    if (product == null || product.getId() == null) {
+      return;
+    }
+
+    Set<Long> productIdSet = getTransactionProductIdSet();
+    if (productIdSet != null) {
+      productIdSet.add(product.getId());
+    } else {
+      submit(Collections.singletonList(product.getId()));
+    }
+  }
+
+  /** @return the count of products waiting for their average price to be recomputed */
+  public int getQueuedProductCount() {
+    return queuedProductIdSet.size();
+  }
+
+  /** Queue the given products and start the background task if it is not running. */
+  protected void submit(Collection<Long> productIdList) {
+    queuedProductIdSet.addAll(productIdList);
+    schedule();
+  }
+
+  /**
+   * @return the products collected in the current transaction, or null if there is no transaction
+   */
+  protected Set<Long> getTransactionProductIdSet() {
+    Set<Long> productIdSet = transactionProductIdSet.get();
+    if (productIdSet != null) {
+      return productIdSet;
+    }
+
+    Session session = JPA.em().unwrap(Session.class);
+    if (!session.getTransaction().isActive()) {
+      return null;
+    }
+
+    Set<Long> newProductIdSet = new HashSet<>();
+    transactionProductIdSet.set(newProductIdSet);
+    session
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                transactionProductIdSet.remove();
+                if (status == Status.STATUS_COMMITTED) {
+                  submit(newProductIdSet);
+                }
+              }
+            });
+    return newProductIdSet;
+  }
+
+  protected void schedule() {
+    if (queuedProductIdSet.isEmpty() || !workerScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    executor.submit(this::run);
+  }
+
+  protected void run() {
+    try {
+      process();
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    } finally {
+      workerScheduled.set(false);
+    }
+    // Products queued after the last chunk was taken
+    schedule();
+  }
+
+  protected void process() {
+    UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+    RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      processQueuedProducts();
+    } finally {
+      unitOfWork.end();
+    }
+  }
+
+  protected void processQueuedProducts() {
+    List<Long> productIdList;
+    while (!(productIdList = poll()).isEmpty()) {
+      LOG.debug("Computing the average price of {} products", productIdList.size());
+      try {
+        computeAvgPrices(productIdList);
+        productIdList.forEach(retryCountMap::remove);
+      } catch (Exception e) {
+        // The persistence context is not usable anymore after a rollback
+        endUnitOfWork();
+        // One failing product must not prevent the others of its chunk to be computed
+        for (Long productId : productIdList) {
+          computeAvgPrice(productId);
+        }
+      }
+    }
+  }
+
+  protected void computeAvgPrice(Long productId) {
+    try {
+      computeAvgPrices(Collections.singletonList(productId));
+      retryCountMap.remove(productId);
+    } catch (Exception e) {
+      endUnitOfWork();
+      retry(productId, e);
+    }
+  }
+
+  /** Queue the failed product again, unless it has already been retried too many times. */
+  protected void retry(Long productId, Exception e) {
+    int retryCount = retryCountMap.merge(productId, 1, Integer::sum);
+    if (retryCount > MAX_RETRY_COUNT) {
+      retryCountMap.remove(productId);
+      TraceBackService.trace(e);
+      return;
+    }
+    LOG.debug("Average price of product {} queued again after a failure", productId, e);
+    queuedProductIdSet.add(productId);
+  }
+
+  protected void endUnitOfWork() {
+    Beans.get(UnitOfWork.class).end();
+  }
+
+  protected void computeAvgPrices(List<Long> productIdList) throws AxelorException {
+    try {
+      Beans.get(WeightedAveragePriceService.class).computeAvgPriceForProducts(productIdList);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  /** Take the next chunk of queued products. */
+  protected List<Long> poll() {
+    List<Long> productIdList = new ArrayList<>();
+    Iterator<Long> iterator = queuedProductIdSet.iterator();
+    while (iterator.hasNext() && productIdList.size() < PRODUCT_CHUNK_SIZE) {
+      productIdList.add(iterator.next());
+      iterator.remove();
+    }
+    return productIdList;
+  }
+}
@@ -22,10 +22,19 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface WeightedAveragePriceService {
 
   void computeAvgPriceForProduct(Product product) throws AxelorException;
 
+  /**
+   * Compute the average prices of the given products at once, from a single query on their stock
+   * location lines grouped by product and company.
+   *
+   * @param productIdList the ids of the products to update
+   */
+  void computeAvgPriceForProducts(List<Long> productIdList) throws AxelorException;
+
   BigDecimal computeAvgPriceForCompany(Product product, Company company);
 }
@@ -34,8 +34,13 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoped;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import javax.persistence.Tuple;
 
 @RequestScoped
 public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceService {
@@ -58,33 +63,12 @@ public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceServ
   @Transactional(rollbackOn = {Exception.class})
   public void computeAvgPriceForProduct(Product product) throws AxelorException {
 
-    Boolean avgPriceHandledByCompany = false;
-    Set<MetaField> companySpecificFields =
-        appBaseService.getAppBase().getCompanySpecificProductFieldsSet();
-    for (MetaField field : companySpecificFields) {
-      if (field.getName().equals("avgPrice")) {
-        avgPriceHandledByCompany = true;
-        break;
-      }
-    }
-    if (avgPriceHandledByCompany
+    if (isAvgPriceHandledByCompany()
         && product.getProductCompanyList() != null
         && !product.getProductCompanyList().isEmpty()) {
       for (ProductCompany productCompany : product.getProductCompanyList()) {
         Company company = productCompany.getCompany();
-        BigDecimal productAvgPrice = this.computeAvgPriceForCompany(product, company);
-        if (productAvgPrice.compareTo(BigDecimal.ZERO) == 0) {
-          continue;
-        }
-
-        productCompanyService.set(product, "avgPrice", productAvgPrice, company);
-        if ((Integer) productCompanyService.get(product, "costTypeSelect", company)
-            == ProductRepository.COST_TYPE_AVERAGE_PRICE) {
-          productCompanyService.set(product, "costPrice", productAvgPrice, company);
-          if ((Boolean) productCompanyService.get(product, "autoUpdateSalePrice", company)) {
-            Beans.get(ProductService.class).updateSalePrice(product, company);
-          }
-        }
+        updateAvgPrice(product, company, this.computeAvgPriceForCompany(product, company));
       }
     } else {
       BigDecimal productAvgPrice = this.computeAvgPriceForCompany(product, null);
@@ -92,7 +76,112 @@ public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceServ
       if (productAvgPrice.compareTo(BigDecimal.ZERO) == 0) {
         return;
       }
+      updateAvgPrice(product, null, productAvgPrice);
+    }
+    productRepo.save(product);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public void computeAvgPriceForProducts(List<Long> productIdList) throws AxelorException {
+    if (productIdList.isEmpty()) {
+      return;
+    }
+
+    // Sums of the value and quantity of the stock, per product and per company
+    Map<Long, Map<Long, BigDecimal[]>> stockSumMap = new HashMap<>();
+    List<Tuple> results =
+        JPA.em()
+            .createQuery(
+                "SELECT self.product.id, self.stockLocation.company.id,"
+                    + " SUM(self.avgPrice * self.currentQty), SUM(self.currentQty)"
+                    + " FROM StockLocationLine self"
+                    + " WHERE self.product.id IN (:productIdList)"
+                    + " AND self.stockLocation.typeSelect != :virtual"
+                    + " GROUP BY self.product.id, self.stockLocation.company.id",
+                Tuple.class)
+            .setParameter("productIdList", productIdList)
+            .setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL)
+            .getResultList();
+    for (Tuple result : results) {
+      stockSumMap
+          .computeIfAbsent((Long) result.get(0), key -> new HashMap<>())
+          .put(
+              (Long) result.get(1),
+              new BigDecimal[] {(BigDecimal) result.get(2), (BigDecimal) result.get(3)});
+    }
+
+    boolean avgPriceHandledByCompany = isAvgPriceHandledByCompany();
+    List<Product> productList =
+        productRepo
+            .all()
+            .filter("self.id IN (:productIdList)")
+            .bind("productIdList", productIdList)
+            .fetch();
+    for (Product product : productList) {
+      Map<Long, BigDecimal[]> companyStockSumMap =
+          stockSumMap.getOrDefault(product.getId(), Collections.emptyMap());
+
+      if (avgPriceHandledByCompany
+          && product.getProductCompanyList() != null
+          && !product.getProductCompanyList().isEmpty()) {
+        for (ProductCompany productCompany : product.getProductCompanyList()) {
+          Company company = productCompany.getCompany();
+          BigDecimal[] stockSum = companyStockSumMap.get(company.getId());
+          updateAvgPrice(
+              product,
+              company,
+              stockSum == null ? BigDecimal.ZERO : computeAvgPrice(stockSum[0], stockSum[1]));
+        }
+      } else {
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal qty = BigDecimal.ZERO;
+        for (BigDecimal[] stockSum : companyStockSumMap.values()) {
+          value = value.add(stockSum[0]);
+          qty = qty.add(stockSum[1]);
+        }
+        BigDecimal productAvgPrice = computeAvgPrice(value, qty);
+
+        if (productAvgPrice.compareTo(BigDecimal.ZERO) == 0) {
+          continue;
+        }
+        updateAvgPrice(product, null, productAvgPrice);
+      }
+      productRepo.save(product);
+    }
+  }
 
+  protected boolean isAvgPriceHandledByCompany() {
+    Set<MetaField> companySpecificFields =
+        appBaseService.getAppBase().getCompanySpecificProductFieldsSet();
+    for (MetaField field : companySpecificFields) {
+      if (field.getName().equals("avgPrice")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Set the average price of the product, for the given company if any, and update its cost and
+   * sale prices if they follow the average price. Nothing is done if the average price is zero.
+   */
+  protected void updateAvgPrice(Product product, Company company, BigDecimal productAvgPrice)
+      throws AxelorException {
+    if (productAvgPrice.compareTo(BigDecimal.ZERO) == 0) {
+      return;
+    }
+
+    if (company != null) {
+      productCompanyService.set(product, "avgPrice", productAvgPrice, company);
+      if ((Integer) productCompanyService.get(product, "costTypeSelect", company)
+          == ProductRepository.COST_TYPE_AVERAGE_PRICE) {
+        productCompanyService.set(product, "costPrice", productAvgPrice, company);
+        if ((Boolean) productCompanyService.get(product, "autoUpdateSalePrice", company)) {
+          Beans.get(ProductService.class).updateSalePrice(product, company);
+        }
+      }
+    } else {
       product.setAvgPrice(productAvgPrice);
       if (product.getCostTypeSelect() == ProductRepository.COST_TYPE_AVERAGE_PRICE) {
         product.setCostPrice(productAvgPrice);
@@ -101,7 +190,13 @@ public class WeightedAveragePriceServiceImpl implements WeightedAveragePriceServ
         }
       }
     }
-    productRepo.save(product);
+  }
+
+  protected BigDecimal computeAvgPrice(BigDecimal value, BigDecimal qty) {
+    if (value == null || qty == null || qty.compareTo(BigDecimal.ZERO) == 0) {
+      return BigDecimal.ZERO;
+    }
+    return value.divide(qty, appBaseService.getNbDecimalDigitForUnitPrice(), RoundingMode.HALF_UP);
   }
 
   @Override
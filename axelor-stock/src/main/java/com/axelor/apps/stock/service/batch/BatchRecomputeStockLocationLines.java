@@ -22,9 +22,12 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
+import com.axelor.apps.stock.db.StockBatch;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.repo.StockBatchRepository;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
@@ -34,23 +37,43 @@ import com.axelor.apps.stock.service.batch.model.StockMoveGroup;
 import com.axelor.apps.stock.service.batch.model.StockMoveLineOrigin;
 import com.axelor.apps.stock.service.batch.model.TrackProduct;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+/**
+ * Recompute the quantities and the WAP of the stock location lines from the stock moves.
+ *
+ * <p>The full mode resets every stock location line and replays all the stock moves. The group of
+ * stock moves processed last is saved on the stock batch in the same transaction as its
+ * processing, so a full recomputation which has been interrupted is resumed from there by the next
+ * run instead of starting over.
+ *
+ * <p>The incremental mode only resets and replays the products of the stock move lines created or
+ * updated since the last recomputation.
+ */
 public class BatchRecomputeStockLocationLines extends AbstractBatch {
 
+  /** Count of products recomputed together by the incremental mode. */
+  protected static final int PRODUCT_PARTITION_SIZE = 500;
+
   protected StockMoveRepository stockMoveRepository;
   protected StockMoveService stockMoveService;
   protected StockMoveLineService stockMoveLineService;
   protected StockMoveLineRepository stockMoveLineRepository;
   protected StockLocationRepository stockLocationRepository;
+  protected StockBatchRepository stockBatchRepository;
 
   @Inject
   public BatchRecomputeStockLocationLines(
@@ -58,56 +81,132 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
       StockMoveService stockMoveService,
       StockMoveLineService stockMoveLineService,
       StockMoveLineRepository stockMoveLineRepository,
-      StockLocationRepository stockLocationRepository) {
+      StockLocationRepository stockLocationRepository,
+      StockBatchRepository stockBatchRepository) {
 
     this.stockMoveLineRepository = stockMoveLineRepository;
     this.stockMoveRepository = stockMoveRepository;
     this.stockMoveService = stockMoveService;
     this.stockMoveLineService = stockMoveLineService;
     this.stockLocationRepository = stockLocationRepository;
+    this.stockBatchRepository = stockBatchRepository;
   }
 
   @Override
   protected void process() {
+    StockBatch stockBatch = stockBatchRepository.find(model.getId());
+    LocalDateTime startDateT = LocalDateTime.now();
+    LocalDateTime lastRecomputeDateT = stockBatch.getLastRecomputeDateT();
+
+    if (stockBatch.getRecomputeCheckpoint() == null
+        && stockBatch.getRecomputeModeSelect() == StockBatchRepository.RECOMPUTE_MODE_INCREMENTAL
+        && lastRecomputeDateT != null) {
+      recomputeIncremental(lastRecomputeDateT);
+      saveLastRecomputeDateT(startDateT);
+    } else {
+      recomputeFull(stockBatch.getRecomputeCheckpoint(), startDateT);
+    }
+  }
+
+  protected void recomputeFull(String checkpoint, LocalDateTime startDateT) {
+    List<StockMoveGroup> groups = fetchStockMoveGroup(null);
+
+    int resumeIndex = checkpoint == null ? -1 : getResumeIndex(groups, checkpoint);
+    if (resumeIndex < 0) {
+      if (checkpoint != null) {
+        LOG.warn("Stock move group {} not found, the recomputation is started over", checkpoint);
+      }
+      startFullRecomputation(startDateT);
+      resumeIndex = 0;
+    } else {
+      LOG.info("Resuming the recomputation after stock move group {}", checkpoint);
+    }
+
+    for (StockMoveGroup stockMoveGroup : groups.subList(resumeIndex, groups.size())) {
+      processStockMoveGroup(stockMoveGroup, null, true);
+    }
+
+    saveCheckpoint(null);
+  }
+
+  protected void recomputeIncremental(LocalDateTime fromDateT) {
+    List<Long> productIdList = fetchMovedProductIds(fromDateT);
+    LOG.info("Recomputing the stock location lines of {} products", productIdList.size());
+
+    for (List<Long> productIdPartition : Lists.partition(productIdList, PRODUCT_PARTITION_SIZE)) {
+      resetProducts(productIdPartition);
+      for (StockMoveGroup stockMoveGroup : fetchStockMoveGroup(productIdPartition)) {
+        processStockMoveGroup(stockMoveGroup, productIdPartition, false);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the first group to process after the given checkpoint, or -1 if the
+   *     checkpoint group is not found
+   */
+  protected int getResumeIndex(List<StockMoveGroup> groups, String checkpoint) {
+    if (checkpoint.isEmpty()) {
+      return 0;
+    }
+    for (int i = 0; i < groups.size(); i++) {
+      if (checkpoint.equals(groups.get(i).getKey())) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  protected void processStockMoveGroup(
+      StockMoveGroup stockMoveGroup, List<Long> productIdList, boolean checkpointed) {
+    try {
+      recomputeStockMoveGroup(stockMoveGroup, productIdList, checkpointed);
+      incrementDone();
+    } catch (Exception e) {
+      incrementAnomaly();
+      TraceBackService.trace(
+          e, ExceptionOriginRepository.RECOMPUTE_STOCK_MOVE_LINES, batch.getId());
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected void recomputeStockMoveGroup(
+      StockMoveGroup stockMoveGroup, List<Long> productIdList, boolean checkpointed)
+      throws AxelorException {
+    if (stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_REALIZED) {
+      // Recomputing stockLocationLine with realized stock move
+      recomputeStockMoves(stockMoveGroup, productIdList);
+    } else {
+      // Updating planned quantities
+      updatePlannedQty(stockMoveGroup, productIdList);
+    }
+
+    if (checkpointed) {
+      saveCheckpoint(stockMoveGroup.getKey());
+    }
+  }
+
+  /** Reset all the stock location lines and mark the full recomputation as started. */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void startFullRecomputation(LocalDateTime startDateT) {
     clearWapHistoryLines();
     resetStockLocations();
-    List<StockMoveGroup> groups = fetchStockMoveGroup();
 
-    // Recomputing stockLocationLine with realized stock move
-    groups.stream()
-        .filter(
-            stockMoveGroup ->
-                stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_REALIZED)
-        .forEachOrdered(
-            stockMoveGroup -> {
-              try {
-                recomputeStockMoves(stockMoveGroup);
-                incrementDone();
-              } catch (Exception e) {
-                incrementAnomaly();
-                TraceBackService.trace(
-                    e, ExceptionOriginRepository.RECOMPUTE_STOCK_MOVE_LINES, batch.getId());
-              } finally {
-                JPA.clear();
-              }
-            });
-
-    // Updating planned quantities
-    groups.stream()
-        .filter(
-            stockMoveGroup ->
-                stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_PLANNED)
-        .forEachOrdered(
-            stockMoveGroup -> {
-              try {
-                updatePlannedQty(stockMoveGroup);
-                incrementDone();
-              } catch (Exception e) {
-                incrementAnomaly();
-                TraceBackService.trace(
-                    e, ExceptionOriginRepository.RECOMPUTE_STOCK_MOVE_LINES, batch.getId());
-              }
-            });
+    StockBatch stockBatch = stockBatchRepository.find(model.getId());
+    stockBatch.setRecomputeCheckpoint("");
+    stockBatch.setLastRecomputeDateT(startDateT);
+  }
+
+  @Transactional
+  protected void saveCheckpoint(String checkpoint) {
+    stockBatchRepository.find(model.getId()).setRecomputeCheckpoint(checkpoint);
+  }
+
+  @Transactional
+  protected void saveLastRecomputeDateT(LocalDateTime lastRecomputeDateT) {
+    stockBatchRepository.find(model.getId()).setLastRecomputeDateT(lastRecomputeDateT);
   }
 
   protected void resetStockLocations() {
@@ -123,25 +222,70 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     JPA.runInTransaction(clearWapHistoryLinesQuery::executeUpdate);
   }
 
-  protected void updatePlannedQty(StockMoveGroup stockMoveGroup) throws AxelorException {
+  /** Reset the stock location lines of the given products and clear their WAP history. */
+  @Transactional
+  protected void resetProducts(List<Long> productIdList) {
+    JPA.em()
+        .createNativeQuery(
+            "DELETE FROM stock_stock_location_line_history WHERE stock_location_line IN "
+                + "(SELECT id FROM stock_stock_location_line WHERE product IN (:productIds))")
+        .setParameter("productIds", productIdList)
+        .executeUpdate();
+
+    JPA.em()
+        .createNativeQuery(
+            "UPDATE stock_stock_location_line SET "
+                + " avg_price = 0, "
+                + " current_qty = 0, "
+                + " future_qty = 0 "
+                + " WHERE product IN (:productIds)")
+        .setParameter("productIds", productIdList)
+        .executeUpdate();
+  }
+
+  protected List<Long> fetchMovedProductIds(LocalDateTime fromDateT) {
+    return JPA.em()
+        .createQuery(
+            "SELECT DISTINCT self.product.id FROM StockMoveLine self"
+                + " LEFT JOIN self.stockMove stockMove"
+                + " LEFT JOIN self.plannedStockMove plannedStockMove"
+                + " WHERE self.product IS NOT NULL"
+                + " AND (COALESCE(self.updatedOn, self.createdOn) >= :fromDateT"
+                + " OR COALESCE(stockMove.updatedOn, stockMove.createdOn) >= :fromDateT"
+                + " OR COALESCE(plannedStockMove.updatedOn, plannedStockMove.createdOn)"
+                + " >= :fromDateT)"
+                + " ORDER BY self.product.id",
+            Long.class)
+        .setParameter("fromDateT", fromDateT)
+        .getResultList();
+  }
+
+  protected void updatePlannedQty(StockMoveGroup stockMoveGroup, List<Long> productIdList)
+      throws AxelorException {
+    Set<Long> productIdSet = productIdList == null ? null : new HashSet<>(productIdList);
 
-    List<StockMoveLine> stockMoveLineList;
-    Query<StockMoveLine> query = buildQueryFetchStockMoveLineFromGroup(stockMoveGroup).order("id");
-    int offSet = 0;
-    while (!(stockMoveLineList = query.fetch(FETCH_LIMIT, offSet)).isEmpty()) {
+    KeysetQueryIterator<StockMoveLine> iterator =
+        buildStockMoveLineIteratorFromGroup(stockMoveGroup, productIdList);
+    while (iterator.hasNext()) {
+
+      for (StockMoveLine stockMoveLine : iterator.next()) {
+        List<StockMoveLine> plannedStockMoveLineList =
+            stockMoveLine.getStockMove().getPlannedStockMoveLineList();
+        if (productIdSet != null && plannedStockMoveLineList != null) {
+          plannedStockMoveLineList =
+              plannedStockMoveLineList.stream()
+                  .filter(line -> isProductIn(line, productIdSet))
+                  .collect(Collectors.toList());
+        }
 
-      for (StockMoveLine stockMoveLine : stockMoveLineList) {
         stockMoveLineService.updateLocations(
             StockMoveRepository.STATUS_DRAFT,
             StockMoveRepository.STATUS_PLANNED,
-            stockMoveLine.getStockMove().getPlannedStockMoveLineList(),
+            plannedStockMoveLineList,
             stockMoveLine.getStockMove().getEstimatedDate(),
             false,
             true);
       }
-
-      offSet += FETCH_LIMIT;
-      JPA.clear();
     }
   }
 
@@ -149,18 +293,21 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     return Optional.ofNullable(stockMove).map(StockMove::getStockMoveSeq).orElse("");
   }
 
-  protected void recomputeStockMoves(StockMoveGroup group) throws AxelorException {
-    List<StockMove> stockMoves;
-    Query<StockMove> query = buildQueryFetchStockMoveFromGroup(group).order("id");
+  protected void recomputeStockMoves(StockMoveGroup group, List<Long> productIdList)
+      throws AxelorException {
+    Set<Long> productIdSet = productIdList == null ? null : new HashSet<>(productIdList);
+    KeysetQueryIterator<StockMove> iterator = buildStockMoveIteratorFromGroup(group, productIdList);
     HashMap<TrackProduct, StockMoveLineOrigin> stockMoveLinesMap = new HashMap<>();
-    int offSet = 0;
 
-    while (!(stockMoves = query.fetch(FETCH_LIMIT, offSet)).isEmpty()) {
+    while (iterator.hasNext()) {
 
-      stockMoves.stream()
+      iterator.next().stream()
           .forEach(
               stockMove -> {
                 stockMove.getStockMoveLineList().stream()
+                    .filter(
+                        stockMoveLine ->
+                            productIdSet == null || isProductIn(stockMoveLine, productIdSet))
                     .forEach(
                         stockMoveLine -> {
                           TrackProduct trackProduct =
@@ -180,8 +327,6 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
                           }
                         });
               });
-
-      offSet += FETCH_LIMIT;
     }
 
     for (Entry<TrackProduct, StockMoveLineOrigin> entry : stockMoveLinesMap.entrySet()) {
@@ -197,6 +342,11 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     }
   }
 
+  protected boolean isProductIn(StockMoveLine stockMoveLine, Set<Long> productIdSet) {
+    return stockMoveLine.getProduct() != null
+        && productIdSet.contains(stockMoveLine.getProduct().getId());
+  }
+
   protected StockMoveLineOrigin merge(StockMoveLineOrigin sml1, StockMoveLineOrigin sml2) {
 
     return sml1.merge(sml2);
@@ -210,7 +360,12 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
     JPA.runInTransaction(clearStockLocationsHistoryLinesQuery::executeUpdate);
   }
 
-  protected Query<StockMove> buildQueryFetchStockMoveFromGroup(StockMoveGroup stockMoveGroup) {
+  /**
+   * @param productIdList if not null, only the stock moves with lines of these products are
+   *     selected
+   */
+  protected KeysetQueryIterator<StockMove> buildStockMoveIteratorFromGroup(
+      StockMoveGroup stockMoveGroup, List<Long> productIdList) {
 
     StringBuilder query =
         new StringBuilder(
@@ -224,17 +379,27 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
       query.append(" AND self.realDate = :realDate");
     }
 
-    return stockMoveRepository
-        .all()
-        .filter(query.toString())
+    if (productIdList != null) {
+      query.append(
+          " AND EXISTS (SELECT 1 FROM StockMoveLine line"
+              + " WHERE line.stockMove = self AND line.product.id IN (:productIds))");
+    }
+
+    return KeysetQueryIterator.of(StockMove.class, query.toString())
         .bind("realDate", stockMoveGroup.getRealDate())
         .bind("fromStockLocation", stockMoveGroup.getFromStockLocation())
         .bind("toStockLocation", stockMoveGroup.getToStockLocation())
-        .bind("status", stockMoveGroup.getStatusSelect());
+        .bind("status", stockMoveGroup.getStatusSelect())
+        .bind("productIds", productIdList)
+        .pageSize(getFetchLimit());
   }
 
-  protected Query<StockMoveLine> buildQueryFetchStockMoveLineFromGroup(
-      StockMoveGroup stockMoveGroup) {
+  /**
+   * @param productIdList if not null, only the lines of the stock moves with planned lines of these
+   *     products are selected
+   */
+  protected KeysetQueryIterator<StockMoveLine> buildStockMoveLineIteratorFromGroup(
+      StockMoveGroup stockMoveGroup, List<Long> productIdList) {
 
     StringBuilder query =
         new StringBuilder(
@@ -248,16 +413,29 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
       query.append(" AND self.stockMove.realDate = :realDate");
     }
 
-    return stockMoveLineRepository
-        .all()
-        .filter(query.toString())
+    if (productIdList != null) {
+      query.append(
+          " AND EXISTS (SELECT 1 FROM StockMoveLine line"
+              + " WHERE line.plannedStockMove = self.stockMove"
+              + " AND line.product.id IN (:productIds))");
+    }
+
+    return KeysetQueryIterator.of(StockMoveLine.class, query.toString())
         .bind("realDate", stockMoveGroup.getRealDate())
         .bind("fromStockLocation", stockMoveGroup.getFromStockLocation())
         .bind("toStockLocation", stockMoveGroup.getToStockLocation())
-        .bind("status", stockMoveGroup.getStatusSelect());
+        .bind("status", stockMoveGroup.getStatusSelect())
+        .bind("productIds", productIdList)
+        .pageSize(getFetchLimit());
   }
 
-  protected List<StockMoveGroup> fetchStockMoveGroup() {
+  /**
+   * Fetch the groups of stock moves to replay: the realized groups in chronological order, then the
+   * planned groups. The order is deterministic so that a full recomputation can be resumed.
+   *
+   * @param productIdList if not null, only the groups with lines of these products are fetched
+   */
+  protected List<StockMoveGroup> fetchStockMoveGroup(List<Long> productIdList) {
     List<StockMoveGroup> stockMoveGroups = new ArrayList<>();
     javax.persistence.Query query =
         JPA.em()
@@ -269,16 +447,36 @@ public class BatchRecomputeStockLocationLines extends AbstractBatch {
                     + " self.statusSelect,"
                     + " self.toStockLocation.typeSelect"
                     + " FROM StockMove self "
+                    + (productIdList == null
+                        ? ""
+                        : " WHERE EXISTS (SELECT 1 FROM StockMoveLine line"
+                            + " WHERE (line.stockMove = self OR line.plannedStockMove = self)"
+                            + " AND line.product.id IN (:productIds))")
                     + " GROUP BY"
                     + " self.realDate, self.fromStockLocation.id, self.toStockLocation.id, self.statusSelect, self.toStockLocation.typeSelect"
-                    + " ORDER BY self.realDate, self.toStockLocation.typeSelect");
+                    + " ORDER BY self.realDate, self.toStockLocation.typeSelect,"
+                    + " self.fromStockLocation.id, self.toStockLocation.id, self.statusSelect");
+    if (productIdList != null) {
+      query.setParameter("productIds", productIdList);
+    }
 
     List<Object[]> resultList = query.getResultList();
     for (Object[] result : resultList) {
       stockMoveGroups.add(createStockMoveGroup(result));
     }
 
-    return stockMoveGroups;
+    List<StockMoveGroup> orderedGroups =
+        stockMoveGroups.stream()
+            .filter(
+                stockMoveGroup ->
+                    stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_REALIZED)
+            .collect(Collectors.toList());
+    stockMoveGroups.stream()
+        .filter(
+            stockMoveGroup ->
+                stockMoveGroup.getStatusSelect() == StockMoveRepository.STATUS_PLANNED)
+        .forEachOrdered(orderedGroups::add);
+    return orderedGroups;
   }
 
   protected StockMoveGroup createStockMoveGroup(Object[] result) {
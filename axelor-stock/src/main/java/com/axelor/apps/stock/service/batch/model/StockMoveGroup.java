@@ -51,4 +51,14 @@ public class StockMoveGroup {
   public int getStatusSelect() {
     return statusSelect;
   }
+
+  /** @return a key identifying the group, used to resume a recomputation after it */
+  public String getKey() {
+    return String.join(
+        ":",
+        String.valueOf(statusSelect),
+        realDate == null ? "" : realDate.toString(),
+        idFromStockLocation.toString(),
+        idToStockLocation.toString());
+  }
 }
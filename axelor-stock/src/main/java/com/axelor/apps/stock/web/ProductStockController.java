@@ -42,17 +42,21 @@ import java.util.Map;
 public class ProductStockController {
 
   public void setStockPerDay(ActionRequest request, ActionResponse response) {
+    try {
+      Context context = request.getContext();
 
-    Context context = request.getContext();
-
-    Long productId = Long.parseLong(context.get("id").toString());
-    Long locationId = Long.parseLong(context.get("locationId").toString());
-    LocalDate fromDate = LocalDate.parse(context.get("stockFromDate").toString());
-    LocalDate toDate = LocalDate.parse(context.get("stockToDate").toString());
+      Long productId = Long.parseLong(context.get("id").toString());
+      Long locationId = Long.parseLong(context.get("locationId").toString());
+      LocalDate fromDate = LocalDate.parse(context.get("stockFromDate").toString());
+      LocalDate toDate = LocalDate.parse(context.get("stockToDate").toString());
 
-    List<Map<String, Object>> stocks =
-        Beans.get(StockMoveService.class).getStockPerDate(locationId, productId, fromDate, toDate);
-    response.setValue("$stockPerDayList", stocks);
+      List<Map<String, Object>> stocks =
+          Beans.get(StockMoveService.class)
+              .getStockPerDate(locationId, productId, fromDate, toDate);
+      response.setValue("$stockPerDayList", stocks);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
+    }
   }
 
   public void displayStockMoveLine(ActionRequest request, ActionResponse response) {
@@ -0,0 +1,146 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sub locations lookups on a simulated tree of 12 warehouses, each holding 20 aisles of 33 bins,
+ * plus one virtual location per warehouse, which is 8,184 stock locations.
+ */
+class TestStockLocationTreeCache {
+
+  private static final int WAREHOUSES = 12;
+  private static final int AISLES = 20;
+  private static final int BINS = 33;
+  private static final int WAREHOUSE_SIZE = 2 + AISLES * (1 + BINS);
+
+  private List<Object[]> stockLocationRows;
+  private AtomicInteger fetchCount;
+  private List<Object> stamp;
+  private StockLocationTreeCache stockLocationTreeCache;
+
+  @BeforeEach
+  void prepare() {
+    stockLocationRows = new ArrayList<>();
+    long id = 0;
+    for (int warehouse = 0; warehouse < WAREHOUSES; warehouse++) {
+      long warehouseId = ++id;
+      addRow(warehouseId, null, StockLocationRepository.TYPE_INTERNAL);
+      long virtualId = ++id;
+      addRow(virtualId, warehouseId, StockLocationRepository.TYPE_VIRTUAL);
+      for (int aisle = 0; aisle < AISLES; aisle++) {
+        long aisleId = ++id;
+        addRow(aisleId, warehouseId, StockLocationRepository.TYPE_INTERNAL);
+        for (int bin = 0; bin < BINS; bin++) {
+          addRow(++id, aisleId, StockLocationRepository.TYPE_INTERNAL);
+        }
+      }
+    }
+
+    fetchCount = new AtomicInteger();
+    stamp = List.of(stockLocationRows.size());
+    stockLocationTreeCache =
+        new StockLocationTreeCache() {
+          @Override
+          protected List<Object[]> fetchStockLocationRows() {
+            fetchCount.incrementAndGet();
+            return stockLocationRows;
+          }
+
+          @Override
+          protected List<Object> fetchStamp() {
+            return stamp;
+          }
+
+          @Override
+          protected void invalidateAfterCompletion() {}
+        };
+  }
+
+  private void addRow(Long id, Long parentId, int typeSelect) {
+    stockLocationRows.add(new Object[] {id, parentId, typeSelect});
+  }
+
+  @Test
+  void subTreeIsLoadedOnce() {
+    for (int warehouse = 0; warehouse < WAREHOUSES; warehouse++) {
+      Long warehouseId = (long) warehouse * WAREHOUSE_SIZE + 1;
+      List<Long> idList = stockLocationTreeCache.getSubTreeIdList(warehouseId, false);
+      Assertions.assertEquals(WAREHOUSE_SIZE - 1, idList.size());
+      Assertions.assertEquals(warehouseId, idList.get(idList.size() - 1));
+    }
+
+    Assertions.assertEquals(1, fetchCount.get());
+  }
+
+  @Test
+  void virtualSubLocationsAreSkippedUnlessAsked() {
+    Assertions.assertFalse(stockLocationTreeCache.getSubTreeIdList(1L, false).contains(2L));
+    Assertions.assertTrue(stockLocationTreeCache.getSubTreeIdList(1L, true).contains(2L));
+    Assertions.assertEquals(List.of(2L), stockLocationTreeCache.getSubTreeIdList(2L, false));
+  }
+
+  @Test
+  void subLocationsComeBeforeTheirParent() {
+    List<Long> idList = stockLocationTreeCache.getSubTreeIdList(1L, true);
+    Assertions.assertEquals(WAREHOUSE_SIZE, idList.size());
+
+    Set<Long> seenIdSet = new HashSet<>();
+    for (Long id : idList) {
+      Object parentId = stockLocationRows.get(id.intValue() - 1)[1];
+      Assertions.assertFalse(seenIdSet.contains(parentId));
+      seenIdSet.add(id);
+    }
+  }
+
+  @Test
+  void treeIsReloadedAfterInvalidation() {
+    long binId = 4L;
+    Assertions.assertEquals(List.of(binId), stockLocationTreeCache.getSubTreeIdList(binId, false));
+
+    addRow((long) stockLocationRows.size() + 1, binId, StockLocationRepository.TYPE_INTERNAL);
+    Assertions.assertEquals(1, stockLocationTreeCache.getSubTreeIdList(binId, false).size());
+
+    stockLocationTreeCache.invalidate();
+    Assertions.assertEquals(2, stockLocationTreeCache.getSubTreeIdList(binId, false).size());
+    Assertions.assertEquals(2, fetchCount.get());
+  }
+
+  @Test
+  void treeIsReloadedOnceChangedFromAnotherNode() {
+    long binId = 4L;
+    Assertions.assertEquals(List.of(binId), stockLocationTreeCache.getSubTreeIdList(binId, false));
+
+    // Created from another node: no invalidation, but the stamp read from the database changes
+    addRow((long) stockLocationRows.size() + 1, binId, StockLocationRepository.TYPE_INTERNAL);
+    stamp = List.of(stockLocationRows.size());
+    Assertions.assertEquals(2, stockLocationTreeCache.getSubTreeIdList(binId, false).size());
+    Assertions.assertEquals(2, stockLocationTreeCache.getSubTreeIdList(binId, false).size());
+    Assertions.assertEquals(2, fetchCount.get());
+  }
+}
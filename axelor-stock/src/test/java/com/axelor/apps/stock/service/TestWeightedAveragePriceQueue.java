@@ -0,0 +1,168 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Product;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Queue of the deferred average price computations, the transaction and the computation being
+ * simulated. The products of a stock move of 500 lines on 50 products must be coalesced so that
+ * each average price is computed once.
+ */
+class TestWeightedAveragePriceQueue {
+
+  private static final int LINES = 500;
+  private static final int PRODUCTS = 50;
+
+  private List<Product> lineProductList;
+
+  @BeforeEach
+  void prepare() {
+    List<Product> productList = new ArrayList<>();
+    for (long id = 1; id <= PRODUCTS; id++) {
+      Product product = new Product();
+      product.setId(id);
+      productList.add(product);
+    }
+    lineProductList = new ArrayList<>();
+    for (int line = 0; line < LINES; line++) {
+      lineProductList.add(productList.get(line % PRODUCTS));
+    }
+  }
+
+  /** Queue whose transaction and computation are simulated. */
+  private static class SimulatedQueue extends WeightedAveragePriceQueue {
+    private final Set<Long> transactionSet = new HashSet<>();
+    private final Map<Long, AtomicInteger> computationCountMap = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> failureCountMap = new ConcurrentHashMap<>();
+    private final AtomicInteger chunkCount = new AtomicInteger();
+    private final CountDownLatch computedLatch;
+
+    SimulatedQueue(int productCount) {
+      computedLatch = new CountDownLatch(productCount);
+    }
+
+    @Override
+    protected Set<Long> getTransactionProductIdSet() {
+      return transactionSet;
+    }
+
+    void commit() {
+      submit(new ArrayList<>(transactionSet));
+      transactionSet.clear();
+    }
+
+    @Override
+    protected void process() {
+      processQueuedProducts();
+    }
+
+    @Override
+    protected void endUnitOfWork() {}
+
+    @Override
+    protected void computeAvgPrices(List<Long> productIdList) {
+      chunkCount.incrementAndGet();
+      for (Long productId : productIdList) {
+        if (failureCountMap.computeIfPresent(productId, (key, count) -> count - 1) != null) {
+          failureCountMap.remove(productId, 0);
+          throw new IllegalStateException("Concurrent update of product " + productId);
+        }
+      }
+      for (Long productId : productIdList) {
+        computationCountMap
+            .computeIfAbsent(productId, key -> new AtomicInteger())
+            .incrementAndGet();
+        computedLatch.countDown();
+      }
+    }
+  }
+
+  @Test
+  void eachProductIsComputedOnce() throws Exception {
+    SimulatedQueue queue = new SimulatedQueue(PRODUCTS);
+    for (Product product : lineProductList) {
+      queue.enqueue(product);
+    }
+    queue.commit();
+
+    Assertions.assertTrue(queue.computedLatch.await(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(PRODUCTS, queue.computationCountMap.size());
+    queue.computationCountMap.values().forEach(count -> Assertions.assertEquals(1, count.get()));
+    Assertions.assertEquals(1, queue.chunkCount.get());
+  }
+
+  @Test
+  void productsAreChunked() throws Exception {
+    int productCount = WeightedAveragePriceQueue.PRODUCT_CHUNK_SIZE * 2 + 1;
+    SimulatedQueue queue = new SimulatedQueue(productCount);
+    for (long id = 1; id <= productCount; id++) {
+      Product product = new Product();
+      product.setId(id);
+      queue.enqueue(product);
+    }
+    queue.commit();
+
+    Assertions.assertTrue(queue.computedLatch.await(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(3, queue.chunkCount.get());
+  }
+
+  @Test
+  void productsAreOnlyQueuedOnCommit() throws Exception {
+    SimulatedQueue queue = new SimulatedQueue(1);
+    Product product = new Product();
+    product.setId(1L);
+    queue.enqueue(product);
+
+    Assertions.assertEquals(0, queue.getQueuedProductCount());
+    Assertions.assertEquals(Collections.emptyMap(), queue.computationCountMap);
+
+    queue.commit();
+    Assertions.assertTrue(queue.computedLatch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void failedProductsAreQueuedAgain() throws Exception {
+    SimulatedQueue queue = new SimulatedQueue(2);
+    queue.failureCountMap.put(1L, 2);
+    for (long id = 1; id <= 2; id++) {
+      Product product = new Product();
+      product.setId(id);
+      queue.enqueue(product);
+    }
+    queue.commit();
+
+    Assertions.assertTrue(queue.computedLatch.await(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, queue.computationCountMap.get(1L).get());
+    Assertions.assertEquals(1, queue.computationCountMap.get(2L).get());
+  }
+}
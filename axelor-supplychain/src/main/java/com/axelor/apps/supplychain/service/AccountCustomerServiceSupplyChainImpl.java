@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.repo.AccountingSituationRepository;
 import com.axelor.apps.account.service.AccountCustomerServiceImpl;
 import com.axelor.apps.account.service.AccountingSituationInitService;
 import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.google.inject.Inject;
@@ -35,12 +36,14 @@ public class AccountCustomerServiceSupplyChainImpl extends AccountCustomerServic
       AccountingSituationService accountingSituationService,
       AccountingSituationInitService accountingSituationInitService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      PartnerBalanceService partnerBalanceService) {
     super(
         accountingSituationService,
         accountingSituationInitService,
         accSituationRepo,
-        appBaseService);
+        appBaseService,
+        partnerBalanceService);
   }
 
   @Override
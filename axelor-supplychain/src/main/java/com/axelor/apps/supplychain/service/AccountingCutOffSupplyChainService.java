@@ -25,6 +25,7 @@ import com.axelor.apps.account.service.AccountingCutOffService;
 import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.db.Query;
@@ -38,6 +39,10 @@ public interface AccountingCutOffSupplyChainService extends AccountingCutOffServ
   public Query<StockMove> getStockMoves(
       Company company, int accountingCutOffTypeSelect, LocalDate moveDate);
 
+  /** Iterate by pages, ordered by id, over the stock moves of {@link #getStockMoves}. */
+  public KeysetQueryIterator<StockMove> getStockMoveIterator(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate);
+
   @Transactional(rollbackOn = {Exception.class})
   public List<Move> generateCutOffMovesFromStockMove(
       StockMove stockMove,
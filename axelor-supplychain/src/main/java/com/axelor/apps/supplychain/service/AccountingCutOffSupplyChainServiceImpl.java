@@ -18,8 +18,6 @@
  */
 package com.axelor.apps.supplychain.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
-
 import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountingBatch;
 import com.axelor.apps.account.db.AnalyticMoveLine;
@@ -34,6 +32,7 @@ import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.service.AccountManagementAccountService;
 import com.axelor.apps.account.service.AccountingCutOffServiceImpl;
+import com.axelor.apps.account.service.PartnerBalanceService;
 import com.axelor.apps.account.service.ReconcileService;
 import com.axelor.apps.account.service.TaxAccountService;
 import com.axelor.apps.account.service.analytic.AnalyticMoveLineService;
@@ -59,6 +58,7 @@ import com.axelor.apps.base.db.repo.TraceBackRepository;
 import com.axelor.apps.base.service.BankDetailsService;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.purchase.db.PurchaseOrderLine;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
@@ -80,7 +80,9 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 
@@ -122,7 +124,8 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
       CurrencyService currencyService,
       TaxAccountToolService taxAccountToolService,
       BankDetailsService bankDetailsService,
-      MoveLineRepository moveLineRepository) {
+      MoveLineRepository moveLineRepository,
+      PartnerBalanceService partnerBalanceService) {
 
     super(
         moveCreateService,
@@ -144,7 +147,8 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
         moveLineService,
         currencyService,
         taxAccountToolService,
-        moveLineRepository);
+        moveLineRepository,
+        partnerBalanceService);
     this.stockMoverepository = stockMoverepository;
     this.stockMoveLineRepository = stockMoveLineRepository;
     this.saleOrderRepository = saleOrderRepository;
@@ -156,17 +160,21 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
   @Override
   public Query<StockMove> getStockMoves(
       Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+    return stockMoverepository
+        .all()
+        .filter(getStockMoveFilter(company))
+        .bind(getStockMoveBindings(company, accountingCutOffTypeSelect, moveDate))
+        .order("id");
+  }
 
-    int stockMoveTypeSelect = 0;
-
-    if (accountingCutOffTypeSelect
-        == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES) {
-      stockMoveTypeSelect = StockMoveRepository.TYPE_INCOMING;
-    } else if (accountingCutOffTypeSelect
-        == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_CUSTOMER_INVOICES) {
-      stockMoveTypeSelect = StockMoveRepository.TYPE_OUTGOING;
-    }
+  @Override
+  public KeysetQueryIterator<StockMove> getStockMoveIterator(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+    return KeysetQueryIterator.of(StockMove.class, getStockMoveFilter(company))
+        .bind(getStockMoveBindings(company, accountingCutOffTypeSelect, moveDate));
+  }
 
+  protected String getStockMoveFilter(Company company) {
     String queryStr =
         "self.invoicingStatusSelect != :stockMoveInvoiced "
             + "AND self.statusSelect = :stockMoveStatusRealized and self.realDate <= :moveDate "
@@ -175,21 +183,31 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
     if (company != null) {
       queryStr += "AND self.company.id = :companyId";
     }
+    return queryStr;
+  }
 
-    Query<StockMove> stockMoveQuery =
-        stockMoverepository
-            .all()
-            .filter(queryStr)
-            .bind("stockMoveInvoiced", StockMoveRepository.STATUS_INVOICED)
-            .bind("stockMoveStatusRealized", StockMoveRepository.STATUS_REALIZED)
-            .bind("stockMoveType", stockMoveTypeSelect)
-            .bind("moveDate", moveDate);
+  protected Map<String, Object> getStockMoveBindings(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+    int stockMoveTypeSelect = 0;
 
-    if (company != null) {
-      stockMoveQuery.bind("companyId", company.getId());
+    if (accountingCutOffTypeSelect
+        == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES) {
+      stockMoveTypeSelect = StockMoveRepository.TYPE_INCOMING;
+    } else if (accountingCutOffTypeSelect
+        == AccountingBatchRepository.ACCOUNTING_CUT_OFF_TYPE_CUSTOMER_INVOICES) {
+      stockMoveTypeSelect = StockMoveRepository.TYPE_OUTGOING;
     }
 
-    return stockMoveQuery.order("id");
+    Map<String, Object> bindings = new HashMap<>();
+    bindings.put("stockMoveInvoiced", StockMoveRepository.STATUS_INVOICED);
+    bindings.put("stockMoveStatusRealized", StockMoveRepository.STATUS_REALIZED);
+    bindings.put("stockMoveType", stockMoveTypeSelect);
+    bindings.put("moveDate", moveDate);
+
+    if (company != null) {
+      bindings.put("companyId", company.getId());
+    }
+    return bindings;
   }
 
   @Override
@@ -537,8 +555,6 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
   }
 
   public List<Long> getStockMoveLines(Batch batch) {
-    int offset = 0;
-
     Query<StockMove> stockMoveQuery =
         stockMoverepository.all().filter(":batch MEMBER OF self.batchSet").bind("batch", batch);
     List<Long> stockMoveIdList =
@@ -556,18 +572,13 @@ public class AccountingCutOffSupplyChainServiceImpl extends AccountingCutOffServ
     }
 
     List<Long> stockMoveLineIdList = new ArrayList<>();
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
-            .filter("self.stockMove.id IN :stockMoveIdList")
+    KeysetQueryIterator<StockMoveLine> stockMoveLineIterator =
+        KeysetQueryIterator.of(StockMoveLine.class, "self.stockMove.id IN :stockMoveIdList")
             .bind("stockMoveIdList", stockMoveIdList)
-            .order("id");
-
-    List<StockMoveLine> stockMoveLineList;
-    while (!(stockMoveLineList = stockMoveLineQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += stockMoveLineList.size();
+            .pageSize(accountingBatch != null ? accountingBatch.getFetchLimit() : 0);
 
-      for (StockMoveLine stockMoveLine : stockMoveLineList) {
+    while (stockMoveLineIterator.hasNext()) {
+      for (StockMoveLine stockMoveLine : stockMoveLineIterator.next()) {
         Product product = stockMoveLine.getProduct();
         if (supplychainBatch != null
             || !checkStockMoveLine(stockMoveLine, product, includeNotStockManagedProduct)) {
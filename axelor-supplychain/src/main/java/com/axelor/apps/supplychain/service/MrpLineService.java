@@ -23,6 +23,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockRules;
 import com.axelor.apps.supplychain.db.Mrp;
 import com.axelor.apps.supplychain.db.MrpLine;
 import com.axelor.apps.supplychain.db.MrpLineOrigin;
@@ -56,6 +57,23 @@ public interface MrpLineService {
       StockLocation stockLocation,
       Model model);
 
+  /**
+   * Same as {@link #createMrpLine(Mrp, Product, int, MrpLineType, BigDecimal, LocalDate,
+   * BigDecimal, StockLocation, Model)}, with the MRP stock rules of the product on the stock
+   * location already fetched.
+   */
+  MrpLine createMrpLine(
+      Mrp mrp,
+      Product product,
+      int maxLevel,
+      MrpLineType mrpLineType,
+      BigDecimal qty,
+      LocalDate maturityDate,
+      BigDecimal cumulativeQty,
+      StockLocation stockLocation,
+      Model model,
+      StockRules stockRules);
+
   MrpLineOrigin createMrpLineOrigin(Model model);
 
   MrpLineOrigin copyMrpLineOrigin(MrpLineOrigin mrpLineOrigin);
@@ -291,6 +291,36 @@ public class MrpLineServiceImpl implements MrpLineService {
       StockLocation stockLocation,
       Model model) {
 
+    return this.createMrpLine(
+        mrp,
+        product,
+        maxLevel,
+        mrpLineType,
+        qty,
+        maturityDate,
+        cumulativeQty,
+        stockLocation,
+        model,
+        stockRulesService.getStockRules(
+            product,
+            stockLocation,
+            StockRulesRepository.TYPE_FUTURE,
+            StockRulesRepository.USE_CASE_USED_FOR_MRP));
+  }
+
+  @Override
+  public MrpLine createMrpLine(
+      Mrp mrp,
+      Product product,
+      int maxLevel,
+      MrpLineType mrpLineType,
+      BigDecimal qty,
+      LocalDate maturityDate,
+      BigDecimal cumulativeQty,
+      StockLocation stockLocation,
+      Model model,
+      StockRules stockRules) {
+
     MrpLine mrpLine = new MrpLine();
 
     mrpLine.setMrp(mrp);
@@ -306,7 +336,7 @@ public class MrpLineServiceImpl implements MrpLineService {
     mrpLine.setCumulativeQty(cumulativeQty);
     mrpLine.setStockLocation(stockLocation);
 
-    mrpLine = this.setMrpLineQty(mrpLine, product, stockLocation);
+    mrpLine = this.setMrpLineQty(mrpLine, stockRules);
 
     if (mrpLineType.getElementSelect() == MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL) {
       mrpLine.setSupplierPartner(product.getDefaultSupplierPartner());
@@ -330,14 +360,7 @@ public class MrpLineServiceImpl implements MrpLineService {
     return mrpLine;
   }
 
-  protected MrpLine setMrpLineQty(MrpLine mrpLine, Product product, StockLocation stockLocation) {
-
-    StockRules stockRules =
-        stockRulesService.getStockRules(
-            product,
-            stockLocation,
-            StockRulesRepository.TYPE_FUTURE,
-            StockRulesRepository.USE_CASE_USED_FOR_MRP);
+  protected MrpLine setMrpLineQty(MrpLine mrpLine, StockRules stockRules) {
 
     if (stockRules != null) {
       mrpLine.setMinQty(stockRules.getMinQty());
@@ -0,0 +1,105 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.supplychain.db.MrpLine;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * MRP lines of a computation done in memory, grouped by product id.
+ *
+ * <p>The lines are kept in the order they were added, which is the order of their ids once saved,
+ * so that sorting them gives the same order as the queries of the standard computation.
+ */
+public class MrpLineStore {
+
+  /** Same order as the standard computation: maturity date, type, sequence of the type, id. */
+  public static final Comparator<MrpLine> MRP_LINE_COMPARATOR =
+      Comparator.comparing(
+              MrpLine::getMaturityDate, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparingInt(mrpLine -> mrpLine.getMrpLineType().getTypeSelect())
+          .thenComparingInt(mrpLine -> mrpLine.getMrpLineType().getSequence());
+
+  protected final Map<Long, List<MrpLine>> mrpLineMap = new HashMap<>();
+  protected final List<MrpLine> mrpLineList = new ArrayList<>();
+
+  public void add(MrpLine mrpLine) {
+    mrpLineMap
+        .computeIfAbsent(mrpLine.getProduct().getId(), key -> new ArrayList<>())
+        .add(mrpLine);
+    mrpLineList.add(mrpLine);
+  }
+
+  /** @return all the lines, in the order they were added */
+  public List<MrpLine> getMrpLineList() {
+    return Collections.unmodifiableList(mrpLineList);
+  }
+
+  /** @return a sorted copy of the lines of the product */
+  public List<MrpLine> getSortedMrpLineList(Long productId) {
+    List<MrpLine> sortedMrpLineList =
+        new ArrayList<>(mrpLineMap.getOrDefault(productId, Collections.emptyList()));
+    sortedMrpLineList.sort(MRP_LINE_COMPARATOR);
+    return sortedMrpLineList;
+  }
+
+  /**
+   * Find a line of the product with the given type and stock location, and with a maturity date
+   * after the start date and before or equal to the end date.
+   */
+  public MrpLine findMrpLine(
+      Long productId,
+      Long mrpLineTypeId,
+      Long stockLocationId,
+      LocalDate startDate,
+      LocalDate endDate) {
+    for (MrpLine mrpLine : mrpLineMap.getOrDefault(productId, Collections.emptyList())) {
+      LocalDate maturityDate = mrpLine.getMaturityDate();
+      if (Objects.equals(mrpLine.getMrpLineType().getId(), mrpLineTypeId)
+          && mrpLine.getStockLocation() != null
+          && Objects.equals(mrpLine.getStockLocation().getId(), stockLocationId)
+          && maturityDate != null
+          && maturityDate.isAfter(startDate)
+          && !maturityDate.isAfter(endDate)) {
+        return mrpLine;
+      }
+    }
+    return null;
+  }
+
+  /** Count the lines of the product edited by the user and related to the given element. */
+  public long countEditedByUser(Long productId, String relatedToSelectName) {
+    if (relatedToSelectName == null) {
+      return 0;
+    }
+    return mrpLineMap.getOrDefault(productId, Collections.emptyList()).stream()
+        .filter(
+            mrpLine ->
+                Boolean.TRUE.equals(mrpLine.getIsEditedByUser())
+                    && relatedToSelectName.equals(mrpLine.getRelatedToSelectName()))
+        .count();
+  }
+}
@@ -96,6 +96,9 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -104,6 +107,12 @@ public class MrpServiceImpl implements MrpService {
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final Integer ITERATIONS = 100;
 
+  /** Count of products loaded at once when computing in memory. */
+  protected static final int PRODUCT_PARTITION_SIZE = 500;
+
+  /** Count of MRP lines inserted at once when computing in memory. */
+  protected static final int MRP_LINE_BATCH_SIZE = 100;
+
   protected MrpRepository mrpRepository;
   protected StockLocationRepository stockLocationRepository;
   protected ProductRepository productRepository;
@@ -132,6 +141,13 @@ public class MrpServiceImpl implements MrpService {
   protected Mrp mrp;
   protected LocalDate today;
 
+  // Only set when computing in memory
+  protected MrpLineStore mrpLineStore;
+  protected Map<Long, Map<Long, BigDecimal>> currentQtyMap;
+  protected Set<Long> stockLocationIdSet;
+  protected Map<Long, Map<Long, StockRules>> stockRulesMap;
+  protected Map<Integer, MrpLineType> mrpLineTypeMap;
+
   @Inject
   public MrpServiceImpl(
       MrpRepository mrpRepository,
@@ -190,11 +206,121 @@ public class MrpServiceImpl implements MrpService {
     this.reset(mrpRepository.find(mrp.getId()));
 
     this.startMrp(mrpRepository.find(mrp.getId()));
-    this.completeMrp(mrpRepository.find(mrp.getId()));
-    this.doCalculation(mrpRepository.find(mrp.getId()));
+    if (mrpRepository.find(mrp.getId()).getComputationModeSelect()
+        == MrpRepository.COMPUTATION_MODE_IN_MEMORY) {
+      this.computeInMemory(mrpRepository.find(mrp.getId()));
+    } else {
+      this.completeMrp(mrpRepository.find(mrp.getId()));
+      this.doCalculation(mrpRepository.find(mrp.getId()));
+    }
     this.finish(mrpRepository.find(mrp.getId()));
   }
 
+  /**
+   * Compute the MRP in memory, in a single transaction. The demand and supply of the products are
+   * loaded at once, the lines are kept in a {@link MrpLineStore} during the computation and are
+   * inserted in batches at the end. The result is the same as the standard computation.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected void computeInMemory(Mrp mrp) throws AxelorException {
+
+    log.debug("Compute MRP in memory");
+
+    EntityManager em = JPA.em();
+    FlushModeType flushMode = em.getFlushMode();
+    // Nothing is written before the lines are saved, there is no need to flush before each query
+    em.setFlushMode(FlushModeType.COMMIT);
+    mrpLineStore = new MrpLineStore();
+    mrpLineTypeMap = new HashMap<>();
+
+    try {
+      // Lines edited by the user are kept by the reset and come first, as in the standard mode
+      mrpLineRepository
+          .all()
+          .filter("self.mrp.id = ?1", mrp.getId())
+          .order("id")
+          .fetch()
+          .forEach(mrpLineStore::add);
+
+      this.completeMrp(mrp);
+      this.doCalculation(mrp);
+      this.saveMrpLines();
+    } finally {
+      this.clearInMemoryData();
+      em.setFlushMode(flushMode);
+    }
+  }
+
+  protected boolean isComputedInMemory() {
+    return mrpLineStore != null;
+  }
+
+  protected void clearInMemoryData() {
+    mrpLineStore = null;
+    currentQtyMap = null;
+    stockLocationIdSet = null;
+    stockRulesMap = null;
+    mrpLineTypeMap = null;
+  }
+
+  /**
+   * Clear the persistence context between two elements of the standard computation. Nothing is
+   * cleared when computing in memory, as the lines keep references to the loaded entities.
+   */
+  protected void clearSession() {
+    if (!this.isComputedInMemory()) {
+      JPA.clear();
+    }
+  }
+
+  protected MrpLine saveMrpLine(MrpLine mrpLine) {
+    if (this.isComputedInMemory()) {
+      mrpLineStore.add(mrpLine);
+      return mrpLine;
+    }
+    return mrpLineRepository.save(mrpLine);
+  }
+
+  /** Insert the lines computed in memory, using JDBC batches. */
+  protected void saveMrpLines() {
+
+    log.debug("Save {} MRP lines", mrpLineStore.getMrpLineList().size());
+
+    EntityManager em = JPA.em();
+    Session session = em.unwrap(Session.class);
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+    session.setJdbcBatchSize(MRP_LINE_BATCH_SIZE);
+
+    try {
+      int count = 0;
+      for (MrpLine mrpLine : mrpLineStore.getMrpLineList()) {
+        // Lines edited by the user and estimated delivery lines saved with their proposal
+        if (mrpLine.getId() != null) {
+          continue;
+        }
+        mrpLineRepository.save(mrpLine);
+        if (++count % MRP_LINE_BATCH_SIZE == 0) {
+          em.flush();
+          em.clear();
+        }
+      }
+      em.flush();
+    } finally {
+      session.setJdbcBatchSize(jdbcBatchSize);
+    }
+  }
+
+  protected MrpLineType getMrpLineType(int elementSelect) {
+    if (!this.isComputedInMemory()) {
+      return mrpLineTypeService.getMrpLineType(elementSelect, mrp.getMrpTypeSelect());
+    }
+    if (!mrpLineTypeMap.containsKey(elementSelect)) {
+      mrpLineTypeMap.put(
+          elementSelect, mrpLineTypeService.getMrpLineType(elementSelect, mrp.getMrpTypeSelect()));
+    }
+    return mrpLineTypeMap.get(elementSelect);
+  }
+
   @Override
   public boolean isOnGoing(Mrp mrp) {
 
@@ -337,7 +463,40 @@ public class MrpServiceImpl implements MrpService {
   }
 
   protected void checkInsufficientCumulativeQty(Product product) throws AxelorException {
-    checkInsufficientCumulativeQty(product, 0);
+    if (this.isComputedInMemory()) {
+      this.checkInsufficientCumulativeQtyInMemory(product);
+    } else {
+      checkInsufficientCumulativeQty(product, 0);
+    }
+  }
+
+  /** Same as {@link #checkInsufficientCumulativeQty(Product, int)}, on the lines in memory. */
+  protected void checkInsufficientCumulativeQtyInMemory(Product product) throws AxelorException {
+
+    final int MAX_ITERATION = 1000;
+
+    boolean doASecondPass = true;
+
+    for (int counter = 0; doASecondPass; counter++) {
+
+      if (counter > MAX_ITERATION) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get(SupplychainExceptionMessage.MRP_TOO_MANY_ITERATIONS));
+      }
+
+      doASecondPass = false;
+
+      List<MrpLine> mrpLineList = mrpLineStore.getSortedMrpLineList(product.getId());
+      this.computeCumulativeQty(mrpLineList);
+
+      for (MrpLine mrpLine : mrpLineList) {
+        doASecondPass = this.checkInsufficientCumulativeQty(mrpLine, product, counter == 0);
+        if (doASecondPass) {
+          break;
+        }
+      }
+    }
   }
 
   protected void checkInsufficientCumulativeQty(Product product, int counter)
@@ -355,17 +514,9 @@ public class MrpServiceImpl implements MrpService {
 
     this.computeCumulativeQty(productRepository.find(product.getId()));
 
-    JPA.clear();
+    this.clearSession();
 
-    List<MrpLine> mrpLineList =
-        mrpLineRepository
-            .all()
-            .filter("self.mrp.id = ?1 AND self.product.id = ?2", mrp.getId(), product.getId())
-            .order("maturityDate")
-            .order("mrpLineType.typeSelect")
-            .order("mrpLineType.sequence")
-            .order("id")
-            .fetch();
+    List<MrpLine> mrpLineList = this.getSortedMrpLineList(product);
     for (MrpLine mrpLine : mrpLineList) {
 
       doASecondPass =
@@ -373,7 +524,7 @@ public class MrpServiceImpl implements MrpService {
               mrpLineRepository.find(mrpLine.getId()),
               productRepository.find(product.getId()),
               counter == 0);
-      JPA.clear();
+      this.clearSession();
       if (doASecondPass) {
         break;
       }
@@ -428,12 +579,7 @@ public class MrpServiceImpl implements MrpService {
 
       BigDecimal reorderQty = minQty.subtract(cumulativeQty);
 
-      StockRules stockRules =
-          stockRulesService.getStockRules(
-              product,
-              stockLocation,
-              StockRulesRepository.TYPE_FUTURE,
-              StockRulesRepository.USE_CASE_USED_FOR_MRP);
+      StockRules stockRules = this.getStockRules(product, stockLocation);
 
       if (stockRules != null) {
         reorderQty = reorderQty.max(stockRules.getReOrderQty());
@@ -451,15 +597,7 @@ public class MrpServiceImpl implements MrpService {
       }
 
       long duplicateCount =
-          mrpLineRepository
-              .all()
-              .filter(
-                  "self.mrp.id = ?1  AND self.isEditedByUser = ?2 AND self.product = ?3 AND self.relatedToSelectName = ?4",
-                  mrp.getId(),
-                  true,
-                  product,
-                  mrpLine.getRelatedToSelectName())
-              .count();
+          this.countMrpLinesEditedByUser(product, mrpLine.getRelatedToSelectName());
 
       if (duplicateCount != 0) {
         return false;
@@ -481,6 +619,23 @@ public class MrpServiceImpl implements MrpService {
     return false;
   }
 
+  protected long countMrpLinesEditedByUser(Product product, String relatedToSelectName) {
+
+    if (this.isComputedInMemory()) {
+      return mrpLineStore.countEditedByUser(product.getId(), relatedToSelectName);
+    }
+
+    return mrpLineRepository
+        .all()
+        .filter(
+            "self.mrp.id = ?1  AND self.isEditedByUser = ?2 AND self.product = ?3 AND self.relatedToSelectName = ?4",
+            mrp.getId(),
+            true,
+            product,
+            relatedToSelectName)
+        .count();
+  }
+
   public MrpLine getPreviousProposalMrpLine(
       Product product,
       MrpLineType mrpLineType,
@@ -500,6 +655,15 @@ public class MrpServiceImpl implements MrpService {
       startPeriodDate = maturityDate.minusDays(mrpFamily.getDayNb());
     }
 
+    if (this.isComputedInMemory()) {
+      return mrpLineStore.findMrpLine(
+          product.getId(),
+          mrpLineType.getId(),
+          stockLocation.getId(),
+          startPeriodDate,
+          maturityDate);
+    }
+
     return mrpLineRepository
         .all()
         .filter(
@@ -567,16 +731,14 @@ public class MrpServiceImpl implements MrpService {
               stockLocation,
               null);
 
-      mrpLine = mrpLineRepository.save(createdmrpLine);
+      mrpLine = this.saveMrpLine(createdmrpLine);
 
       if (createdmrpLine != null) {
         createdmrpLine.setWarnDelayFromSupplier(
             getWarnDelayFromSupplier(createdmrpLine, initialMaturityDate));
 
         MrpLineType mrpLineTypeEstimatedDelivery =
-            mrpLineTypeService.getMrpLineType(
-                MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL_ESTIMATED_DELIVERY,
-                mrp.getMrpTypeSelect());
+            this.getMrpLineType(MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL_ESTIMATED_DELIVERY);
         if (mrpLineType.getElementSelect() == MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL
             && mrpLineTypeEstimatedDelivery != null) {
           MrpLine createdEstimatedDeliveryMrpLine =
@@ -598,6 +760,7 @@ public class MrpServiceImpl implements MrpService {
           createdmrpLine.setEstimatedDeliveryMrpLine(createdEstimatedDeliveryMrpLine);
           createdmrpLine.setDeliveryDelayDate(
               initialMaturityDate.minusDays(product.getSupplierDeliveryTime()));
+          this.saveMrpLine(createdEstimatedDeliveryMrpLine);
         }
       }
 
@@ -654,8 +817,7 @@ public class MrpServiceImpl implements MrpService {
   protected MrpLineType getMrpLineTypeForProposal(
       StockRules stockRules, Product product, Company company) throws AxelorException {
 
-    return mrpLineTypeService.getMrpLineType(
-        MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, mrp.getMrpTypeSelect());
+    return this.getMrpLineType(MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL);
   }
 
   protected void consolidateMrp() {
@@ -714,15 +876,24 @@ public class MrpServiceImpl implements MrpService {
   @Transactional
   protected void computeCumulativeQty(Product product) {
 
-    List<MrpLine> mrpLineList =
-        mrpLineRepository
-            .all()
-            .filter("self.mrp.id = ?1 AND self.product.id = ?2", mrp.getId(), product.getId())
-            .order("maturityDate")
-            .order("mrpLineType.typeSelect")
-            .order("mrpLineType.sequence")
-            .order("id")
-            .fetch();
+    this.computeCumulativeQty(this.getSortedMrpLineList(product));
+  }
+
+  /** Get the saved lines of the product, sorted as {@link MrpLineStore#MRP_LINE_COMPARATOR}. */
+  protected List<MrpLine> getSortedMrpLineList(Product product) {
+
+    return mrpLineRepository
+        .all()
+        .filter("self.mrp.id = ?1 AND self.product.id = ?2", mrp.getId(), product.getId())
+        .order("maturityDate")
+        .order("mrpLineType.typeSelect")
+        .order("mrpLineType.sequence")
+        .order("id")
+        .fetch();
+  }
+
+  /** Compute the cumulative qty of the lines of a product, sorted by maturity date. */
+  protected void computeCumulativeQty(List<MrpLine> mrpLineList) {
 
     BigDecimal previousCumulativeQty = BigDecimal.ZERO;
     for (MrpLine mrpLine : mrpLineList) {
@@ -781,7 +952,7 @@ public class MrpServiceImpl implements MrpService {
           mrpRepository.find(mrp.getId()),
           purchaseOrderLineRepository.find(purchaseOrderLine.getId()),
           mrpLineTypeRepository.find(purchaseOrderMrpLineType.getId()));
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -827,7 +998,7 @@ public class MrpServiceImpl implements MrpService {
               purchaseOrderLine);
       if (mrpLine != null) {
         mrpLine.setSupplierPartner(purchaseOrder.getSupplierPartner());
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -888,7 +1059,7 @@ public class MrpServiceImpl implements MrpService {
                 saleOrderLineRepository.find(saleOrderLine.getId()),
                 mrpLineTypeRepository.find(saleOrderMrpLineType.getId()),
                 statusList);
-            JPA.clear();
+            this.clearSession();
           }
         }
       }
@@ -927,7 +1098,7 @@ public class MrpServiceImpl implements MrpService {
                       saleOrderLine,
                       mrpLineTypeRepository.find(saleOrderMrpLineType.getId()),
                       statusList);
-                  JPA.clear();
+                  this.clearSession();
                 }
               }
             }
@@ -990,7 +1161,7 @@ public class MrpServiceImpl implements MrpService {
               saleOrder.getStockLocation(),
               saleOrderLine);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -1032,7 +1203,7 @@ public class MrpServiceImpl implements MrpService {
           mrpRepository.find(mrp.getId()),
           mrpForecastRepository.find(mrpForecast.getId()),
           mrpLineTypeRepository.find(saleForecastMrpLineType.getId()));
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -1055,7 +1226,7 @@ public class MrpServiceImpl implements MrpService {
           mrp,
           mrpLineTypeRepository.find(stockHistoryMrpLineType.getId()),
           stockLocationRepository.find(mrp.getStockLocation().getId()));
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -1088,7 +1259,7 @@ public class MrpServiceImpl implements MrpService {
                 firstDate,
                 growthCoef);
         if (mrpLine != null) {
-          mrpLineRepository.save(mrpLine);
+          this.saveMrpLine(mrpLine);
           for (int i = 0; i < mrpLineType.getNbrOfMonthProjection(); i++) {
             LocalDate datePlusMonths = firstDate.plusMonths(i + 1);
             if (mrp.getEndDate() != null && datePlusMonths.isAfter(mrp.getEndDate())) {
@@ -1103,7 +1274,7 @@ public class MrpServiceImpl implements MrpService {
                     stockHistoryLineToProject,
                     datePlusMonths,
                     growthCoef);
-            mrpLineRepository.save(projectedMrpLine);
+            this.saveMrpLine(projectedMrpLine);
           }
         }
       }
@@ -1115,7 +1286,7 @@ public class MrpServiceImpl implements MrpService {
         MrpLine mrpLine =
             createMrpLine(
                 product, mrp, mrpLineType, stockLocation, stockHistoryLine, date, growthCoef);
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -1250,7 +1421,7 @@ public class MrpServiceImpl implements MrpService {
               mrpForecast.getStockLocation(),
               mrpForecast);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -1299,11 +1470,19 @@ public class MrpServiceImpl implements MrpService {
             stockLocationRepository.find(stockLocation.getId()),
             mrpLineTypeRepository.find(availableStockMrpLineType.getId()));
       }
-      JPA.clear();
+      this.clearSession();
     }
   }
 
   protected BigDecimal computeTotalQuantityFromSubStockLocations(Product product) {
+
+    if (this.isComputedInMemory()) {
+      Map<Long, BigDecimal> productCurrentQtyMap = this.getCurrentQtyMap(product);
+      if (productCurrentQtyMap != null) {
+        return productCurrentQtyMap.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+      }
+    }
+
     return Optional.ofNullable(
             JPA.em()
                 .createQuery(
@@ -1322,14 +1501,7 @@ public class MrpServiceImpl implements MrpService {
       Mrp mrp, Product product, StockLocation stockLocation, MrpLineType availableStockMrpLineType)
       throws AxelorException {
 
-    BigDecimal qty = BigDecimal.ZERO;
-
-    StockLocationLine stockLocationLine = this.getStockLocationLine(product, stockLocation);
-
-    if (stockLocationLine != null) {
-
-      qty = stockLocationLine.getCurrentQty();
-    }
+    BigDecimal qty = this.getCurrentQty(product, stockLocation);
 
     return createAvailableStockMrpLine(mrp, product, qty, stockLocation, availableStockMrpLineType);
   }
@@ -1343,11 +1515,67 @@ public class MrpServiceImpl implements MrpService {
       MrpLineType availableStockMrpLineType)
       throws AxelorException {
 
-    return mrpLineRepository.save(
+    return this.saveMrpLine(
         this.createMrpLine(
             mrp, product, availableStockMrpLineType, qty, today, qty, stockLocation, null));
   }
 
+  protected BigDecimal getCurrentQty(Product product, StockLocation stockLocation) {
+
+    if (this.isComputedInMemory()) {
+      Map<Long, BigDecimal> productCurrentQtyMap = this.getCurrentQtyMap(product);
+      if (productCurrentQtyMap != null && stockLocationIdSet.contains(stockLocation.getId())) {
+        return productCurrentQtyMap.getOrDefault(stockLocation.getId(), BigDecimal.ZERO);
+      }
+    }
+
+    StockLocationLine stockLocationLine = this.getStockLocationLine(product, stockLocation);
+
+    if (stockLocationLine != null) {
+      return stockLocationLine.getCurrentQty();
+    }
+
+    return BigDecimal.ZERO;
+  }
+
+  /**
+   * Get the current qty of the product on each stock location of the MRP, loading the current qty
+   * of all the products of the MRP on first call.
+   *
+   * @return the current qty per stock location id, or null if the product was not loaded
+   */
+  protected Map<Long, BigDecimal> getCurrentQtyMap(Product product) {
+
+    if (currentQtyMap == null) {
+      currentQtyMap = new HashMap<>();
+      stockLocationIdSet =
+          this.stockLocationList.stream().map(StockLocation::getId).collect(Collectors.toSet());
+
+      for (List<Long> productIdList :
+          Lists.partition(new ArrayList<>(this.productMap.keySet()), PRODUCT_PARTITION_SIZE)) {
+        productIdList.forEach(productId -> currentQtyMap.put(productId, new HashMap<>()));
+
+        List<Object[]> resultList =
+            JPA.em()
+                .createQuery(
+                    "SELECT self.product.id, self.stockLocation.id, self.currentQty "
+                        + "FROM StockLocationLine self "
+                        + "WHERE self.product.id IN (:productIdList) "
+                        + "AND self.stockLocation.id IN (:stockLocationIdSet)",
+                    Object[].class)
+                .setParameter("productIdList", productIdList)
+                .setParameter("stockLocationIdSet", stockLocationIdSet)
+                .getResultList();
+
+        for (Object[] result : resultList) {
+          currentQtyMap.get((Long) result[0]).put((Long) result[1], (BigDecimal) result[2]);
+        }
+      }
+    }
+
+    return currentQtyMap.get(product.getId());
+  }
+
   protected StockLocationLine getStockLocationLine(Product product, StockLocation stockLocation) {
 
     return stockLocationLineRepository
@@ -1483,6 +1711,8 @@ public class MrpServiceImpl implements MrpService {
             product.getCode(),
             product.getName());
       }
+      StockLocation mrpLineStockLocation =
+          mrp.getComputeWithSubStockLocation() ? stockLocation : mrp.getStockLocation();
       return mrpLineService.createMrpLine(
           mrp,
           product,
@@ -1491,12 +1721,66 @@ public class MrpServiceImpl implements MrpService {
           qty,
           maturityDate,
           cumulativeQty,
-          mrp.getComputeWithSubStockLocation() ? stockLocation : mrp.getStockLocation(),
-          model);
+          mrpLineStockLocation,
+          model,
+          this.getStockRules(product, mrpLineStockLocation));
     }
     return null;
   }
 
+  /** Get the stock rules used for MRP of the product on the stock location. */
+  protected StockRules getStockRules(Product product, StockLocation stockLocation) {
+
+    if (this.isComputedInMemory() && stockLocation != null) {
+      Map<Long, StockRules> productStockRulesMap = this.getStockRulesMap(product);
+      if (productStockRulesMap != null) {
+        return productStockRulesMap.get(stockLocation.getId());
+      }
+    }
+
+    return stockRulesService.getStockRules(
+        product,
+        stockLocation,
+        StockRulesRepository.TYPE_FUTURE,
+        StockRulesRepository.USE_CASE_USED_FOR_MRP);
+  }
+
+  /**
+   * Get the MRP stock rules of the product, loading the stock rules of all the products of the MRP
+   * on first call.
+   *
+   * @return the stock rules per stock location id, or null if the product was not loaded
+   */
+  protected Map<Long, StockRules> getStockRulesMap(Product product) {
+
+    if (stockRulesMap == null) {
+      stockRulesMap = new HashMap<>();
+
+      for (List<Long> productIdList :
+          Lists.partition(new ArrayList<>(this.productMap.keySet()), PRODUCT_PARTITION_SIZE)) {
+        productIdList.forEach(productId -> stockRulesMap.put(productId, new HashMap<>()));
+
+        List<StockRules> stockRulesList =
+            Query.of(StockRules.class)
+                .filter(
+                    "self.product.id IN (:productIdList) AND self.stockLocation IS NOT NULL "
+                        + "AND self.useCaseSelect = :useCaseSelect")
+                .bind("productIdList", productIdList)
+                .bind("useCaseSelect", StockRulesRepository.USE_CASE_USED_FOR_MRP)
+                .order("id")
+                .fetch();
+
+        for (StockRules stockRules : stockRulesList) {
+          stockRulesMap
+              .get(stockRules.getProduct().getId())
+              .putIfAbsent(stockRules.getStockLocation().getId(), stockRules);
+        }
+      }
+    }
+
+    return stockRulesMap.get(product.getId());
+  }
+
   protected void copyMrpLineOrigins(MrpLine mrpLine, List<MrpLineOrigin> mrpLineOriginList) {
 
     if (mrpLineOriginList != null) {
@@ -29,6 +29,7 @@ import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.TrackingNumber;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
+import com.axelor.apps.stock.service.ProjectedStockQtyService;
 import com.axelor.apps.stock.service.StockLocationLineHistoryService;
 import com.axelor.apps.stock.service.StockLocationLineServiceImpl;
 import com.axelor.apps.stock.service.StockRulesService;
@@ -53,14 +54,16 @@ public class StockLocationLineServiceSupplychainImpl extends StockLocationLineSe
       AppBaseService appBaseService,
       UnitConversionService unitConversionService,
       AppSupplychainService appSupplychainService,
-      StockLocationLineHistoryService stockLocationLineHistoryService) {
+      StockLocationLineHistoryService stockLocationLineHistoryService,
+      ProjectedStockQtyService projectedStockQtyService) {
     super(
         stockLocationLineRepo,
         stockRulesService,
         stockMoveLineRepository,
         appBaseService,
         unitConversionService,
-        stockLocationLineHistoryService);
+        stockLocationLineHistoryService,
+        projectedStockQtyService);
     this.appSupplychainService = appSupplychainService;
   }
 
@@ -26,6 +26,7 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.service.StockLocationLineService;
 import com.axelor.apps.stock.service.StockLocationServiceImpl;
+import com.axelor.apps.stock.service.StockLocationTreeCache;
 import com.axelor.apps.stock.service.config.StockConfigService;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
@@ -42,7 +43,8 @@ public class StockLocationServiceSupplychainImpl extends StockLocationServiceImp
       StockConfigService stockConfigService,
       AppBaseService appBaseService,
       UnitRepository unitRepository,
-      UnitConversionService unitConversionService) {
+      UnitConversionService unitConversionService,
+      StockLocationTreeCache stockLocationTreeCache) {
     super(
         stockLocationRepo,
         stockLocationLineService,
@@ -50,7 +52,8 @@ public class StockLocationServiceSupplychainImpl extends StockLocationServiceImp
         stockConfigService,
         appBaseService,
         unitRepository,
-        unitConversionService);
+        unitConversionService,
+        stockLocationTreeCache);
   }
 
   @Override
@@ -30,7 +30,7 @@ import com.axelor.apps.base.AxelorException;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.db.repo.ExceptionOriginRepository;
-import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.batch.KeysetQueryIterator;
 import com.axelor.apps.base.service.exception.TraceBackService;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
@@ -39,7 +39,6 @@ import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
 import com.axelor.apps.supplychain.service.AccountingCutOffSupplyChainService;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
@@ -103,23 +102,23 @@ public class BatchAccountingCutOffSupplyChain extends BatchAccountingCutOff {
     LocalDate moveDate = accountingBatch.getMoveDate();
     int accountingCutOffTypeSelect = accountingBatch.getAccountingCutOffTypeSelect();
 
-    int offset = 0;
-    List<StockMove> stockMoveList;
-    Query<StockMove> stockMoveQuery =
-        cutOffSupplyChainService.getStockMoves(company, accountingCutOffTypeSelect, moveDate);
+    KeysetQueryIterator<StockMove> stockMoveIterator =
+        cutOffSupplyChainService
+            .getStockMoveIterator(company, accountingCutOffTypeSelect, moveDate)
+            .pageSize(getFetchLimit());
 
-    while (!(stockMoveList = stockMoveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (stockMoveIterator.hasNext()) {
+      List<StockMove> stockMoveList = stockMoveIterator.next();
 
       findBatch();
       accountingBatch = accountingBatchRepository.find(accountingBatch.getId());
       company = accountingBatch.getCompany();
 
       for (StockMove stockMove : stockMoveList) {
-        ++offset;
-
         if (this._processStockMove(
             stockMoveRepository.find(stockMove.getId()),
             accountingBatchRepository.find(accountingBatch.getId()))) {
+          stockMoveIterator.seek(stockMove.getId());
           break;
         }
       }
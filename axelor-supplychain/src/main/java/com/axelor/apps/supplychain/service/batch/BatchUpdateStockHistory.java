@@ -27,15 +27,15 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.exceptions.BaseExceptionMessage;
 import com.axelor.apps.base.service.ProductCategoryService;
 import com.axelor.apps.base.service.exception.TraceBackService;
-import com.axelor.apps.stock.db.StockHistoryLine;
 import com.axelor.apps.stock.service.StockHistoryService;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.SupplychainExceptionMessage;
-import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -59,9 +59,7 @@ public class BatchUpdateStockHistory extends BatchStrategy {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
 
     try {
-      List<Product> productList;
       List<ProductCategory> productCategoryList = getProductCategoryList(supplychainBatch);
-      List<StockHistoryLine> stockHistoryLineList = new ArrayList<>();
       Query<Product> productQuery;
 
       if (supplychainBatch.getProductCategorySet() != null
@@ -80,29 +78,16 @@ public class BatchUpdateStockHistory extends BatchStrategy {
                 .filter("self.productTypeSelect = ?1", ProductRepository.PRODUCT_TYPE_STORABLE);
       }
 
-      int offset = 0;
-
-      while (!(productList = productQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
-
-        for (Product product : productList) {
-          ++offset;
-          try {
-            stockHistoryLineList.addAll(
-                stockHistoryService.computeAndSaveStockHistoryLineList(
-                    product.getId(),
-                    supplychainBatch.getCompany().getId(),
-                    null,
-                    supplychainBatch.getPeriod().getFromDate(),
-                    supplychainBatch.getPeriod().getToDate()));
-            incrementDone();
-          } catch (Exception e) {
-            incrementAnomaly();
-            TraceBackService.trace(
-                e, ExceptionOriginRepository.UPDATE_STOCK_HISTORY, batch.getId());
-          }
-        }
-        JPA.clear();
-      }
+      Long companyId = supplychainBatch.getCompany().getId();
+      LocalDate fromDate = supplychainBatch.getPeriod().getFromDate();
+      LocalDate toDate = supplychainBatch.getPeriod().getToDate();
+
+      processInPartitions(
+          Product.class,
+          productQuery,
+          product ->
+              stockHistoryService.computeAndSaveStockHistoryLineList(
+                  product.getId(), companyId, null, fromDate, toDate));
     } catch (AxelorException e) {
       TraceBackService.trace(
           new AxelorException(
@@ -117,6 +102,11 @@ public class BatchUpdateStockHistory extends BatchStrategy {
     }
   }
 
+  @Override
+  protected void traceRecordFailure(Class<? extends Model> entityClass, Long id, Exception e) {
+    TraceBackService.trace(e, ExceptionOriginRepository.UPDATE_STOCK_HISTORY, getCurrentBatchId());
+  }
+
   @Override
   protected void stop() {
     String comment = I18n.get(SupplychainExceptionMessage.BATCH_UPDATE_STOCK_HISTORY_1) + " ";
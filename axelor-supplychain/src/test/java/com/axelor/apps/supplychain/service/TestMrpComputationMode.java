@@ -0,0 +1,345 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.AxelorException;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.purchase.service.app.AppPurchaseService;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockRules;
+import com.axelor.apps.stock.db.repo.StockRulesRepository;
+import com.axelor.apps.stock.service.StockRulesService;
+import com.axelor.apps.supplychain.db.Mrp;
+import com.axelor.apps.supplychain.db.MrpFamily;
+import com.axelor.apps.supplychain.db.MrpLine;
+import com.axelor.apps.supplychain.db.MrpLineType;
+import com.axelor.apps.supplychain.db.repo.MrpLineRepository;
+import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
+import com.axelor.db.Query;
+import com.axelor.db.mapper.Mapper;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run the proposal computation of the standard mode and of the in-memory mode on the same lines.
+ * The database of the standard mode is a list of lines, on which the queries of the line
+ * repository are evaluated.
+ */
+class TestMrpComputationMode {
+
+  private static final LocalDate TODAY = LocalDate.of(2024, 1, 10);
+  private static final Pattern CONDITION_PATTERN =
+      Pattern.compile("self\\.([\\w.]+) (=|>|<=) \\?(\\d+)");
+
+  private Product product;
+  private StockLocation stockLocation;
+  private StockRules stockRules;
+  private Map<Integer, MrpLineType> mrpLineTypeMap;
+  private MrpLineService mrpLineService;
+
+  @BeforeEach
+  void setUp() {
+    MrpFamily mrpFamily = new MrpFamily();
+    mrpFamily.setDayNb(10);
+    product = new Product();
+    product.setId(1L);
+    product.setCode("PRODUCT");
+    product.setSupplierDeliveryTime(2);
+    product.setMrpFamily(mrpFamily);
+    stockLocation = new StockLocation();
+    stockLocation.setId(1L);
+    stockRules = new StockRules();
+    stockRules.setMinQty(new BigDecimal("2"));
+    stockRules.setReOrderQty(new BigDecimal("5"));
+
+    mrpLineTypeMap = new HashMap<>();
+    addMrpLineType(1L, MrpLineTypeRepository.ELEMENT_AVAILABLE_STOCK, 0);
+    addMrpLineType(2L, MrpLineTypeRepository.ELEMENT_PURCHASE_ORDER, 2);
+    addMrpLineType(3L, MrpLineTypeRepository.ELEMENT_SALE_ORDER, 1);
+    addMrpLineType(4L, MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, 3);
+    addMrpLineType(5L, MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL_ESTIMATED_DELIVERY, 4);
+
+    // Only creates the lines, none of its repositories are used
+    mrpLineService =
+        new MrpLineServiceImpl(null, null, null, null, null, null, null, null, null, null);
+  }
+
+  @Test
+  void testSameMrpLinesInBothModes() throws AxelorException {
+    List<MrpLine> standardMrpLineList = this.compute(false);
+    List<MrpLine> inMemoryMrpLineList = this.compute(true);
+
+    Assertions.assertTrue(
+        standardMrpLineList.stream()
+            .anyMatch(
+                mrpLine ->
+                    mrpLine.getMrpLineType().getElementSelect()
+                        == MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL
+                    && !Boolean.TRUE.equals(mrpLine.getIsEditedByUser())));
+    Assertions.assertEquals(describe(standardMrpLineList), describe(inMemoryMrpLineList));
+  }
+
+  /** @return the lines of the product once the proposals are computed, in order of creation */
+  private List<MrpLine> compute(boolean inMemory) throws AxelorException {
+    List<MrpLine> savedMrpLineList = new ArrayList<>();
+    MrpServiceImpl mrpService = this.createMrpService(savedMrpLineList);
+    Mrp mrp = new Mrp();
+    mrp.setId(1L);
+    mrp.setStockLocation(stockLocation);
+    mrpService.mrp = mrp;
+    mrpService.today = TODAY;
+    mrpService.productMap = new HashMap<>(Collections.singletonMap(product.getId(), 0));
+
+    if (inMemory) {
+      mrpService.mrpLineStore = new MrpLineStore();
+      mrpService.mrpLineTypeMap = new HashMap<>();
+      mrpService.stockRulesMap = new HashMap<>();
+      mrpService.stockRulesMap.put(
+          product.getId(), Collections.singletonMap(stockLocation.getId(), stockRules));
+    }
+
+    MrpLine editedMrpLine =
+        createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, "3", 30);
+    editedMrpLine.setIsEditedByUser(true);
+    editedMrpLine.setRelatedToSelectName("SO0003");
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_AVAILABLE_STOCK, "5", 0);
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_SALE_ORDER, "8", 3)
+        .setRelatedToSelectName("SO0001");
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_SALE_ORDER, "4", 5)
+        .setRelatedToSelectName("SO0002");
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_PURCHASE_ORDER, "10", 20)
+        .setRelatedToSelectName("PO0001");
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_SALE_ORDER, "12", 30)
+        .setRelatedToSelectName("SO0003");
+    createMrpLine(mrpService, mrp, MrpLineTypeRepository.ELEMENT_SALE_ORDER, "7", 45)
+        .setRelatedToSelectName("SO0004");
+
+    mrpService.checkInsufficientCumulativeQty(product);
+
+    return inMemory ? mrpService.mrpLineStore.getMrpLineList() : savedMrpLineList;
+  }
+
+  private MrpLine createMrpLine(
+      MrpServiceImpl mrpService, Mrp mrp, int elementSelect, String qty, int dayNb)
+      throws AxelorException {
+    MrpLine mrpLine =
+        mrpService.createMrpLine(
+            mrp,
+            product,
+            mrpLineTypeMap.get(elementSelect),
+            new BigDecimal(qty),
+            TODAY.plusDays(dayNb),
+            BigDecimal.ZERO,
+            stockLocation,
+            null);
+    return mrpService.saveMrpLine(mrpLine);
+  }
+
+  private MrpServiceImpl createMrpService(List<MrpLine> savedMrpLineList) {
+    MrpLineRepository mrpLineRepository = mock(MrpLineRepository.class);
+    when(mrpLineRepository.save(any(MrpLine.class)))
+        .thenAnswer(
+            invocation -> {
+              MrpLine mrpLine = invocation.getArgument(0);
+              if (mrpLine.getId() == null) {
+                mrpLine.setId((long) savedMrpLineList.size() + 1);
+                savedMrpLineList.add(mrpLine);
+              }
+              return mrpLine;
+            });
+    when(mrpLineRepository.all()).thenAnswer(invocation -> createQuery(savedMrpLineList));
+    when(mrpLineRepository.find(anyLong()))
+        .thenAnswer(
+            invocation ->
+                savedMrpLineList.stream()
+                    .filter(mrpLine -> mrpLine.getId().equals(invocation.getArgument(0)))
+                    .findFirst()
+                    .orElse(null));
+
+    ProductRepository productRepository = mock(ProductRepository.class);
+    when(productRepository.find(product.getId())).thenReturn(product);
+
+    StockRulesService stockRulesService = mock(StockRulesService.class);
+    when(stockRulesService.getStockRules(
+            product,
+            stockLocation,
+            StockRulesRepository.TYPE_FUTURE,
+            StockRulesRepository.USE_CASE_USED_FOR_MRP))
+        .thenReturn(stockRules);
+
+    MrpLineTypeService mrpLineTypeService = mock(MrpLineTypeService.class);
+    when(mrpLineTypeService.getMrpLineType(anyInt(), anyInt()))
+        .thenAnswer(invocation -> mrpLineTypeMap.get(invocation.<Integer>getArgument(0)));
+
+    return new MrpServiceImpl(
+        null,
+        null,
+        productRepository,
+        null,
+        null,
+        null,
+        null,
+        mrpLineRepository,
+        stockRulesService,
+        mrpLineService,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        mock(AppPurchaseService.class),
+        null,
+        null,
+        mrpLineTypeService) {
+
+      @Override
+      protected void clearSession() {
+        // The lines of the standard mode are not managed entities
+      }
+    };
+  }
+
+  /**
+   * Create a query on the saved lines, supporting the filters used by the proposal computation: a
+   * conjunction of comparisons of a path of the line with a positional parameter.
+   */
+  @SuppressWarnings("unchecked")
+  private Query<MrpLine> createQuery(List<MrpLine> savedMrpLineList) {
+    List<Predicate<MrpLine>> predicateList = new ArrayList<>();
+    List<Comparator<MrpLine>> comparatorList = new ArrayList<>();
+    return mock(
+        Query.class,
+        invocation -> {
+          switch (invocation.getMethod().getName()) {
+            case "filter":
+              String filter = invocation.getArgument(0);
+              Object[] arguments = invocation.getArguments();
+              Object[] params = Arrays.copyOfRange(arguments, 1, arguments.length);
+              for (String condition : filter.split("\\s+AND\\s+")) {
+                predicateList.add(createPredicate(condition, params));
+              }
+              return invocation.getMock();
+            case "order":
+              String path = invocation.getArgument(0);
+              comparatorList.add(
+                  Comparator.comparing(mrpLine -> (Comparable<Object>) getValue(mrpLine, path)));
+              return invocation.getMock();
+            case "fetch":
+              return fetch(savedMrpLineList, predicateList, comparatorList);
+            case "fetchOne":
+              return fetch(savedMrpLineList, predicateList, comparatorList).stream()
+                  .findFirst()
+                  .orElse(null);
+            case "count":
+              return (long) fetch(savedMrpLineList, predicateList, comparatorList).size();
+            default:
+              throw new UnsupportedOperationException(invocation.getMethod().getName());
+          }
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  private Predicate<MrpLine> createPredicate(String condition, Object[] params) {
+    Matcher matcher = CONDITION_PATTERN.matcher(condition.trim());
+    Assertions.assertTrue(matcher.matches(), condition);
+    String path = matcher.group(1);
+    String operator = matcher.group(2);
+    Object param = params[Integer.parseInt(matcher.group(3)) - 1];
+    return mrpLine -> {
+      Object value = getValue(mrpLine, path);
+      if ("=".equals(operator)) {
+        return Objects.equals(value, param);
+      }
+      int comparison = ((Comparable<Object>) value).compareTo(param);
+      return ">".equals(operator) ? comparison > 0 : comparison <= 0;
+    };
+  }
+
+  private List<MrpLine> fetch(
+      List<MrpLine> savedMrpLineList,
+      List<Predicate<MrpLine>> predicateList,
+      List<Comparator<MrpLine>> comparatorList) {
+    return savedMrpLineList.stream()
+        .filter(mrpLine -> predicateList.stream().allMatch(predicate -> predicate.test(mrpLine)))
+        .sorted(
+            comparatorList.stream()
+                .reduce((first, second) -> 0, (first, second) -> first.thenComparing(second)))
+        .collect(Collectors.toList());
+  }
+
+  private Object getValue(Object bean, String path) {
+    Object value = bean;
+    for (String name : path.split("\\.")) {
+      value = Mapper.of(value.getClass()).get(value, name);
+    }
+    return value;
+  }
+
+  private void addMrpLineType(Long id, int elementSelect, int sequence) {
+    MrpLineType mrpLineType = new MrpLineType();
+    mrpLineType.setId(id);
+    mrpLineType.setCode("TYPE" + id);
+    mrpLineType.setElementSelect(elementSelect);
+    mrpLineType.setTypeSelect(
+        elementSelect == MrpLineTypeRepository.ELEMENT_SALE_ORDER
+            ? MrpLineTypeRepository.TYPE_OUT
+            : MrpLineTypeRepository.TYPE_IN);
+    mrpLineType.setSequence(sequence);
+    mrpLineTypeMap.put(elementSelect, mrpLineType);
+  }
+
+  private List<String> describe(List<MrpLine> mrpLineList) {
+    return mrpLineList.stream()
+        .map(
+            mrpLine ->
+                String.join(
+                    " ",
+                    String.valueOf(mrpLine.getMrpLineType().getElementSelect()),
+                    mrpLine.getQty().toPlainString(),
+                    String.valueOf(mrpLine.getMaturityDate()),
+                    mrpLine.getCumulativeQty().toPlainString(),
+                    String.valueOf(mrpLine.getRelatedToSelectName()),
+                    String.valueOf(mrpLine.getEstimatedDeliveryMrpLine() != null)))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2005-2024 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.supplychain.db.MrpLine;
+import com.axelor.apps.supplychain.db.MrpLineType;
+import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestMrpLineStore {
+
+  private static final LocalDate DATE = LocalDate.of(2024, 1, 10);
+
+  private Product product;
+  private StockLocation stockLocation;
+  private MrpLineType stockType;
+  private MrpLineType saleOrderType;
+  private MrpLineType purchaseOrderType;
+
+  @BeforeEach
+  void setUp() {
+    product = new Product();
+    product.setId(1L);
+    stockLocation = new StockLocation();
+    stockLocation.setId(1L);
+    stockType = createMrpLineType(1L, MrpLineTypeRepository.TYPE_IN, 0);
+    purchaseOrderType = createMrpLineType(2L, MrpLineTypeRepository.TYPE_IN, 2);
+    saleOrderType = createMrpLineType(3L, MrpLineTypeRepository.TYPE_OUT, 1);
+  }
+
+  @Test
+  void testSortedAsStandardComputation() {
+    MrpLine saleOrderLine = createMrpLine(saleOrderType, DATE);
+    MrpLine purchaseOrderLine1 = createMrpLine(purchaseOrderType, DATE);
+    MrpLine withoutDateLine = createMrpLine(purchaseOrderType, null);
+    MrpLine stockLine1 = createMrpLine(stockType, DATE.minusDays(1));
+    MrpLine purchaseOrderLine2 = createMrpLine(purchaseOrderType, DATE);
+    MrpLine stockLine2 = createMrpLine(stockType, DATE);
+
+    MrpLineStore mrpLineStore = new MrpLineStore();
+    for (MrpLine mrpLine :
+        Arrays.asList(
+            saleOrderLine,
+            purchaseOrderLine1,
+            withoutDateLine,
+            stockLine1,
+            purchaseOrderLine2,
+            stockLine2)) {
+      mrpLineStore.add(mrpLine);
+    }
+
+    // Maturity date (without date last), then type, then sequence, then order of creation
+    List<MrpLine> expected =
+        Arrays.asList(
+            stockLine1,
+            stockLine2,
+            purchaseOrderLine1,
+            purchaseOrderLine2,
+            saleOrderLine,
+            withoutDateLine);
+    Assertions.assertEquals(expected, mrpLineStore.getSortedMrpLineList(product.getId()));
+    Assertions.assertEquals(6, mrpLineStore.getMrpLineList().size());
+  }
+
+  @Test
+  void testFindMrpLine() {
+    MrpLine mrpLine = createMrpLine(purchaseOrderType, DATE);
+    MrpLineStore mrpLineStore = new MrpLineStore();
+    mrpLineStore.add(mrpLine);
+
+    Assertions.assertSame(mrpLine, mrpLineStore.findMrpLine(1L, 2L, 1L, DATE.minusDays(5), DATE));
+    Assertions.assertNull(mrpLineStore.findMrpLine(1L, 2L, 1L, DATE, DATE.plusDays(5)));
+    Assertions.assertNull(mrpLineStore.findMrpLine(1L, 3L, 1L, DATE.minusDays(5), DATE));
+    Assertions.assertNull(mrpLineStore.findMrpLine(1L, 2L, 2L, DATE.minusDays(5), DATE));
+    Assertions.assertNull(mrpLineStore.findMrpLine(2L, 2L, 1L, DATE.minusDays(5), DATE));
+  }
+
+  @Test
+  void testCountEditedByUser() {
+    MrpLine editedMrpLine = createMrpLine(purchaseOrderType, DATE);
+    editedMrpLine.setIsEditedByUser(true);
+    editedMrpLine.setRelatedToSelectName("SO0001");
+    MrpLine mrpLine = createMrpLine(purchaseOrderType, DATE);
+    mrpLine.setRelatedToSelectName("SO0001");
+    MrpLineStore mrpLineStore = new MrpLineStore();
+    mrpLineStore.add(editedMrpLine);
+    mrpLineStore.add(mrpLine);
+
+    Assertions.assertEquals(1, mrpLineStore.countEditedByUser(1L, "SO0001"));
+    Assertions.assertEquals(0, mrpLineStore.countEditedByUser(1L, "SO0002"));
+    Assertions.assertEquals(0, mrpLineStore.countEditedByUser(1L, null));
+  }
+
+  private MrpLineType createMrpLineType(Long id, int typeSelect, int sequence) {
+    MrpLineType mrpLineType = new MrpLineType();
+    mrpLineType.setId(id);
+    mrpLineType.setTypeSelect(typeSelect);
+    mrpLineType.setSequence(sequence);
+    return mrpLineType;
+  }
+
+  private MrpLine createMrpLine(MrpLineType mrpLineType, LocalDate maturityDate) {
+    MrpLine mrpLine = new MrpLine();
+    mrpLine.setProduct(product);
+    mrpLine.setStockLocation(stockLocation);
+    mrpLine.setMrpLineType(mrpLineType);
+    mrpLine.setMaturityDate(maturityDate);
+    return mrpLine;
+  }
+}